@@ -1,5 +1,7 @@
 package com.github.houbb.mq.broker.constant;
 
+import java.io.File;
+
 /**
  * 中间人常量
  *
@@ -16,4 +18,17 @@ public final class BrokerConst {
      */
     public static final int DEFAULT_PORT = 9999;
 
+    /**
+     * 默认存储路径
+     * @since 0.1.5
+     */
+    public static final String DEFAULT_STORE_PATH = System.getProperty("user.home")
+            + File.separator + "mq" + File.separator + "store";
+
+    /**
+     * 默认提交日志单个文件大小 1G
+     * @since 0.1.5
+     */
+    public static final int DEFAULT_COMMIT_LOG_SEGMENT_SIZE = 1024 * 1024 * 1024;
+
 }
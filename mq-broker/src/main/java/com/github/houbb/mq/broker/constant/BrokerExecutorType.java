@@ -0,0 +1,74 @@
+package com.github.houbb.mq.broker.constant;
+
+import com.github.houbb.mq.common.constant.MethodOpcode;
+import com.github.houbb.mq.common.constant.MethodType;
+
+/**
+ * 业务线程池类型
+ *
+ * ps: 不同类型的请求使用不同的线程池，一类请求堆积不影响其他请求。
+ *
+ * @author binbin.hou
+ * @since 0.1.5
+ */
+public enum BrokerExecutorType {
+
+    /**
+     * 生产者消息发送
+     */
+    PRODUCE,
+
+    /**
+     * 消费者主动拉取
+     */
+    PULL,
+
+    /**
+     * 消费者消费状态 ACK
+     */
+    ACK,
+
+    /**
+     * 注册、订阅、心跳等其他请求
+     */
+    CONTROL,
+    ;
+
+    /**
+     * 编码对应的类型
+     * 下标：方法类型编码
+     * @since 0.1.5
+     */
+    private static final BrokerExecutorType[] OPCODE_TYPES = new BrokerExecutorType[MethodOpcode.maxOpcode() + 1];
+
+    static {
+        put(MethodType.P_SEND_MSG, PRODUCE);
+        put(MethodType.P_SEND_MSG_ONE_WAY, PRODUCE);
+        put(MethodType.P_SEND_MSG_BATCH, PRODUCE);
+        put(MethodType.P_SEND_MSG_ONE_WAY_BATCH, PRODUCE);
+        put(MethodType.C_MESSAGE_PULL, PULL);
+        put(MethodType.C_CONSUMER_STATUS, ACK);
+        put(MethodType.C_CONSUMER_STATUS_BATCH, ACK);
+    }
+
+    private static void put(final String methodType, final BrokerExecutorType type) {
+        OPCODE_TYPES[MethodOpcode.getOpcode(methodType)] = type;
+    }
+
+    /**
+     * 获取方法类型编码对应的类型
+     * @param opcode 方法类型编码
+     * @return 结果，未指定的都是 {@link #CONTROL}
+     * @since 0.1.5
+     */
+    public static BrokerExecutorType getByOpcode(final short opcode) {
+        if(opcode > MethodOpcode.UNKNOWN && opcode < OPCODE_TYPES.length) {
+            BrokerExecutorType type = OPCODE_TYPES[opcode];
+            if(type != null) {
+                return type;
+            }
+        }
+        return CONTROL;
+    }
+
+}
@@ -0,0 +1,26 @@
+package com.github.houbb.mq.broker.constant;
+
+/**
+ * 刷盘方式
+ *
+ * @author binbin.hou
+ * @since 0.1.5
+ */
+public enum FlushDiskType {
+
+    /**
+     * 同步刷盘
+     *
+     * ps: 刷盘完成后才返回。并发写入的请求合并为一次刷盘。
+     */
+    SYNC_FLUSH,
+
+    /**
+     * 异步刷盘
+     *
+     * ps: 写入内存映射后直接返回，按照时间间隔或者脏页数量刷盘。
+     */
+    ASYNC_FLUSH,
+    ;
+
+}
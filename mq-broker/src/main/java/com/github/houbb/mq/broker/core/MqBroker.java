@@ -8,27 +8,39 @@ import com.github.houbb.mq.broker.api.IBrokerConsumerService;
 import com.github.houbb.mq.broker.api.IBrokerProducerService;
 import com.github.houbb.mq.broker.api.IMqBroker;
 import com.github.houbb.mq.broker.constant.BrokerConst;
+import com.github.houbb.mq.broker.constant.BrokerExecutorType;
 import com.github.houbb.mq.broker.constant.BrokerRespCode;
+import com.github.houbb.mq.broker.constant.FlushDiskType;
 import com.github.houbb.mq.broker.dto.consumer.ConsumerSubscribeBo;
 import com.github.houbb.mq.broker.handler.MqBrokerHandler;
 import com.github.houbb.mq.broker.support.api.LocalBrokerConsumerService;
 import com.github.houbb.mq.broker.support.api.LocalBrokerProducerService;
+import com.github.houbb.mq.broker.support.executor.MqBrokerExecutor;
+import com.github.houbb.mq.broker.support.executor.MqBrokerExecutorConfig;
 import com.github.houbb.mq.broker.support.persist.IMqBrokerPersist;
 import com.github.houbb.mq.broker.support.persist.LocalMqBrokerPersist;
+import com.github.houbb.mq.broker.support.persist.MqBrokerPersistConfig;
+import com.github.houbb.mq.broker.support.persist.MqBrokerRetentionPolicy;
 import com.github.houbb.mq.broker.support.push.BrokerPushService;
 import com.github.houbb.mq.broker.support.push.IBrokerPushService;
 import com.github.houbb.mq.broker.support.valid.BrokerRegisterValidService;
 import com.github.houbb.mq.broker.support.valid.IBrokerRegisterValidService;
+import com.github.houbb.mq.common.api.Destroyable;
 import com.github.houbb.mq.common.resp.MqException;
 import com.github.houbb.mq.common.support.invoke.IInvokeService;
 import com.github.houbb.mq.common.support.invoke.impl.InvokeService;
-import com.github.houbb.mq.common.util.DelimiterUtil;
+import com.github.houbb.mq.common.support.method.IMethodHandler;
+import com.github.houbb.mq.common.util.FrameUtil;
 import io.netty.bootstrap.ServerBootstrap;
-import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
 import io.netty.channel.*;
 import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.nio.NioServerSocketChannel;
-import io.netty.handler.codec.DelimiterBasedFrameDecoder;
+import io.netty.util.concurrent.Future;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * @author binbin.hou
@@ -102,6 +114,94 @@ public class MqBroker extends Thread implements IMqBroker {
      */
     private IBrokerRegisterValidService brokerRegisterValidService = new BrokerRegisterValidService();
 
+    /**
+     * 刷盘方式
+     * @since 0.1.5
+     */
+    private FlushDiskType flushDiskType = FlushDiskType.ASYNC_FLUSH;
+
+    /**
+     * 刷盘时间间隔
+     * @since 0.1.5
+     */
+    private long flushIntervalMills = 500;
+
+    /**
+     * 异步刷盘时，脏页达到该数量立刻刷盘
+     * @since 0.1.5
+     */
+    private int flushLeastPages = 4;
+
+    /**
+     * 同步刷盘等待超时时间
+     * @since 0.1.5
+     */
+    private long syncFlushTimeoutMills = 5000;
+
+    /**
+     * 检查点时间间隔
+     * @since 0.1.5
+     */
+    private long checkpointIntervalMills = 60 * 1000;
+
+    /**
+     * 默认保留策略，默认保留 3 天
+     * @since 0.1.5
+     */
+    private MqBrokerRetentionPolicy retentionPolicy = MqBrokerRetentionPolicy.newInstance()
+            .maxAgeMills(3 * 24 * 60 * 60 * 1000L);
+
+    /**
+     * topic 单独指定的保留策略
+     * @since 0.1.5
+     */
+    private final Map<String, MqBrokerRetentionPolicy> topicRetentionPolicyMap = new HashMap<>();
+
+    /**
+     * 过期清理时间间隔
+     * @since 0.1.5
+     */
+    private long retentionCheckIntervalMills = 10 * 1000;
+
+    /**
+     * 自定义的方法处理
+     * key: 方法类型
+     * @since 0.1.5
+     */
+    private final Map<String, IMethodHandler> methodHandlerMap = new HashMap<>();
+
+    /**
+     * 是否启用业务线程池
+     *
+     * ps: 不启用时请求直接在 IO 线程处理
+     * @since 0.1.5
+     */
+    private boolean executorEnable = true;
+
+    /**
+     * 业务线程池配置
+     * @since 0.1.5
+     */
+    private final Map<BrokerExecutorType, MqBrokerExecutorConfig> executorConfigMap = new EnumMap<>(BrokerExecutorType.class);
+
+    /**
+     * 业务线程池
+     * @since 0.1.5
+     */
+    private MqBrokerExecutor mqBrokerExecutor;
+
+    public MqBroker() {
+        final int processors = Runtime.getRuntime().availableProcessors();
+        executorConfigMap.put(BrokerExecutorType.PRODUCE, MqBrokerExecutorConfig.newInstance()
+                .threadNum(processors).queueSize(10000));
+        executorConfigMap.put(BrokerExecutorType.PULL, MqBrokerExecutorConfig.newInstance()
+                .threadNum(processors).queueSize(1000));
+        executorConfigMap.put(BrokerExecutorType.ACK, MqBrokerExecutorConfig.newInstance()
+                .threadNum(processors).queueSize(10000));
+        executorConfigMap.put(BrokerExecutorType.CONTROL, MqBrokerExecutorConfig.newInstance()
+                .threadNum(2).queueSize(1000));
+    }
+
     public MqBroker port(int port) {
         this.port = port;
         return this;
@@ -147,6 +247,78 @@ public class MqBroker extends Thread implements IMqBroker {
         return this;
     }
 
+    public MqBroker flushDiskType(FlushDiskType flushDiskType) {
+        this.flushDiskType = flushDiskType;
+        return this;
+    }
+
+    public MqBroker flushIntervalMills(long flushIntervalMills) {
+        this.flushIntervalMills = flushIntervalMills;
+        return this;
+    }
+
+    public MqBroker flushLeastPages(int flushLeastPages) {
+        this.flushLeastPages = flushLeastPages;
+        return this;
+    }
+
+    public MqBroker syncFlushTimeoutMills(long syncFlushTimeoutMills) {
+        this.syncFlushTimeoutMills = syncFlushTimeoutMills;
+        return this;
+    }
+
+    public MqBroker checkpointIntervalMills(long checkpointIntervalMills) {
+        this.checkpointIntervalMills = checkpointIntervalMills;
+        return this;
+    }
+
+    public MqBroker retentionPolicy(MqBrokerRetentionPolicy retentionPolicy) {
+        this.retentionPolicy = retentionPolicy;
+        return this;
+    }
+
+    public MqBroker topicRetentionPolicy(String topic, MqBrokerRetentionPolicy retentionPolicy) {
+        this.topicRetentionPolicyMap.put(topic, retentionPolicy);
+        return this;
+    }
+
+    public MqBroker retentionCheckIntervalMills(long retentionCheckIntervalMills) {
+        this.retentionCheckIntervalMills = retentionCheckIntervalMills;
+        return this;
+    }
+
+    public MqBroker methodHandler(String methodType, IMethodHandler methodHandler) {
+        this.methodHandlerMap.put(methodType, methodHandler);
+        return this;
+    }
+
+    public MqBroker executorEnable(boolean executorEnable) {
+        this.executorEnable = executorEnable;
+        return this;
+    }
+
+    public MqBroker executorConfig(BrokerExecutorType executorType, MqBrokerExecutorConfig executorConfig) {
+        this.executorConfigMap.put(executorType, executorConfig);
+        return this;
+    }
+
+    /**
+     * 初始化持久化
+     * @since 0.1.5
+     */
+    private void initPersist() {
+        MqBrokerPersistConfig persistConfig = MqBrokerPersistConfig.newInstance()
+                .flushDiskType(flushDiskType)
+                .flushIntervalMills(flushIntervalMills)
+                .flushLeastPages(flushLeastPages)
+                .syncFlushTimeoutMills(syncFlushTimeoutMills)
+                .checkpointIntervalMills(checkpointIntervalMills)
+                .retentionPolicy(retentionPolicy)
+                .topicRetentionPolicyMap(topicRetentionPolicyMap)
+                .retentionCheckIntervalMills(retentionCheckIntervalMills);
+        mqBrokerPersist.init(persistConfig);
+    }
+
     private ChannelHandler initChannelHandler() {
         registerConsumerService.loadBalance(this.loadBalance);
 
@@ -159,7 +331,9 @@ public class MqBroker extends Thread implements IMqBroker {
                 .brokerPushService(brokerPushService)
                 .respTimeoutMills(respTimeoutMills)
                 .pushMaxAttempt(pushMaxAttempt)
-                .brokerRegisterValidService(brokerRegisterValidService);
+                .brokerRegisterValidService(brokerRegisterValidService)
+                .methodHandlers(methodHandlerMap)
+                .mqBrokerExecutor(mqBrokerExecutor);
 
         return handler;
     }
@@ -173,22 +347,27 @@ public class MqBroker extends Thread implements IMqBroker {
         EventLoopGroup workerGroup = new NioEventLoopGroup();
 
         try {
-            final ByteBuf delimiterBuf = DelimiterUtil.getByteBuf(DelimiterUtil.DELIMITER);
+            this.initPersist();
+            if(executorEnable) {
+                mqBrokerExecutor = new MqBrokerExecutor(executorConfigMap);
+            }
+
             ServerBootstrap serverBootstrap = new ServerBootstrap();
             serverBootstrap.group(workerGroup, bossGroup)
                     .channel(NioServerSocketChannel.class)
                     .childHandler(new ChannelInitializer<Channel>() {
                         @Override
                         protected void initChannel(Channel ch) throws Exception {
-                            ch.pipeline()
-                                    .addLast(new DelimiterBasedFrameDecoder(DelimiterUtil.LENGTH, delimiterBuf))
-                                    .addLast(initChannelHandler());
+                            FrameUtil.addServerCodec(ch.pipeline());
+                            ch.pipeline().addLast(initChannelHandler());
                         }
                     })
                     // 这个参数影响的是还没有被accept 取出的连接
                     .option(ChannelOption.SO_BACKLOG, 128)
                     // 这个参数只是过一段时间内客户端没有响应，服务端会发送一个 ack 包，以判断客户端是否还活着。
-                    .childOption(ChannelOption.SO_KEEPALIVE, true);
+                    .childOption(ChannelOption.SO_KEEPALIVE, true)
+                    // 编码直接写入池化缓冲区
+                    .childOption(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT);
 
             // 绑定端口，开始接收进来的链接
             ChannelFuture channelFuture = serverBootstrap.bind(port).syncUninterruptibly();
@@ -200,8 +379,21 @@ public class MqBroker extends Thread implements IMqBroker {
             log.error("MQ 中间人启动异常", e);
             throw new MqException(BrokerRespCode.RPC_INIT_FAILED);
         } finally {
-            workerGroup.shutdownGracefully();
-            bossGroup.shutdownGracefully();
+            // 等待连接关闭，不再有新的请求进入
+            Future<?> workerFuture = workerGroup.shutdownGracefully();
+            Future<?> bossFuture = bossGroup.shutdownGracefully();
+            workerFuture.syncUninterruptibly();
+            bossFuture.syncUninterruptibly();
+
+            // 等待已经接受的请求处理完成，之后才能释放持久化
+            if(mqBrokerExecutor != null) {
+                mqBrokerExecutor.destroyAll();
+            }
+
+            // 释放持久化资源
+            if(mqBrokerPersist instanceof Destroyable) {
+                ((Destroyable) mqBrokerPersist).destroyAll();
+            }
         }
     }
 
@@ -1,6 +1,7 @@
 package com.github.houbb.mq.broker.dto.consumer;
 
 import com.github.houbb.load.balance.support.server.IServer;
+import com.github.houbb.mq.broker.support.tag.TagRegexMatcher;
 import com.github.houbb.mq.common.rpc.RpcAddress;
 
 import java.util.Objects;
@@ -36,6 +37,12 @@ public class ConsumerSubscribeBo extends RpcAddress implements IServer {
      */
     private String channelId;
 
+    /**
+     * 标签正则匹配，订阅时编译，不参与比较
+     * @since 0.1.5
+     */
+    private transient TagRegexMatcher tagRegexMatcher;
+
     public String getGroupName() {
         return groupName;
     }
@@ -68,6 +75,14 @@ public class ConsumerSubscribeBo extends RpcAddress implements IServer {
         this.channelId = channelId;
     }
 
+    public TagRegexMatcher getTagRegexMatcher() {
+        return tagRegexMatcher;
+    }
+
+    public void setTagRegexMatcher(TagRegexMatcher tagRegexMatcher) {
+        this.tagRegexMatcher = tagRegexMatcher;
+    }
+
     @Override
     public boolean equals(Object object) {
         if (this == object) return true;
@@ -7,6 +7,7 @@ import com.github.houbb.log.integration.core.Log;
 import com.github.houbb.log.integration.core.LogFactory;
 import com.github.houbb.mq.broker.api.IBrokerConsumerService;
 import com.github.houbb.mq.broker.api.IBrokerProducerService;
+import com.github.houbb.mq.broker.constant.BrokerExecutorType;
 import com.github.houbb.mq.broker.dto.BrokerRegisterReq;
 import com.github.houbb.mq.broker.dto.ChannelGroupNameDto;
 import com.github.houbb.mq.broker.dto.ServiceEntry;
@@ -15,7 +16,9 @@ import com.github.houbb.mq.broker.dto.consumer.ConsumerUnSubscribeReq;
 import com.github.houbb.mq.broker.dto.persist.MqMessagePersistPut;
 import com.github.houbb.mq.broker.dto.persist.MqMessagePersistPutBatch;
 import com.github.houbb.mq.broker.resp.MqBrokerRespCode;
+import com.github.houbb.mq.broker.support.executor.MqBrokerExecutor;
 import com.github.houbb.mq.broker.support.persist.IMqBrokerPersist;
+import com.github.houbb.mq.broker.support.persist.MqBrokerPullBuffer;
 import com.github.houbb.mq.broker.support.push.BrokerPushContext;
 import com.github.houbb.mq.broker.support.push.IBrokerPushService;
 import com.github.houbb.mq.broker.support.valid.BrokerRegisterValidService;
@@ -29,15 +32,25 @@ import com.github.houbb.mq.common.resp.MqCommonRespCode;
 import com.github.houbb.mq.common.resp.MqException;
 import com.github.houbb.mq.common.rpc.RpcMessageDto;
 import com.github.houbb.mq.common.support.invoke.IInvokeService;
+import com.github.houbb.mq.common.support.method.IMethodHandler;
+import com.github.houbb.mq.common.support.method.MethodHandlerRegistry;
+import com.github.houbb.mq.common.support.serializer.ISerializer;
+import com.github.houbb.mq.common.support.serializer.Serializers;
+import com.github.houbb.mq.common.support.serializer.impl.JsonSerializer;
 import com.github.houbb.mq.common.util.ChannelUtil;
-import com.github.houbb.mq.common.util.DelimiterUtil;
 import io.netty.buffer.ByteBuf;
-import io.netty.channel.Channel;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.util.CharsetUtil;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 /**
  * @author binbin.hou
@@ -47,6 +60,13 @@ public class MqBrokerHandler extends SimpleChannelInboundHandler {
 
     private static final Log log = LogFactory.getLog(MqBrokerHandler.class);
 
+    /**
+     * 拉取结果中消息之间的分隔
+     * @since 0.1.5
+     */
+    private static final ByteBuf PULL_BODY_SEPARATOR = Unpooled.unreleasableBuffer(
+            Unpooled.directBuffer(1).writeByte(','));
+
     /**
      * 调用管理类
      * @since 1.0.0
@@ -95,6 +115,38 @@ public class MqBrokerHandler extends SimpleChannelInboundHandler {
      */
     private IBrokerRegisterValidService brokerRegisterValidService;
 
+    /**
+     * 方法处理注册表
+     * @since 0.1.5
+     */
+    private final MethodHandlerRegistry methodHandlerRegistry = MethodHandlerRegistry.newInstance();
+
+    /**
+     * 业务线程池
+     * @since 0.1.5
+     */
+    private MqBrokerExecutor mqBrokerExecutor;
+
+    public MqBrokerHandler() {
+        this.initMethodHandlers();
+    }
+
+    /**
+     * 注册自定义的方法处理，相同的方法类型覆盖内置的处理
+     * @param methodHandlerMap 方法类型 -> 处理
+     * @return this
+     * @since 0.1.5
+     */
+    public MqBrokerHandler methodHandlers(Map<String, IMethodHandler> methodHandlerMap) {
+        this.methodHandlerRegistry.register(methodHandlerMap);
+        return this;
+    }
+
+    public MqBrokerHandler mqBrokerExecutor(MqBrokerExecutor mqBrokerExecutor) {
+        this.mqBrokerExecutor = mqBrokerExecutor;
+        return this;
+    }
+
     public MqBrokerHandler brokerRegisterValidService(IBrokerRegisterValidService brokerRegisterValidService) {
         this.brokerRegisterValidService = brokerRegisterValidService;
         return this;
@@ -137,27 +189,11 @@ public class MqBrokerHandler extends SimpleChannelInboundHandler {
 
     @Override
     protected void channelRead0(ChannelHandlerContext ctx, Object msg) throws Exception {
-        ByteBuf byteBuf = (ByteBuf) msg;
-        byte[] bytes = new byte[byteBuf.readableBytes()];
-        byteBuf.readBytes(bytes);
-
-        RpcMessageDto rpcMessageDto = null;
-        try {
-            rpcMessageDto = JSON.parseObject(bytes, RpcMessageDto.class);
-        } catch (Exception exception) {
-            log.error("RpcMessageDto json 格式转换异常 {}", new String(bytes));
-            return;
-        }
+        // 帧解码时已经解析好信封，消息体由具体的处理按需解析
+        RpcMessageDto rpcMessageDto = (RpcMessageDto) msg;
 
         if (rpcMessageDto.isRequest()) {
-            MqCommonResp commonResp = this.dispatch(rpcMessageDto, ctx);
-
-            if(commonResp == null) {
-                log.debug("当前消息为 null，忽略处理。");
-                return;
-            }
-
-            writeResponse(rpcMessageDto, commonResp, ctx);
+            this.executeRequest(rpcMessageDto, ctx);
         } else {
             final String traceId = rpcMessageDto.getTraceId();
 
@@ -168,171 +204,327 @@ public class MqBrokerHandler extends SimpleChannelInboundHandler {
             }
 
             // 添加消息
+            // 由等待方的线程读取，处理器返回后消息体缓冲区会被释放
+            rpcMessageDto.detachBody();
             invokeService.addResponse(traceId, rpcMessageDto);
         }
     }
 
+    /**
+     * 执行请求
+     *
+     * （1）未指定业务线程池时，直接在 IO 线程处理
+     * （2）交给业务线程处理时，消息体缓冲区在处理完成后才释放
+     * （3）队列已满时直接返回服务端繁忙，ONE WAY 请求直接丢弃
+     *
+     * @param rpcMessageDto 请求
+     * @param ctx 上下文
+     * @since 0.1.5
+     */
+    private void executeRequest(final RpcMessageDto rpcMessageDto,
+                                final ChannelHandlerContext ctx) {
+        if(mqBrokerExecutor == null) {
+            handleRequest(rpcMessageDto, ctx);
+            return;
+        }
+
+        final BrokerExecutorType executorType = BrokerExecutorType.getByOpcode(rpcMessageDto.getOpcode());
+        rpcMessageDto.retain();
+        boolean accepted = mqBrokerExecutor.execute(executorType, ctx.channel(), new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    handleRequest(rpcMessageDto, ctx);
+                } catch (Exception e) {
+                    log.error("业务线程处理请求异常 method: {}", rpcMessageDto.getMethodType(), e);
+                } finally {
+                    rpcMessageDto.release();
+                }
+            }
+        });
+        if(accepted) {
+            return;
+        }
+
+        rpcMessageDto.release();
+        log.warn("业务线程池 {} 队列已满，拒绝 channelId: {} method: {} traceId: {}", executorType,
+                ChannelUtil.getChannelId(ctx), rpcMessageDto.getMethodType(), rpcMessageDto.getTraceId());
+        if(isOneWay(rpcMessageDto.getMethodType())) {
+            return;
+        }
+        MqCommonResp resp = new MqCommonResp();
+        resp.setRespCode(MqBrokerRespCode.B_BUSY.getCode());
+        resp.setRespMessage(MqBrokerRespCode.B_BUSY.getMsg());
+        writeResponse(rpcMessageDto, resp, ctx);
+    }
+
+    /**
+     * 处理请求
+     * @param rpcMessageDto 请求
+     * @param ctx 上下文
+     * @since 0.1.5
+     */
+    private void handleRequest(RpcMessageDto rpcMessageDto, ChannelHandlerContext ctx) {
+        MqCommonResp commonResp = this.dispatch(rpcMessageDto, ctx);
+
+        if(commonResp == null) {
+            log.debug("当前消息为 null，忽略处理。");
+            return;
+        }
+
+        writeResponse(rpcMessageDto, commonResp, ctx);
+    }
+
+    /**
+     * 是否为不需要响应的请求
+     * @param methodType 方法类型
+     * @return 结果
+     * @since 0.1.5
+     */
+    private boolean isOneWay(String methodType) {
+        return MethodType.P_SEND_MSG_ONE_WAY.equals(methodType)
+                || MethodType.P_SEND_MSG_ONE_WAY_BATCH.equals(methodType);
+    }
+
     /**
      * 消息的分发
      *
+     * ps: 按照方法类型编码直接获取对应的处理
      * @param rpcMessageDto 入参
      * @param ctx 上下文
      * @return 结果
      */
     private MqCommonResp dispatch(RpcMessageDto rpcMessageDto, ChannelHandlerContext ctx) {
         try {
-            final String methodType = rpcMessageDto.getMethodType();
-            final String json = rpcMessageDto.getJson();
+            if(log.isDebugEnabled()) {
+                final ByteBuf body = rpcMessageDto.getBodyBuf();
+                log.debug("channelId: {} 接收到 method: {} 序列化：{} 长度：{}", ChannelUtil.getChannelId(ctx),
+                        rpcMessageDto.getMethodType(), rpcMessageDto.getSerializerCode(),
+                        body == null ? -1 : body.readableBytes());
+            }
 
-            String channelId = ChannelUtil.getChannelId(ctx);
-            final Channel channel = ctx.channel();
-            log.debug("channelId: {} 接收到 method: {} 内容：{}", channelId,
-                    methodType, json);
+            final IMethodHandler methodHandler = methodHandlerRegistry.get(rpcMessageDto);
+            if(methodHandler == null) {
+                log.error("暂时不支持的方法类型 {}", rpcMessageDto.getMethodType());
+                throw new MqException(MqBrokerRespCode.B_NOT_SUPPORT_METHOD);
+            }
+            return methodHandler.handle(rpcMessageDto, ctx);
+        } catch (MqException mqException) {
+            log.error("业务执行异常", mqException);
+            mqException.printStackTrace(); // 打印完整堆栈
+            MqCommonResp resp = new MqCommonResp();
+            resp.setRespCode(mqException.getCode());
+            resp.setRespMessage(mqException.getMsg());
+            return resp;
+        } catch (Exception exception) {
+            log.error("执行异常", exception);
+//            log.error("执行异常堆栈", exception.getStackTrace());
+            exception.printStackTrace(); // 打印完整堆栈
+            MqCommonResp resp = new MqCommonResp();
+            resp.setRespCode(MqCommonRespCode.FAIL.getCode());
+            resp.setRespMessage(MqCommonRespCode.FAIL.getMsg());
+            return resp;
+        }
+    }
+
+    /**
+     * 解析消息体
+     * @param rpcMessageDto 请求
+     * @param clazz 类型
+     * @param <T> 泛型
+     * @return 结果
+     * @since 0.1.5
+     */
+    private <T> T parseBody(RpcMessageDto rpcMessageDto, Class<T> clazz) {
+        return Serializers.getByCode(rpcMessageDto.getSerializerCode())
+                .deserialize(rpcMessageDto.getBodyBuf(), clazz);
+    }
 
-            // 生产者注册
-            if(MethodType.P_REGISTER.equals(methodType)) {
-                BrokerRegisterReq registerReq = JSON.parseObject(json, BrokerRegisterReq.class);
+    /**
+     * 注册内置的方法处理
+     * @since 0.1.5
+     */
+    private void initMethodHandlers() {
+        // 生产者注册
+        methodHandlerRegistry.register(MethodType.P_REGISTER, new IMethodHandler() {
+            @Override
+            public MqCommonResp handle(RpcMessageDto rpcMessageDto, ChannelHandlerContext ctx) {
+                BrokerRegisterReq registerReq = parseBody(rpcMessageDto, BrokerRegisterReq.class);
                 if(!brokerRegisterValidService.producerValid(registerReq)) {
                     log.error("{} 生产者注册验证失败", JSON.toJSON(registerReq));
                     throw new MqException(MqBrokerRespCode.P_REGISTER_VALID_FAILED);
                 }
 
-                return registerProducerService.register(registerReq.getServiceEntry(), channel);
+                Serializers.bindChannel(ctx.channel(), Serializers.getByCode(rpcMessageDto.getSerializerCode()));
+                return registerProducerService.register(registerReq.getServiceEntry(), ctx.channel());
             }
-            // 生产者注销
-            if(MethodType.P_UN_REGISTER.equals(methodType)) {
-                registerProducerService.checkValid(channelId);
-
-                BrokerRegisterReq registerReq = JSON.parseObject(json, BrokerRegisterReq.class);
-                return registerProducerService.unRegister(registerReq.getServiceEntry(), channel);
+        });
+        // 生产者注销
+        methodHandlerRegistry.register(MethodType.P_UN_REGISTER, new IMethodHandler() {
+            @Override
+            public MqCommonResp handle(RpcMessageDto rpcMessageDto, ChannelHandlerContext ctx) {
+                registerProducerService.checkValid(ChannelUtil.getChannelId(ctx));
+
+                BrokerRegisterReq registerReq = parseBody(rpcMessageDto, BrokerRegisterReq.class);
+                return registerProducerService.unRegister(registerReq.getServiceEntry(), ctx.channel());
             }
-            // 生产者消息发送
-            if(MethodType.P_SEND_MSG.equals(methodType)) {
+        });
+        // 生产者消息发送
+        methodHandlerRegistry.register(MethodType.P_SEND_MSG, new IMethodHandler() {
+            @Override
+            public MqCommonResp handle(RpcMessageDto rpcMessageDto, ChannelHandlerContext ctx) {
+                final String channelId = ChannelUtil.getChannelId(ctx);
                 registerProducerService.checkValid(channelId);
 
-                return handleProducerSendMsg(channelId, json);
+                return handleProducerSendMsg(channelId, rpcMessageDto);
             }
-            // 生产者消息发送-ONE WAY
-            if(MethodType.P_SEND_MSG_ONE_WAY.equals(methodType)) {
+        });
+        // 生产者消息发送-ONE WAY
+        methodHandlerRegistry.register(MethodType.P_SEND_MSG_ONE_WAY, new IMethodHandler() {
+            @Override
+            public MqCommonResp handle(RpcMessageDto rpcMessageDto, ChannelHandlerContext ctx) {
+                final String channelId = ChannelUtil.getChannelId(ctx);
                 registerProducerService.checkValid(channelId);
 
-                handleProducerSendMsg(channelId, json);
-
+                handleProducerSendMsg(channelId, rpcMessageDto);
                 return null;
             }
-            // 生产者消息发送-批量
-            if(MethodType.P_SEND_MSG_BATCH.equals(methodType)) {
+        });
+        // 生产者消息发送-批量
+        methodHandlerRegistry.register(MethodType.P_SEND_MSG_BATCH, new IMethodHandler() {
+            @Override
+            public MqCommonResp handle(RpcMessageDto rpcMessageDto, ChannelHandlerContext ctx) {
+                final String channelId = ChannelUtil.getChannelId(ctx);
                 registerProducerService.checkValid(channelId);
 
-                return handleProducerSendMsgBatch(channelId, json);
+                return handleProducerSendMsgBatch(channelId, rpcMessageDto);
             }
-            // 生产者消息发送-ONE WAY-批量
-            if(MethodType.P_SEND_MSG_ONE_WAY_BATCH.equals(methodType)) {
+        });
+        // 生产者消息发送-ONE WAY-批量
+        methodHandlerRegistry.register(MethodType.P_SEND_MSG_ONE_WAY_BATCH, new IMethodHandler() {
+            @Override
+            public MqCommonResp handle(RpcMessageDto rpcMessageDto, ChannelHandlerContext ctx) {
+                final String channelId = ChannelUtil.getChannelId(ctx);
                 registerProducerService.checkValid(channelId);
 
-                handleProducerSendMsgBatch(channelId, json);
-
+                handleProducerSendMsgBatch(channelId, rpcMessageDto);
                 return null;
             }
+        });
 
-            // 消费者注册
-            if(MethodType.C_REGISTER.equals(methodType)) {
-                BrokerRegisterReq registerReq = JSON.parseObject(json, BrokerRegisterReq.class);
+        // 消费者注册
+        methodHandlerRegistry.register(MethodType.C_REGISTER, new IMethodHandler() {
+            @Override
+            public MqCommonResp handle(RpcMessageDto rpcMessageDto, ChannelHandlerContext ctx) {
+                BrokerRegisterReq registerReq = parseBody(rpcMessageDto, BrokerRegisterReq.class);
                 if(!brokerRegisterValidService.consumerValid(registerReq)) {
                     log.error("{} 消费者注册验证失败", JSON.toJSON(registerReq));
                     throw new MqException(MqBrokerRespCode.C_REGISTER_VALID_FAILED);
                 }
 
-                return registerConsumerService.register(registerReq.getServiceEntry(), channel);
+                // 推送时使用注册时的序列化方式
+                Serializers.bindChannel(ctx.channel(), Serializers.getByCode(rpcMessageDto.getSerializerCode()));
+                return registerConsumerService.register(registerReq.getServiceEntry(), ctx.channel());
             }
-            // 消费者注销
-            if(MethodType.C_UN_REGISTER.equals(methodType)) {
-                registerConsumerService.checkValid(channelId);
-
-                BrokerRegisterReq registerReq = JSON.parseObject(json, BrokerRegisterReq.class);
-                return registerConsumerService.unRegister(registerReq.getServiceEntry(), channel);
+        });
+        // 消费者注销
+        methodHandlerRegistry.register(MethodType.C_UN_REGISTER, new IMethodHandler() {
+            @Override
+            public MqCommonResp handle(RpcMessageDto rpcMessageDto, ChannelHandlerContext ctx) {
+                registerConsumerService.checkValid(ChannelUtil.getChannelId(ctx));
+
+                BrokerRegisterReq registerReq = parseBody(rpcMessageDto, BrokerRegisterReq.class);
+                return registerConsumerService.unRegister(registerReq.getServiceEntry(), ctx.channel());
             }
-            // 消费者监听注册
-            if(MethodType.C_SUBSCRIBE.equals(methodType)) {
-                registerConsumerService.checkValid(channelId);
-
-                ConsumerSubscribeReq req = JSON.parseObject(json, ConsumerSubscribeReq.class);
-                return registerConsumerService.subscribe(req, channel);
+        });
+        // 消费者监听注册
+        methodHandlerRegistry.register(MethodType.C_SUBSCRIBE, new IMethodHandler() {
+            @Override
+            public MqCommonResp handle(RpcMessageDto rpcMessageDto, ChannelHandlerContext ctx) {
+                registerConsumerService.checkValid(ChannelUtil.getChannelId(ctx));
+
+                ConsumerSubscribeReq req = parseBody(rpcMessageDto, ConsumerSubscribeReq.class);
+                return registerConsumerService.subscribe(req, ctx.channel());
             }
-            // 消费者监听注销
-            if(MethodType.C_UN_SUBSCRIBE.equals(methodType)) {
-                registerConsumerService.checkValid(channelId);
-
-                ConsumerUnSubscribeReq req = JSON.parseObject(json, ConsumerUnSubscribeReq.class);
-                return registerConsumerService.unSubscribe(req, channel);
+        });
+        // 消费者监听注销
+        methodHandlerRegistry.register(MethodType.C_UN_SUBSCRIBE, new IMethodHandler() {
+            @Override
+            public MqCommonResp handle(RpcMessageDto rpcMessageDto, ChannelHandlerContext ctx) {
+                registerConsumerService.checkValid(ChannelUtil.getChannelId(ctx));
+
+                ConsumerUnSubscribeReq req = parseBody(rpcMessageDto, ConsumerUnSubscribeReq.class);
+                return registerConsumerService.unSubscribe(req, ctx.channel());
             }
-            // 消费者主动 pull
-            if(MethodType.C_MESSAGE_PULL.equals(methodType)) {
-                registerConsumerService.checkValid(channelId);
-
-                MqConsumerPullReq req = JSON.parseObject(json, MqConsumerPullReq.class);
-                return mqBrokerPersist.pull(req, channel);
+        });
+        // 消费者主动 pull
+        methodHandlerRegistry.register(MethodType.C_MESSAGE_PULL, new IMethodHandler() {
+            @Override
+            public MqCommonResp handle(RpcMessageDto rpcMessageDto, ChannelHandlerContext ctx) {
+                registerConsumerService.checkValid(ChannelUtil.getChannelId(ctx));
+
+                MqConsumerPullReq req = parseBody(rpcMessageDto, MqConsumerPullReq.class);
+                // 存储的消息体为 json，不论请求的序列化方式，响应都直接引用存储的消息体
+                MqBrokerPullBuffer pullBuffer = mqBrokerPersist.pullBuffer(req, ctx.channel());
+                if(pullBuffer != null) {
+                    writePullBufferResponse(rpcMessageDto, pullBuffer, ctx);
+                    return null;
+                }
+                return mqBrokerPersist.pull(req, ctx.channel());
             }
-            // 消费者心跳
-            if(MethodType.C_HEARTBEAT.equals(methodType)) {
-                registerConsumerService.checkValid(channelId);
-
-                MqHeartBeatReq req = JSON.parseObject(json, MqHeartBeatReq.class);
-                registerConsumerService.heartbeat(req, channel);
+        });
+        // 消费者心跳
+        methodHandlerRegistry.register(MethodType.C_HEARTBEAT, new IMethodHandler() {
+            @Override
+            public MqCommonResp handle(RpcMessageDto rpcMessageDto, ChannelHandlerContext ctx) {
+                registerConsumerService.checkValid(ChannelUtil.getChannelId(ctx));
+
+                MqHeartBeatReq req = parseBody(rpcMessageDto, MqHeartBeatReq.class);
+                registerConsumerService.heartbeat(req, ctx.channel());
                 //心跳包也进行回复20250715
                 MqCommonResp resp = new MqCommonResp();
                 resp.setRespCode(MqCommonRespCode.SUCCESS.getCode());
                 resp.setRespMessage(MqCommonRespCode.SUCCESS.getMsg());
                 return resp;
             }
-            // 消费者消费状态 ACK
-            if(MethodType.C_CONSUMER_STATUS.equals(methodType)) {
-                registerConsumerService.checkValid(channelId);
-
-                MqConsumerUpdateStatusReq req = JSON.parseObject(json, MqConsumerUpdateStatusReq.class);
+        });
+        // 消费者消费状态 ACK
+        methodHandlerRegistry.register(MethodType.C_CONSUMER_STATUS, new IMethodHandler() {
+            @Override
+            public MqCommonResp handle(RpcMessageDto rpcMessageDto, ChannelHandlerContext ctx) {
+                registerConsumerService.checkValid(ChannelUtil.getChannelId(ctx));
+
+                MqConsumerUpdateStatusReq req = parseBody(rpcMessageDto, MqConsumerUpdateStatusReq.class);
                 final String messageId = req.getMessageId();
                 final String messageStatus = req.getMessageStatus();
                 final String consumerGroupName = req.getConsumerGroupName();
                 return mqBrokerPersist.updateStatus(messageId, consumerGroupName, messageStatus);
             }
-            //消费者消费状态 ACK-批量
-            if(MethodType.C_CONSUMER_STATUS_BATCH.equals(methodType)) {
-                registerConsumerService.checkValid(channelId);
-
-                MqConsumerUpdateStatusBatchReq req = JSON.parseObject(json, MqConsumerUpdateStatusBatchReq.class);
+        });
+        //消费者消费状态 ACK-批量
+        methodHandlerRegistry.register(MethodType.C_CONSUMER_STATUS_BATCH, new IMethodHandler() {
+            @Override
+            public MqCommonResp handle(RpcMessageDto rpcMessageDto, ChannelHandlerContext ctx) {
+                registerConsumerService.checkValid(ChannelUtil.getChannelId(ctx));
+
+                MqConsumerUpdateStatusBatchReq req = parseBody(rpcMessageDto, MqConsumerUpdateStatusBatchReq.class);
                 final List<MqConsumerUpdateStatusDto> statusDtoList = req.getStatusList();
                 return mqBrokerPersist.updateStatusBatch(statusDtoList);
             }
-
-            log.error("暂时不支持的方法类型 {}", methodType);
-            throw new MqException(MqBrokerRespCode.B_NOT_SUPPORT_METHOD);
-        } catch (MqException mqException) {
-            log.error("业务执行异常", mqException);
-            mqException.printStackTrace(); // 打印完整堆栈
-            MqCommonResp resp = new MqCommonResp();
-            resp.setRespCode(mqException.getCode());
-            resp.setRespMessage(mqException.getMsg());
-            return resp;
-        } catch (Exception exception) {
-            log.error("执行异常", exception);
-//            log.error("执行异常堆栈", exception.getStackTrace());
-            exception.printStackTrace(); // 打印完整堆栈
-            MqCommonResp resp = new MqCommonResp();
-            resp.setRespCode(MqCommonRespCode.FAIL.getCode());
-            resp.setRespMessage(MqCommonRespCode.FAIL.getMsg());
-            return resp;
-        }
+        });
     }
 
 
     /**
      *  处理生产者发送的消息
      *
-     * @param json 消息体
+     * @param channelId 通道标识
+     * @param rpcMessageDto 请求
      * @since 0.1.1
      */
-    private MqCommonResp handleProducerSendMsg(String channelId, String json) {
-        MqMessage mqMessage = JSON.parseObject(json, MqMessage.class);
+    private MqCommonResp handleProducerSendMsg(String channelId,
+                                               RpcMessageDto rpcMessageDto) {
+        MqMessage mqMessage = parseBody(rpcMessageDto, MqMessage.class);
         MqMessagePersistPut persistPut = new MqMessagePersistPut();
         persistPut.setMqMessage(mqMessage);
         persistPut.setMessageStatus(MessageStatusConst.WAIT_CONSUMER);
@@ -341,7 +533,10 @@ public class MqBrokerHandler extends SimpleChannelInboundHandler {
         persistPut.setRpcAddress(serviceEntry);
 
         MqCommonResp commonResp = mqBrokerPersist.put(persistPut);
-        this.asyncHandleMessage(persistPut);
+        // 持久化成功才推送
+        if(MqCommonRespCode.SUCCESS.getCode().equals(commonResp.getRespCode())) {
+            this.asyncHandleMessage(persistPut);
+        }
         return commonResp;
     }
 
@@ -349,11 +544,12 @@ public class MqBrokerHandler extends SimpleChannelInboundHandler {
      * 处理生产者发送的消息
      *
      * @param channelId 通道标识
-     * @param json 消息体
+     * @param rpcMessageDto 请求
      * @since 0.1.3
      */
-    private MqCommonResp handleProducerSendMsgBatch(String channelId, String json) {
-        MqMessageBatchReq batchReq = JSON.parseObject(json, MqMessageBatchReq.class);
+    private MqCommonResp handleProducerSendMsgBatch(String channelId,
+                                                    RpcMessageDto rpcMessageDto) {
+        MqMessageBatchReq batchReq = parseBody(rpcMessageDto, MqMessageBatchReq.class);
         final ServiceEntry serviceEntry = registerProducerService.getServiceEntry(channelId);
 
         List<MqMessagePersistPut> putList = buildPersistPutList(batchReq, serviceEntry);
@@ -361,8 +557,10 @@ public class MqBrokerHandler extends SimpleChannelInboundHandler {
         MqCommonResp commonResp = mqBrokerPersist.putBatch(putList);
 
         // 遍历异步推送
-        for(MqMessagePersistPut persistPut : putList) {
-            this.asyncHandleMessage(persistPut);
+        if(MqCommonRespCode.SUCCESS.getCode().equals(commonResp.getRespCode())) {
+            for(MqMessagePersistPut persistPut : putList) {
+                this.asyncHandleMessage(persistPut);
+            }
         }
 
         return commonResp;
@@ -434,14 +632,84 @@ public class MqBrokerHandler extends SimpleChannelInboundHandler {
         rpcMessageDto.setTraceId(req.getTraceId());
         rpcMessageDto.setMethodType(req.getMethodType());
         rpcMessageDto.setRequestTime(System.currentTimeMillis());
-        String json = JSON.toJSONString(resp);
-        rpcMessageDto.setJson(json);
+        rpcMessageDto.setBody(getResponseSerializer(req), resp);
 
         // 回写到 client 端
-        ByteBuf byteBuf = DelimiterUtil.getMessageDelimiterBuffer(rpcMessageDto);
-        ctx.writeAndFlush(byteBuf);
-        log.debug("[Server] channel {} response {}", id, JSON.toJSON(rpcMessageDto));
+        ctx.writeAndFlush(rpcMessageDto);
+        if(log.isDebugEnabled()) {
+            log.debug("[Server] channel {} response {}", id, rpcMessageDto);
+        }
+    }
+
+    /**
+     * 响应的序列化方式
+     *
+     * ps: 和请求使用相同的序列化方式，不支持时使用 json 返回错误信息
+     * @param req 请求
+     * @return 结果
+     * @since 0.1.5
+     */
+    private ISerializer getResponseSerializer(RpcMessageDto req) {
+        final byte serializerCode = req.getSerializerCode();
+        return Serializers.isSupport(serializerCode)
+                ? Serializers.getByCode(serializerCode) : Serializers.json();
+    }
+
+    /**
+     * 拉取结果写回，消息体不复制
+     *
+     * （1）响应体为 json 序列化的拉取结果，消息列表由存储中的消息体拼接而成
+     * （2）响应体作为消息体缓冲区，和其他响应一样由帧编码写出信封
+     * （3）长度前缀帧的消息体跟在信封后面聚集写出，不进入堆内存；旧的分隔符帧按照 json 信封复制写出
+     * （4）写出完成后释放存储文件的引用
+     *
+     * ps: 响应固定为 json 序列化，和请求的序列化方式无关，客户端按照响应中的序列化编码解析
+     * @param req 请求
+     * @param pullBuffer 拉取结果
+     * @param ctx 上下文
+     * @since 0.1.5
+     */
+    private void writePullBufferResponse(RpcMessageDto req,
+                                         final MqBrokerPullBuffer pullBuffer,
+                                         ChannelHandlerContext ctx) {
+        final String head = "{\"respCode\":" + JSON.toJSONString(MqCommonRespCode.SUCCESS.getCode())
+                + ",\"respMessage\":" + JSON.toJSONString(MqCommonRespCode.SUCCESS.getMsg())
+                + ",\"list\":[";
+        final String tail = "]}";
+
+        final List<ByteBuffer> bodyList = pullBuffer.getBodyList();
+        CompositeByteBuf byteBuf = ctx.alloc().compositeDirectBuffer(bodyList.size() * 2 + 2);
+        byteBuf.addComponent(true, directBuffer(ctx, head));
+        for(int i = 0; i < bodyList.size(); i++) {
+            if(i > 0) {
+                byteBuf.addComponent(true, PULL_BODY_SEPARATOR.duplicate());
+            }
+            byteBuf.addComponent(true, Unpooled.wrappedBuffer(bodyList.get(i)));
+        }
+        byteBuf.addComponent(true, directBuffer(ctx, tail));
+
+        RpcMessageDto rpcMessageDto = new RpcMessageDto();
+        rpcMessageDto.setRequest(false);
+        rpcMessageDto.setTraceId(req.getTraceId());
+        rpcMessageDto.setMethodType(req.getMethodType());
+        rpcMessageDto.setRequestTime(System.currentTimeMillis());
+        rpcMessageDto.setBodyBuf(byteBuf);
+        rpcMessageDto.setSerializerCode(JsonSerializer.CODE);
+
+        ctx.writeAndFlush(rpcMessageDto).addListener(new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture future) throws Exception {
+                pullBuffer.release();
+            }
+        });
+        if(log.isDebugEnabled()) {
+            log.debug("[Server] channel {} pull response size {}", ctx.channel().id().asLongText(), bodyList.size());
+        }
     }
 
+    private ByteBuf directBuffer(ChannelHandlerContext ctx, String text) {
+        byte[] bytes = text.getBytes(CharsetUtil.UTF_8);
+        return ctx.alloc().directBuffer(bytes.length).writeBytes(bytes);
+    }
 
 }
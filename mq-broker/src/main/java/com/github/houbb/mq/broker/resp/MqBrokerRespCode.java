@@ -9,6 +9,11 @@ import com.github.houbb.heaven.response.respcode.RespCode;
 public enum MqBrokerRespCode implements RespCode {
 
     B_NOT_SUPPORT_METHOD("B00001", "暂时不支持的方法类型"),
+    B_STORE_CREATE_FAILED("B00002", "存储文件创建失败"),
+    B_STORE_LOAD_FAILED("B00003", "存储文件加载失败"),
+    B_MESSAGE_TOO_LARGE("B00004", "消息大小超过存储文件上限"),
+    B_FLUSH_TIMEOUT("B00005", "消息刷盘超时"),
+    B_BUSY("B00006", "服务端繁忙，请稍后重试"),
 
     P_REGISTER_VALID_FAILED("BP0001", "生产者注册验证失败"),
     P_REGISTER_CHANNEL_NOT_VALID("BP0002", "生产者 channel 不合法"),
@@ -0,0 +1,101 @@
+package com.github.houbb.mq.broker.support.api;
+
+import com.github.houbb.mq.broker.dto.consumer.ConsumerSubscribeBo;
+import com.github.houbb.mq.broker.support.tag.TagRegexMatcher;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * topic 订阅路由快照
+ *
+ * （1）创建后订阅列表不再变化，订阅变更时整体替换为新的快照
+ * （2）按照消息的标签列表缓存匹配的分组及订阅列表，相同标签的消息只匹配一次
+ * （3）读取不加锁
+ *
+ * @author binbin.hou
+ * @since 0.1.5
+ */
+public class ConsumerTopicRoute {
+
+    /**
+     * 最多缓存的标签组合数量
+     * @since 0.1.5
+     */
+    private static final int MAX_ROUTE_SIZE = 1024;
+
+    /**
+     * 空路由
+     * @since 0.1.5
+     */
+    public static final ConsumerTopicRoute EMPTY = new ConsumerTopicRoute(Collections.<ConsumerSubscribeBo>emptyList());
+
+    /**
+     * 订阅列表
+     * @since 0.1.5
+     */
+    private final List<ConsumerSubscribeBo> subscribeList;
+
+    /**
+     * 路由缓存
+     * key: 标签列表
+     * value: 分组名称 -> 订阅列表
+     * @since 0.1.5
+     */
+    private final Map<List<String>, Map<String, List<ConsumerSubscribeBo>>> routeMap = new ConcurrentHashMap<>();
+
+    public ConsumerTopicRoute(Collection<ConsumerSubscribeBo> subscribeList) {
+        this.subscribeList = Collections.unmodifiableList(new ArrayList<>(subscribeList));
+    }
+
+    /**
+     * 获取标签列表匹配的分组
+     * @param tags 标签列表
+     * @return 分组名称 -> 订阅列表，不可修改
+     * @since 0.1.5
+     */
+    public Map<String, List<ConsumerSubscribeBo>> getGroupMap(final List<String> tags) {
+        if(subscribeList.isEmpty()) {
+            return Collections.emptyMap();
+        }
+
+        final List<String> key = tags == null ? Collections.<String>emptyList() : tags;
+        Map<String, List<ConsumerSubscribeBo>> groupMap = routeMap.get(key);
+        if(groupMap != null) {
+            return groupMap;
+        }
+
+        groupMap = buildGroupMap(key);
+        // 标签组合过多时不再缓存，避免内存无限增长
+        if(routeMap.size() < MAX_ROUTE_SIZE) {
+            routeMap.put(new ArrayList<>(key), groupMap);
+        }
+        return groupMap;
+    }
+
+    private Map<String, List<ConsumerSubscribeBo>> buildGroupMap(final List<String> tags) {
+        Map<String, List<ConsumerSubscribeBo>> groupMap = new HashMap<>();
+        for(ConsumerSubscribeBo bo : subscribeList) {
+            TagRegexMatcher tagRegexMatcher = bo.getTagRegexMatcher();
+            if(tagRegexMatcher != null
+                    && tagRegexMatcher.isMatch(tags)) {
+                List<ConsumerSubscribeBo> list = groupMap.get(bo.getGroupName());
+                if(list == null) {
+                    list = new ArrayList<>();
+                    groupMap.put(bo.getGroupName(), list);
+                }
+                list.add(bo);
+            }
+        }
+
+        for(Map.Entry<String, List<ConsumerSubscribeBo>> entry : groupMap.entrySet()) {
+            entry.setValue(Collections.unmodifiableList(entry.getValue()));
+        }
+        return Collections.unmodifiableMap(groupMap);
+    }
+
+    public List<ConsumerSubscribeBo> getSubscribeList() {
+        return subscribeList;
+    }
+
+}
@@ -3,7 +3,6 @@ package com.github.houbb.mq.broker.support.api;
 import com.alibaba.fastjson.JSON;
 import com.github.houbb.heaven.util.util.CollectionUtil;
 import com.github.houbb.heaven.util.util.MapUtil;
-import com.github.houbb.heaven.util.util.regex.RegexUtil;
 import com.github.houbb.load.balance.api.ILoadBalance;
 import com.github.houbb.log.integration.core.Log;
 import com.github.houbb.log.integration.core.LogFactory;
@@ -15,6 +14,7 @@ import com.github.houbb.mq.broker.dto.consumer.ConsumerSubscribeBo;
 import com.github.houbb.mq.broker.dto.consumer.ConsumerSubscribeReq;
 import com.github.houbb.mq.broker.dto.consumer.ConsumerUnSubscribeReq;
 import com.github.houbb.mq.broker.resp.MqBrokerRespCode;
+import com.github.houbb.mq.broker.support.tag.TagRegexMatchers;
 import com.github.houbb.mq.broker.utils.InnerChannelUtils;
 import com.github.houbb.mq.common.dto.req.MqHeartBeatReq;
 import com.github.houbb.mq.common.dto.req.MqMessage;
@@ -45,8 +45,26 @@ public class LocalBrokerConsumerService implements IBrokerConsumerService {
      * 订阅集合-推送策略
      * key: topicName
      * value: 对应的订阅列表
+     * ps: 只在持有自身锁时修改
      */
-    private final Map<String, Set<ConsumerSubscribeBo>> pushSubscribeMap = new ConcurrentHashMap<>();
+    private final Map<String, Set<ConsumerSubscribeBo>> pushSubscribeMap = new HashMap<>();
+
+    /**
+     * 订阅路由-推送策略
+     * key: topicName
+     * value: 订阅列表的快照，订阅变更时整体替换
+     * @since 0.1.5
+     */
+    private final Map<String, ConsumerTopicRoute> pushTopicRouteMap = new ConcurrentHashMap<>();
+
+    /**
+     * 通道订阅集合-推送策略
+     * key: channelId
+     * value: 该通道的订阅列表
+     * ps: 和 pushSubscribeMap 一起修改，移除通道时只处理自己的订阅
+     * @since 0.1.5
+     */
+    private final Map<String, Set<ConsumerSubscribeBo>> channelSubscribeMap = new HashMap<>();
 
     /**
      * 心跳 map
@@ -128,21 +146,67 @@ public class LocalBrokerConsumerService implements IBrokerConsumerService {
         BrokerServiceEntryChannel channelHeartbeat = heartbeatMap.remove(channelId);
         log.info("移除心跳信息 id: {}, channel: {}", channelId, JSON.toJSON(channelHeartbeat));
         //移除订阅信息
-        for (Map.Entry<String, Set<ConsumerSubscribeBo>> entry : pushSubscribeMap.entrySet())  {
-            Set<ConsumerSubscribeBo> subscribeBoSet = entry.getValue();
-            Iterator<ConsumerSubscribeBo> iterator = subscribeBoSet.iterator();
-            while (iterator.hasNext())  {
-                ConsumerSubscribeBo subscribeBo = iterator.next();
-                if (channelId.equals(subscribeBo.getChannelId()))  {
-                    iterator.remove();  // 安全移除
+        synchronized (pushSubscribeMap) {
+            Set<ConsumerSubscribeBo> channelSubscribeSet = channelSubscribeMap.remove(channelId);
+            if(CollectionUtil.isEmpty(channelSubscribeSet)) {
+                return;
+            }
+
+            Set<String> changedTopicSet = new HashSet<>();
+            for(ConsumerSubscribeBo subscribeBo : channelSubscribeSet) {
+                final String topicName = subscribeBo.getTopicName();
+                Set<ConsumerSubscribeBo> subscribeBoSet = pushSubscribeMap.get(topicName);
+                if(subscribeBoSet != null
+                        && subscribeBoSet.remove(subscribeBo)) {
+                    changedTopicSet.add(topicName);
                 }
             }
 
-            log.info("移除订阅信息 channelId: {} 的订阅信息，剩余: {}",
-                    channelId, JSON.toJSON(subscribeBoSet));
+            for(String topicName : changedTopicSet) {
+                refreshTopicRoute(topicName);
+            }
+            log.info("移除订阅信息 channelId: {} 的订阅信息: {}",
+                    channelId, JSON.toJSON(channelSubscribeSet));
+        }
+    }
+
+    /**
+     * 移除通道的单个订阅
+     *
+     * ps: 调用方需要持有 pushSubscribeMap 的锁
+     * @param channelId 通道唯一标识
+     * @param subscribeBo 订阅信息
+     * @since 0.1.5
+     */
+    private void removeChannelSubscribe(final String channelId,
+                                        final ConsumerSubscribeBo subscribeBo) {
+        Set<ConsumerSubscribeBo> set = channelSubscribeMap.get(channelId);
+        if(set != null) {
+            set.remove(subscribeBo);
+            if(set.isEmpty()) {
+                channelSubscribeMap.remove(channelId);
+            }
         }
     }
 
+    /**
+     * 订阅变更后，重新生成 topic 的路由快照
+     *
+     * ps: 调用方需要持有 pushSubscribeMap 的锁
+     * @param topicName 标题名称
+     * @since 0.1.5
+     */
+    private void refreshTopicRoute(final String topicName) {
+        Set<ConsumerSubscribeBo> set = pushSubscribeMap.get(topicName);
+        if(CollectionUtil.isEmpty(set)) {
+            pushSubscribeMap.remove(topicName);
+            pushTopicRouteMap.remove(topicName);
+            return;
+        }
+
+        pushTopicRouteMap.put(topicName, new ConsumerTopicRoute(set));
+    }
+
     @Override
     public MqCommonResp subscribe(ConsumerSubscribeReq serviceEntry, Channel clientChannel) {
         final String channelId = ChannelUtil.getChannelId(clientChannel);
@@ -156,9 +220,14 @@ public class LocalBrokerConsumerService implements IBrokerConsumerService {
         subscribeBo.setGroupName(serviceEntry.getGroupName());
         subscribeBo.setTopicName(topicName);
         subscribeBo.setTagRegex(serviceEntry.getTagRegex());
+        subscribeBo.setTagRegexMatcher(TagRegexMatchers.of(serviceEntry.getTagRegex()));
 
         // 放入集合
-        MapUtil.putToSetMap(subscribeMap, topicName, subscribeBo);
+        synchronized (pushSubscribeMap) {
+            MapUtil.putToSetMap(subscribeMap, topicName, subscribeBo);
+            MapUtil.putToSetMap(channelSubscribeMap, channelId, subscribeBo);
+            refreshTopicRoute(topicName);
+        }
 
         MqCommonResp resp = new MqCommonResp();
         resp.setRespCode(MqCommonRespCode.SUCCESS.getCode());
@@ -184,9 +253,13 @@ public class LocalBrokerConsumerService implements IBrokerConsumerService {
         subscribeBo.setTagRegex(serviceEntry.getTagRegex());
 
         // 集合
-        Set<ConsumerSubscribeBo> set = subscribeMap.get(topicName);
-        if(CollectionUtil.isNotEmpty(set)) {
-            set.remove(subscribeBo);
+        synchronized (pushSubscribeMap) {
+            Set<ConsumerSubscribeBo> set = subscribeMap.get(topicName);
+            if(CollectionUtil.isNotEmpty(set)
+                    && set.remove(subscribeBo)) {
+                removeChannelSubscribe(channelId, subscribeBo);
+                refreshTopicRoute(topicName);
+            }
         }
 
         MqCommonResp resp = new MqCommonResp();
@@ -198,23 +271,16 @@ public class LocalBrokerConsumerService implements IBrokerConsumerService {
     @Override
     public List<ChannelGroupNameDto> getPushSubscribeList(MqMessage mqMessage) {
         final String topicName = mqMessage.getTopic();
-        Set<ConsumerSubscribeBo> set = pushSubscribeMap.get(topicName);
-        if(CollectionUtil.isEmpty(set)) {
+        ConsumerTopicRoute topicRoute = pushTopicRouteMap.get(topicName);
+        if(topicRoute == null) {
             return Collections.emptyList();
         }
 
-        //2. 获取匹配的 tag 列表
+        //2. 获取匹配的 tag 列表，相同标签的消息复用路由结果
         final List<String> tagNameList = mqMessage.getTags();
-
-        Map<String, List<ConsumerSubscribeBo>> groupMap = new HashMap<>();
-        for(ConsumerSubscribeBo bo : set) {
-            String tagRegex = bo.getTagRegex();
-
-            if(RegexUtil.hasMatch(tagNameList, tagRegex)) {
-                String groupName = bo.getGroupName();
-
-                MapUtil.putToListMap(groupMap, groupName, bo);
-            }
+        Map<String, List<ConsumerSubscribeBo>> groupMap = topicRoute.getGroupMap(tagNameList);
+        if(groupMap.isEmpty()) {
+            return Collections.emptyList();
         }
 
         //3. 按照 groupName 分组之后，每一组只随机返回一个。最好应该调整为以 shardingkey 选择
@@ -223,7 +289,9 @@ public class LocalBrokerConsumerService implements IBrokerConsumerService {
 
         for(Map.Entry<String, List<ConsumerSubscribeBo>> entry : groupMap.entrySet()) {
             List<ConsumerSubscribeBo> list = entry.getValue();
-            log.debug("当前订列表，groupName: {}, list: {}", entry.getKey(), JSON.toJSON(list));
+            if(log.isDebugEnabled()) {
+                log.debug("当前订列表，groupName: {}, list: {}", entry.getKey(), JSON.toJSON(list));
+            }
 
             ConsumerSubscribeBo bo = RandomUtils.loadBalance(loadBalance, list, shardingKey);
             final String channelId = bo.getChannelId();
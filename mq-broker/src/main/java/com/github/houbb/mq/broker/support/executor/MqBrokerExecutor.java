@@ -0,0 +1,151 @@
+package com.github.houbb.mq.broker.support.executor;
+
+import com.github.houbb.log.integration.core.Log;
+import com.github.houbb.log.integration.core.LogFactory;
+import com.github.houbb.mq.broker.constant.BrokerExecutorType;
+import com.github.houbb.mq.common.api.Destroyable;
+import io.netty.channel.Channel;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 业务线程池
+ *
+ * （1）请求解码后交给业务线程处理，IO 线程只负责读写
+ * （2）按照 {@link BrokerExecutorType} 分为多个线程池，互不影响
+ * （3）同一个 channel 的请求固定由一个线程处理，保证单个连接内的处理顺序
+ * （4）队列有界，满了直接拒绝，由调用方返回服务端繁忙
+ * （5）关闭时等待已经接受的任务执行完成，超时后中断
+ *
+ * @author binbin.hou
+ * @since 0.1.5
+ */
+public class MqBrokerExecutor implements Destroyable {
+
+    private static final Log log = LogFactory.getLog(MqBrokerExecutor.class);
+
+    /**
+     * 线程池
+     * 下标：channel 散列
+     * @since 0.1.5
+     */
+    private final Map<BrokerExecutorType, ThreadPoolExecutor[]> executorMap = new EnumMap<>(BrokerExecutorType.class);
+
+    /**
+     * 关闭时等待任务完成的超时时间
+     * @since 0.1.5
+     */
+    private final long terminationTimeoutMills;
+
+    public MqBrokerExecutor(Map<BrokerExecutorType, MqBrokerExecutorConfig> configMap) {
+        this(configMap, 30 * 1000);
+    }
+
+    public MqBrokerExecutor(Map<BrokerExecutorType, MqBrokerExecutorConfig> configMap,
+                            long terminationTimeoutMills) {
+        this.terminationTimeoutMills = terminationTimeoutMills;
+        for(BrokerExecutorType type : BrokerExecutorType.values()) {
+            MqBrokerExecutorConfig config = configMap.get(type);
+            executorMap.put(type, buildExecutors(type, config));
+        }
+    }
+
+    private ThreadPoolExecutor[] buildExecutors(final BrokerExecutorType type,
+                                                final MqBrokerExecutorConfig config) {
+        final int threadNum = Math.max(1, config.threadNum());
+        final int queueSize = Math.max(1, config.queueSize());
+        final String namePrefix = "mq-broker-" + type.name().toLowerCase() + "-";
+
+        ThreadPoolExecutor[] executors = new ThreadPoolExecutor[threadNum];
+        for(int i = 0; i < threadNum; i++) {
+            final String threadName = namePrefix + i;
+            executors[i] = new ThreadPoolExecutor(1, 1,
+                    0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<Runnable>(queueSize),
+                    new ThreadFactory() {
+                        @Override
+                        public Thread newThread(Runnable r) {
+                            Thread thread = new Thread(r, threadName);
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    },
+                    new ThreadPoolExecutor.AbortPolicy());
+        }
+        log.info("业务线程池 {} 线程数 {} 单线程队列长度 {}", type, threadNum, queueSize);
+        return executors;
+    }
+
+    /**
+     * 执行
+     * @param type 类型
+     * @param channel 请求所在的 channel
+     * @param runnable 任务
+     * @return 是否接受，队列已满或者已经关闭时返回 false
+     * @since 0.1.5
+     */
+    public boolean execute(final BrokerExecutorType type,
+                           final Channel channel,
+                           final Runnable runnable) {
+        final ThreadPoolExecutor[] executors = executorMap.get(type);
+        final int index = (channel.hashCode() & Integer.MAX_VALUE) % executors.length;
+        try {
+            executors[index].execute(runnable);
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 关闭
+     *
+     * （1）不再接受新的任务，已经在队列中的任务继续执行
+     * （2）所有线程池共用一个超时时间，超时后中断还在执行的任务
+     *
+     * ps: 任务中会写入持久化，调用方需要在本方法返回后再释放持久化资源
+     * @since 0.1.5
+     */
+    @Override
+    public void destroyAll() {
+        for(ThreadPoolExecutor[] executors : executorMap.values()) {
+            for(ThreadPoolExecutor executor : executors) {
+                executor.shutdown();
+            }
+        }
+
+        final long deadline = System.currentTimeMillis() + terminationTimeoutMills;
+        boolean terminated = true;
+        try {
+            for(ThreadPoolExecutor[] executors : executorMap.values()) {
+                for(ThreadPoolExecutor executor : executors) {
+                    final long waitMills = Math.max(0, deadline - System.currentTimeMillis());
+                    if(!executor.awaitTermination(waitMills, TimeUnit.MILLISECONDS)) {
+                        terminated = false;
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            terminated = false;
+        }
+
+        if(!terminated) {
+            log.warn("业务线程池等待 {}ms 后仍有任务未完成，中断执行", terminationTimeoutMills);
+            for(ThreadPoolExecutor[] executors : executorMap.values()) {
+                for(ThreadPoolExecutor executor : executors) {
+                    executor.shutdownNow();
+                }
+            }
+        }
+        log.info("业务线程池关闭完成");
+    }
+
+}
@@ -0,0 +1,48 @@
+package com.github.houbb.mq.broker.support.executor;
+
+/**
+ * 业务线程池配置
+ *
+ * （1）每个线程有独立的有界队列，同一个 channel 的请求固定由一个线程处理，保证顺序
+ * （2）队列满时直接拒绝，返回服务端繁忙
+ *
+ * @author binbin.hou
+ * @since 0.1.5
+ */
+public class MqBrokerExecutorConfig {
+
+    /**
+     * 线程数
+     * @since 0.1.5
+     */
+    private int threadNum;
+
+    /**
+     * 单个线程的队列长度
+     * @since 0.1.5
+     */
+    private int queueSize;
+
+    public static MqBrokerExecutorConfig newInstance() {
+        return new MqBrokerExecutorConfig();
+    }
+
+    public int threadNum() {
+        return threadNum;
+    }
+
+    public MqBrokerExecutorConfig threadNum(int threadNum) {
+        this.threadNum = threadNum;
+        return this;
+    }
+
+    public int queueSize() {
+        return queueSize;
+    }
+
+    public MqBrokerExecutorConfig queueSize(int queueSize) {
+        this.queueSize = queueSize;
+        return this;
+    }
+
+}
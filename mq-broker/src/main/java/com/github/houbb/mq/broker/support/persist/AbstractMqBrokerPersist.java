@@ -0,0 +1,951 @@
+package com.github.houbb.mq.broker.support.persist;
+
+import com.github.houbb.log.integration.core.Log;
+import com.github.houbb.log.integration.core.LogFactory;
+import com.github.houbb.mq.broker.support.persist.index.MessageIdIndex;
+import com.github.houbb.mq.broker.support.persist.queue.ConsumeQueue;
+import com.github.houbb.mq.broker.support.persist.queue.ConsumeQueueStore;
+import com.github.houbb.mq.broker.support.persist.queue.ConsumerGroupCursor;
+import com.github.houbb.mq.broker.support.persist.queue.GroupStatusTrack;
+import com.github.houbb.mq.broker.support.persist.queue.TagsDictionary;
+import com.github.houbb.mq.broker.support.persist.queue.TagsOffsetList;
+import com.github.houbb.mq.common.api.Destroyable;
+import com.github.houbb.mq.common.constant.FrameConst;
+import com.github.houbb.mq.common.constant.MessageStatusConst;
+import com.github.houbb.mq.common.dto.req.MqConsumerPullReq;
+import com.github.houbb.mq.common.dto.req.MqMessage;
+import com.github.houbb.mq.common.dto.req.component.MqConsumerUpdateStatusDto;
+import com.github.houbb.mq.common.dto.resp.MqCommonResp;
+import com.github.houbb.mq.common.dto.resp.MqConsumerPullResp;
+import com.github.houbb.mq.common.resp.MqCommonRespCode;
+import io.netty.channel.Channel;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 持久化策略抽象实现
+ *
+ * （1）每个 topic 维护一个消费队列，消息写入时追加索引项
+ * （2）每个消费者分组维护一个游标，拉取时从游标开始读取，不需要从头遍历
+ * （3）消息标识索引直接定位消息，更新状态不需要遍历
+ * （4）消息只存储一份，状态按照消费者分组单独记录
+ * （5）后台按照保留策略清理队列头部的消息，不阻塞写入和拉取
+ * （6）从检查点恢复时，消息标识索引在后台重建，不阻塞启动
+ *
+ * @author binbin.hou
+ * @since 0.1.5
+ */
+public abstract class AbstractMqBrokerPersist implements IMqBrokerPersist, Destroyable {
+
+    private static final Log log = LogFactory.getLog(AbstractMqBrokerPersist.class);
+
+    /**
+     * 单次拉取的消息大小上限
+     *
+     * ps: 拉取结果在一个帧中返回，不能超过最大帧长度。本地持久化按照内容的字符数估算大小，这里预留足够的余量
+     * @since 0.1.5
+     */
+    protected static final int MAX_PULL_BYTES = FrameConst.MAX_FRAME_LENGTH / 4;
+
+    /**
+     * 消费队列
+     * key: topic
+     * @since 0.1.5
+     */
+    protected final Map<String, ConsumeQueue> consumeQueueMap = new ConcurrentHashMap<>();
+
+    /**
+     * 消费队列列表，下标即队列标识
+     * @since 0.1.5
+     */
+    private final List<ConsumeQueue> consumeQueueList = new CopyOnWriteArrayList<>();
+
+    /**
+     * 消息标识索引
+     * @since 0.1.5
+     */
+    private final MessageIdIndex messageIdIndex = new MessageIdIndex();
+
+    /**
+     * 消息标识索引位置确认
+     * @since 0.1.5
+     */
+    private final MessageIdIndex.Matcher messageIdMatcher = new MessageIdIndex.Matcher() {
+        @Override
+        public boolean match(long location, String messageId) {
+            ConsumeQueue consumeQueue = consumeQueueList.get(MessageIdIndex.queueId(location));
+            return messageId.equals(consumeQueue.getMessageId(MessageIdIndex.offset(location)));
+        }
+    };
+
+    /**
+     * 消息标识索引重建完成的信号，为 null 时表示索引完整
+     * @since 0.1.5
+     */
+    private volatile CountDownLatch messageIdIndexRebuildLatch;
+
+    /**
+     * 标签字典
+     * @since 0.1.5
+     */
+    protected final TagsDictionary tagsDictionary = new TagsDictionary();
+
+    /**
+     * 分组游标
+     * key: topic
+     * value: key 为分组名称 + 标签正则
+     * @since 0.1.5
+     */
+    private final Map<String, Map<String, ConsumerGroupCursor>> cursorMap = new ConcurrentHashMap<>();
+
+    /**
+     * 默认保留策略
+     * @since 0.1.5
+     */
+    private MqBrokerRetentionPolicy retentionPolicy;
+
+    /**
+     * topic 单独指定的保留策略
+     * @since 0.1.5
+     */
+    private Map<String, MqBrokerRetentionPolicy> topicRetentionPolicyMap = Collections.emptyMap();
+
+    /**
+     * 过期清理定时任务
+     * @since 0.1.5
+     */
+    private ScheduledExecutorService cleanExecutorService;
+
+    @Override
+    public void init(MqBrokerPersistConfig config) {
+        this.retentionPolicy = config.retentionPolicy();
+        if(config.topicRetentionPolicyMap() != null) {
+            this.topicRetentionPolicyMap = new ConcurrentHashMap<>(config.topicRetentionPolicyMap());
+        }
+
+        final long intervalMills = config.retentionCheckIntervalMills();
+        if(intervalMills <= 0) {
+            return;
+        }
+        cleanExecutorService = Executors.newSingleThreadScheduledExecutor();
+        cleanExecutorService.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    cleanExpired();
+                } catch (Exception e) {
+                    log.error("清理过期消息异常", e);
+                }
+            }
+        }, intervalMills, intervalMills, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void destroyAll() {
+        if(cleanExecutorService != null) {
+            cleanExecutorService.shutdown();
+        }
+    }
+
+    /**
+     * 清理过期消息
+     *
+     * （1）按照 topic 对应的保留策略，计算新的最小偏移量
+     * （2）移除消息标识索引，移动消费队列的最小偏移量
+     * （3）由子类释放消息本身占用的空间
+     * @since 0.1.5
+     */
+    public void cleanExpired() {
+        // 重建期间移除的索引可能被重新放入
+        if(messageIdIndexRebuildLatch != null) {
+            log.info("消息标识索引重建中，跳过本轮清理");
+            return;
+        }
+
+        final long now = System.currentTimeMillis();
+        for(ConsumeQueue consumeQueue : consumeQueueList) {
+            MqBrokerRetentionPolicy policy = getRetentionPolicy(consumeQueue.getTopic());
+            if(policy == null
+                    || !policy.isEnable()) {
+                continue;
+            }
+
+            final long fromOffset = consumeQueue.getMinOffset();
+            final long toOffset = computeMinOffset(consumeQueue, policy, now);
+            if(toOffset <= fromOffset) {
+                continue;
+            }
+
+            for(long offset = fromOffset; offset < toOffset; offset++) {
+                final String messageId = consumeQueue.getMessageId(offset);
+                if(messageId != null) {
+                    messageIdIndex.remove(messageId, MessageIdIndex.location(consumeQueue.getQueueId(), offset));
+                }
+            }
+            consumeQueue.truncateHead(toOffset);
+            this.onTruncate(consumeQueue, fromOffset, toOffset);
+            log.info("topic {} 清理过期消息 {} 条，最小偏移量 {}", consumeQueue.getTopic(),
+                    toOffset - fromOffset, toOffset);
+        }
+
+        this.afterCleanExpired();
+    }
+
+    private MqBrokerRetentionPolicy getRetentionPolicy(final String topic) {
+        MqBrokerRetentionPolicy policy = topicRetentionPolicyMap.get(topic);
+        if(policy != null) {
+            return policy;
+        }
+        return retentionPolicy;
+    }
+
+    /**
+     * 计算新的最小偏移量
+     *
+     * （1）从队列头部开始，满足任意一个清理条件就继续，否则停止
+     * （2）分组的标签正则都不匹配的消息，该分组永远不会拉取，视为已经消费
+     * @param consumeQueue 消费队列
+     * @param policy 保留策略
+     * @param now 当前时间
+     * @return 结果
+     */
+    private long computeMinOffset(final ConsumeQueue consumeQueue,
+                                  final MqBrokerRetentionPolicy policy,
+                                  final long now) {
+        final long maxOffset = consumeQueue.getMaxOffset();
+        long offset = consumeQueue.getMinOffset();
+        long remainSize = consumeQueue.getTotalSize();
+        final ConsumeQueue.GroupFilter groupFilter = policy.deleteWhenConsumed()
+                ? buildGroupFilter(consumeQueue.getTopic()) : null;
+        while (offset < maxOffset) {
+            final boolean expired = policy.maxAgeMills() > 0
+                    && now - consumeQueue.getStoreTimestamp(offset) > policy.maxAgeMills();
+            final boolean overSize = policy.maxBytes() > 0
+                    && remainSize > policy.maxBytes();
+            final boolean consumed = policy.deleteWhenConsumed()
+                    && consumeQueue.isConsumerSuccessByAll(offset, groupFilter);
+            if(!expired && !overSize && !consumed) {
+                break;
+            }
+
+            remainSize -= consumeQueue.getSize(offset);
+            offset++;
+        }
+        return offset;
+    }
+
+    /**
+     * 构建分组过滤，分组的任意一个游标匹配标签编码即可
+     *
+     * ps: 没有游标的分组无法判断，视为全部匹配
+     * @param topic 主题
+     * @return 结果
+     */
+    private ConsumeQueue.GroupFilter buildGroupFilter(final String topic) {
+        final Map<String, List<ConsumerGroupCursor>> groupCursorListMap = new HashMap<>();
+        Map<String, ConsumerGroupCursor> groupCursorMap = cursorMap.get(topic);
+        if(groupCursorMap != null) {
+            for(ConsumerGroupCursor cursor : groupCursorMap.values()) {
+                List<ConsumerGroupCursor> cursorList = groupCursorListMap.get(cursor.getGroupName());
+                if(cursorList == null) {
+                    cursorList = new ArrayList<>();
+                    groupCursorListMap.put(cursor.getGroupName(), cursorList);
+                }
+                cursorList.add(cursor);
+            }
+        }
+
+        return new ConsumeQueue.GroupFilter() {
+            @Override
+            public boolean isMatch(String groupName, int tagsCode) {
+                List<ConsumerGroupCursor> cursorList = groupCursorListMap.get(groupName);
+                if(cursorList == null) {
+                    return true;
+                }
+
+                for(ConsumerGroupCursor cursor : cursorList) {
+                    // 匹配结果缓存由游标的锁保护
+                    synchronized (cursor) {
+                        if(cursor.isMatch(tagsCode, tagsDictionary)) {
+                            return true;
+                        }
+                    }
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * 消费队列头部被清理后，释放对应的消息
+     * @param consumeQueue 消费队列
+     * @param fromOffset 开始偏移量（包含）
+     * @param toOffset 结束偏移量（不包含）
+     * @since 0.1.5
+     */
+    protected void onTruncate(final ConsumeQueue consumeQueue,
+                              final long fromOffset,
+                              final long toOffset) {
+    }
+
+    /**
+     * 所有消费队列清理完成后的处理
+     * @since 0.1.5
+     */
+    protected void afterCleanExpired() {
+    }
+
+    /**
+     * 所有消费队列中仍然保留的最小消息位置
+     * @return 结果，没有保留的消息时返回 {@link Long#MAX_VALUE}
+     * @since 0.1.5
+     */
+    protected long getMinPosition() {
+        long minPosition = Long.MAX_VALUE;
+        for(ConsumeQueue consumeQueue : consumeQueueList) {
+            final long minOffset = consumeQueue.getMinOffset();
+            if(minOffset < consumeQueue.getMaxOffset()) {
+                minPosition = Math.min(minPosition, consumeQueue.getPosition(minOffset));
+            }
+        }
+        return minPosition;
+    }
+
+    /**
+     * 追加消费队列
+     *
+     * ps: 调用方保证同一个 topic 串行写入，不同 topic 可以并发
+     * @param topic 标题
+     * @param messageId 消息标识
+     * @param position 消息位置
+     * @param size 消息大小
+     * @param tags 标签
+     * @return 队列偏移量
+     * @since 0.1.5
+     */
+    protected long appendConsumeQueue(final String topic,
+                                      final String messageId,
+                                      final long position,
+                                      final int size,
+                                      final List<String> tags) {
+        final ConsumeQueue consumeQueue = getOrCreateConsumeQueue(topic);
+        final int tagsCode = tagsDictionary.getOrCreateCode(tags);
+        final long offset = consumeQueue.append(position, size, tagsCode, messageId,
+                System.currentTimeMillis());
+        if(messageId != null) {
+            messageIdIndex.put(messageId, MessageIdIndex.location(consumeQueue.getQueueId(), offset));
+        }
+        return offset;
+    }
+
+    private ConsumeQueue getOrCreateConsumeQueue(final String topic) {
+        ConsumeQueue consumeQueue = consumeQueueMap.get(topic);
+        if(consumeQueue != null) {
+            return consumeQueue;
+        }
+
+        // 队列标识即列表下标，新建时需要串行
+        synchronized (consumeQueueList) {
+            consumeQueue = consumeQueueMap.get(topic);
+            if(consumeQueue == null) {
+                final int queueId = consumeQueueList.size();
+                consumeQueue = new ConsumeQueue(topic, queueId, createConsumeQueueStore(queueId));
+                consumeQueueList.add(consumeQueue);
+                consumeQueueMap.put(topic, consumeQueue);
+            }
+            return consumeQueue;
+        }
+    }
+
+    /**
+     * 创建消费队列的文件存储
+     * @param queueId 队列标识
+     * @return 结果，默认为 null，只保存在内存中
+     * @since 0.1.5
+     */
+    protected ConsumeQueueStore createConsumeQueueStore(final int queueId) {
+        return null;
+    }
+
+    /**
+     * 各个消费队列的检查点快照
+     *
+     * ps: 调用方在写入锁内获取，和提交日志的位置保持一致
+     * @return 结果，下标为队列标识
+     * @since 0.1.5
+     */
+    protected List<ConsumeQueue.Snapshot> snapshotConsumeQueues() {
+        List<ConsumeQueue.Snapshot> snapshots = new ArrayList<>(consumeQueueList.size());
+        for(ConsumeQueue consumeQueue : consumeQueueList) {
+            snapshots.add(consumeQueue.snapshot());
+        }
+        return snapshots;
+    }
+
+    /**
+     * 写入消费队列新增的索引项和修改过的分组状态
+     * @param snapshots 快照
+     * @throws IOException 异常
+     * @since 0.1.5
+     */
+    protected void persistConsumeQueues(final List<ConsumeQueue.Snapshot> snapshots) throws IOException {
+        for(ConsumeQueue.Snapshot snapshot : snapshots) {
+            snapshot.getConsumeQueue().persist(snapshot);
+        }
+    }
+
+    /**
+     * 检查点写入后，删除已经清理的页文件
+     * @param snapshots 快照
+     * @since 0.1.5
+     */
+    protected void afterCheckpoint(final List<ConsumeQueue.Snapshot> snapshots) {
+        for(ConsumeQueue.Snapshot snapshot : snapshots) {
+            snapshot.getConsumeQueue().deleteStoredPages(snapshot.getMinOffset());
+        }
+    }
+
+    /**
+     * 写入检查点
+     *
+     * （1）只写入各个消费队列的位置和分组名称，索引项和分组状态由 {@link #persistConsumeQueues(List)} 增量写入
+     * （2）游标不超过快照的最大偏移量，之后的部分重启时从提交日志恢复
+     * @param out 输出流
+     * @param snapshots 快照
+     * @throws IOException 异常
+     * @since 0.1.5
+     */
+    protected void writeCheckpoint(final DataOutputStream out,
+                                   final List<ConsumeQueue.Snapshot> snapshots) throws IOException {
+        tagsDictionary.writeTo(out);
+
+        out.writeInt(snapshots.size());
+        for(ConsumeQueue.Snapshot snapshot : snapshots) {
+            out.writeUTF(snapshot.getConsumeQueue().getTopic());
+            out.writeInt(snapshot.getConsumeQueue().getQueueId());
+            out.writeLong(snapshot.getMinOffset());
+            out.writeLong(snapshot.getMaxOffset());
+            out.writeLong(snapshot.getTotalSize());
+            out.writeInt(snapshot.getGroupNames().size());
+            for(String groupName : snapshot.getGroupNames()) {
+                out.writeUTF(groupName);
+            }
+        }
+
+        out.writeInt(cursorMap.size());
+        for(Map.Entry<String, Map<String, ConsumerGroupCursor>> entry : cursorMap.entrySet()) {
+            final String topic = entry.getKey();
+            ConsumeQueue consumeQueue = consumeQueueMap.get(topic);
+            long endOffset = 0;
+            if(consumeQueue != null && consumeQueue.getQueueId() < snapshots.size()) {
+                endOffset = snapshots.get(consumeQueue.getQueueId()).getMaxOffset();
+            }
+
+            Map<String, ConsumerGroupCursor> groupCursorMap = entry.getValue();
+            List<Map.Entry<String, ConsumerGroupCursor>> cursorList = new ArrayList<>(groupCursorMap.entrySet());
+            out.writeUTF(topic);
+            out.writeInt(cursorList.size());
+            for(Map.Entry<String, ConsumerGroupCursor> cursorEntry : cursorList) {
+                out.writeUTF(cursorEntry.getKey());
+                ConsumerGroupCursor cursor = cursorEntry.getValue();
+                synchronized (cursor) {
+                    cursor.writeTo(out, endOffset);
+                }
+            }
+        }
+    }
+
+    /**
+     * 读取检查点
+     *
+     * ps: 消费队列只加载尾页，消息标识索引在后台重建
+     * @param in 输入流
+     * @return 恢复的消费队列数量
+     * @throws IOException 异常
+     * @since 0.1.5
+     */
+    protected int readCheckpoint(final DataInputStream in) throws IOException {
+        tagsDictionary.readFrom(in);
+
+        final int queueCount = in.readInt();
+        for(int i = 0; i < queueCount; i++) {
+            final String topic = in.readUTF();
+            final int queueId = in.readInt();
+            final long minOffset = in.readLong();
+            final long maxOffset = in.readLong();
+            final long totalSize = in.readLong();
+            final int groupCount = in.readInt();
+            List<String> groupNames = new ArrayList<>(groupCount);
+            for(int j = 0; j < groupCount; j++) {
+                groupNames.add(in.readUTF());
+            }
+
+            ConsumeQueue consumeQueue = ConsumeQueue.restore(topic, queueId, createConsumeQueueStore(queueId),
+                    minOffset, maxOffset, totalSize, groupNames);
+            consumeQueueList.add(consumeQueue);
+            consumeQueueMap.put(topic, consumeQueue);
+        }
+
+        final int topicCount = in.readInt();
+        for(int i = 0; i < topicCount; i++) {
+            final String topic = in.readUTF();
+            final int cursorCount = in.readInt();
+            Map<String, ConsumerGroupCursor> groupCursorMap = new ConcurrentHashMap<>();
+            for(int j = 0; j < cursorCount; j++) {
+                final String key = in.readUTF();
+                groupCursorMap.put(key, ConsumerGroupCursor.readFrom(in));
+            }
+            cursorMap.put(topic, groupCursorMap);
+        }
+
+        this.startMessageIdIndexRebuild();
+        return queueCount;
+    }
+
+    /**
+     * 后台重建检查点之前的消息标识索引
+     *
+     * （1）重建期间新写入的消息直接放入索引，可以正常查询
+     * （2）查询不到的消息等待重建完成后再查询一次
+     * （3）重建期间暂停过期清理，最小偏移量保持不变
+     */
+    private void startMessageIdIndexRebuild() {
+        final List<ConsumeQueue> consumeQueues = new ArrayList<>(consumeQueueList);
+        final long[] endOffsets = new long[consumeQueues.size()];
+        for(int i = 0; i < endOffsets.length; i++) {
+            endOffsets[i] = consumeQueues.get(i).getMaxOffset();
+        }
+
+        final CountDownLatch latch = new CountDownLatch(1);
+        this.messageIdIndexRebuildLatch = latch;
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                final long startMills = System.currentTimeMillis();
+                int count = 0;
+                try {
+                    for(int i = 0; i < endOffsets.length; i++) {
+                        ConsumeQueue consumeQueue = consumeQueues.get(i);
+                        for(long offset = consumeQueue.getMinOffset(); offset < endOffsets[i]; offset++) {
+                            final String messageId = consumeQueue.getMessageId(offset);
+                            if(messageId != null) {
+                                messageIdIndex.put(messageId, MessageIdIndex.location(consumeQueue.getQueueId(), offset));
+                                count++;
+                            }
+                        }
+                    }
+                    log.info("消息标识索引重建完成，共 {} 条，耗时 {}ms", count,
+                            System.currentTimeMillis() - startMills);
+                } catch (Exception e) {
+                    log.error("消息标识索引重建异常，已重建 {} 条", count, e);
+                } finally {
+                    messageIdIndexRebuildLatch = null;
+                    latch.countDown();
+                }
+            }
+        }, "mq-broker-index-rebuild");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * 查询消息位置
+     * @param messageId 消息标识
+     * @return 结果，不存在时返回 {@link MessageIdIndex#NOT_FOUND}
+     */
+    private long getLocation(final String messageId) {
+        if(messageId == null) {
+            return MessageIdIndex.NOT_FOUND;
+        }
+
+        final long location = messageIdIndex.get(messageId, messageIdMatcher);
+        final CountDownLatch latch = this.messageIdIndexRebuildLatch;
+        if(location != MessageIdIndex.NOT_FOUND
+                || latch == null) {
+            return location;
+        }
+
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return MessageIdIndex.NOT_FOUND;
+        }
+        return messageIdIndex.get(messageId, messageIdMatcher);
+    }
+
+    @Override
+    public MqCommonResp updateStatus(String messageId,
+                                     String consumerGroupName,
+                                     String status) {
+        this.updateStatusById(messageId, consumerGroupName, status);
+
+        MqCommonResp commonResp = new MqCommonResp();
+        commonResp.setRespCode(MqCommonRespCode.SUCCESS.getCode());
+        commonResp.setRespMessage(MqCommonRespCode.SUCCESS.getMsg());
+        return commonResp;
+    }
+
+    @Override
+    public MqCommonResp updateStatusBatch(List<MqConsumerUpdateStatusDto> statusDtoList) {
+        for(MqConsumerUpdateStatusDto statusDto : statusDtoList) {
+            this.updateStatusById(statusDto.getMessageId(), statusDto.getConsumerGroupName(),
+                    statusDto.getMessageStatus());
+        }
+
+        MqCommonResp commonResp = new MqCommonResp();
+        commonResp.setRespCode(MqCommonRespCode.SUCCESS.getCode());
+        commonResp.setRespMessage(MqCommonRespCode.SUCCESS.getMsg());
+        return commonResp;
+    }
+
+    private void updateStatusById(final String messageId,
+                                  final String consumerGroupName,
+                                  final String status) {
+        final byte statusCode = GroupStatusTrack.toCode(status);
+        if(statusCode == GroupStatusTrack.UNKNOWN) {
+            log.warn("消息 {} 状态 {} 不合法，忽略状态更新", messageId, status);
+            return;
+        }
+
+        final long location = getLocation(messageId);
+        if(location == MessageIdIndex.NOT_FOUND) {
+            log.warn("消息 {} 不存在，忽略状态更新", messageId);
+            return;
+        }
+
+        final ConsumeQueue consumeQueue = consumeQueueList.get(MessageIdIndex.queueId(location));
+        final long offset = MessageIdIndex.offset(location);
+        if(offset < consumeQueue.getMinOffset()) {
+            log.warn("消息 {} 已经被清理，忽略状态更新", messageId);
+            return;
+        }
+        final String groupName = buildGroupName(consumerGroupName);
+        consumeQueue.getGroupStatus(groupName).set(offset, statusCode);
+
+        if(MessageStatusConst.CONSUMER_LATER.equals(status)) {
+            this.addRetry(consumeQueue.getTopic(), groupName, offset);
+        }
+    }
+
+    @Override
+    public boolean prepareDelivery(String messageId, String consumerGroupName) {
+        final long location = getLocation(messageId);
+        if(location == MessageIdIndex.NOT_FOUND) {
+            log.warn("消息 {} 不存在，忽略投递", messageId);
+            return false;
+        }
+
+        final ConsumeQueue consumeQueue = consumeQueueList.get(MessageIdIndex.queueId(location));
+        final long offset = MessageIdIndex.offset(location);
+        if(offset < consumeQueue.getMinOffset()) {
+            log.warn("消息 {} 已经被清理，忽略投递", messageId);
+            return false;
+        }
+        return consumeQueue.getGroupStatus(buildGroupName(consumerGroupName))
+                .tryProcess(offset);
+    }
+
+    private String buildGroupName(final String groupName) {
+        if(groupName == null) {
+            return "";
+        }
+        return groupName;
+    }
+
+    /**
+     * 加入重试队列
+     *
+     * ps: 稍后消费的消息，游标可能已经越过，需要重新放回对应分组
+     * @param topic 标题
+     * @param groupName 分组名称
+     * @param queueOffset 队列偏移量
+     * @since 0.1.5
+     */
+    private void addRetry(final String topic,
+                          final String groupName,
+                          final long queueOffset) {
+        Map<String, ConsumerGroupCursor> groupCursorMap = cursorMap.get(topic);
+        if(groupCursorMap == null) {
+            return;
+        }
+
+        for(ConsumerGroupCursor cursor : groupCursorMap.values()) {
+            if(cursor.getGroupName().equals(groupName)) {
+                cursor.getRetryQueue().add(queueOffset);
+            }
+        }
+    }
+
+    @Override
+    public MqConsumerPullResp pull(MqConsumerPullReq pullReq, Channel channel) {
+        List<MqMessage> resultList = new ArrayList<>(pullReq.getSize());
+        ConsumeQueue consumeQueue = consumeQueueMap.get(pullReq.getTopicName());
+        if(consumeQueue != null) {
+            for(Long offset : pullOffsets(consumeQueue, pullReq)) {
+                MqMessage mqMessage = getMessage(consumeQueue, offset);
+                // 读取期间被并发清理
+                if(mqMessage != null) {
+                    resultList.add(mqMessage);
+                }
+            }
+        }
+
+        MqConsumerPullResp resp = new MqConsumerPullResp();
+        resp.setRespCode(MqCommonRespCode.SUCCESS.getCode());
+        resp.setRespMessage(MqCommonRespCode.SUCCESS.getMsg());
+        resp.setList(resultList);
+        return resp;
+    }
+
+    @Override
+    public MqBrokerPullBuffer pullBuffer(MqConsumerPullReq pullReq, Channel channel) {
+        return null;
+    }
+
+    /**
+     * 拉取消息的队列偏移量
+     *
+     * ps: 返回的消息已经更新为处理中。消息大小合计不超过 {@link #MAX_PULL_BYTES}，放不下的消息留给下一次拉取
+     * @param consumeQueue 消费队列
+     * @param pullReq 拉取请求
+     * @return 结果
+     * @since 0.1.5
+     */
+    protected List<Long> pullOffsets(final ConsumeQueue consumeQueue,
+                                     final MqConsumerPullReq pullReq) {
+        final String groupName = buildGroupName(pullReq.getGroupName());
+        final GroupStatusTrack statusTrack = consumeQueue.getGroupStatus(groupName);
+        ConsumerGroupCursor cursor = getCursor(consumeQueue.getTopic(), groupName, pullReq.getTagRegex());
+
+        final PullCollector collector = new PullCollector(pullReq.getSize(), MAX_PULL_BYTES);
+        synchronized (cursor) {
+            // 优先处理重试
+            Long retryOffset;
+            while (!collector.isFull()
+                    && (retryOffset = cursor.getRetryQueue().poll()) != null) {
+                if(!pullOne(consumeQueue, statusTrack, cursor, retryOffset, collector)) {
+                    cursor.getRetryQueue().add(retryOffset);
+                }
+            }
+
+            // 游标之前的消息可能已经被清理
+            long offset = Math.max(cursor.getOffset(), consumeQueue.getMinOffset());
+            final long maxOffset = consumeQueue.getMaxOffset();
+
+            // 在最大偏移量之后匹配，之前消息的标签编码都已经存在
+            cursor.resolve(tagsDictionary);
+            if(cursor.isMatchAll()) {
+                while (offset < maxOffset
+                        && !collector.isFull()
+                        && pullOne(consumeQueue, statusTrack, cursor, offset, collector)) {
+                    offset++;
+                }
+            } else {
+                // 重启前的消息没有倒排列表，顺序读取
+                final long indexFromOffset = Math.min(consumeQueue.getTagsIndexFromOffset(), maxOffset);
+                while (offset < indexFromOffset
+                        && !collector.isFull()
+                        && pullOne(consumeQueue, statusTrack, cursor, offset, collector)) {
+                    offset++;
+                }
+                if(offset >= indexFromOffset) {
+                    offset = pullByTagsIndex(consumeQueue, statusTrack, cursor, offset, maxOffset, collector);
+                }
+            }
+            cursor.setOffset(offset);
+        }
+        return collector.getOffsetList();
+    }
+
+    /**
+     * 通过标签倒排列表拉取
+     *
+     * ps: 多路归并匹配编码的倒排列表，按照偏移量从小到大处理，不匹配的消息不需要读取
+     * @param consumeQueue 消费队列
+     * @param statusTrack 分组状态
+     * @param cursor 游标
+     * @param fromOffset 开始偏移量
+     * @param maxOffset 最大偏移量（不包含）
+     * @param collector 结果
+     * @return 下一次拉取的偏移量
+     */
+    private long pullByTagsIndex(final ConsumeQueue consumeQueue,
+                                 final GroupStatusTrack statusTrack,
+                                 final ConsumerGroupCursor cursor,
+                                 final long fromOffset,
+                                 final long maxOffset,
+                                 final PullCollector collector) {
+        final int codeCount = cursor.getMatchCodeCount();
+        final int[] matchCodes = cursor.getMatchCodes();
+        final TagsOffsetList[] tagsOffsetLists = new TagsOffsetList[codeCount];
+        final int[] indexes = new int[codeCount];
+        for(int i = 0; i < codeCount; i++) {
+            tagsOffsetLists[i] = consumeQueue.getTagsOffsetList(matchCodes[i]);
+            if(tagsOffsetLists[i] != null) {
+                indexes[i] = tagsOffsetLists[i].ceilingIndex(fromOffset);
+            }
+        }
+
+        long offset = fromOffset;
+        while (!collector.isFull()) {
+            int minIndex = -1;
+            long minOffset = maxOffset;
+            for(int i = 0; i < codeCount; i++) {
+                TagsOffsetList tagsOffsetList = tagsOffsetLists[i];
+                if(tagsOffsetList == null
+                        || indexes[i] >= tagsOffsetList.size()) {
+                    continue;
+                }
+
+                final long candidate = tagsOffsetList.get(indexes[i]);
+                if(candidate < minOffset) {
+                    minOffset = candidate;
+                    minIndex = i;
+                }
+            }
+            if(minIndex < 0) {
+                return maxOffset;
+            }
+
+            // 并发清理时可能读取到已经释放的位置
+            if(minOffset < consumeQueue.getMinOffset()) {
+                indexes[minIndex]++;
+                continue;
+            }
+            // 放不下时下一次从这里开始
+            if(!collector.canAdd(consumeQueue.getSize(minOffset))) {
+                return minOffset;
+            }
+
+            indexes[minIndex]++;
+            if(statusTrack.tryProcess(minOffset)) {
+                collector.add(minOffset, consumeQueue.getSize(minOffset));
+            }
+            offset = minOffset + 1;
+        }
+        return offset;
+    }
+
+    /**
+     * 拉取一条消息
+     * @param consumeQueue 消费队列
+     * @param statusTrack 分组状态
+     * @param cursor 游标
+     * @param offset 偏移量
+     * @param collector 结果
+     * @return 是否处理完成，大小超过上限放不下时返回 false，偏移量需要留给下一次拉取
+     */
+    private boolean pullOne(final ConsumeQueue consumeQueue,
+                            final GroupStatusTrack statusTrack,
+                            final ConsumerGroupCursor cursor,
+                            final long offset,
+                            final PullCollector collector) {
+        if(offset < consumeQueue.getMinOffset()
+                || !cursor.isMatch(consumeQueue.getTagsCode(offset), tagsDictionary)) {
+            return true;
+        }
+
+        final int size = consumeQueue.getSize(offset);
+        if(!collector.canAdd(size)) {
+            return false;
+        }
+
+        // 设置为处理中
+        if(statusTrack.tryProcess(offset)) {
+            collector.add(offset, size);
+        }
+        return true;
+    }
+
+    private ConsumerGroupCursor getCursor(final String topic,
+                                          final String groupName,
+                                          final String tagRegex) {
+        Map<String, ConsumerGroupCursor> groupCursorMap = cursorMap.get(topic);
+        if(groupCursorMap == null) {
+            cursorMap.putIfAbsent(topic, new ConcurrentHashMap<String, ConsumerGroupCursor>());
+            groupCursorMap = cursorMap.get(topic);
+        }
+
+        final String key = groupName + ":" + tagRegex;
+        ConsumerGroupCursor cursor = groupCursorMap.get(key);
+        if(cursor == null) {
+            groupCursorMap.putIfAbsent(key, new ConsumerGroupCursor(groupName, tagRegex));
+            cursor = groupCursorMap.get(key);
+        }
+        return cursor;
+    }
+
+    /**
+     * 获取消息
+     * @param consumeQueue 消费队列
+     * @param offset 队列偏移量
+     * @return 结果，已经被清理时返回 null
+     * @since 0.1.5
+     */
+    protected abstract MqMessage getMessage(final ConsumeQueue consumeQueue, final long offset);
+
+    /**
+     * 拉取结果
+     *
+     * （1）数量不超过拉取数量，大小合计不超过上限
+     * （2）第一条消息总是可以放入，单条消息超过上限时也能被拉取
+     * （3）放不下时结束本次拉取
+     *
+     * @since 0.1.5
+     */
+    private static final class PullCollector {
+
+        private final int fetchSize;
+
+        private final long maxBytes;
+
+        private final List<Long> offsetList;
+
+        private long bytes;
+
+        private boolean full;
+
+        private PullCollector(int fetchSize, long maxBytes) {
+            this.fetchSize = fetchSize;
+            this.maxBytes = maxBytes;
+            this.offsetList = new ArrayList<>(Math.max(0, fetchSize));
+        }
+
+        private boolean isFull() {
+            return full || offsetList.size() >= fetchSize;
+        }
+
+        private boolean canAdd(final int size) {
+            if(offsetList.isEmpty() || bytes + size <= maxBytes) {
+                return true;
+            }
+            full = true;
+            return false;
+        }
+
+        private void add(final long offset, final int size) {
+            offsetList.add(offset);
+            bytes += size;
+        }
+
+        private List<Long> getOffsetList() {
+            return offsetList;
+        }
+
+    }
+
+}
@@ -0,0 +1,395 @@
+package com.github.houbb.mq.broker.support.persist;
+
+import com.alibaba.fastjson.JSON;
+import com.github.houbb.log.integration.core.Log;
+import com.github.houbb.log.integration.core.LogFactory;
+import com.github.houbb.mq.broker.constant.BrokerConst;
+import com.github.houbb.mq.broker.constant.FlushDiskType;
+import com.github.houbb.mq.broker.dto.persist.MqMessagePersistPut;
+import com.github.houbb.mq.broker.resp.MqBrokerRespCode;
+import com.github.houbb.mq.broker.support.persist.queue.ConsumeQueue;
+import com.github.houbb.mq.broker.support.persist.queue.ConsumeQueueStore;
+import com.github.houbb.mq.broker.support.persist.store.CommitLog;
+import com.github.houbb.mq.broker.support.persist.store.CommitLogFlushService;
+import com.github.houbb.mq.broker.support.persist.store.MappedFile;
+import com.github.houbb.mq.common.api.Destroyable;
+import com.github.houbb.mq.common.dto.req.MqConsumerPullReq;
+import com.github.houbb.mq.common.dto.req.MqMessage;
+import com.github.houbb.mq.common.dto.resp.MqCommonResp;
+import com.github.houbb.mq.common.resp.MqCommonRespCode;
+import com.github.houbb.mq.common.resp.MqException;
+import io.netty.channel.Channel;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 基于提交日志的持久化策略
+ *
+ * （1）消息体顺序追加到内存映射的提交日志文件中，不占用堆内存
+ * （2）堆内只保留消费队列、分组状态，以及每条消息的标识
+ * （3）支持同步刷盘和异步刷盘，使用前需要先调用 {@link #init(MqBrokerPersistConfig)}
+ * （4）定时写入检查点，重启时加载检查点后只扫描之后的提交日志
+ * （5）消费队列和分组状态按页写入单独的文件，检查点只增量写入，耗时和保留的消息数量无关
+ * （6）过期清理后，所有消费队列都不再引用的提交日志文件整体删除
+ *
+ * @author binbin.hou
+ * @since 0.1.5
+ */
+public class CommitLogMqBrokerPersist extends AbstractMqBrokerPersist implements Destroyable {
+
+    private static final Log log = LogFactory.getLog(CommitLogMqBrokerPersist.class);
+
+    /**
+     * 检查点魔数
+     * @since 0.1.5
+     */
+    private static final int CHECKPOINT_MAGIC = 0xCAFE0002;
+
+    /**
+     * 检查点读写缓冲大小
+     * @since 0.1.5
+     */
+    private static final int CHECKPOINT_BUFFER_SIZE = 1024 * 1024;
+
+    /**
+     * 提交日志
+     * @since 0.1.5
+     */
+    private final CommitLog commitLog;
+
+    /**
+     * 检查点文件
+     * @since 0.1.5
+     */
+    private final File checkpointFile;
+
+    /**
+     * 消费队列目录
+     * @since 0.1.5
+     */
+    private final File consumeQueueDir;
+
+    /**
+     * 检查点锁
+     * @since 0.1.5
+     */
+    private final Object checkpointLock = new Object();
+
+    /**
+     * 检查点定时任务
+     * @since 0.1.5
+     */
+    private final ScheduledExecutorService scheduledExecutorService = Executors.newSingleThreadScheduledExecutor();
+
+    /**
+     * 刷盘服务
+     * @since 0.1.5
+     */
+    private CommitLogFlushService flushService;
+
+    /**
+     * 刷盘方式
+     * @since 0.1.5
+     */
+    private FlushDiskType flushDiskType;
+
+    /**
+     * 同步刷盘等待超时时间
+     * @since 0.1.5
+     */
+    private long syncFlushTimeoutMills;
+
+    public CommitLogMqBrokerPersist() {
+        this(BrokerConst.DEFAULT_STORE_PATH, BrokerConst.DEFAULT_COMMIT_LOG_SEGMENT_SIZE);
+    }
+
+    public CommitLogMqBrokerPersist(final String storePath,
+                                    final int segmentSize) {
+        this.commitLog = new CommitLog(storePath + File.separator + "commitlog", segmentSize);
+        this.checkpointFile = new File(storePath + File.separator + "checkpoint");
+        this.consumeQueueDir = new File(storePath + File.separator + "consumequeue");
+    }
+
+    @Override
+    public void init(MqBrokerPersistConfig config) {
+        this.recover();
+
+        this.flushDiskType = config.flushDiskType();
+        this.syncFlushTimeoutMills = config.syncFlushTimeoutMills();
+        this.flushService = new CommitLogFlushService(commitLog, flushDiskType,
+                config.flushIntervalMills(), config.flushLeastPages());
+        this.flushService.start();
+
+        final long checkpointIntervalMills = config.checkpointIntervalMills();
+        scheduledExecutorService.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    checkpoint();
+                } catch (Exception e) {
+                    log.error("写入检查点异常", e);
+                }
+            }
+        }, checkpointIntervalMills, checkpointIntervalMills, TimeUnit.MILLISECONDS);
+
+        super.init(config);
+    }
+
+    /**
+     * 重启恢复
+     *
+     * （1）加载检查点，得到各个消费队列的位置，以及对应的提交日志位置
+     * （2）只扫描提交日志在检查点之后的部分，补齐索引
+     * @since 0.1.5
+     */
+    private void recover() {
+        final long startMills = System.currentTimeMillis();
+        final long checkpointOffset = this.loadCheckpoint();
+
+        commitLog.recover(checkpointOffset, new CommitLog.RecordHandler() {
+            @Override
+            public void handle(long offset, byte[] body) {
+                MqMessage mqMessage = JSON.parseObject(body, MqMessage.class);
+                appendConsumeQueue(mqMessage.getTopic(), mqMessage.getTraceId(), offset,
+                        CommitLog.HEADER_SIZE + body.length, mqMessage.getTags());
+            }
+        });
+        log.info("恢复完成，检查点位置 {}，耗时 {}ms", checkpointOffset,
+                System.currentTimeMillis() - startMills);
+    }
+
+    /**
+     * 加载检查点
+     *
+     * ps: 不在检查点中的消费队列文件是之后写入的，从提交日志恢复时重新生成
+     * @return 检查点对应的提交日志位置，不存在时返回 0
+     */
+    private long loadCheckpoint() {
+        if(!checkpointFile.exists()) {
+            log.info("检查点 {} 不存在，从头恢复", checkpointFile.getPath());
+            ConsumeQueueStore.deleteDir(consumeQueueDir);
+            return 0;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(checkpointFile), CHECKPOINT_BUFFER_SIZE))) {
+            if(in.readInt() != CHECKPOINT_MAGIC) {
+                throw new IOException("检查点文件头不合法");
+            }
+
+            final long commitOffset = in.readLong();
+            final int queueCount = super.readCheckpoint(in);
+
+            if(in.readInt() != CHECKPOINT_MAGIC) {
+                throw new IOException("检查点文件尾不合法");
+            }
+            this.deleteQueueDirsFrom(queueCount);
+            return commitOffset;
+        } catch (IOException e) {
+            // 部分加载的状态不可用，由运维删除检查点后从头恢复
+            log.error("加载检查点 {} 异常", checkpointFile.getPath(), e);
+            throw new MqException(MqBrokerRespCode.B_STORE_LOAD_FAILED);
+        }
+    }
+
+    private void deleteQueueDirsFrom(final int queueCount) {
+        File[] queueDirs = consumeQueueDir.listFiles();
+        if(queueDirs == null) {
+            return;
+        }
+        for(File queueDir : queueDirs) {
+            try {
+                if(Integer.parseInt(queueDir.getName()) < queueCount) {
+                    continue;
+                }
+            } catch (NumberFormatException e) {
+                // 不是队列目录，一并删除
+            }
+            ConsumeQueueStore.deleteDir(queueDir);
+        }
+    }
+
+    @Override
+    protected ConsumeQueueStore createConsumeQueueStore(int queueId) {
+        return new ConsumeQueueStore(new File(consumeQueueDir, String.valueOf(queueId)));
+    }
+
+    /**
+     * 写入检查点
+     *
+     * （1）在写入锁内获取提交日志位置，以及各个消费队列的快照
+     * （2）先刷盘，保证检查点位置之前的提交日志已经持久化
+     * （3）追加消费队列新增的索引项，重写修改过的分组状态页
+     * （4）检查点文件只包含位置、分组和游标，写入临时文件后再替换，避免写入过程中宕机损坏已有的检查点
+     * （5）最后删除已经清理的页文件
+     * @throws IOException 异常
+     * @since 0.1.5
+     */
+    public void checkpoint() throws IOException {
+        synchronized (checkpointLock) {
+            final long startMills = System.currentTimeMillis();
+            final long commitOffset;
+            final List<ConsumeQueue.Snapshot> snapshots;
+            synchronized (this) {
+                commitOffset = commitLog.getMaxOffset();
+                snapshots = super.snapshotConsumeQueues();
+            }
+            commitLog.flush();
+            super.persistConsumeQueues(snapshots);
+
+            checkpointFile.getParentFile().mkdirs();
+            File tempFile = new File(checkpointFile.getPath() + ".tmp");
+            try (FileOutputStream fos = new FileOutputStream(tempFile);
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos, CHECKPOINT_BUFFER_SIZE))) {
+                out.writeInt(CHECKPOINT_MAGIC);
+                out.writeLong(commitOffset);
+                super.writeCheckpoint(out, snapshots);
+                out.writeInt(CHECKPOINT_MAGIC);
+
+                out.flush();
+                fos.getFD().sync();
+            }
+
+            Files.move(tempFile.toPath(), checkpointFile.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            super.afterCheckpoint(snapshots);
+            log.info("写入检查点完成，位置 {}，耗时 {}ms", commitOffset,
+                    System.currentTimeMillis() - startMills);
+        }
+    }
+
+    @Override
+    public MqCommonResp put(MqMessagePersistPut put) {
+        final long endOffset;
+        synchronized (this) {
+            endOffset = this.doPut(put);
+        }
+
+        return this.buildPutResp(endOffset);
+    }
+
+    /**
+     * 构建写入结果
+     *
+     * ps: 同步刷盘时，在锁外等待，并发的写入可以合并为一次刷盘
+     * @param endOffset 写入结束位置
+     * @return 结果
+     */
+    private MqCommonResp buildPutResp(final long endOffset) {
+        MqCommonResp commonResp = new MqCommonResp();
+        if(FlushDiskType.SYNC_FLUSH == flushDiskType) {
+            if(!flushService.waitForFlush(endOffset, syncFlushTimeoutMills)) {
+                log.error("消息刷盘超时，位置 {}", endOffset);
+                commonResp.setRespCode(MqBrokerRespCode.B_FLUSH_TIMEOUT.getCode());
+                commonResp.setRespMessage(MqBrokerRespCode.B_FLUSH_TIMEOUT.getMsg());
+                return commonResp;
+            }
+        } else {
+            flushService.onAppend();
+        }
+
+        commonResp.setRespCode(MqCommonRespCode.SUCCESS.getCode());
+        commonResp.setRespMessage(MqCommonRespCode.SUCCESS.getMsg());
+        return commonResp;
+    }
+
+    private long doPut(MqMessagePersistPut put) {
+        final MqMessage mqMessage = put.getMqMessage();
+        final byte[] body = JSON.toJSONBytes(mqMessage);
+        final long offset = commitLog.append(body);
+        log.debug("put elem offset: {}, messageId: {}", offset, mqMessage.getTraceId());
+
+        final int size = CommitLog.HEADER_SIZE + body.length;
+        super.appendConsumeQueue(mqMessage.getTopic(), mqMessage.getTraceId(), offset,
+                size, mqMessage.getTags());
+        return offset + size;
+    }
+
+    @Override
+    public MqCommonResp putBatch(List<MqMessagePersistPut> putList) {
+        long endOffset = 0;
+        synchronized (this) {
+            for(MqMessagePersistPut put : putList) {
+                endOffset = this.doPut(put);
+            }
+        }
+
+        return this.buildPutResp(endOffset);
+    }
+
+    @Override
+    protected MqMessage getMessage(ConsumeQueue consumeQueue, long offset) {
+        byte[] body = commitLog.read(consumeQueue.getPosition(offset));
+        if(body == null) {
+            return null;
+        }
+        return JSON.parseObject(body, MqMessage.class);
+    }
+
+    /**
+     * 拉取消息，消息体直接引用提交日志的映射内存
+     *
+     * ps: 存储的消息体就是消息的 json，可以直接写出，不需要反序列化后再序列化
+     */
+    @Override
+    public MqBrokerPullBuffer pullBuffer(MqConsumerPullReq pullReq, Channel channel) {
+        MqBrokerPullBuffer pullBuffer = new MqBrokerPullBuffer(pullReq.getSize());
+        ConsumeQueue consumeQueue = consumeQueueMap.get(pullReq.getTopicName());
+        if(consumeQueue == null) {
+            return pullBuffer;
+        }
+
+        for(Long offset : super.pullOffsets(consumeQueue, pullReq)) {
+            final long position = consumeQueue.getPosition(offset);
+            MappedFile mappedFile = commitLog.holdMappedFile(position);
+            // 读取期间被并发清理
+            if(mappedFile != null) {
+                pullBuffer.add(commitLog.sliceBody(mappedFile, position), mappedFile);
+            }
+        }
+        return pullBuffer;
+    }
+
+    @Override
+    protected void afterCleanExpired() {
+        // 没有保留的消息时，只保留当前写入的文件
+        final long minPosition = Math.min(super.getMinPosition(), commitLog.getMaxOffset());
+        final int count = commitLog.deleteExpiredFiles(minPosition);
+        if(count > 0) {
+            log.info("删除过期的提交日志文件 {} 个，保留的最小位置 {}", count, minPosition);
+        }
+    }
+
+    @Override
+    public void destroyAll() {
+        log.info("开始关闭提交日志");
+        super.destroyAll();
+        scheduledExecutorService.shutdown();
+        if(flushService != null) {
+            flushService.shutdown();
+
+            // 关闭前写入检查点，下次启动不需要扫描
+            try {
+                checkpoint();
+            } catch (IOException e) {
+                log.error("关闭前写入检查点异常", e);
+            }
+        }
+        commitLog.close();
+        log.info("完成关闭提交日志");
+    }
+
+}
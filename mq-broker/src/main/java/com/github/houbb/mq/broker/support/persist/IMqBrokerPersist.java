@@ -16,6 +16,15 @@ import java.util.List;
  */
 public interface IMqBrokerPersist {
 
+    /**
+     * 初始化
+     *
+     * ps: 中间人启动时调用，在处理任何请求之前
+     * @param config 配置
+     * @since 0.1.5
+     */
+    void init(final MqBrokerPersistConfig config);
+
     /**
      * 保存消息
      * @param mqMessage 消息
@@ -52,6 +61,18 @@ public interface IMqBrokerPersist {
      */
     MqCommonResp updateStatusBatch(List<MqConsumerUpdateStatusDto> statusDtoList);
 
+    /**
+     * 准备投递
+     *
+     * ps: 分组状态为待消费或稍后消费时，更新为处理中。否则说明已经被该分组处理，不再投递。
+     * @param messageId 消息唯一标识
+     * @param consumerGroupName 消费者分组名称
+     * @return 是否可以投递
+     * @since 0.1.5
+     */
+    boolean prepareDelivery(final String messageId,
+                            final String consumerGroupName);
+
     /**
      * 拉取消息
      * @param pull 拉取消息
@@ -60,4 +81,15 @@ public interface IMqBrokerPersist {
      */
     MqConsumerPullResp pull(final MqConsumerPullReq pull, final Channel channel);
 
+    /**
+     * 拉取消息，直接返回存储中的消息体
+     *
+     * ps: 消息体引用存储的内存，不经过反序列化和复制。不支持时返回 null，由调用方使用 {@link #pull(MqConsumerPullReq, Channel)}
+     * @param pull 拉取消息
+     * @param channel 通道
+     * @return 结果，使用完成后需要调用 {@link MqBrokerPullBuffer#release()}
+     * @since 0.1.5
+     */
+    MqBrokerPullBuffer pullBuffer(final MqConsumerPullReq pull, final Channel channel);
+
 }
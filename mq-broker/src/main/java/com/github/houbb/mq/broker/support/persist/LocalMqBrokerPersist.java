@@ -1,48 +1,46 @@
 package com.github.houbb.mq.broker.support.persist;
 
 import com.alibaba.fastjson.JSON;
-import com.github.houbb.heaven.util.util.CollectionUtil;
-import com.github.houbb.heaven.util.util.MapUtil;
-import com.github.houbb.heaven.util.util.regex.RegexUtil;
 import com.github.houbb.log.integration.core.Log;
 import com.github.houbb.log.integration.core.LogFactory;
 import com.github.houbb.mq.broker.dto.persist.MqMessagePersistPut;
 import com.github.houbb.mq.broker.dto.persist.MqMessagePersistPutBatch;
-import com.github.houbb.mq.common.constant.MessageStatusConst;
-import com.github.houbb.mq.common.dto.req.MqConsumerPullReq;
+import com.github.houbb.mq.broker.support.persist.queue.ConsumeQueue;
+import com.github.houbb.mq.broker.support.persist.store.ChunkedArray;
 import com.github.houbb.mq.common.dto.req.MqMessage;
-import com.github.houbb.mq.common.dto.req.component.MqConsumerUpdateStatusDto;
 import com.github.houbb.mq.common.dto.resp.MqCommonResp;
-import com.github.houbb.mq.common.dto.resp.MqConsumerPullResp;
 import com.github.houbb.mq.common.resp.MqCommonRespCode;
-import io.netty.channel.Channel;
 
-import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * 本地持久化策略
+ *
+ * （1）消费队列中的位置即消息在分块数组中的下标，消息状态按照分组记录在消费队列中
+ * （2）写入按照 topic 分别加锁，不同 topic 的写入互不阻塞
+ * （3）读取不加锁，清理时整块释放
+ *
  * @author binbin.hou
  * @since 1.0.0
  */
-public class LocalMqBrokerPersist implements IMqBrokerPersist {
+public class LocalMqBrokerPersist extends AbstractMqBrokerPersist {
 
     private static final Log log = LogFactory.getLog(LocalMqBrokerPersist.class);
 
     /**
      * 队列
-     * ps: 这里只是简化实现，暂时不考虑并发等问题。
+     * key: topic
+     * ps: 同时作为 topic 的写入锁
      */
-    private final Map<String, List<MqMessagePersistPut>> map = new ConcurrentHashMap<>();
+    private final Map<String, ChunkedArray<MqMessagePersistPut>> map = new ConcurrentHashMap<>();
 
     //1. 接收
     //2. 持久化
     //3. 通知消费
     @Override
-    public synchronized MqCommonResp put(MqMessagePersistPut put) {
+    public MqCommonResp put(MqMessagePersistPut put) {
         this.doPut(put);
 
         MqCommonResp commonResp = new MqCommonResp();
@@ -56,59 +54,44 @@ public class LocalMqBrokerPersist implements IMqBrokerPersist {
 
         MqMessage mqMessage = put.getMqMessage();
         final String topic = mqMessage.getTopic();
+        final ChunkedArray<MqMessagePersistPut> putArray = getPutArray(topic);
 
-        // 放入元素
-        MapUtil.putToListMap(map, topic, put);
-    }
-
-    @Override
-    public MqCommonResp putBatch(List<MqMessagePersistPut> putList) {
-        // 构建列表
-        for(MqMessagePersistPut put : putList) {
-            this.doPut(put);
+        // 放入元素，和消费队列在同一个锁内追加，保证顺序一致
+        synchronized (putArray) {
+            final long index = putArray.add(put);
+            super.appendConsumeQueue(topic, mqMessage.getTraceId(), index, getSize(mqMessage), mqMessage.getTags());
         }
-
-        MqCommonResp commonResp = new MqCommonResp();
-        commonResp.setRespCode(MqCommonRespCode.SUCCESS.getCode());
-        commonResp.setRespMessage(MqCommonRespCode.SUCCESS.getMsg());
-        return commonResp;
     }
 
-    @Override
-    public MqCommonResp updateStatus(String messageId,
-                                     String consumerGroupName,
-                                     String status) {
-        // 这里性能比较差，所以不可以用于生产。仅作为测试验证
-        this.doUpdateStatus(messageId, consumerGroupName, status);
-
-        MqCommonResp commonResp = new MqCommonResp();
-        commonResp.setRespCode(MqCommonRespCode.SUCCESS.getCode());
-        commonResp.setRespMessage(MqCommonRespCode.SUCCESS.getMsg());
-        return commonResp;
+    private ChunkedArray<MqMessagePersistPut> getPutArray(final String topic) {
+        ChunkedArray<MqMessagePersistPut> putArray = map.get(topic);
+        if(putArray == null) {
+            map.putIfAbsent(topic, new ChunkedArray<MqMessagePersistPut>());
+            putArray = map.get(topic);
+        }
+        return putArray;
     }
 
-
-    private void doUpdateStatus(String messageId,
-                                String consumerGroupName,
-                                String status) {
-        // 这里性能比较差，所以不可以用于生产。仅作为测试验证
-        for(List<MqMessagePersistPut> list : map.values()) {
-            for(MqMessagePersistPut put : list) {
-                MqMessage mqMessage = put.getMqMessage();
-                if(mqMessage.getTraceId().equals(messageId)) {
-                    put.setMessageStatus(status);
-
-                    break;
-                }
-            }
+    /**
+     * 消息大小
+     *
+     * ps: 内存中不序列化，按照消息内容的长度估算，用于保留策略的大小限制
+     * @param mqMessage 消息
+     * @return 结果
+     */
+    private int getSize(final MqMessage mqMessage) {
+        final String payload = mqMessage.getPayload();
+        if(payload == null) {
+            return 0;
         }
+        return payload.length();
     }
 
     @Override
-    public MqCommonResp updateStatusBatch(List<MqConsumerUpdateStatusDto> statusDtoList) {
-        for(MqConsumerUpdateStatusDto statusDto : statusDtoList) {
-            this.doUpdateStatus(statusDto.getMessageId(), statusDto.getConsumerGroupName(),
-                    statusDto.getMessageStatus());
+    public MqCommonResp putBatch(List<MqMessagePersistPut> putList) {
+        // 构建列表
+        for(MqMessagePersistPut put : putList) {
+            this.doPut(put);
         }
 
         MqCommonResp commonResp = new MqCommonResp();
@@ -118,55 +101,28 @@ public class LocalMqBrokerPersist implements IMqBrokerPersist {
     }
 
     @Override
-    public MqConsumerPullResp pull(MqConsumerPullReq pullReq, Channel channel) {
-        //1. 拉取匹配的信息
-        //2. 状态更新为代理中
-        //3. 如何更新对应的消费状态呢？
-
-        // 获取状态为 W 的订单
-        final int fetchSize = pullReq.getSize();
-        final String topic = pullReq.getTopicName();
-        final String tagRegex = pullReq.getTagRegex();
-
-        List<MqMessage> resultList = new ArrayList<>(fetchSize);
-        List<MqMessagePersistPut> putList = map.get(topic);
-        // 性能比较差
-        if(CollectionUtil.isNotEmpty(putList)) {
-            for(MqMessagePersistPut put : putList) {
-                if(!isEnableStatus(put)) {
-                    continue;
-                }
-
-                final MqMessage mqMessage = put.getMqMessage();
-                List<String> tagList = mqMessage.getTags();
-                if(RegexUtil.hasMatch(tagList, tagRegex)) {
-                    // 设置为处理中
-                    // TODO： 消息的最终状态什么时候更新呢？
-                    // 可以给 broker 一个 ACK
-                    put.setMessageStatus(MessageStatusConst.TO_CONSUMER_PROCESS);
-                    resultList.add(mqMessage);
-                }
-
-                if(resultList.size() >= fetchSize) {
-                    break;
-                }
-            }
+    protected MqMessage getMessage(ConsumeQueue consumeQueue, long offset) {
+        MqMessagePersistPut put = getPut(consumeQueue, offset);
+        if(put == null) {
+            return null;
         }
+        return put.getMqMessage();
+    }
 
-        MqConsumerPullResp resp = new MqConsumerPullResp();
-        resp.setRespCode(MqCommonRespCode.SUCCESS.getCode());
-        resp.setRespMessage(MqCommonRespCode.SUCCESS.getMsg());
-        resp.setList(resultList);
-        return resp;
+    /**
+     * 释放已经被清理的消息
+     *
+     * ps: 下标即消费队列中的位置，保持不变，头部整块释放
+     */
+    @Override
+    protected void onTruncate(ConsumeQueue consumeQueue, long fromOffset, long toOffset) {
+        ChunkedArray<MqMessagePersistPut> putArray = map.get(consumeQueue.getTopic());
+        putArray.removeBefore(consumeQueue.getPosition(toOffset - 1) + 1);
     }
 
-    private boolean isEnableStatus(final MqMessagePersistPut persistPut) {
-        final String status = persistPut.getMessageStatus();
-        // 数据库可以设计一个字段，比如待消费时间，进行排序。
-        // 这里只是简化实现，仅用于测试。
-        List<String> statusList = Arrays.asList(MessageStatusConst.WAIT_CONSUMER,
-                MessageStatusConst.CONSUMER_LATER);
-        return statusList.contains(status);
+    private MqMessagePersistPut getPut(ConsumeQueue consumeQueue, long offset) {
+        ChunkedArray<MqMessagePersistPut> putArray = map.get(consumeQueue.getTopic());
+        return putArray.get(consumeQueue.getPosition(offset));
     }
 
 }
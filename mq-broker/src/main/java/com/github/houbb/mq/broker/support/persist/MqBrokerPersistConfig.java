@@ -0,0 +1,140 @@
+package com.github.houbb.mq.broker.support.persist;
+
+import com.github.houbb.mq.broker.constant.FlushDiskType;
+
+import java.util.Map;
+
+/**
+ * 持久化配置
+ *
+ * @author binbin.hou
+ * @since 0.1.5
+ */
+public class MqBrokerPersistConfig {
+
+    /**
+     * 刷盘方式
+     * @since 0.1.5
+     */
+    private FlushDiskType flushDiskType;
+
+    /**
+     * 刷盘时间间隔
+     * @since 0.1.5
+     */
+    private long flushIntervalMills;
+
+    /**
+     * 异步刷盘时，脏页达到该数量立刻刷盘
+     * @since 0.1.5
+     */
+    private int flushLeastPages;
+
+    /**
+     * 同步刷盘等待超时时间
+     * @since 0.1.5
+     */
+    private long syncFlushTimeoutMills;
+
+    /**
+     * 检查点时间间隔
+     * @since 0.1.5
+     */
+    private long checkpointIntervalMills;
+
+    /**
+     * 默认保留策略
+     * @since 0.1.5
+     */
+    private MqBrokerRetentionPolicy retentionPolicy;
+
+    /**
+     * topic 单独指定的保留策略
+     * key: topic
+     * @since 0.1.5
+     */
+    private Map<String, MqBrokerRetentionPolicy> topicRetentionPolicyMap;
+
+    /**
+     * 过期清理时间间隔
+     * @since 0.1.5
+     */
+    private long retentionCheckIntervalMills;
+
+    public static MqBrokerPersistConfig newInstance() {
+        return new MqBrokerPersistConfig();
+    }
+
+    public FlushDiskType flushDiskType() {
+        return flushDiskType;
+    }
+
+    public MqBrokerPersistConfig flushDiskType(FlushDiskType flushDiskType) {
+        this.flushDiskType = flushDiskType;
+        return this;
+    }
+
+    public long flushIntervalMills() {
+        return flushIntervalMills;
+    }
+
+    public MqBrokerPersistConfig flushIntervalMills(long flushIntervalMills) {
+        this.flushIntervalMills = flushIntervalMills;
+        return this;
+    }
+
+    public int flushLeastPages() {
+        return flushLeastPages;
+    }
+
+    public MqBrokerPersistConfig flushLeastPages(int flushLeastPages) {
+        this.flushLeastPages = flushLeastPages;
+        return this;
+    }
+
+    public long syncFlushTimeoutMills() {
+        return syncFlushTimeoutMills;
+    }
+
+    public MqBrokerPersistConfig syncFlushTimeoutMills(long syncFlushTimeoutMills) {
+        this.syncFlushTimeoutMills = syncFlushTimeoutMills;
+        return this;
+    }
+
+    public long checkpointIntervalMills() {
+        return checkpointIntervalMills;
+    }
+
+    public MqBrokerPersistConfig checkpointIntervalMills(long checkpointIntervalMills) {
+        this.checkpointIntervalMills = checkpointIntervalMills;
+        return this;
+    }
+
+    public MqBrokerRetentionPolicy retentionPolicy() {
+        return retentionPolicy;
+    }
+
+    public MqBrokerPersistConfig retentionPolicy(MqBrokerRetentionPolicy retentionPolicy) {
+        this.retentionPolicy = retentionPolicy;
+        return this;
+    }
+
+    public Map<String, MqBrokerRetentionPolicy> topicRetentionPolicyMap() {
+        return topicRetentionPolicyMap;
+    }
+
+    public MqBrokerPersistConfig topicRetentionPolicyMap(Map<String, MqBrokerRetentionPolicy> topicRetentionPolicyMap) {
+        this.topicRetentionPolicyMap = topicRetentionPolicyMap;
+        return this;
+    }
+
+    public long retentionCheckIntervalMills() {
+        return retentionCheckIntervalMills;
+    }
+
+    public MqBrokerPersistConfig retentionCheckIntervalMills(long retentionCheckIntervalMills) {
+        this.retentionCheckIntervalMills = retentionCheckIntervalMills;
+        return this;
+    }
+
+}
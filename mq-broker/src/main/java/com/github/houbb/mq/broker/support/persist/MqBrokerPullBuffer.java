@@ -0,0 +1,66 @@
+package com.github.houbb.mq.broker.support.persist;
+
+import com.github.houbb.mq.broker.support.persist.store.MappedFile;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 拉取结果的消息体
+ *
+ * （1）每条消息体都是映射内存的切片，内容为消息的 json
+ * （2）持有对应文件的引用，写出完成前文件不会被删除
+ *
+ * @author binbin.hou
+ * @since 0.1.5
+ */
+public class MqBrokerPullBuffer {
+
+    /**
+     * 消息体列表
+     * @since 0.1.5
+     */
+    private final List<ByteBuffer> bodyList;
+
+    /**
+     * 持有引用的文件列表
+     * @since 0.1.5
+     */
+    private final List<MappedFile> mappedFileList;
+
+    public MqBrokerPullBuffer(final int size) {
+        this.bodyList = new ArrayList<>(size);
+        this.mappedFileList = new ArrayList<>(size);
+    }
+
+    /**
+     * 添加消息体
+     * @param body 消息体
+     * @param mappedFile 已经持有引用的文件
+     * @since 0.1.5
+     */
+    public void add(final ByteBuffer body, final MappedFile mappedFile) {
+        this.bodyList.add(body);
+        this.mappedFileList.add(mappedFile);
+    }
+
+    public List<ByteBuffer> getBodyList() {
+        return bodyList;
+    }
+
+    /**
+     * 释放文件引用
+     *
+     * ps: 消息体写出完成后调用，之后不可以再访问消息体
+     * @since 0.1.5
+     */
+    public void release() {
+        for(MappedFile mappedFile : mappedFileList) {
+            mappedFile.release();
+        }
+        mappedFileList.clear();
+        bodyList.clear();
+    }
+
+}
@@ -0,0 +1,75 @@
+package com.github.houbb.mq.broker.support.persist;
+
+/**
+ * 消息保留策略
+ *
+ * （1）满足任意一个条件的消息都会被清理
+ * （2）只从队列头部开始清理，遇到不满足条件的消息即停止
+ * （3）小于等于 0 的时间和大小表示不限制
+ *
+ * @author binbin.hou
+ * @since 0.1.5
+ */
+public class MqBrokerRetentionPolicy {
+
+    /**
+     * 最长保留时间
+     * @since 0.1.5
+     */
+    private long maxAgeMills;
+
+    /**
+     * 单个 topic 最多保留的消息大小
+     * @since 0.1.5
+     */
+    private long maxBytes;
+
+    /**
+     * 所有分组都消费成功后是否立刻清理
+     * @since 0.1.5
+     */
+    private boolean deleteWhenConsumed;
+
+    public static MqBrokerRetentionPolicy newInstance() {
+        return new MqBrokerRetentionPolicy();
+    }
+
+    public long maxAgeMills() {
+        return maxAgeMills;
+    }
+
+    public MqBrokerRetentionPolicy maxAgeMills(long maxAgeMills) {
+        this.maxAgeMills = maxAgeMills;
+        return this;
+    }
+
+    public long maxBytes() {
+        return maxBytes;
+    }
+
+    public MqBrokerRetentionPolicy maxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+        return this;
+    }
+
+    public boolean deleteWhenConsumed() {
+        return deleteWhenConsumed;
+    }
+
+    public MqBrokerRetentionPolicy deleteWhenConsumed(boolean deleteWhenConsumed) {
+        this.deleteWhenConsumed = deleteWhenConsumed;
+        return this;
+    }
+
+    /**
+     * 是否有任何限制
+     * @return 结果
+     * @since 0.1.5
+     */
+    public boolean isEnable() {
+        return maxAgeMills > 0
+                || maxBytes > 0
+                || deleteWhenConsumed;
+    }
+
+}
@@ -0,0 +1,309 @@
+package com.github.houbb.mq.broker.support.persist.index;
+
+/**
+ * 消息标识索引
+ *
+ * （1）开放寻址 + 线性探测，键值都使用基本类型数组存储，不额外创建对象
+ * （2）键为消息标识的 64 位哈希，值为消息位置（消费队列标识 + 队列偏移量）
+ * （3）哈希可能冲突，查询时由调用方确认位置上的消息标识
+ * （4）消息过期清理时同步移除，删除使用后移填补，不留墓碑
+ * （5）按照哈希高位分段加锁，不同 topic 并发写入时互不阻塞
+ *
+ * @author binbin.hou
+ * @since 0.1.5
+ */
+public class MessageIdIndex {
+
+    /**
+     * 位置不存在
+     * @since 0.1.5
+     */
+    public static final long NOT_FOUND = -1;
+
+    /**
+     * 队列偏移量占用的位数
+     * @since 0.1.5
+     */
+    private static final int OFFSET_BITS = 40;
+
+    /**
+     * 队列偏移量掩码
+     * @since 0.1.5
+     */
+    private static final long OFFSET_MASK = (1L << OFFSET_BITS) - 1;
+
+    /**
+     * 空槽位
+     * @since 0.1.5
+     */
+    private static final long EMPTY = 0;
+
+    /**
+     * 分段数量的位数
+     * @since 0.1.5
+     */
+    private static final int SEGMENT_BITS = 4;
+
+    /**
+     * 分段
+     * @since 0.1.5
+     */
+    private final Segment[] segments;
+
+    public MessageIdIndex() {
+        this(1 << 16);
+    }
+
+    public MessageIdIndex(final int initCapacity) {
+        final int segmentCount = 1 << SEGMENT_BITS;
+        this.segments = new Segment[segmentCount];
+        for(int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment(initCapacity / segmentCount);
+        }
+    }
+
+    /**
+     * 构建位置
+     * @param queueId 消费队列标识
+     * @param offset 队列偏移量
+     * @return 结果
+     * @since 0.1.5
+     */
+    public static long location(final int queueId, final long offset) {
+        return ((long) queueId << OFFSET_BITS) | offset;
+    }
+
+    /**
+     * 消费队列标识
+     * @param location 位置
+     * @return 结果
+     * @since 0.1.5
+     */
+    public static int queueId(final long location) {
+        return (int) (location >>> OFFSET_BITS);
+    }
+
+    /**
+     * 队列偏移量
+     * @param location 位置
+     * @return 结果
+     * @since 0.1.5
+     */
+    public static long offset(final long location) {
+        return location & OFFSET_MASK;
+    }
+
+    /**
+     * 放入索引
+     * @param messageId 消息标识
+     * @param location 位置
+     * @since 0.1.5
+     */
+    public void put(final String messageId, final long location) {
+        final long hash = hash(messageId);
+        segmentFor(hash).put(hash, location);
+    }
+
+    /**
+     * 查询位置
+     * @param messageId 消息标识
+     * @param matcher 位置确认
+     * @return 结果，不存在时返回 {@link #NOT_FOUND}
+     * @since 0.1.5
+     */
+    public long get(final String messageId, final Matcher matcher) {
+        final long hash = hash(messageId);
+        return segmentFor(hash).get(hash, messageId, matcher);
+    }
+
+    /**
+     * 移除索引
+     * @param messageId 消息标识
+     * @param location 位置
+     * @return 是否存在
+     * @since 0.1.5
+     */
+    public boolean remove(final String messageId, final long location) {
+        final long hash = hash(messageId);
+        return segmentFor(hash).remove(hash, location);
+    }
+
+    public int size() {
+        int size = 0;
+        for(Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    /**
+     * 分段使用哈希高位，槽位使用哈希低位，互不影响
+     * @param hash 哈希
+     * @return 结果
+     */
+    private Segment segmentFor(final long hash) {
+        return segments[(int) (hash >>> (64 - SEGMENT_BITS))];
+    }
+
+    /**
+     * 64 位哈希
+     *
+     * ps: FNV-1a 后再混淆一次，保证低位分布均匀。0 保留为空槽位。
+     * @param messageId 消息标识
+     * @return 结果
+     */
+    static long hash(final String messageId) {
+        long h = 0xcbf29ce484222325L;
+        for(int i = 0; i < messageId.length(); i++) {
+            h ^= messageId.charAt(i);
+            h *= 0x100000001b3L;
+        }
+
+        h ^= (h >>> 33);
+        h *= 0xff51afd7ed558ccdL;
+        h ^= (h >>> 33);
+        return h == EMPTY ? 1 : h;
+    }
+
+    /**
+     * 分段，单独加锁
+     * @since 0.1.5
+     */
+    private static class Segment {
+
+        /**
+         * 键
+         * @since 0.1.5
+         */
+        private long[] keys;
+
+        /**
+         * 值
+         * @since 0.1.5
+         */
+        private long[] values;
+
+        /**
+         * 元素个数
+         * @since 0.1.5
+         */
+        private int size;
+
+        private Segment(final int initCapacity) {
+            int capacity = Integer.highestOneBit(Math.max(initCapacity, 16) - 1) << 1;
+            this.keys = new long[capacity];
+            this.values = new long[capacity];
+        }
+
+        private synchronized void put(final long hash, final long location) {
+            // 负载因子 0.5
+            if((size + 1) << 1 > keys.length) {
+                resize();
+            }
+
+            insert(keys, values, hash, location);
+            size++;
+        }
+
+        private synchronized long get(final long hash,
+                                      final String messageId,
+                                      final Matcher matcher) {
+            final int mask = keys.length - 1;
+            int slot = (int) hash & mask;
+            while (keys[slot] != EMPTY) {
+                if(keys[slot] == hash
+                        && matcher.match(values[slot], messageId)) {
+                    return values[slot];
+                }
+                slot = (slot + 1) & mask;
+            }
+            return NOT_FOUND;
+        }
+
+        /**
+         * 移除
+         *
+         * ps: 线性探测不能直接置空，后续同一探测链上的元素需要前移填补空位
+         */
+        private synchronized boolean remove(final long hash, final long location) {
+            final int mask = keys.length - 1;
+            int slot = (int) hash & mask;
+            while (keys[slot] != EMPTY) {
+                if(keys[slot] == hash
+                        && values[slot] == location) {
+                    shiftBackward(slot);
+                    size--;
+                    return true;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return false;
+        }
+
+        private void shiftBackward(final int slot) {
+            final int mask = keys.length - 1;
+            int hole = slot;
+            int next = (hole + 1) & mask;
+            while (keys[next] != EMPTY) {
+                // 理想位置到当前位置的距离不小于空位到当前位置的距离，才可以前移
+                final int home = (int) keys[next] & mask;
+                if(((next - home) & mask) >= ((next - hole) & mask)) {
+                    keys[hole] = keys[next];
+                    values[hole] = values[next];
+                    hole = next;
+                }
+                next = (next + 1) & mask;
+            }
+            keys[hole] = EMPTY;
+            values[hole] = 0;
+        }
+
+        private synchronized int size() {
+            return size;
+        }
+
+        private void resize() {
+            final long[] newKeys = new long[keys.length << 1];
+            final long[] newValues = new long[values.length << 1];
+            for(int i = 0; i < keys.length; i++) {
+                if(keys[i] != EMPTY) {
+                    insert(newKeys, newValues, keys[i], values[i]);
+                }
+            }
+            this.keys = newKeys;
+            this.values = newValues;
+        }
+
+        private static void insert(final long[] keys,
+                                   final long[] values,
+                                   final long hash,
+                                   final long location) {
+            final int mask = keys.length - 1;
+            int slot = (int) hash & mask;
+            while (keys[slot] != EMPTY) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = hash;
+            values[slot] = location;
+        }
+
+    }
+
+    /**
+     * 位置确认
+     * @since 0.1.5
+     */
+    public interface Matcher {
+
+        /**
+         * 位置上的消息是否为指定消息
+         * @param location 位置
+         * @param messageId 消息标识
+         * @return 结果
+         * @since 0.1.5
+         */
+        boolean match(final long location, final String messageId);
+
+    }
+
+}
@@ -0,0 +1,732 @@
+package com.github.houbb.mq.broker.support.persist.queue;
+
+import com.github.houbb.log.integration.core.Log;
+import com.github.houbb.log.integration.core.LogFactory;
+import com.github.houbb.mq.broker.resp.MqBrokerRespCode;
+import com.github.houbb.mq.common.resp.MqException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 消费队列
+ *
+ * （1）每个 topic 一个，按照写入顺序记录定长的索引项：位置(8) + 大小(4) + 标签编码(4) + 写入时间(8)
+ * （2）队列偏移量即索引项下标，可以直接定位，不需要遍历
+ * （3）索引项按页分配，扩容时只需要复制页引用
+ * （4）每个消费者分组单独记录状态
+ * （5）指定文件存储时，检查点只追加新增的索引项，重启时只加载尾页，其余的页按需加载
+ * （6）按照标签编码维护倒排列表，拉取时可以直接跳到匹配的消息
+ * （7）过期清理只移动最小偏移量，整页释放延迟一轮，避免正在读取的线程访问到已释放的页
+ *
+ * ps: 单线程写入，多线程读取。写入完成后才发布最大偏移量。
+ * 新建页、按需加载、清理在同一个锁内修改页引用，读取方通过 volatile 的页数组获取。
+ *
+ * @author binbin.hou
+ * @since 0.1.5
+ */
+public class ConsumeQueue {
+
+    private static final Log log = LogFactory.getLog(ConsumeQueue.class);
+
+    /**
+     * 单个索引项大小（字节）
+     * @since 0.1.5
+     */
+    public static final int ENTRY_SIZE = 24;
+
+    /**
+     * 单页索引项数量的位移
+     * @since 0.1.5
+     */
+    private static final int PAGE_SHIFT = 14;
+
+    /**
+     * 单页索引项数量
+     * @since 0.1.5
+     */
+    private static final int PAGE_ENTRY_COUNT = 1 << PAGE_SHIFT;
+
+    /**
+     * 页内下标掩码
+     * @since 0.1.5
+     */
+    private static final int PAGE_MASK = PAGE_ENTRY_COUNT - 1;
+
+    /**
+     * 单个索引项占用的 long 数量
+     * @since 0.1.5
+     */
+    private static final int ENTRY_LONGS = 3;
+
+    /**
+     * 标题名称
+     * @since 0.1.5
+     */
+    private final String topic;
+
+    /**
+     * 队列标识
+     * @since 0.1.5
+     */
+    private final int queueId;
+
+    /**
+     * 索引页
+     *
+     * 每个索引项占用三个 long：
+     * [0] 位置
+     * [1] 大小（高 32 位） + 标签编码（低 32 位）
+     * [2] 写入时间
+     * @since 0.1.5
+     */
+    private volatile long[][] pages = new long[8][];
+
+    /**
+     * 消息标识页，和索引页一一对应
+     * @since 0.1.5
+     */
+    private volatile String[][] messageIdPages = new String[8][];
+
+    /**
+     * 最大偏移量（不包含）
+     * @since 0.1.5
+     */
+    private volatile long maxOffset = 0;
+
+    /**
+     * 最小偏移量（包含），之前的消息已经被清理
+     * @since 0.1.5
+     */
+    private volatile long minOffset = 0;
+
+    /**
+     * 未清理的消息总大小
+     * @since 0.1.5
+     */
+    private final AtomicLong totalSize = new AtomicLong(0);
+
+    /**
+     * 分组状态
+     * key: 消费者分组名称
+     * @since 0.1.5
+     */
+    private final Map<String, GroupStatusTrack> groupStatusMap = new ConcurrentHashMap<>();
+
+    /**
+     * 标签倒排列表
+     * key: 标签编码
+     * @since 0.1.5
+     */
+    private final Map<Integer, TagsOffsetList> tagsOffsetMap = new ConcurrentHashMap<>();
+
+    /**
+     * 分组名称，下标即分组在文件存储中的下标
+     * @since 0.1.5
+     */
+    private final List<String> groupNames = new CopyOnWriteArrayList<>();
+
+    /**
+     * 文件存储，为 null 时只保存在内存中
+     * @since 0.1.5
+     */
+    private final ConsumeQueueStore store;
+
+    /**
+     * 已经写入文件的偏移量（不包含）
+     * @since 0.1.5
+     */
+    private volatile long storedOffset = 0;
+
+    /**
+     * 标签倒排列表的开始偏移量（包含）
+     *
+     * ps: 重启前的消息没有倒排列表，拉取时顺序读取
+     * @since 0.1.5
+     */
+    private volatile long tagsIndexFromOffset = 0;
+
+    public ConsumeQueue(String topic, int queueId) {
+        this(topic, queueId, null);
+    }
+
+    public ConsumeQueue(String topic, int queueId, ConsumeQueueStore store) {
+        this.topic = topic;
+        this.queueId = queueId;
+        this.store = store;
+    }
+
+    /**
+     * 追加索引项
+     * @param position 消息位置
+     * @param size 消息大小
+     * @param tagsCode 标签编码
+     * @param messageId 消息标识
+     * @param storeTimestamp 写入时间
+     * @return 队列偏移量
+     * @since 0.1.5
+     */
+    public long append(final long position,
+                       final int size,
+                       final int tagsCode,
+                       final String messageId,
+                       final long storeTimestamp) {
+        final long offset = maxOffset;
+        final int pageIndex = (int) (offset >>> PAGE_SHIFT);
+        final long[] page = ensurePage(pageIndex);
+        final int index = ((int) offset & PAGE_MASK) * ENTRY_LONGS;
+        page[index] = position;
+        page[index + 1] = ((long) size << 32) | (tagsCode & 0xFFFFFFFFL);
+        page[index + 2] = storeTimestamp;
+        ensureMessageIdPage(pageIndex)[(int) offset & PAGE_MASK] = messageId;
+        getOrCreateTagsOffsetList(tagsCode).add(offset);
+        totalSize.addAndGet(size);
+
+        // 写入完成后再发布
+        this.maxOffset = offset + 1;
+        return offset;
+    }
+
+    private long[] ensurePage(final int pageIndex) {
+        final long[][] currentPages = this.pages;
+        if(pageIndex < currentPages.length
+                && currentPages[pageIndex] != null) {
+            return currentPages[pageIndex];
+        }
+        return newPage(pageIndex);
+    }
+
+    private String[] ensureMessageIdPage(final int pageIndex) {
+        final String[][] currentPages = this.messageIdPages;
+        if(pageIndex < currentPages.length
+                && currentPages[pageIndex] != null) {
+            return currentPages[pageIndex];
+        }
+        return newMessageIdPage(pageIndex);
+    }
+
+    private synchronized long[] newPage(final int pageIndex) {
+        long[][] currentPages = growPages(pageIndex);
+        long[] page = currentPages[pageIndex];
+        if(page == null) {
+            page = new long[PAGE_ENTRY_COUNT * ENTRY_LONGS];
+            currentPages[pageIndex] = page;
+        }
+        return page;
+    }
+
+    private synchronized String[] newMessageIdPage(final int pageIndex) {
+        String[][] currentPages = growMessageIdPages(pageIndex);
+        String[] page = currentPages[pageIndex];
+        if(page == null) {
+            page = new String[PAGE_ENTRY_COUNT];
+            currentPages[pageIndex] = page;
+        }
+        return page;
+    }
+
+    private long[][] growPages(final int pageIndex) {
+        long[][] currentPages = this.pages;
+        if(pageIndex >= currentPages.length) {
+            int length = currentPages.length;
+            while (pageIndex >= length) {
+                length <<= 1;
+            }
+            currentPages = Arrays.copyOf(currentPages, length);
+            this.pages = currentPages;
+        }
+        return currentPages;
+    }
+
+    private String[][] growMessageIdPages(final int pageIndex) {
+        String[][] currentPages = this.messageIdPages;
+        if(pageIndex >= currentPages.length) {
+            int length = currentPages.length;
+            while (pageIndex >= length) {
+                length <<= 1;
+            }
+            currentPages = Arrays.copyOf(currentPages, length);
+            this.messageIdPages = currentPages;
+        }
+        return currentPages;
+    }
+
+    /**
+     * 按需加载已经写入文件的页
+     *
+     * ps: 已经清理、或者还没有写入文件的页返回 false
+     * @param pageIndex 页下标
+     * @return 是否存在
+     */
+    private synchronized boolean loadPage(final int pageIndex) {
+        final long pageStart = (long) pageIndex << PAGE_SHIFT;
+        if(store == null
+                || pageStart + PAGE_ENTRY_COUNT <= minOffset
+                || pageStart >= storedOffset) {
+            return false;
+        }
+
+        final long[][] currentPages = growPages(pageIndex);
+        final String[][] currentMessageIdPages = growMessageIdPages(pageIndex);
+        if(currentPages[pageIndex] != null) {
+            return true;
+        }
+
+        final long[] page = new long[PAGE_ENTRY_COUNT * ENTRY_LONGS];
+        final String[] messageIdPage = new String[PAGE_ENTRY_COUNT];
+        final int count = (int) Math.min(PAGE_ENTRY_COUNT, storedOffset - pageStart);
+        try {
+            store.readPage(pageIndex, count, page, messageIdPage);
+        } catch (IOException e) {
+            log.error("加载消费队列 {} 索引页 {} 异常", topic, pageIndex, e);
+            throw new MqException(MqBrokerRespCode.B_STORE_LOAD_FAILED);
+        }
+        currentMessageIdPages[pageIndex] = messageIdPage;
+        currentPages[pageIndex] = page;
+
+        // 重新发布，读取方可以看到完整的页
+        this.messageIdPages = currentMessageIdPages;
+        this.pages = currentPages;
+        return true;
+    }
+
+    /**
+     * 消息位置
+     * @param offset 队列偏移量
+     * @return 结果
+     * @since 0.1.5
+     */
+    public long getPosition(final long offset) {
+        return entry(offset, 0);
+    }
+
+    /**
+     * 消息大小
+     * @param offset 队列偏移量
+     * @return 结果
+     * @since 0.1.5
+     */
+    public int getSize(final long offset) {
+        return (int) (entry(offset, 1) >>> 32);
+    }
+
+    /**
+     * 标签编码
+     * @param offset 队列偏移量
+     * @return 结果
+     * @since 0.1.5
+     */
+    public int getTagsCode(final long offset) {
+        return (int) entry(offset, 1);
+    }
+
+    /**
+     * 写入时间
+     * @param offset 队列偏移量
+     * @return 结果
+     * @since 0.1.5
+     */
+    public long getStoreTimestamp(final long offset) {
+        return entry(offset, 2);
+    }
+
+    /**
+     * 消息标识
+     * @param offset 队列偏移量
+     * @return 结果，已经被清理时返回 null
+     * @since 0.1.5
+     */
+    public String getMessageId(final long offset) {
+        final int pageIndex = (int) (offset >>> PAGE_SHIFT);
+        String[][] currentPages = this.messageIdPages;
+        if(pageIndex >= currentPages.length
+                || currentPages[pageIndex] == null) {
+            if(!loadPage(pageIndex)) {
+                return null;
+            }
+            currentPages = this.messageIdPages;
+        }
+
+        final String[] page = currentPages[pageIndex];
+        if(page == null) {
+            return null;
+        }
+        return page[(int) offset & PAGE_MASK];
+    }
+
+    private long entry(final long offset, final int field) {
+        final int pageIndex = (int) (offset >>> PAGE_SHIFT);
+        long[][] currentPages = this.pages;
+        if(pageIndex >= currentPages.length
+                || currentPages[pageIndex] == null) {
+            if(!loadPage(pageIndex)) {
+                return 0;
+            }
+            currentPages = this.pages;
+        }
+
+        final long[] page = currentPages[pageIndex];
+        if(page == null) {
+            return 0;
+        }
+        return page[((int) offset & PAGE_MASK) * ENTRY_LONGS + field];
+    }
+
+    /**
+     * 所有分组是否都已经消费成功
+     *
+     * ps: 还没有任何分组时返回 false，避免后加入的分组丢失消息
+     * @param offset 队列偏移量
+     * @return 结果
+     * @since 0.1.5
+     */
+    public boolean isConsumerSuccessByAll(final long offset) {
+        return isConsumerSuccessByAll(offset, null);
+    }
+
+    /**
+     * 所有分组是否都已经消费成功
+     *
+     * （1）分组不会拉取的消息视为该分组已经消费，比如标签不匹配
+     * （2）还没有任何分组时返回 false，避免后加入的分组丢失消息
+     * @param offset 队列偏移量
+     * @param groupFilter 分组过滤，为 null 时所有分组都需要消费成功
+     * @return 结果
+     * @since 0.1.5
+     */
+    public boolean isConsumerSuccessByAll(final long offset,
+                                          final GroupFilter groupFilter) {
+        if(groupStatusMap.isEmpty()) {
+            return false;
+        }
+
+        int tagsCode = -1;
+        for(Map.Entry<String, GroupStatusTrack> entry : groupStatusMap.entrySet()) {
+            if(entry.getValue().isConsumerSuccess(offset)) {
+                continue;
+            }
+            if(groupFilter == null) {
+                return false;
+            }
+
+            if(tagsCode < 0) {
+                tagsCode = getTagsCode(offset);
+            }
+            if(groupFilter.isMatch(entry.getKey(), tagsCode)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 清理队列头部
+     *
+     * （1）只移动最小偏移量，读取方据此跳过已清理的消息
+     * （2）上一轮最小偏移量之前的整页才真正释放，本轮的页延迟到下一轮
+     * @param newMinOffset 新的最小偏移量
+     * @since 0.1.5
+     */
+    public synchronized void truncateHead(final long newMinOffset) {
+        final long oldMinOffset = this.minOffset;
+        if(newMinOffset <= oldMinOffset) {
+            return;
+        }
+
+        final int freePageEnd = (int) (oldMinOffset >>> PAGE_SHIFT);
+        final long[][] currentPages = this.pages;
+        final String[][] currentMessageIdPages = this.messageIdPages;
+        for(int i = 0; i < freePageEnd; i++) {
+            currentPages[i] = null;
+            currentMessageIdPages[i] = null;
+        }
+        for(GroupStatusTrack statusTrack : groupStatusMap.values()) {
+            statusTrack.freePages(freePageEnd);
+        }
+        for(TagsOffsetList tagsOffsetList : tagsOffsetMap.values()) {
+            tagsOffsetList.trimBefore(oldMinOffset);
+        }
+
+        long removedSize = 0;
+        for(long offset = oldMinOffset; offset < newMinOffset; offset++) {
+            removedSize += getSize(offset);
+        }
+        totalSize.addAndGet(-removedSize);
+        this.minOffset = newMinOffset;
+    }
+
+    private TagsOffsetList getOrCreateTagsOffsetList(final int tagsCode) {
+        TagsOffsetList tagsOffsetList = tagsOffsetMap.get(tagsCode);
+        if(tagsOffsetList == null) {
+            tagsOffsetList = new TagsOffsetList();
+            tagsOffsetMap.put(tagsCode, tagsOffsetList);
+        }
+        return tagsOffsetList;
+    }
+
+    /**
+     * 标签倒排列表
+     * @param tagsCode 标签编码
+     * @return 结果，不存在时返回 null
+     * @since 0.1.5
+     */
+    public TagsOffsetList getTagsOffsetList(final int tagsCode) {
+        return tagsOffsetMap.get(tagsCode);
+    }
+
+    /**
+     * 获取分组状态，不存在则新建
+     * @param groupName 分组名称
+     * @return 结果
+     * @since 0.1.5
+     */
+    public GroupStatusTrack getGroupStatus(final String groupName) {
+        GroupStatusTrack statusTrack = groupStatusMap.get(groupName);
+        if(statusTrack != null) {
+            return statusTrack;
+        }
+
+        // 分组下标即列表下标，新建时需要串行
+        synchronized (groupNames) {
+            statusTrack = groupStatusMap.get(groupName);
+            if(statusTrack == null) {
+                statusTrack = new GroupStatusTrack(store, groupNames.size());
+                groupNames.add(groupName);
+                groupStatusMap.put(groupName, statusTrack);
+            }
+            return statusTrack;
+        }
+    }
+
+    /**
+     * 检查点快照
+     *
+     * ps: 调用方在写入锁内获取，只复制上一次写入文件之后新增的索引项
+     * @return 结果
+     * @since 0.1.5
+     */
+    public synchronized Snapshot snapshot() {
+        final long endOffset = this.maxOffset;
+        final List<PageIncrement> increments = new ArrayList<>();
+        long offset = storedOffset;
+        while (offset < endOffset) {
+            final int pageIndex = (int) (offset >>> PAGE_SHIFT);
+            final long pageEnd = Math.min(endOffset, (long) (pageIndex + 1) << PAGE_SHIFT);
+            // 已经整页释放，不需要写入
+            if(pageIndex < pages.length
+                    && pages[pageIndex] != null) {
+                final int fromIndex = (int) offset & PAGE_MASK;
+                final int toIndex = fromIndex + (int) (pageEnd - offset);
+                increments.add(new PageIncrement(pageIndex, fromIndex, toIndex,
+                        Arrays.copyOfRange(pages[pageIndex], fromIndex * ENTRY_LONGS, toIndex * ENTRY_LONGS),
+                        Arrays.copyOfRange(messageIdPages[pageIndex], fromIndex, toIndex)));
+            }
+            offset = pageEnd;
+        }
+        return new Snapshot(this, minOffset, endOffset, totalSize.get(),
+                new ArrayList<>(groupNames), increments);
+    }
+
+    /**
+     * 写入快照中新增的索引项，以及修改过的分组状态页
+     * @param snapshot 快照
+     * @throws IOException 异常
+     * @since 0.1.5
+     */
+    public void persist(final Snapshot snapshot) throws IOException {
+        if(store == null) {
+            return;
+        }
+
+        for(PageIncrement increment : snapshot.increments) {
+            store.appendPage(increment.pageIndex, increment.fromIndex, increment.toIndex,
+                    increment.entries, increment.messageIds);
+            // 逐页推进，失败后从这里继续
+            this.storedOffset = ((long) increment.pageIndex << PAGE_SHIFT) + increment.toIndex;
+        }
+        this.storedOffset = Math.max(storedOffset, snapshot.maxOffset);
+
+        for(String groupName : snapshot.groupNames) {
+            groupStatusMap.get(groupName).persist(snapshot.maxOffset);
+        }
+    }
+
+    /**
+     * 删除已经清理的页文件
+     *
+     * ps: 检查点写入后调用，检查点中的最小偏移量之前的页不会再被加载
+     * @param minOffset 检查点中的最小偏移量
+     * @since 0.1.5
+     */
+    public void deleteStoredPages(final long minOffset) {
+        if(store != null) {
+            store.deletePagesBefore((int) (minOffset >>> PAGE_SHIFT));
+        }
+    }
+
+    /**
+     * 从检查点恢复
+     *
+     * （1）只加载尾页，之后的追加从这里继续
+     * （2）其余的页在第一次访问时加载
+     * @param topic 标题
+     * @param queueId 队列标识
+     * @param store 文件存储
+     * @param minOffset 最小偏移量
+     * @param maxOffset 最大偏移量
+     * @param totalSize 未清理的消息总大小
+     * @param groupNames 分组名称
+     * @return 结果
+     * @throws IOException 异常
+     * @since 0.1.5
+     */
+    public static ConsumeQueue restore(final String topic,
+                                       final int queueId,
+                                       final ConsumeQueueStore store,
+                                       final long minOffset,
+                                       final long maxOffset,
+                                       final long totalSize,
+                                       final List<String> groupNames) throws IOException {
+        ConsumeQueue consumeQueue = new ConsumeQueue(topic, queueId, store);
+        consumeQueue.minOffset = minOffset;
+        consumeQueue.maxOffset = maxOffset;
+        consumeQueue.storedOffset = maxOffset;
+        consumeQueue.tagsIndexFromOffset = maxOffset;
+        consumeQueue.totalSize.set(totalSize);
+
+        final int tailPageIndex = (int) (maxOffset >>> PAGE_SHIFT);
+        final long[] tailPage = consumeQueue.newPage(tailPageIndex);
+        final String[] tailMessageIdPage = consumeQueue.newMessageIdPage(tailPageIndex);
+        store.recoverTail(tailPageIndex, (int) maxOffset & PAGE_MASK, tailPage, tailMessageIdPage);
+
+        store.deleteGroupsFrom(groupNames.size());
+        for(int i = 0; i < groupNames.size(); i++) {
+            consumeQueue.groupNames.add(groupNames.get(i));
+            consumeQueue.groupStatusMap.put(groupNames.get(i), new GroupStatusTrack(store, i));
+        }
+        return consumeQueue;
+    }
+
+    /**
+     * 检查点快照
+     * @since 0.1.5
+     */
+    public static class Snapshot {
+
+        private final ConsumeQueue consumeQueue;
+
+        private final long minOffset;
+
+        private final long maxOffset;
+
+        private final long totalSize;
+
+        private final List<String> groupNames;
+
+        private final List<PageIncrement> increments;
+
+        private Snapshot(ConsumeQueue consumeQueue, long minOffset, long maxOffset, long totalSize,
+                         List<String> groupNames, List<PageIncrement> increments) {
+            this.consumeQueue = consumeQueue;
+            this.minOffset = minOffset;
+            this.maxOffset = maxOffset;
+            this.totalSize = totalSize;
+            this.groupNames = Collections.unmodifiableList(groupNames);
+            this.increments = increments;
+        }
+
+        public ConsumeQueue getConsumeQueue() {
+            return consumeQueue;
+        }
+
+        public long getMinOffset() {
+            return minOffset;
+        }
+
+        public long getMaxOffset() {
+            return maxOffset;
+        }
+
+        public long getTotalSize() {
+            return totalSize;
+        }
+
+        public List<String> getGroupNames() {
+            return groupNames;
+        }
+    }
+
+    /**
+     * 单页内新增的索引项
+     * @since 0.1.5
+     */
+    private static class PageIncrement {
+
+        private final int pageIndex;
+
+        private final int fromIndex;
+
+        private final int toIndex;
+
+        private final long[] entries;
+
+        private final String[] messageIds;
+
+        private PageIncrement(int pageIndex, int fromIndex, int toIndex, long[] entries, String[] messageIds) {
+            this.pageIndex = pageIndex;
+            this.fromIndex = fromIndex;
+            this.toIndex = toIndex;
+            this.entries = entries;
+            this.messageIds = messageIds;
+        }
+    }
+
+    public String getTopic() {
+        return topic;
+    }
+
+    public int getQueueId() {
+        return queueId;
+    }
+
+    public long getMaxOffset() {
+        return maxOffset;
+    }
+
+    public long getMinOffset() {
+        return minOffset;
+    }
+
+    public long getTotalSize() {
+        return totalSize.get();
+    }
+
+    public long getTagsIndexFromOffset() {
+        return tagsIndexFromOffset;
+    }
+
+    /**
+     * 分组过滤
+     * @since 0.1.5
+     */
+    public interface GroupFilter {
+
+        /**
+         * 分组是否会拉取指定标签编码的消息
+         * @param groupName 分组名称
+         * @param tagsCode 标签编码
+         * @return 结果
+         * @since 0.1.5
+         */
+        boolean isMatch(final String groupName, final int tagsCode);
+
+    }
+
+}
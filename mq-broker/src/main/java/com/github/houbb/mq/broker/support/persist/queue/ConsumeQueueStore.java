@@ -0,0 +1,380 @@
+package com.github.houbb.mq.broker.support.persist.queue;
+
+import com.github.houbb.log.integration.core.Log;
+import com.github.houbb.log.integration.core.LogFactory;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * 消费队列文件
+ *
+ * 目录结构：
+ * {队列标识}/{页下标}                    索引页
+ * {队列标识}/status/{分组下标}/{页下标}   分组状态页
+ *
+ * （1）索引页按照偏移量顺序追加记录：位置(8) + 大小和标签编码(8) + 写入时间(8) + 消息标识长度(4) + 消息标识
+ * （2）消息标识为 utf-8，长度 -1 表示 null，长度不受限制
+ * （3）检查点只追加上一次之后新增的索引项，只重写有修改的状态页，耗时和增量成正比
+ * （4）重启时只读取尾页，其余的页在第一次访问时加载
+ * （5）清理后整页删除文件
+ *
+ * ps: 只由检查点线程写入，加载时持有消费队列的锁
+ *
+ * @author binbin.hou
+ * @since 0.1.5
+ */
+public class ConsumeQueueStore {
+
+    private static final Log log = LogFactory.getLog(ConsumeQueueStore.class);
+
+    /**
+     * 索引项的固定部分大小
+     * @since 0.1.5
+     */
+    private static final int RECORD_FIXED_SIZE = 28;
+
+    /**
+     * 分组状态目录
+     * @since 0.1.5
+     */
+    private static final String STATUS_DIR = "status";
+
+    /**
+     * 队列目录
+     * @since 0.1.5
+     */
+    private final File dir;
+
+    /**
+     * 尾页下标，还没有写入时为 -1
+     * @since 0.1.5
+     */
+    private int tailPageIndex = -1;
+
+    /**
+     * 尾页已经写入的索引项数量
+     * @since 0.1.5
+     */
+    private int tailCount = 0;
+
+    /**
+     * 尾页文件的写入位置
+     * @since 0.1.5
+     */
+    private long tailPosition = 0;
+
+    public ConsumeQueueStore(File dir) {
+        this.dir = dir;
+    }
+
+    /**
+     * 读取索引页
+     * @param pageIndex 页下标
+     * @param count 索引项数量
+     * @param entries 索引项，每项三个 long
+     * @param messageIds 消息标识
+     * @return 读取的字节数
+     * @throws IOException 文件不存在或者内容不足
+     * @since 0.1.5
+     */
+    public long readPage(final int pageIndex,
+                         final int count,
+                         final long[] entries,
+                         final String[] messageIds) throws IOException {
+        final File file = pageFile(pageIndex);
+        long length = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 64 * 1024))) {
+            for(int i = 0; i < count; i++) {
+                entries[i * 3] = in.readLong();
+                entries[i * 3 + 1] = in.readLong();
+                entries[i * 3 + 2] = in.readLong();
+                final int idLength = in.readInt();
+                if(idLength >= 0) {
+                    byte[] idBytes = new byte[idLength];
+                    in.readFully(idBytes);
+                    messageIds[i] = new String(idBytes, StandardCharsets.UTF_8);
+                    length += RECORD_FIXED_SIZE + idLength;
+                } else {
+                    length += RECORD_FIXED_SIZE;
+                }
+            }
+        } catch (EOFException e) {
+            throw new IOException("索引页 " + file.getPath() + " 内容不足 " + count + " 项", e);
+        }
+        return length;
+    }
+
+    /**
+     * 恢复尾页
+     *
+     * （1）尾页之后的文件是宕机前未完成的检查点写入的，直接删除
+     * （2）尾页截断到检查点记录的数量，之后从这里继续追加
+     * @param pageIndex 尾页下标
+     * @param count 尾页的索引项数量
+     * @param entries 索引项
+     * @param messageIds 消息标识
+     * @throws IOException 异常
+     * @since 0.1.5
+     */
+    public void recoverTail(final int pageIndex,
+                            final int count,
+                            final long[] entries,
+                            final String[] messageIds) throws IOException {
+        for(int index : listPageIndexes(dir)) {
+            if(index > pageIndex
+                    || (index == pageIndex && count == 0)) {
+                deleteFile(pageFile(index));
+            }
+        }
+
+        this.tailPageIndex = pageIndex;
+        this.tailCount = count;
+        this.tailPosition = 0;
+        if(count > 0) {
+            this.tailPosition = readPage(pageIndex, count, entries, messageIds);
+            try (RandomAccessFile file = new RandomAccessFile(pageFile(pageIndex), "rw")) {
+                file.setLength(tailPosition);
+            }
+        }
+    }
+
+    /**
+     * 追加索引项
+     *
+     * ps: 新的页从 0 开始写入，之前未写完的尾页不再追加
+     * @param pageIndex 页下标
+     * @param fromIndex 页内开始下标（包含）
+     * @param toIndex 页内结束下标（不包含）
+     * @param entries 索引项，从 fromIndex 开始
+     * @param messageIds 消息标识，从 fromIndex 开始
+     * @throws IOException 异常
+     * @since 0.1.5
+     */
+    public void appendPage(final int pageIndex,
+                           final int fromIndex,
+                           final int toIndex,
+                           final long[] entries,
+                           final String[] messageIds) throws IOException {
+        if(pageIndex != tailPageIndex) {
+            this.tailPageIndex = pageIndex;
+            this.tailCount = 0;
+            this.tailPosition = 0;
+        }
+        if(fromIndex != tailCount) {
+            throw new IOException("索引页 " + pageIndex + " 追加位置 " + fromIndex + " 和已写入的数量 " + tailCount + " 不一致");
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream((toIndex - fromIndex) * (RECORD_FIXED_SIZE + 20));
+        DataOutputStream out = new DataOutputStream(bytes);
+        for(int i = 0; i < toIndex - fromIndex; i++) {
+            out.writeLong(entries[i * 3]);
+            out.writeLong(entries[i * 3 + 1]);
+            out.writeLong(entries[i * 3 + 2]);
+            final String messageId = messageIds[i];
+            if(messageId == null) {
+                out.writeInt(-1);
+            } else {
+                byte[] idBytes = messageId.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(idBytes.length);
+                out.write(idBytes);
+            }
+        }
+
+        ensureDir(dir);
+        final File file = pageFile(pageIndex);
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+            FileChannel channel = randomAccessFile.getChannel();
+            // 新的页可能有宕机前残留的内容
+            if(tailPosition == 0) {
+                channel.truncate(0);
+            }
+            writeFully(channel, ByteBuffer.wrap(bytes.toByteArray()), tailPosition);
+            channel.force(false);
+        }
+
+        this.tailPosition += bytes.size();
+        this.tailCount = toIndex;
+    }
+
+    /**
+     * 读取状态页
+     * @param groupIndex 分组下标
+     * @param pageIndex 页下标
+     * @param page 状态页
+     * @throws IOException 异常
+     * @since 0.1.5
+     */
+    public void readStatusPage(final int groupIndex,
+                               final int pageIndex,
+                               final byte[] page) throws IOException {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(statusPageFile(groupIndex, pageIndex)))) {
+            in.readFully(page);
+        }
+    }
+
+    /**
+     * 写入状态页，整页覆盖
+     * @param groupIndex 分组下标
+     * @param pageIndex 页下标
+     * @param page 状态页
+     * @throws IOException 异常
+     * @since 0.1.5
+     */
+    public void writeStatusPage(final int groupIndex,
+                                final int pageIndex,
+                                final byte[] page) throws IOException {
+        final File file = statusPageFile(groupIndex, pageIndex);
+        ensureDir(file.getParentFile());
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+            FileChannel channel = randomAccessFile.getChannel();
+            writeFully(channel, ByteBuffer.wrap(page), 0);
+            channel.force(false);
+        }
+    }
+
+    /**
+     * 已经写入文件的状态页下标
+     * @param groupIndex 分组下标
+     * @return 结果
+     * @since 0.1.5
+     */
+    public Set<Integer> listStatusPages(final int groupIndex) {
+        return listPageIndexes(statusDir(groupIndex));
+    }
+
+    /**
+     * 删除指定页之前的索引页和状态页
+     * @param pageEnd 结束页下标（不包含）
+     * @since 0.1.5
+     */
+    public void deletePagesBefore(final int pageEnd) {
+        for(int index : listPageIndexes(dir)) {
+            if(index < pageEnd) {
+                deleteFile(pageFile(index));
+            }
+        }
+
+        File[] groupDirs = new File(dir, STATUS_DIR).listFiles();
+        if(groupDirs == null) {
+            return;
+        }
+        for(File groupDir : groupDirs) {
+            for(int index : listPageIndexes(groupDir)) {
+                if(index < pageEnd) {
+                    deleteFile(new File(groupDir, pageName(index)));
+                }
+            }
+        }
+    }
+
+    /**
+     * 删除不在检查点中的分组状态
+     * @param groupCount 检查点中的分组数量
+     * @since 0.1.5
+     */
+    public void deleteGroupsFrom(final int groupCount) {
+        File[] groupDirs = new File(dir, STATUS_DIR).listFiles();
+        if(groupDirs == null) {
+            return;
+        }
+        for(File groupDir : groupDirs) {
+            if(parseIndex(groupDir.getName()) >= groupCount) {
+                deleteDir(groupDir);
+            }
+        }
+    }
+
+    /**
+     * 删除整个目录
+     * @param dir 目录
+     * @since 0.1.5
+     */
+    public static void deleteDir(final File dir) {
+        File[] files = dir.listFiles();
+        if(files != null) {
+            for(File file : files) {
+                deleteDir(file);
+            }
+        }
+        deleteFile(dir);
+    }
+
+    private File pageFile(final int pageIndex) {
+        return new File(dir, pageName(pageIndex));
+    }
+
+    private File statusDir(final int groupIndex) {
+        return new File(new File(dir, STATUS_DIR), String.valueOf(groupIndex));
+    }
+
+    private File statusPageFile(final int groupIndex, final int pageIndex) {
+        return new File(statusDir(groupIndex), pageName(pageIndex));
+    }
+
+    private static String pageName(final int pageIndex) {
+        return String.format("%010d", pageIndex);
+    }
+
+    private static Set<Integer> listPageIndexes(final File dir) {
+        Set<Integer> indexes = new HashSet<>();
+        File[] files = dir.listFiles();
+        if(files == null) {
+            return indexes;
+        }
+        for(File file : files) {
+            final int index = parseIndex(file.getName());
+            if(file.isFile() && index >= 0) {
+                indexes.add(index);
+            }
+        }
+        return indexes;
+    }
+
+    /**
+     * 解析文件名中的下标
+     * @param name 文件名
+     * @return 结果，不是数字时返回 -1
+     */
+    static int parseIndex(final String name) {
+        try {
+            return Integer.parseInt(name);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static void writeFully(final FileChannel channel,
+                                   final ByteBuffer byteBuffer,
+                                   final long position) throws IOException {
+        long pos = position;
+        while (byteBuffer.hasRemaining()) {
+            pos += channel.write(byteBuffer, pos);
+        }
+    }
+
+    private static void ensureDir(final File dir) throws IOException {
+        if(!dir.exists() && !dir.mkdirs() && !dir.exists()) {
+            throw new IOException("创建目录 " + dir.getPath() + " 失败");
+        }
+    }
+
+    private static void deleteFile(final File file) {
+        if(file.exists() && !file.delete()) {
+            log.warn("删除文件 {} 失败", file.getPath());
+        }
+    }
+
+}
@@ -0,0 +1,209 @@
+package com.github.houbb.mq.broker.support.persist.queue;
+
+import com.github.houbb.mq.broker.support.tag.TagRegexMatcher;
+import com.github.houbb.mq.broker.support.tag.TagRegexMatchers;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * 消费者分组游标
+ *
+ * （1）记录分组在某个 topic 消费队列上的拉取位置，拉取从这里开始
+ * （2）稍后消费的消息放入重试队列，下次拉取时优先处理
+ * （3）标签正则预先和已知的标签编码匹配，得到匹配的编码列表，拉取时直接查询倒排列表
+ *
+ * ps: 拉取时需要持有当前对象的锁。
+ *
+ * @author binbin.hou
+ * @since 0.1.5
+ */
+public class ConsumerGroupCursor {
+
+    /**
+     * 分组名称
+     * @since 0.1.5
+     */
+    private final String groupName;
+
+    /**
+     * 标签正则
+     * @since 0.1.5
+     */
+    private final String tagRegex;
+
+    /**
+     * 下一次拉取的队列偏移量
+     * @since 0.1.5
+     */
+    private long offset;
+
+    /**
+     * 重试队列
+     * @since 0.1.5
+     */
+    private final Queue<Long> retryQueue = new ConcurrentLinkedQueue<>();
+
+    /**
+     * 标签编码匹配结果缓存
+     * @since 0.1.5
+     */
+    private final Map<Integer, Boolean> matchCache = new HashMap<>();
+
+    /**
+     * 标签正则匹配
+     * @since 0.1.5
+     */
+    private final TagRegexMatcher tagRegexMatcher;
+
+    /**
+     * 匹配的标签编码
+     * @since 0.1.5
+     */
+    private int[] matchCodes = new int[8];
+
+    /**
+     * 匹配的标签编码数量
+     * @since 0.1.5
+     */
+    private int matchCodeCount = 0;
+
+    /**
+     * 已经和正则匹配过的标签编码数量
+     * @since 0.1.5
+     */
+    private int resolvedCodeCount = 0;
+
+    public ConsumerGroupCursor(String groupName, String tagRegex) {
+        this.groupName = groupName;
+        this.tagRegex = tagRegex;
+        this.tagRegexMatcher = TagRegexMatchers.of(tagRegex);
+    }
+
+    /**
+     * 和新增的标签编码匹配
+     *
+     * ps: 标签编码只增不减，每个编码只需要匹配一次
+     * @param tagsDictionary 标签字典
+     * @since 0.1.5
+     */
+    public void resolve(final TagsDictionary tagsDictionary) {
+        final int codeCount = tagsDictionary.size();
+        for(int code = resolvedCodeCount; code < codeCount; code++) {
+            if(isMatch(code, tagsDictionary)) {
+                if(matchCodeCount == matchCodes.length) {
+                    matchCodes = Arrays.copyOf(matchCodes, matchCodeCount << 1);
+                }
+                matchCodes[matchCodeCount++] = code;
+            }
+        }
+        resolvedCodeCount = Math.max(resolvedCodeCount, codeCount);
+    }
+
+    /**
+     * 是否匹配所有已知的标签编码
+     *
+     * ps: 此时倒排列表没有过滤作用，直接顺序读取
+     * @return 结果
+     * @since 0.1.5
+     */
+    public boolean isMatchAll() {
+        return matchCodeCount == resolvedCodeCount;
+    }
+
+    public int[] getMatchCodes() {
+        return matchCodes;
+    }
+
+    public int getMatchCodeCount() {
+        return matchCodeCount;
+    }
+
+    /**
+     * 标签编码是否匹配
+     * @param tagsCode 标签编码
+     * @param tagsDictionary 标签字典
+     * @return 结果
+     * @since 0.1.5
+     */
+    public boolean isMatch(final int tagsCode,
+                           final TagsDictionary tagsDictionary) {
+        Boolean match = matchCache.get(tagsCode);
+        if(match == null) {
+            match = tagRegexMatcher.isMatch(tagsDictionary.getTags(tagsCode));
+            matchCache.put(tagsCode, match);
+        }
+        return match;
+    }
+
+    /**
+     * 写入检查点
+     * @param out 输出流
+     * @param maxOffset 偏移量上限，超过的部分重启后重新拉取
+     * @throws IOException 异常
+     * @since 0.1.5
+     */
+    public void writeTo(final DataOutputStream out, final long maxOffset) throws IOException {
+        out.writeUTF(groupName);
+        out.writeBoolean(tagRegex != null);
+        if(tagRegex != null) {
+            out.writeUTF(tagRegex);
+        }
+        out.writeLong(Math.min(offset, maxOffset));
+
+        List<Long> retryList = new ArrayList<>(retryQueue);
+        out.writeInt(retryList.size());
+        for(Long retryOffset : retryList) {
+            out.writeLong(retryOffset);
+        }
+    }
+
+    /**
+     * 读取检查点
+     * @param in 输入流
+     * @return 结果
+     * @throws IOException 异常
+     * @since 0.1.5
+     */
+    public static ConsumerGroupCursor readFrom(final DataInputStream in) throws IOException {
+        final String groupName = in.readUTF();
+        final String tagRegex = in.readBoolean() ? in.readUTF() : null;
+        ConsumerGroupCursor cursor = new ConsumerGroupCursor(groupName, tagRegex);
+        cursor.offset = in.readLong();
+
+        final int retrySize = in.readInt();
+        for(int i = 0; i < retrySize; i++) {
+            cursor.retryQueue.add(in.readLong());
+        }
+        return cursor;
+    }
+
+    public String getGroupName() {
+        return groupName;
+    }
+
+    public String getTagRegex() {
+        return tagRegex;
+    }
+
+    public long getOffset() {
+        return offset;
+    }
+
+    public void setOffset(long offset) {
+        this.offset = offset;
+    }
+
+    public Queue<Long> getRetryQueue() {
+        return retryQueue;
+    }
+
+}
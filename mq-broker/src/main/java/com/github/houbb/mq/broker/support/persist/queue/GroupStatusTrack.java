@@ -0,0 +1,312 @@
+package com.github.houbb.mq.broker.support.persist.queue;
+
+import com.github.houbb.log.integration.core.Log;
+import com.github.houbb.log.integration.core.LogFactory;
+import com.github.houbb.mq.broker.resp.MqBrokerRespCode;
+import com.github.houbb.mq.common.constant.MessageStatusConst;
+import com.github.houbb.mq.common.resp.MqException;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * 消费者分组状态
+ *
+ * （1）每个分组在每个消费队列上一份，按照队列偏移量记录，每条消息占用一个字节
+ * （2）页按需分配，未分配的位置视为待消费
+ * （3）多个分组订阅同一个 topic 时，消息只存储一份，各分组只维护自己的状态
+ * （4）指定文件存储时，检查点只写入修改过的页，重启后按需加载
+ *
+ * @author binbin.hou
+ * @since 0.1.5
+ */
+public class GroupStatusTrack {
+
+    private static final Log log = LogFactory.getLog(GroupStatusTrack.class);
+
+    /**
+     * 未知状态
+     * @since 0.1.5
+     */
+    public static final byte UNKNOWN = -1;
+
+    /**
+     * 状态编码，下标即编码
+     *
+     * ps: 待消费必须为 0，和未分配的页保持一致
+     * @since 0.1.5
+     */
+    private static final String[] STATUS_ARRAY = {
+            MessageStatusConst.WAIT_CONSUMER,
+            MessageStatusConst.TO_CONSUMER_PROCESS,
+            MessageStatusConst.TO_CONSUMER_SUCCESS,
+            MessageStatusConst.TO_CONSUMER_FAILED,
+            MessageStatusConst.CONSUMER_SUCCESS,
+            MessageStatusConst.CONSUMER_FAILED,
+            MessageStatusConst.CONSUMER_LATER,
+    };
+
+    private static final byte WAIT_CONSUMER_CODE = toCode(MessageStatusConst.WAIT_CONSUMER);
+
+    private static final byte CONSUMER_LATER_CODE = toCode(MessageStatusConst.CONSUMER_LATER);
+
+    private static final byte TO_CONSUMER_PROCESS_CODE = toCode(MessageStatusConst.TO_CONSUMER_PROCESS);
+
+    private static final byte CONSUMER_SUCCESS_CODE = toCode(MessageStatusConst.CONSUMER_SUCCESS);
+
+    /**
+     * 单页大小的位移
+     * @since 0.1.5
+     */
+    private static final int PAGE_SHIFT = 14;
+
+    /**
+     * 单页大小
+     * @since 0.1.5
+     */
+    private static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+
+    /**
+     * 页内下标掩码
+     * @since 0.1.5
+     */
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+
+    /**
+     * 状态页
+     * @since 0.1.5
+     */
+    private byte[][] pages = new byte[8][];
+
+    /**
+     * 文件存储，为 null 时只保存在内存中
+     * @since 0.1.5
+     */
+    private final ConsumeQueueStore store;
+
+    /**
+     * 分组下标
+     * @since 0.1.5
+     */
+    private final int groupIndex;
+
+    /**
+     * 上一次检查点之后修改过的页
+     * @since 0.1.5
+     */
+    private final BitSet dirtyPages = new BitSet();
+
+    /**
+     * 已经写入文件、还没有加载的页
+     * @since 0.1.5
+     */
+    private final Set<Integer> storedPages;
+
+    /**
+     * 已经释放的页（不包含），之前的页不再加载
+     * @since 0.1.5
+     */
+    private int freedPageEnd = 0;
+
+    public GroupStatusTrack() {
+        this(null, 0);
+    }
+
+    public GroupStatusTrack(ConsumeQueueStore store, int groupIndex) {
+        this.store = store;
+        this.groupIndex = groupIndex;
+        this.storedPages = store == null ? new HashSet<Integer>() : store.listStatusPages(groupIndex);
+    }
+
+    /**
+     * 状态编码
+     * @param status 状态
+     * @return 结果，不存在时返回 {@link #UNKNOWN}
+     * @since 0.1.5
+     */
+    public static byte toCode(final String status) {
+        for(int i = 0; i < STATUS_ARRAY.length; i++) {
+            if(STATUS_ARRAY[i].equals(status)) {
+                return (byte) i;
+            }
+        }
+        return UNKNOWN;
+    }
+
+    /**
+     * 状态
+     * @param code 编码
+     * @return 结果
+     * @since 0.1.5
+     */
+    public static String toStatus(final byte code) {
+        return STATUS_ARRAY[code];
+    }
+
+    /**
+     * 获取状态编码
+     * @param offset 队列偏移量
+     * @return 结果
+     * @since 0.1.5
+     */
+    public synchronized byte get(final long offset) {
+        final byte[] page = page((int) (offset >>> PAGE_SHIFT), false);
+        if(page == null) {
+            return 0;
+        }
+        return page[(int) offset & PAGE_MASK];
+    }
+
+    /**
+     * 设置状态编码
+     * @param offset 队列偏移量
+     * @param code 编码
+     * @since 0.1.5
+     */
+    public synchronized void set(final long offset, final byte code) {
+        final int pageIndex = (int) (offset >>> PAGE_SHIFT);
+        page(pageIndex, true)[(int) offset & PAGE_MASK] = code;
+        if(store != null) {
+            dirtyPages.set(pageIndex);
+        }
+    }
+
+    /**
+     * 获取状态页
+     *
+     * ps: 重启后第一次访问时从文件加载
+     * @param pageIndex 页下标
+     * @param create 不存在时是否新建
+     * @return 结果
+     */
+    private byte[] page(final int pageIndex, final boolean create) {
+        if(pageIndex < pages.length
+                && pages[pageIndex] != null) {
+            return pages[pageIndex];
+        }
+
+        byte[] page = null;
+        if(pageIndex >= freedPageEnd
+                && storedPages.remove(pageIndex)) {
+            page = new byte[PAGE_SIZE];
+            try {
+                store.readStatusPage(groupIndex, pageIndex, page);
+            } catch (IOException e) {
+                log.error("加载分组 {} 状态页 {} 异常", groupIndex, pageIndex, e);
+                throw new MqException(MqBrokerRespCode.B_STORE_LOAD_FAILED);
+            }
+        } else if(create) {
+            page = new byte[PAGE_SIZE];
+        }
+        if(page == null) {
+            return null;
+        }
+
+        if(pageIndex >= pages.length) {
+            int length = pages.length;
+            while (pageIndex >= length) {
+                length <<= 1;
+            }
+            pages = Arrays.copyOf(pages, length);
+        }
+        pages[pageIndex] = page;
+        return page;
+    }
+
+    /**
+     * 是否消费成功
+     * @param offset 队列偏移量
+     * @return 结果
+     * @since 0.1.5
+     */
+    public boolean isConsumerSuccess(final long offset) {
+        return get(offset) == CONSUMER_SUCCESS_CODE;
+    }
+
+    /**
+     * 释放指定页之前的所有页
+     *
+     * ps: 页下标和消费队列一致，消费队列清理时同步释放
+     * @param pageEnd 结束页下标（不包含）
+     * @since 0.1.5
+     */
+    public synchronized void freePages(final int pageEnd) {
+        final int end = Math.min(pageEnd, pages.length);
+        for(int i = 0; i < end; i++) {
+            pages[i] = null;
+        }
+        if(pageEnd > freedPageEnd) {
+            dirtyPages.clear(0, pageEnd);
+            freedPageEnd = pageEnd;
+        }
+    }
+
+    /**
+     * 写入修改过的页
+     *
+     * （1）逐页复制后在锁外写入，写入期间不阻塞状态更新
+     * （2）最大偏移量之后的状态不写入，对应的消息重启后可能不存在
+     * （3）包含最大偏移量的页保持修改标记，下一次检查点继续写入
+     * @param maxOffset 检查点的最大偏移量（不包含）
+     * @throws IOException 异常
+     * @since 0.1.5
+     */
+    public void persist(final long maxOffset) throws IOException {
+        final BitSet writePages;
+        synchronized (this) {
+            writePages = (BitSet) dirtyPages.clone();
+            dirtyPages.clear();
+        }
+
+        for(int pageIndex = writePages.nextSetBit(0); pageIndex >= 0; pageIndex = writePages.nextSetBit(pageIndex + 1)) {
+            final long pageStart = (long) pageIndex << PAGE_SHIFT;
+            byte[] page;
+            synchronized (this) {
+                if(pageIndex < freedPageEnd
+                        || pageIndex >= pages.length
+                        || pages[pageIndex] == null) {
+                    continue;
+                }
+                page = pages[pageIndex].clone();
+                if(pageStart + PAGE_SIZE > maxOffset) {
+                    dirtyPages.set(pageIndex);
+                }
+            }
+            if(pageStart + PAGE_SIZE > maxOffset) {
+                Arrays.fill(page, (int) Math.max(0, maxOffset - pageStart), PAGE_SIZE, (byte) 0);
+            }
+
+            try {
+                store.writeStatusPage(groupIndex, pageIndex, page);
+            } catch (IOException e) {
+                // 未写入的页下一次检查点重新写入
+                writePages.clear(0, pageIndex);
+                synchronized (this) {
+                    dirtyPages.or(writePages);
+                }
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * 状态为待消费或稍后消费时，更新为处理中
+     * @param offset 队列偏移量
+     * @return 是否更新成功
+     * @since 0.1.5
+     */
+    public synchronized boolean tryProcess(final long offset) {
+        final byte code = get(offset);
+        if(code != WAIT_CONSUMER_CODE
+                && code != CONSUMER_LATER_CODE) {
+            return false;
+        }
+
+        set(offset, TO_CONSUMER_PROCESS_CODE);
+        return true;
+    }
+
+}
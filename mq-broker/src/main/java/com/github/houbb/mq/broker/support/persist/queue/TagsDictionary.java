@@ -0,0 +1,139 @@
+package com.github.houbb.mq.broker.support.persist.queue;
+
+import com.github.houbb.heaven.util.util.CollectionUtil;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 标签字典
+ *
+ * （1）相同的标签列表对应同一个编码，编码写入消费队列
+ * （2）过滤时按照编码判断，不需要读取消息体
+ *
+ * ps: 标签组合的种类通常很少，全部常驻内存。
+ *
+ * @author binbin.hou
+ * @since 0.1.5
+ */
+public class TagsDictionary {
+
+    /**
+     * 空标签编码
+     * @since 0.1.5
+     */
+    public static final int EMPTY_CODE = 0;
+
+    /**
+     * 标签列表到编码
+     * @since 0.1.5
+     */
+    private final Map<List<String>, Integer> codeMap = new ConcurrentHashMap<>();
+
+    /**
+     * 编码到标签列表，下标即编码
+     * @since 0.1.5
+     */
+    private final List<List<String>> tagsList = new CopyOnWriteArrayList<>();
+
+    public TagsDictionary() {
+        tagsList.add(Collections.<String>emptyList());
+    }
+
+    /**
+     * 获取编码，不存在则新建
+     * @param tags 标签
+     * @return 编码
+     * @since 0.1.5
+     */
+    public int getOrCreateCode(final List<String> tags) {
+        if(CollectionUtil.isEmpty(tags)) {
+            return EMPTY_CODE;
+        }
+
+        Integer code = codeMap.get(tags);
+        if(code != null) {
+            return code;
+        }
+
+        synchronized (this) {
+            code = codeMap.get(tags);
+            if(code != null) {
+                return code;
+            }
+
+            List<String> copy = Collections.unmodifiableList(new ArrayList<>(tags));
+            code = tagsList.size();
+            tagsList.add(copy);
+            codeMap.put(copy, code);
+            return code;
+        }
+    }
+
+    /**
+     * 编码数量
+     *
+     * ps: 编码从 0 开始连续分配，小于该值的编码都已经存在
+     * @return 结果
+     * @since 0.1.5
+     */
+    public int size() {
+        return tagsList.size();
+    }
+
+    /**
+     * 写入检查点
+     * @param out 输出流
+     * @throws IOException 异常
+     * @since 0.1.5
+     */
+    public synchronized void writeTo(final DataOutputStream out) throws IOException {
+        // 编码 0 为空标签，不需要写入
+        out.writeInt(tagsList.size() - 1);
+        for(int i = 1; i < tagsList.size(); i++) {
+            List<String> tags = tagsList.get(i);
+            out.writeInt(tags.size());
+            for(String tag : tags) {
+                out.writeUTF(tag);
+            }
+        }
+    }
+
+    /**
+     * 读取检查点
+     *
+     * ps: 按照写入顺序重新编码，编码保持不变
+     * @param in 输入流
+     * @throws IOException 异常
+     * @since 0.1.5
+     */
+    public void readFrom(final DataInputStream in) throws IOException {
+        final int count = in.readInt();
+        for(int i = 0; i < count; i++) {
+            final int size = in.readInt();
+            List<String> tags = new ArrayList<>(size);
+            for(int j = 0; j < size; j++) {
+                tags.add(in.readUTF());
+            }
+            getOrCreateCode(tags);
+        }
+    }
+
+    /**
+     * 获取标签
+     * @param code 编码
+     * @return 标签
+     * @since 0.1.5
+     */
+    public List<String> getTags(final int code) {
+        return tagsList.get(code);
+    }
+
+}
@@ -0,0 +1,133 @@
+package com.github.houbb.mq.broker.support.persist.queue;
+
+import java.util.Arrays;
+
+/**
+ * 标签倒排列表
+ *
+ * （1）按照写入顺序记录同一个标签编码的队列偏移量，天然有序，可以二分查找
+ * （2）按块分配，扩容时只复制块引用
+ * （3）过期清理时整块释放头部，已释放的位置读取为 -1，仍然保持有序
+ *
+ * ps: 单线程写入，多线程读取。写入完成后才发布大小。
+ *
+ * @author binbin.hou
+ * @since 0.1.5
+ */
+public class TagsOffsetList {
+
+    /**
+     * 已经释放的位置
+     * @since 0.1.5
+     */
+    public static final long REMOVED = -1;
+
+    /**
+     * 单块大小的位移
+     * @since 0.1.5
+     */
+    private static final int CHUNK_SHIFT = 10;
+
+    /**
+     * 单块大小
+     * @since 0.1.5
+     */
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+
+    /**
+     * 块内下标掩码
+     * @since 0.1.5
+     */
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    /**
+     * 块
+     * @since 0.1.5
+     */
+    private volatile long[][] chunks = new long[8][];
+
+    /**
+     * 元素个数
+     * @since 0.1.5
+     */
+    private volatile int size = 0;
+
+    /**
+     * 追加队列偏移量
+     * @param offset 队列偏移量
+     * @since 0.1.5
+     */
+    public void add(final long offset) {
+        final int index = size;
+        final int chunkIndex = index >>> CHUNK_SHIFT;
+        long[][] currentChunks = this.chunks;
+        if(chunkIndex >= currentChunks.length) {
+            currentChunks = Arrays.copyOf(currentChunks, currentChunks.length << 1);
+            this.chunks = currentChunks;
+        }
+
+        long[] chunk = currentChunks[chunkIndex];
+        if(chunk == null) {
+            chunk = new long[CHUNK_SIZE];
+            currentChunks[chunkIndex] = chunk;
+        }
+        chunk[index & CHUNK_MASK] = offset;
+
+        // 写入完成后再发布
+        this.size = index + 1;
+    }
+
+    /**
+     * 获取队列偏移量
+     * @param index 下标
+     * @return 结果，已经释放时返回 {@link #REMOVED}
+     * @since 0.1.5
+     */
+    public long get(final int index) {
+        final long[] chunk = chunks[index >>> CHUNK_SHIFT];
+        if(chunk == null) {
+            return REMOVED;
+        }
+        return chunk[index & CHUNK_MASK];
+    }
+
+    /**
+     * 第一个不小于指定偏移量的下标
+     * @param offset 队列偏移量
+     * @return 结果，不存在时返回 {@link #size()}
+     * @since 0.1.5
+     */
+    public int ceilingIndex(final long offset) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if(get(mid) < offset) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * 释放小于指定偏移量的整块
+     *
+     * ps: 写入扩容时可能复制到已释放的块引用，每次都从头检查一遍
+     * @param minOffset 最小偏移量
+     * @since 0.1.5
+     */
+    public void trimBefore(final long minOffset) {
+        final int chunkEnd = ceilingIndex(minOffset) >>> CHUNK_SHIFT;
+        final long[][] currentChunks = this.chunks;
+        for(int i = 0; i < chunkEnd; i++) {
+            currentChunks[i] = null;
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+}
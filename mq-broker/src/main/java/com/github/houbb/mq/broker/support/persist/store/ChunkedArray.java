@@ -0,0 +1,132 @@
+package com.github.houbb.mq.broker.support.persist.store;
+
+import java.util.Arrays;
+
+/**
+ * 分块数组
+ *
+ * （1）只追加写，元素按块分配，扩容时只复制块引用，不移动元素
+ * （2）写入完成后才发布大小，读取不加锁，不会读到未写完的元素
+ * （3）头部的元素可以整块释放，下标保持不变
+ *
+ * ps: 单线程写入（由调用方加锁保证），单线程释放，多线程读取。
+ *
+ * @author binbin.hou
+ * @since 0.1.5
+ * @param <E> 元素类型
+ */
+public class ChunkedArray<E> {
+
+    /**
+     * 单块元素数量的位移
+     * @since 0.1.5
+     */
+    private static final int CHUNK_SHIFT = 12;
+
+    /**
+     * 单块元素数量
+     * @since 0.1.5
+     */
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+
+    /**
+     * 块内下标掩码
+     * @since 0.1.5
+     */
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    /**
+     * 块
+     * @since 0.1.5
+     */
+    private volatile Object[][] chunks = new Object[8][];
+
+    /**
+     * 元素个数，即下一个元素的下标
+     * @since 0.1.5
+     */
+    private volatile long size = 0;
+
+    /**
+     * 已经释放的下标（不包含）
+     * @since 0.1.5
+     */
+    private long removedIndex = 0;
+
+    /**
+     * 追加元素
+     * @param element 元素
+     * @return 下标
+     * @since 0.1.5
+     */
+    public long add(final E element) {
+        final long index = size;
+        final int chunkIndex = (int) (index >>> CHUNK_SHIFT);
+        Object[][] currentChunks = this.chunks;
+        if(chunkIndex >= currentChunks.length) {
+            currentChunks = Arrays.copyOf(currentChunks, currentChunks.length << 1);
+            this.chunks = currentChunks;
+        }
+
+        Object[] chunk = currentChunks[chunkIndex];
+        if(chunk == null) {
+            chunk = new Object[CHUNK_SIZE];
+            currentChunks[chunkIndex] = chunk;
+        }
+        chunk[(int) index & CHUNK_MASK] = element;
+
+        // 写入完成后再发布
+        this.size = index + 1;
+        return index;
+    }
+
+    /**
+     * 获取元素
+     * @param index 下标
+     * @return 结果，不存在或者已经释放时返回 null
+     * @since 0.1.5
+     */
+    @SuppressWarnings("unchecked")
+    public E get(final long index) {
+        if(index < 0 || index >= size) {
+            return null;
+        }
+
+        final Object[] chunk = chunks[(int) (index >>> CHUNK_SHIFT)];
+        if(chunk == null) {
+            return null;
+        }
+        return (E) chunk[(int) index & CHUNK_MASK];
+    }
+
+    /**
+     * 释放指定下标之前的元素
+     *
+     * ps: 整块的直接释放块引用，最后不完整的块只置空元素。
+     * 写入扩容时可能复制到已释放的块引用，每次都从头检查一遍。
+     * @param toIndex 结束下标（不包含）
+     * @since 0.1.5
+     */
+    public void removeBefore(final long toIndex) {
+        final long endIndex = Math.min(toIndex, size);
+        final Object[][] currentChunks = this.chunks;
+        final int fullChunkEnd = (int) (endIndex >>> CHUNK_SHIFT);
+        for(int i = 0; i < fullChunkEnd; i++) {
+            currentChunks[i] = null;
+        }
+
+        final long startIndex = Math.max(removedIndex, (long) fullChunkEnd << CHUNK_SHIFT);
+        final Object[] chunk = fullChunkEnd < currentChunks.length ? currentChunks[fullChunkEnd] : null;
+        if(chunk != null) {
+            for(long index = startIndex; index < endIndex; index++) {
+                chunk[(int) index & CHUNK_MASK] = null;
+            }
+        }
+        this.removedIndex = Math.max(removedIndex, endIndex);
+    }
+
+    public long size() {
+        return size;
+    }
+
+}
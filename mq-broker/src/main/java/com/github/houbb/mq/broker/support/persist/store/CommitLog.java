@@ -0,0 +1,501 @@
+package com.github.houbb.mq.broker.support.persist.store;
+
+import com.github.houbb.log.integration.core.Log;
+import com.github.houbb.log.integration.core.LogFactory;
+import com.github.houbb.mq.broker.resp.MqBrokerRespCode;
+import com.github.houbb.mq.common.resp.MqException;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.zip.CRC32;
+
+/**
+ * 提交日志
+ *
+ * （1）所有 topic 的消息顺序追加到同一组定长的内存映射文件中
+ * （2）单条记录格式：totalSize(4) + magic(4) + crc(4) + body
+ * （3）当前文件剩余空间不足时，直接滚动到下一个文件
+ * （4）过期的文件从头部整体删除，当前写入的文件不会被删除
+ *
+ * @author binbin.hou
+ * @since 0.1.5
+ */
+public class CommitLog {
+
+    private static final Log log = LogFactory.getLog(CommitLog.class);
+
+    /**
+     * 记录魔数
+     * @since 0.1.5
+     */
+    public static final int MESSAGE_MAGIC = 0xAABBCCDD;
+
+    /**
+     * 记录头长度
+     * @since 0.1.5
+     */
+    public static final int HEADER_SIZE = 12;
+
+    /**
+     * 清空残留内容时，连续多少字节全部为 0 视为残留结束
+     *
+     * ps: 记录顺序追加，残留内容是截断位置之后连续的一段。宕机时页的写回顺序不确定，
+     * 中间可能有没有写回的空页，所以不在第一个全 0 的页停止
+     * @since 0.1.5
+     */
+    static final int CLEAR_ZERO_LENGTH = 1024 * 1024;
+
+    /**
+     * 存储目录
+     * @since 0.1.5
+     */
+    private final String storeDir;
+
+    /**
+     * 单个文件大小
+     * @since 0.1.5
+     */
+    private final int segmentSize;
+
+    /**
+     * 文件列表，按照起始偏移量升序
+     * @since 0.1.5
+     */
+    private final List<MappedFile> mappedFiles = new CopyOnWriteArrayList<>();
+
+    /**
+     * 当前写入的文件
+     *
+     * ps: 头部文件可能被并发删除，写入时不通过列表下标获取
+     * @since 0.1.5
+     */
+    private volatile MappedFile lastMappedFile;
+
+    /**
+     * 刷盘锁
+     *
+     * ps: 和写入使用不同的锁，刷盘期间不阻塞写入
+     * @since 0.1.5
+     */
+    private final Object flushLock = new Object();
+
+    /**
+     * 已刷盘的物理偏移量
+     * @since 0.1.5
+     */
+    private volatile long flushedOffset = 0;
+
+    public CommitLog(String storeDir, int segmentSize) {
+        this.storeDir = storeDir;
+        this.segmentSize = segmentSize;
+    }
+
+    /**
+     * 加载已有的文件，并恢复写入位置
+     *
+     * （1）起始位置之前的文件不再扫描，直接视为已写满
+     * （2）从起始位置开始逐条校验记录，并回调处理
+     * （3）遇到不完整的记录时截断，之后的文件全部删除
+     * （4）截断位置之后的残留内容全部清空
+     * @param fromOffset 扫描起始物理偏移量，通常为检查点位置
+     * @param handler 记录处理类
+     * @since 0.1.5
+     */
+    public synchronized void recover(final long fromOffset, final RecordHandler handler) {
+        File dir = new File(storeDir);
+        File[] files = dir.listFiles();
+        if(files == null || files.length == 0) {
+            return;
+        }
+
+        Arrays.sort(files);
+        for(File file : files) {
+            if(file.length() != segmentSize) {
+                log.warn("文件 {} 大小 {} 与配置 {} 不一致，忽略加载", file.getName(), file.length(), segmentSize);
+                continue;
+            }
+
+            try {
+                MappedFile mappedFile = new MappedFile(file.getPath(), segmentSize);
+                mappedFile.setWrotePosition(segmentSize);
+                mappedFile.setFlushedPosition(segmentSize);
+                mappedFiles.add(mappedFile);
+                lastMappedFile = mappedFile;
+            } catch (IOException e) {
+                log.error("加载提交日志文件 {} 异常", file.getName(), e);
+                throw new MqException(MqBrokerRespCode.B_STORE_LOAD_FAILED);
+            }
+        }
+        if(mappedFiles.isEmpty()) {
+            return;
+        }
+
+        // 定位扫描的起始文件
+        int index = 0;
+        for(int i = 0; i < mappedFiles.size(); i++) {
+            if(mappedFiles.get(i).getFileFromOffset() + segmentSize > fromOffset) {
+                index = i;
+                break;
+            }
+            index = i + 1;
+        }
+        if(index >= mappedFiles.size()) {
+            log.info("检查点 {} 之后没有需要恢复的提交日志", fromOffset);
+            this.flushedOffset = getMaxOffset();
+            return;
+        }
+
+        for(int i = index; i < mappedFiles.size(); i++) {
+            MappedFile mappedFile = mappedFiles.get(i);
+            int startPos = 0;
+            if(mappedFile.getFileFromOffset() < fromOffset) {
+                startPos = (int) (fromOffset - mappedFile.getFileFromOffset());
+            }
+
+            final boolean last = i == mappedFiles.size() - 1;
+            final boolean complete = recoverFile(mappedFile, startPos, handler, last);
+            if(!complete) {
+                // 之后的文件不可能有合法的数据
+                for(int j = mappedFiles.size() - 1; j > i; j--) {
+                    MappedFile removed = mappedFiles.remove(j);
+                    log.warn("删除截断位置之后的提交日志文件 {}", removed.getFileName());
+                    removed.destroy();
+                }
+                lastMappedFile = mappedFile;
+                break;
+            }
+        }
+
+        this.flushedOffset = getMaxOffset();
+        log.info("提交日志恢复完成，写入位置 {}", getMaxOffset());
+    }
+
+    /**
+     * 恢复单个文件
+     *
+     * （1）之后还有文件时，长度为 0 表示剩余空间不足而滚动，文件正常结束
+     * （2）最后一个文件中，长度为 0 就是写入位置，之后的残留内容全部清空
+     * （3）记录不完整时在这里截断，之后的残留内容全部清空
+     *
+     * ps: 残留内容不清空的话，新写入的较短记录结束后，旧的合法记录会在下一次恢复时重新出现
+     * @param mappedFile 文件
+     * @param startPos 起始位置
+     * @param handler 记录处理类
+     * @param last 是否为最后一个文件
+     * @return 是否完整，false 表示在这里截断
+     */
+    private boolean recoverFile(final MappedFile mappedFile,
+                                final int startPos,
+                                final RecordHandler handler,
+                                final boolean last) {
+        int pos = startPos;
+        while (pos + HEADER_SIZE <= segmentSize) {
+            final int totalSize = mappedFile.readInt(pos);
+            if(totalSize == 0) {
+                if(last) {
+                    clearTail(mappedFile, pos);
+                }
+                break;
+            }
+
+            final int magic = mappedFile.readInt(pos + 4);
+            if(totalSize <= HEADER_SIZE
+                    || magic != MESSAGE_MAGIC
+                    || pos + totalSize > segmentSize) {
+                return truncate(mappedFile, pos);
+            }
+
+            final int crc = mappedFile.readInt(pos + 8);
+            final byte[] body = mappedFile.read(pos + HEADER_SIZE, totalSize - HEADER_SIZE);
+            CRC32 crc32 = new CRC32();
+            crc32.update(body);
+            if(crc != (int) crc32.getValue()) {
+                return truncate(mappedFile, pos);
+            }
+
+            if(handler != null) {
+                handler.handle(mappedFile.getFileFromOffset() + pos, body);
+            }
+            pos += totalSize;
+        }
+
+        mappedFile.setWrotePosition(pos);
+        mappedFile.setFlushedPosition(pos);
+        return true;
+    }
+
+    private boolean truncate(final MappedFile mappedFile,
+                             final int pos) {
+        log.warn("提交日志文件 {} 位置 {} 的记录不完整，截断", mappedFile.getFileName(), pos);
+        clearTail(mappedFile, pos);
+        mappedFile.setWrotePosition(pos);
+        mappedFile.setFlushedPosition(pos);
+        return false;
+    }
+
+    /**
+     * 清空写入位置之后的残留内容
+     *
+     * ps: 只扫描到连续 {@link #CLEAR_ZERO_LENGTH} 字节全 0 的位置，不需要读完整个文件
+     * @param mappedFile 文件
+     * @param pos 写入位置
+     */
+    private void clearTail(final MappedFile mappedFile,
+                           final int pos) {
+        final int dirtyEnd = mappedFile.dirtyEnd(pos, CLEAR_ZERO_LENGTH);
+        if(dirtyEnd > pos) {
+            log.warn("清空提交日志文件 {} 写入位置 {} 之后的残留内容，结束位置 {}",
+                    mappedFile.getFileName(), pos, dirtyEnd);
+            mappedFile.clear(pos, dirtyEnd - pos);
+        }
+    }
+
+    /**
+     * 追加消息
+     * @param body 消息体
+     * @return 物理偏移量
+     * @since 0.1.5
+     */
+    public synchronized long append(final byte[] body) {
+        final int totalSize = HEADER_SIZE + body.length;
+        if(totalSize > segmentSize) {
+            log.error("消息大小 {} 超过单个文件大小 {}", totalSize, segmentSize);
+            throw new MqException(MqBrokerRespCode.B_MESSAGE_TOO_LARGE);
+        }
+
+        MappedFile mappedFile = getLastMappedFile();
+        if(mappedFile == null
+                || mappedFile.remaining() < totalSize) {
+            mappedFile = createNextMappedFile(mappedFile);
+        }
+
+        CRC32 crc32 = new CRC32();
+        crc32.update(body);
+
+        ByteBuffer record = ByteBuffer.allocate(totalSize);
+        record.putInt(totalSize);
+        record.putInt(MESSAGE_MAGIC);
+        record.putInt((int) crc32.getValue());
+        record.put(body);
+
+        int pos = mappedFile.append(record.array());
+        return mappedFile.getFileFromOffset() + pos;
+    }
+
+    /**
+     * 读取消息体
+     * @param offset 物理偏移量
+     * @return 消息体
+     * @since 0.1.5
+     */
+    public byte[] read(final long offset) {
+        MappedFile mappedFile = findMappedFile(offset);
+        if(mappedFile == null
+                || !mappedFile.hold()) {
+            return null;
+        }
+
+        try {
+            int pos = (int) (offset - mappedFile.getFileFromOffset());
+            int totalSize = mappedFile.readInt(pos);
+            return mappedFile.read(pos + HEADER_SIZE, totalSize - HEADER_SIZE);
+        } finally {
+            mappedFile.release();
+        }
+    }
+
+    /**
+     * 持有消息所在的文件
+     *
+     * ps: 成功时引用计数加一，调用方使用完成后调用 {@link MappedFile#release()}
+     * @param offset 物理偏移量
+     * @return 结果，文件不存在或者已经被删除时返回 null
+     * @since 0.1.5
+     */
+    public MappedFile holdMappedFile(final long offset) {
+        MappedFile mappedFile = findMappedFile(offset);
+        if(mappedFile == null
+                || !mappedFile.hold()) {
+            return null;
+        }
+        return mappedFile;
+    }
+
+    /**
+     * 消息体切片，不复制
+     * @param mappedFile 已经持有引用的文件
+     * @param offset 物理偏移量
+     * @return 结果
+     * @since 0.1.5
+     */
+    public ByteBuffer sliceBody(final MappedFile mappedFile, final long offset) {
+        int pos = (int) (offset - mappedFile.getFileFromOffset());
+        int totalSize = mappedFile.readInt(pos);
+        return mappedFile.slice(pos + HEADER_SIZE, totalSize - HEADER_SIZE);
+    }
+
+    /**
+     * 删除过期文件
+     *
+     * （1）从头部开始，删除结束位置不超过指定偏移量的文件
+     * （2）当前写入的文件不删除
+     * （3）不加写入锁，读取中的文件由引用计数保证释放时机
+     * @param minOffset 仍需保留的最小物理偏移量
+     * @return 删除的文件数量
+     * @since 0.1.5
+     */
+    public int deleteExpiredFiles(final long minOffset) {
+        int count = 0;
+        while (mappedFiles.size() > 1) {
+            MappedFile mappedFile = mappedFiles.get(0);
+            if(mappedFile == lastMappedFile
+                    || mappedFile.getFileFromOffset() + segmentSize > minOffset) {
+                break;
+            }
+
+            mappedFiles.remove(mappedFile);
+            mappedFile.destroy();
+            log.info("删除过期的提交日志文件 {}", mappedFile.getFileName());
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * 刷盘
+     * @return 已刷盘的物理偏移量
+     * @since 0.1.5
+     */
+    public long flush() {
+        synchronized (flushLock) {
+            // 先记录位置，这之前的内容已经全部写入
+            final long maxOffset = getMaxOffset();
+            for(MappedFile mappedFile : mappedFiles) {
+                mappedFile.flush();
+            }
+
+            this.flushedOffset = maxOffset;
+            return maxOffset;
+        }
+    }
+
+    /**
+     * 已刷盘的物理偏移量
+     * @return 结果
+     * @since 0.1.5
+     */
+    public long getFlushedOffset() {
+        return flushedOffset;
+    }
+
+    /**
+     * 关闭所有文件
+     *
+     * ps: 先刷盘，再释放所有者的引用。零拷贝拉取仍在写出的文件，由最后一个持有方释放映射内存。
+     * @since 0.1.5
+     */
+    public synchronized void close() {
+        this.flush();
+        for(MappedFile mappedFile : mappedFiles) {
+            mappedFile.close();
+        }
+        mappedFiles.clear();
+        lastMappedFile = null;
+    }
+
+    /**
+     * 根据物理偏移量查找文件
+     * @param offset 偏移量
+     * @return 结果
+     */
+    private MappedFile findMappedFile(final long offset) {
+        if(mappedFiles.isEmpty()) {
+            return null;
+        }
+
+        // 文件大小固定，可以直接计算下标
+        try {
+            MappedFile first = mappedFiles.get(0);
+            int index = (int) ((offset - first.getFileFromOffset()) / segmentSize);
+            if(index < 0) {
+                return null;
+            }
+
+            MappedFile mappedFile = mappedFiles.get(index);
+            if(isInFile(mappedFile, offset)) {
+                return mappedFile;
+            }
+        } catch (IndexOutOfBoundsException e) {
+            // 头部文件被并发删除，下标失效
+        }
+
+        for(MappedFile mappedFile : mappedFiles) {
+            if(isInFile(mappedFile, offset)) {
+                return mappedFile;
+            }
+        }
+        return null;
+    }
+
+    private boolean isInFile(final MappedFile mappedFile, final long offset) {
+        return offset >= mappedFile.getFileFromOffset()
+                && offset < mappedFile.getFileFromOffset() + segmentSize;
+    }
+
+    private MappedFile getLastMappedFile() {
+        return lastMappedFile;
+    }
+
+    private MappedFile createNextMappedFile(final MappedFile lastMappedFile) {
+        long fileFromOffset = 0;
+        if(lastMappedFile != null) {
+            fileFromOffset = lastMappedFile.getFileFromOffset() + segmentSize;
+        }
+
+        String fileName = MappedFile.buildFileName(storeDir, fileFromOffset);
+        try {
+            MappedFile mappedFile = new MappedFile(fileName, segmentSize);
+            mappedFiles.add(mappedFile);
+            this.lastMappedFile = mappedFile;
+            log.info("创建提交日志文件 {}", fileName);
+            return mappedFile;
+        } catch (IOException e) {
+            log.error("创建提交日志文件 {} 异常", fileName, e);
+            throw new MqException(MqBrokerRespCode.B_STORE_CREATE_FAILED);
+        }
+    }
+
+    /**
+     * 最大物理偏移量
+     * @return 结果
+     * @since 0.1.5
+     */
+    public long getMaxOffset() {
+        MappedFile mappedFile = getLastMappedFile();
+        if(mappedFile == null) {
+            return 0;
+        }
+        return mappedFile.getFileFromOffset() + mappedFile.getWrotePosition();
+    }
+
+    /**
+     * 记录处理类
+     * @since 0.1.5
+     */
+    public interface RecordHandler {
+
+        /**
+         * 处理记录
+         * @param offset 物理偏移量
+         * @param body 消息体
+         * @since 0.1.5
+         */
+        void handle(final long offset, final byte[] body);
+
+    }
+
+}
@@ -0,0 +1,192 @@
+package com.github.houbb.mq.broker.support.persist.store;
+
+import com.github.houbb.log.integration.core.Log;
+import com.github.houbb.log.integration.core.LogFactory;
+import com.github.houbb.mq.broker.constant.FlushDiskType;
+
+/**
+ * 提交日志刷盘服务
+ *
+ * （1）同步刷盘：写入方登记需要刷盘的位置后等待，刷盘线程一次 force 唤醒所有已经满足的写入方
+ * （2）异步刷盘：按照时间间隔刷盘，脏页达到阈值时提前唤醒
+ *
+ * @author binbin.hou
+ * @since 0.1.5
+ */
+public class CommitLogFlushService extends Thread {
+
+    private static final Log log = LogFactory.getLog(CommitLogFlushService.class);
+
+    /**
+     * 页大小
+     * @since 0.1.5
+     */
+    private static final int PAGE_SIZE = 4 * 1024;
+
+    /**
+     * 提交日志
+     * @since 0.1.5
+     */
+    private final CommitLog commitLog;
+
+    /**
+     * 刷盘方式
+     * @since 0.1.5
+     */
+    private final FlushDiskType flushDiskType;
+
+    /**
+     * 刷盘时间间隔
+     * @since 0.1.5
+     */
+    private final long flushIntervalMills;
+
+    /**
+     * 异步刷盘的脏页阈值
+     * @since 0.1.5
+     */
+    private final int flushLeastPages;
+
+    /**
+     * 等待锁
+     * @since 0.1.5
+     */
+    private final Object lock = new Object();
+
+    /**
+     * 已登记的最大刷盘位置
+     * @since 0.1.5
+     */
+    private long requestOffset = 0;
+
+    /**
+     * 是否停止
+     * @since 0.1.5
+     */
+    private volatile boolean stopped = false;
+
+    public CommitLogFlushService(CommitLog commitLog,
+                                 FlushDiskType flushDiskType,
+                                 long flushIntervalMills,
+                                 int flushLeastPages) {
+        super("CommitLogFlushService");
+        this.setDaemon(true);
+        this.commitLog = commitLog;
+        this.flushDiskType = flushDiskType;
+        this.flushIntervalMills = flushIntervalMills;
+        this.flushLeastPages = flushLeastPages;
+    }
+
+    /**
+     * 等待刷盘完成
+     * @param offset 需要刷盘的位置
+     * @param timeoutMills 超时时间
+     * @return 是否在超时前完成
+     * @since 0.1.5
+     */
+    public boolean waitForFlush(final long offset, final long timeoutMills) {
+        final long deadline = System.currentTimeMillis() + timeoutMills;
+
+        synchronized (lock) {
+            if(offset > requestOffset) {
+                requestOffset = offset;
+                lock.notifyAll();
+            }
+
+            while (commitLog.getFlushedOffset() < offset) {
+                long remainMills = deadline - System.currentTimeMillis();
+                if(remainMills <= 0 || stopped) {
+                    return false;
+                }
+
+                try {
+                    lock.wait(remainMills);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * 写入后通知
+     *
+     * ps: 异步刷盘时，脏页达到阈值则唤醒刷盘线程
+     * @since 0.1.5
+     */
+    public void onAppend() {
+        if(FlushDiskType.ASYNC_FLUSH != flushDiskType) {
+            return;
+        }
+
+        if(isDirtyEnough()) {
+            synchronized (lock) {
+                lock.notifyAll();
+            }
+        }
+    }
+
+    private boolean isDirtyEnough() {
+        final long dirtySize = commitLog.getMaxOffset() - commitLog.getFlushedOffset();
+        return dirtySize >= (long) flushLeastPages * PAGE_SIZE;
+    }
+
+    private boolean hasFlushRequest() {
+        if(FlushDiskType.SYNC_FLUSH == flushDiskType) {
+            return requestOffset > commitLog.getFlushedOffset();
+        }
+        return isDirtyEnough();
+    }
+
+    @Override
+    public void run() {
+        log.info("刷盘服务启动，刷盘方式 {}", flushDiskType);
+
+        while (!stopped) {
+            try {
+                synchronized (lock) {
+                    if(!stopped && !hasFlushRequest()) {
+                        lock.wait(flushIntervalMills);
+                    }
+                }
+
+                // 刷盘期间不持有锁，新的请求可以继续登记，下一轮一起刷盘
+                commitLog.flush();
+
+                synchronized (lock) {
+                    lock.notifyAll();
+                }
+            } catch (InterruptedException e) {
+                log.warn("刷盘服务被中断");
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                log.error("刷盘异常", e);
+            }
+        }
+
+        // 停止前最后刷盘一次
+        commitLog.flush();
+        log.info("刷盘服务停止");
+    }
+
+    /**
+     * 停止服务，并等待最后一次刷盘完成
+     * @since 0.1.5
+     */
+    public void shutdown() {
+        this.stopped = true;
+        synchronized (lock) {
+            lock.notifyAll();
+        }
+
+        try {
+            this.join(flushIntervalMills * 2);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
@@ -0,0 +1,403 @@
+package com.github.houbb.mq.broker.support.persist.store;
+
+import com.github.houbb.log.integration.core.Log;
+import com.github.houbb.log.integration.core.LogFactory;
+import io.netty.util.internal.PlatformDependent;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 内存映射文件
+ *
+ * （1）固定大小，创建时一次性映射
+ * （2）只追加写，写入位置单调递增
+ * （3）文件名为起始物理偏移量，左侧补 0 到 20 位
+ * （4）引用计数，关闭或删除时等待所有读取完成，由最后一个持有方释放映射内存
+ * （5）关闭只释放映射内存，删除才会删除文件，两者都只生效一次
+ *
+ * @author binbin.hou
+ * @since 0.1.5
+ */
+public class MappedFile {
+
+    private static final Log log = LogFactory.getLog(MappedFile.class);
+
+    /**
+     * 清空内容时使用的全 0 块
+     * @since 0.1.5
+     */
+    private static final byte[] ZERO_BLOCK = new byte[64 * 1024];
+
+    /**
+     * 文件
+     * @since 0.1.5
+     */
+    private final File file;
+
+    /**
+     * 文件大小
+     * @since 0.1.5
+     */
+    private final int fileSize;
+
+    /**
+     * 文件起始物理偏移量
+     * @since 0.1.5
+     */
+    private final long fileFromOffset;
+
+    /**
+     * 文件通道
+     * @since 0.1.5
+     */
+    private final FileChannel fileChannel;
+
+    /**
+     * 映射内存
+     * @since 0.1.5
+     */
+    private final MappedByteBuffer mappedByteBuffer;
+
+    /**
+     * 当前写入位置
+     * @since 0.1.5
+     */
+    private final AtomicInteger wrotePosition = new AtomicInteger(0);
+
+    /**
+     * 已刷盘位置
+     * @since 0.1.5
+     */
+    private final AtomicInteger flushedPosition = new AtomicInteger(0);
+
+    /**
+     * 引用计数，初始为 1，由文件的所有者持有，关闭或删除时释放
+     * @since 0.1.5
+     */
+    private final AtomicInteger refCount = new AtomicInteger(1);
+
+    /**
+     * 所有者的引用是否已经释放
+     * @since 0.1.5
+     */
+    private final AtomicBoolean ownerReleased = new AtomicBoolean(false);
+
+    /**
+     * 映射内存是否已经释放
+     * @since 0.1.5
+     */
+    private final AtomicBoolean cleaned = new AtomicBoolean(false);
+
+    /**
+     * 最后一个引用释放时是否删除文件
+     * @since 0.1.5
+     */
+    private volatile boolean deleteOnRelease = false;
+
+    public MappedFile(final String fileName, final int fileSize) throws IOException {
+        this.file = new File(fileName);
+        this.fileSize = fileSize;
+        this.fileFromOffset = Long.parseLong(this.file.getName());
+
+        ensureDirOk(this.file.getParent());
+
+        boolean ok = false;
+        RandomAccessFile randomAccessFile = new RandomAccessFile(this.file, "rw");
+        try {
+            this.fileChannel = randomAccessFile.getChannel();
+            this.mappedByteBuffer = this.fileChannel.map(FileChannel.MapMode.READ_WRITE, 0, fileSize);
+            ok = true;
+        } finally {
+            if(!ok) {
+                randomAccessFile.close();
+            }
+        }
+    }
+
+    /**
+     * 构建文件名称
+     * @param storeDir 存储目录
+     * @param fileFromOffset 起始偏移量
+     * @return 结果
+     * @since 0.1.5
+     */
+    public static String buildFileName(final String storeDir, final long fileFromOffset) {
+        return storeDir + File.separator + String.format("%020d", fileFromOffset);
+    }
+
+    private static void ensureDirOk(final String dirName) {
+        if(dirName == null) {
+            return;
+        }
+
+        File dir = new File(dirName);
+        if(!dir.exists()) {
+            boolean result = dir.mkdirs();
+            log.info("创建存储目录 {} 结果 {}", dirName, result);
+        }
+    }
+
+    /**
+     * 追加内容
+     *
+     * ps: 非线程安全，由调用方保证串行写入
+     * @param data 内容
+     * @return 写入的文件内位置，空间不足时返回 -1
+     * @since 0.1.5
+     */
+    public int append(final byte[] data) {
+        final int currentPos = wrotePosition.get();
+        if(currentPos + data.length > fileSize) {
+            return -1;
+        }
+
+        ByteBuffer byteBuffer = mappedByteBuffer.slice();
+        byteBuffer.position(currentPos);
+        byteBuffer.put(data);
+        wrotePosition.addAndGet(data.length);
+        return currentPos;
+    }
+
+    /**
+     * 读取内容
+     * @param pos 文件内位置
+     * @param size 大小
+     * @return 结果
+     * @since 0.1.5
+     */
+    public byte[] read(final int pos, final int size) {
+        byte[] bytes = new byte[size];
+        ByteBuffer byteBuffer = mappedByteBuffer.slice();
+        byteBuffer.position(pos);
+        byteBuffer.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * 内容切片，不复制
+     *
+     * ps: 切片直接引用映射内存，调用方需要持有引用
+     * @param pos 文件内位置
+     * @param size 大小
+     * @return 结果
+     * @since 0.1.5
+     */
+    public ByteBuffer slice(final int pos, final int size) {
+        ByteBuffer byteBuffer = mappedByteBuffer.slice();
+        byteBuffer.position(pos);
+        byteBuffer.limit(pos + size);
+        return byteBuffer.slice();
+    }
+
+    /**
+     * 读取 int
+     * @param pos 文件内位置
+     * @return 结果
+     * @since 0.1.5
+     */
+    public int readInt(final int pos) {
+        return mappedByteBuffer.getInt(pos);
+    }
+
+    /**
+     * 清空内容
+     *
+     * （1）用于截断不完整的记录，以及截断位置之后的残留内容
+     * （2）分块写入，不分配和清空区域一样大的数组
+     * （3）清空后立即刷盘，避免再次宕机后残留的内容重新出现
+     * @param pos 文件内位置
+     * @param size 大小
+     * @since 0.1.5
+     */
+    public void clear(final int pos, final int size) {
+        ByteBuffer byteBuffer = mappedByteBuffer.slice();
+        byteBuffer.position(pos);
+        final int end = pos + size;
+        while (byteBuffer.position() < end) {
+            final int length = Math.min(ZERO_BLOCK.length, end - byteBuffer.position());
+            byteBuffer.put(ZERO_BLOCK, 0, length);
+        }
+        mappedByteBuffer.force();
+    }
+
+    /**
+     * 指定位置之后残留内容的结束位置
+     *
+     * （1）从 pos 开始向后扫描，记录最后一个非 0 字节的结束位置
+     * （2）连续 zeroLength 字节全部为 0 时停止，不扫描到文件末尾
+     *
+     * ps: 只读取，文件中从未写入的空洞不会分配磁盘空间
+     * @param pos 文件内位置
+     * @param zeroLength 停止扫描需要的连续 0 字节长度
+     * @return 结果，之后没有残留内容时返回 pos
+     * @since 0.1.5
+     */
+    public int dirtyEnd(final int pos, final int zeroLength) {
+        int end = pos;
+        int i = pos;
+        for(; i + 8 <= fileSize && i - end < zeroLength; i += 8) {
+            if(mappedByteBuffer.getLong(i) != 0) {
+                end = i + 8;
+            }
+        }
+        for(; i < fileSize && i - end < zeroLength; i++) {
+            if(mappedByteBuffer.get(i) != 0) {
+                end = i + 1;
+            }
+        }
+        return end;
+    }
+
+    /**
+     * 刷盘
+     * @return 已刷盘位置
+     * @since 0.1.5
+     */
+    public int flush() {
+        if(!hold()) {
+            return flushedPosition.get();
+        }
+
+        try {
+            final int writePos = wrotePosition.get();
+            if(writePos > flushedPosition.get()) {
+                mappedByteBuffer.force();
+                flushedPosition.set(writePos);
+            }
+            return flushedPosition.get();
+        } finally {
+            release();
+        }
+    }
+
+    /**
+     * 增加引用
+     *
+     * ps: 读取已经可能被删除的文件前调用，返回 false 时不可以再访问
+     * @return 是否成功
+     * @since 0.1.5
+     */
+    public boolean hold() {
+        while (true) {
+            final int count = refCount.get();
+            if(count <= 0) {
+                return false;
+            }
+            if(refCount.compareAndSet(count, count + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 释放引用
+     *
+     * ps: 最后一个引用释放时释放映射内存，删除后还会删除文件
+     * @since 0.1.5
+     */
+    public void release() {
+        if(refCount.decrementAndGet() == 0) {
+            this.cleanup();
+        }
+    }
+
+    /**
+     * 剩余空间
+     * @return 结果
+     * @since 0.1.5
+     */
+    public int remaining() {
+        return fileSize - wrotePosition.get();
+    }
+
+    /**
+     * 关闭文件，保留文件内容
+     *
+     * ps: 只释放所有者的引用，还有读取未完成时，由最后一个读取方释放映射内存
+     * @since 0.1.5
+     */
+    public void close() {
+        this.releaseOwner();
+    }
+
+    /**
+     * 关闭并删除文件
+     *
+     * ps: 还有读取未完成时，由最后一个读取方释放
+     * @since 0.1.5
+     */
+    public void destroy() {
+        this.deleteOnRelease = true;
+        this.releaseOwner();
+    }
+
+    private void releaseOwner() {
+        if(ownerReleased.compareAndSet(false, true)) {
+            this.release();
+        }
+    }
+
+    /**
+     * 释放映射内存，只执行一次
+     *
+     * ps: 此时已经没有任何引用，不能再通过 {@link #flush()} 刷盘
+     */
+    private void cleanup() {
+        if(!cleaned.compareAndSet(false, true)) {
+            return;
+        }
+
+        if(!deleteOnRelease
+                && wrotePosition.get() > flushedPosition.get()) {
+            mappedByteBuffer.force();
+            flushedPosition.set(wrotePosition.get());
+        }
+        try {
+            this.fileChannel.close();
+        } catch (IOException e) {
+            log.error("关闭文件通道异常 {}", file.getName(), e);
+        }
+        PlatformDependent.freeDirectBuffer(mappedByteBuffer);
+
+        if(deleteOnRelease) {
+            boolean result = file.delete();
+            log.info("删除文件 {} 结果 {}", file.getName(), result);
+        }
+    }
+
+    public long getFileFromOffset() {
+        return fileFromOffset;
+    }
+
+    public int getFileSize() {
+        return fileSize;
+    }
+
+    public int getWrotePosition() {
+        return wrotePosition.get();
+    }
+
+    public void setWrotePosition(int wrotePosition) {
+        this.wrotePosition.set(wrotePosition);
+    }
+
+    public int getFlushedPosition() {
+        return flushedPosition.get();
+    }
+
+    public void setFlushedPosition(int flushedPosition) {
+        this.flushedPosition.set(flushedPosition);
+    }
+
+    public String getFileName() {
+        return file.getName();
+    }
+
+}
@@ -18,10 +18,10 @@ import com.github.houbb.mq.common.resp.MqCommonRespCode;
 import com.github.houbb.mq.common.resp.MqException;
 import com.github.houbb.mq.common.rpc.RpcMessageDto;
 import com.github.houbb.mq.common.support.invoke.IInvokeService;
+import com.github.houbb.mq.common.support.serializer.ISerializer;
+import com.github.houbb.mq.common.support.serializer.Serializers;
 import com.github.houbb.mq.common.util.ChannelUtil;
-import com.github.houbb.mq.common.util.DelimiterUtil;
 import com.github.houbb.sisyphus.core.core.Retryer;
-import io.netty.buffer.ByteBuf;
 import io.netty.channel.Channel;
 
 import java.util.List;
@@ -63,7 +63,11 @@ public class BrokerPushService implements IBrokerPushService {
                     final String consumerGroupName =channelGroupNameDto.getConsumerGroupName();
 
                     try {
-                        mqBrokerPersist.updateStatus(messageId, consumerGroupName, MessageStatusConst.TO_CONSUMER_PROCESS);
+                        // 分组已经处理过（比如被同组的拉取消费者取走），不再推送
+                        if(!mqBrokerPersist.prepareDelivery(messageId, consumerGroupName)) {
+                            log.info("分组 {} 消息 {} 状态不可投递，忽略推送", consumerGroupName, messageId);
+                            continue;
+                        }
 
                         String channelId = ChannelUtil.getChannelId(channel);
 
@@ -134,23 +138,27 @@ public class BrokerPushService implements IBrokerPushService {
         RpcMessageDto rpcMessageDto = new RpcMessageDto();
         rpcMessageDto.setTraceId(traceId);
         rpcMessageDto.setRequestTime(requestTime);
-        rpcMessageDto.setJson(JSON.toJSONString(commonReq));
+        // 使用消费者注册时的序列化方式
+        final ISerializer serializer = Serializers.getByChannel(channel);
+        rpcMessageDto.setBody(serializer, commonReq);
         rpcMessageDto.setMethodType(commonReq.getMethodType());
         rpcMessageDto.setRequest(true);
 
-        // 添加调用服务
-        invokeService.addRequest(traceId, respTimeoutMills);
+        // 添加调用服务，one-way 不等待响应，不需要添加
+        if(respClass != null) {
+            invokeService.addRequest(traceId, respTimeoutMills);
+        }
 
         // 遍历 channel
         // 关闭当前线程，以获取对应的信息
-        // 使用序列化的方式
-        ByteBuf byteBuf = DelimiterUtil.getMessageDelimiterBuffer(rpcMessageDto);
-
+        // 使用序列化的方式，由 pipeline 中协商好的编码写出
         //负载均衡获取 channel
-        channel.writeAndFlush(byteBuf);
+        channel.writeAndFlush(rpcMessageDto);
 
         String channelId = ChannelUtil.getChannelId(channel);
-        log.debug("[Client] channelId {} 发送消息 {}", channelId, JSON.toJSON(rpcMessageDto));
+        if(log.isDebugEnabled()) {
+            log.debug("[Client] channelId {} 发送消息 {}", channelId, rpcMessageDto);
+        }
 //        channel.closeFuture().syncUninterruptibly();
 
         if (respClass == null) {
@@ -163,8 +171,12 @@ public class BrokerPushService implements IBrokerPushService {
                 throw new MqException(MqCommonRespCode.TIMEOUT);
             }
 
-            String respJson = messageDto.getJson();
-            return JSON.parseObject(respJson, respClass);
+            byte[] respBody = messageDto.getBody();
+            if(respBody == null) {
+                return null;
+            }
+            return Serializers.getByCode(messageDto.getSerializerCode())
+                    .deserialize(respBody, respClass);
         }
     }
 
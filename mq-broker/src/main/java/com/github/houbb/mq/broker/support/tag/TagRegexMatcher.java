@@ -0,0 +1,235 @@
+package com.github.houbb.mq.broker.support.tag;
+
+import com.github.houbb.heaven.util.util.CollectionUtil;
+import com.github.houbb.log.integration.core.Log;
+import com.github.houbb.log.integration.core.LogFactory;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * 标签正则匹配
+ *
+ * （1）创建时编译一次，之后不再解析正则
+ * （2）常见的写法直接比较字符串，不经过正则：全部匹配、单个标签、多个标签的或、前缀
+ * （3）其他正则编译为 {@link Pattern}，每个标签只匹配一次，结果缓存
+ * （4）标签列表中任意一个标签匹配即视为匹配
+ *
+ * ps: 通过 {@link TagRegexMatchers#of(String)} 获取，相同的正则共用一个实例
+ *
+ * @author binbin.hou
+ * @since 0.1.5
+ */
+public class TagRegexMatcher {
+
+    private static final Log log = LogFactory.getLog(TagRegexMatcher.class);
+
+    /**
+     * 单个正则最多缓存的标签匹配结果数量
+     * @since 0.1.5
+     */
+    private static final int MAX_TAG_CACHE_SIZE = 4096;
+
+    /**
+     * 正则中的特殊字符
+     * @since 0.1.5
+     */
+    private static final String REGEX_META_CHARS = "\\.[]{}()<>*+-=!?^$|";
+
+    /**
+     * 匹配方式：都不匹配
+     * @since 0.1.5
+     */
+    private static final int MATCH_NONE = 0;
+
+    /**
+     * 匹配方式：全部匹配
+     * @since 0.1.5
+     */
+    private static final int MATCH_ALL = 1;
+
+    /**
+     * 匹配方式：标签相等
+     * @since 0.1.5
+     */
+    private static final int MATCH_LITERAL = 2;
+
+    /**
+     * 匹配方式：标签在集合中
+     * @since 0.1.5
+     */
+    private static final int MATCH_LITERAL_SET = 3;
+
+    /**
+     * 匹配方式：标签前缀
+     * @since 0.1.5
+     */
+    private static final int MATCH_PREFIX = 4;
+
+    /**
+     * 匹配方式：正则
+     * @since 0.1.5
+     */
+    private static final int MATCH_REGEX = 5;
+
+    /**
+     * 标签正则
+     * @since 0.1.5
+     */
+    private final String tagRegex;
+
+    /**
+     * 匹配方式
+     * @since 0.1.5
+     */
+    private final int matchType;
+
+    /**
+     * 标签或者前缀
+     * @since 0.1.5
+     */
+    private final String literal;
+
+    /**
+     * 标签集合
+     * @since 0.1.5
+     */
+    private final Set<String> literalSet;
+
+    /**
+     * 编译后的正则
+     * @since 0.1.5
+     */
+    private final Pattern pattern;
+
+    /**
+     * 标签匹配结果，只用于正则匹配
+     * key: 标签
+     * @since 0.1.5
+     */
+    private final Map<String, Boolean> tagMatchMap = new ConcurrentHashMap<>();
+
+    TagRegexMatcher(String tagRegex) {
+        this.tagRegex = tagRegex;
+
+        String literal = null;
+        Set<String> literalSet = null;
+        Pattern pattern = null;
+        int matchType;
+        if(tagRegex == null) {
+            matchType = MATCH_NONE;
+        } else if("*".equals(tagRegex) || ".*".equals(tagRegex)) {
+            matchType = MATCH_ALL;
+        } else if(isLiteral(tagRegex)) {
+            matchType = MATCH_LITERAL;
+            literal = tagRegex;
+        } else if(isLiteralSet(tagRegex)) {
+            matchType = MATCH_LITERAL_SET;
+            literalSet = new HashSet<>(Arrays.asList(tagRegex.split("\\|")));
+        } else if(tagRegex.endsWith(".*")
+                && isLiteral(tagRegex.substring(0, tagRegex.length() - 2))) {
+            matchType = MATCH_PREFIX;
+            literal = tagRegex.substring(0, tagRegex.length() - 2);
+        } else {
+            try {
+                pattern = Pattern.compile(tagRegex);
+                matchType = MATCH_REGEX;
+            } catch (PatternSyntaxException e) {
+                log.error("标签正则 {} 不合法，不匹配任何标签", tagRegex, e);
+                matchType = MATCH_NONE;
+            }
+        }
+
+        this.matchType = matchType;
+        this.literal = literal;
+        this.literalSet = literalSet;
+        this.pattern = pattern;
+    }
+
+    private static boolean isLiteral(final String text) {
+        for(int i = 0; i < text.length(); i++) {
+            if(REGEX_META_CHARS.indexOf(text.charAt(i)) >= 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isLiteralSet(final String text) {
+        if(text.startsWith("|") || text.endsWith("|")) {
+            return false;
+        }
+
+        for(String part : text.split("\\|")) {
+            if(part.isEmpty() || !isLiteral(part)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 标签列表是否匹配
+     * @param tags 标签列表
+     * @return 结果
+     * @since 0.1.5
+     */
+    public boolean isMatch(final List<String> tags) {
+        if(CollectionUtil.isEmpty(tags)) {
+            return false;
+        }
+
+        for(String tag : tags) {
+            if(isMatch(tag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 单个标签是否匹配
+     * @param tag 标签
+     * @return 结果
+     * @since 0.1.5
+     */
+    public boolean isMatch(final String tag) {
+        switch (matchType) {
+            case MATCH_ALL:
+                return true;
+            case MATCH_LITERAL:
+                return literal.equals(tag);
+            case MATCH_LITERAL_SET:
+                return literalSet.contains(tag);
+            case MATCH_PREFIX:
+                return tag.startsWith(literal);
+            case MATCH_REGEX:
+                return isRegexMatch(tag);
+            default:
+                return false;
+        }
+    }
+
+    private boolean isRegexMatch(final String tag) {
+        Boolean match = tagMatchMap.get(tag);
+        if(match == null) {
+            match = pattern.matcher(tag).matches();
+            // 标签过多时不再缓存，避免内存无限增长
+            if(tagMatchMap.size() < MAX_TAG_CACHE_SIZE) {
+                tagMatchMap.put(tag, match);
+            }
+        }
+        return match;
+    }
+
+    public String getTagRegex() {
+        return tagRegex;
+    }
+
+}
@@ -0,0 +1,66 @@
+package com.github.houbb.mq.broker.support.tag;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 标签正则匹配缓存
+ *
+ * （1）订阅推送和消费拉取共用，相同的正则只编译一次
+ * （2）最近最少使用淘汰，数量有上限
+ *
+ * ps: 使用方应该持有获取到的实例，淘汰只影响之后的获取
+ *
+ * @author binbin.hou
+ * @since 0.1.5
+ */
+public final class TagRegexMatchers {
+
+    private TagRegexMatchers(){}
+
+    /**
+     * 最多缓存的正则数量
+     * @since 0.1.5
+     */
+    private static final int MAX_SIZE = 1024;
+
+    /**
+     * null 对应的实例，不匹配任何标签
+     * @since 0.1.5
+     */
+    private static final TagRegexMatcher NONE = new TagRegexMatcher(null);
+
+    /**
+     * 缓存
+     * key: 标签正则
+     * @since 0.1.5
+     */
+    private static final Map<String, TagRegexMatcher> CACHE = new LinkedHashMap<String, TagRegexMatcher>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, TagRegexMatcher> eldest) {
+            return size() > MAX_SIZE;
+        }
+    };
+
+    /**
+     * 获取标签正则匹配
+     * @param tagRegex 标签正则
+     * @return 结果
+     * @since 0.1.5
+     */
+    public static TagRegexMatcher of(final String tagRegex) {
+        if(tagRegex == null) {
+            return NONE;
+        }
+
+        synchronized (CACHE) {
+            TagRegexMatcher matcher = CACHE.get(tagRegex);
+            if(matcher == null) {
+                matcher = new TagRegexMatcher(tagRegex);
+                CACHE.put(tagRegex, matcher);
+            }
+            return matcher;
+        }
+    }
+
+}
@@ -0,0 +1,291 @@
+package com.github.houbb.mq.broker.support.persist;
+
+import com.github.houbb.mq.broker.constant.FlushDiskType;
+import com.github.houbb.mq.broker.dto.persist.MqMessagePersistPut;
+import com.github.houbb.mq.broker.support.persist.queue.ConsumeQueueStore;
+import com.github.houbb.mq.common.constant.MessageStatusConst;
+import com.github.houbb.mq.common.dto.req.MqConsumerPullReq;
+import com.github.houbb.mq.common.dto.req.MqMessage;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * 提交日志持久化检查点测试
+ *
+ * @author binbin.hou
+ * @since 0.1.5
+ */
+public class CommitLogMqBrokerPersistTest {
+
+    private static final String TOPIC = "topic";
+
+    private File storeDir;
+
+    private final List<CommitLogMqBrokerPersist> persistList = new ArrayList<>();
+
+    @Before
+    public void before() throws IOException {
+        storeDir = Files.createTempDirectory("mq-persist").toFile();
+    }
+
+    @After
+    public void after() {
+        for(CommitLogMqBrokerPersist persist : persistList) {
+            persist.destroyAll();
+        }
+        ConsumeQueueStore.deleteDir(storeDir);
+    }
+
+    /**
+     * 检查点之后写入的消息从提交日志恢复，之前的消息状态、游标、标识索引从检查点恢复
+     */
+    @Test
+    public void checkpointThenRecoverTailTest() throws IOException {
+        CommitLogMqBrokerPersist persist = newPersist();
+        put(persist, "m1", "a");
+        put(persist, "m2", "b");
+        put(persist, "m3", "a");
+        Assert.assertEquals(Arrays.asList("m1", "m2", "m3"), pull(persist, "g", ".*"));
+        persist.updateStatus("m1", "g", MessageStatusConst.CONSUMER_SUCCESS);
+        persist.checkpoint();
+
+        // 检查点之后的消息，模拟宕机，不再写入检查点
+        put(persist, "m4", "b");
+
+        CommitLogMqBrokerPersist recovered = newPersist();
+        // 游标从检查点继续
+        Assert.assertEquals(Collections.singletonList("m4"), pull(recovered, "g", ".*"));
+        // 检查点之前的消息可以按照标识查询，状态保持
+        Assert.assertFalse(recovered.prepareDelivery("m1", "g"));
+        Assert.assertTrue(recovered.prepareDelivery("m1", "other"));
+        recovered.updateStatus("m2", "g", MessageStatusConst.CONSUMER_LATER);
+        Assert.assertEquals(Collections.singletonList("m2"), pull(recovered, "g", ".*"));
+        // 重启前的消息没有标签倒排列表，按照顺序读取
+        Assert.assertEquals(Arrays.asList("m2", "m4"), pull(recovered, "h", "b"));
+    }
+
+    @Test
+    public void restartTwiceTest() throws IOException {
+        CommitLogMqBrokerPersist persist = newPersist();
+        put(persist, "m1", "a");
+        put(persist, null, "a");
+        persist.destroyAll();
+        persistList.remove(persist);
+
+        CommitLogMqBrokerPersist recovered = newPersist();
+        put(recovered, "m3", "a");
+        recovered.destroyAll();
+        persistList.remove(recovered);
+
+        CommitLogMqBrokerPersist again = newPersist();
+        Assert.assertEquals(Arrays.asList("m1", null, "m3"), pull(again, "g", ".*"));
+        Assert.assertTrue(again.prepareDelivery("m3", "other"));
+    }
+
+    /**
+     * 单次拉取的大小不超过上限，放不下的消息留给下一次拉取
+     */
+    @Test
+    public void pullBytesLimitTest() {
+        CommitLogMqBrokerPersist persist = newPersist(8 * 1024 * 1024);
+        final String payload = repeat('p', AbstractMqBrokerPersist.MAX_PULL_BYTES * 3 / 8);
+        for(int i = 0; i < 5; i++) {
+            put(persist, "m" + i, "a", payload);
+        }
+
+        Assert.assertEquals(Arrays.asList("m0", "m1"), pull(persist, "g", ".*"));
+        Assert.assertEquals(Arrays.asList("m2", "m3"), pull(persist, "g", ".*"));
+        Assert.assertEquals(Collections.singletonList("m4"), pull(persist, "g", ".*"));
+
+        // 标签倒排列表同样限制
+        Assert.assertEquals(Arrays.asList("m0", "m1"), pull(persist, "h", "a"));
+        Assert.assertEquals(Arrays.asList("m2", "m3"), pull(persist, "h", "a"));
+    }
+
+    /**
+     * 消费后删除：分组标签不匹配的消息视为已经消费，不会阻塞清理
+     */
+    @Test
+    public void deleteWhenConsumedWithTagsTest() {
+        CommitLogMqBrokerPersist persist = newPersist(64 * 1024,
+                MqBrokerRetentionPolicy.newInstance().deleteWhenConsumed(true));
+        put(persist, "m1", "a");
+        put(persist, "m2", "b");
+        put(persist, "m3", "a");
+
+        Assert.assertEquals(Arrays.asList("m1", "m3"), pull(persist, "g", "a"));
+        Assert.assertEquals(Collections.singletonList("m2"), pull(persist, "h", "b"));
+        persist.updateStatus("m1", "g", MessageStatusConst.CONSUMER_SUCCESS);
+        persist.updateStatus("m3", "g", MessageStatusConst.CONSUMER_SUCCESS);
+
+        // m2 还没有被 h 消费，清理在这里停止
+        persist.cleanExpired();
+        Assert.assertFalse(persist.prepareDelivery("m1", "h"));
+        Assert.assertFalse(persist.prepareDelivery("m1", "g"));
+
+        persist.updateStatus("m2", "h", MessageStatusConst.CONSUMER_SUCCESS);
+        persist.cleanExpired();
+        Assert.assertEquals(Collections.<String>emptyList(), pull(persist, "k", ".*"));
+    }
+
+    /**
+     * 消费后删除：未消费的消息保留
+     */
+    @Test
+    public void deleteWhenConsumedStopsAtUnconsumedTest() {
+        CommitLogMqBrokerPersist persist = newPersist(64 * 1024,
+                MqBrokerRetentionPolicy.newInstance().deleteWhenConsumed(true));
+        put(persist, "m1", "a");
+        put(persist, "m2", "b");
+        put(persist, "m3", "a");
+
+        Assert.assertEquals(Arrays.asList("m1", "m3"), pull(persist, "g", "a"));
+        Assert.assertEquals(Collections.singletonList("m2"), pull(persist, "h", "b"));
+        persist.updateStatus("m1", "g", MessageStatusConst.CONSUMER_SUCCESS);
+        persist.updateStatus("m3", "g", MessageStatusConst.CONSUMER_SUCCESS);
+        persist.cleanExpired();
+
+        Assert.assertEquals(Arrays.asList("m2", "m3"), pull(persist, "k", ".*"));
+    }
+
+    /**
+     * 按照标签倒排列表拉取，结果和顺序扫描一致，包含多个标签编码和头部清理之后
+     */
+    @Test
+    public void pullByTagsIndexMatchSequentialTest() {
+        CommitLogMqBrokerPersist persist = newPersist(64 * 1024,
+                MqBrokerRetentionPolicy.newInstance().maxBytes(30 * 1024));
+        final String[] tags = new String[]{"a", "b", "c", "d", "e"};
+        final Random random = new Random(7);
+        final Map<String, String> tagMap = new HashMap<>();
+        for(int i = 0; i < 400; i++) {
+            final String messageId = String.format("m%04d", i);
+            final String tag = tags[random.nextInt(tags.length)];
+            tagMap.put(messageId, tag);
+            put(persist, messageId, tag);
+        }
+
+        // 清理前：倒排列表和顺序扫描一致
+        final List<String> firstList = new ArrayList<>();
+        for(int i = 0; i < 5; i++) {
+            firstList.addAll(pull(persist, "g", "a|c"));
+        }
+        final List<String> expectFirst = filter(pullAll(persist, "s", ".*"), tagMap, "a", "c");
+        Assert.assertEquals(expectFirst.subList(0, 50), firstList);
+
+        // 清理头部之后：剩余的消息和顺序扫描一致
+        persist.cleanExpired();
+        final List<String> remainList = pullAll(persist, "k", ".*");
+        Assert.assertTrue(remainList.size() > 0 && remainList.size() < 400);
+
+        final List<String> expectRemain = filter(remainList, tagMap, "a", "c");
+        expectRemain.removeAll(firstList);
+        Assert.assertEquals(expectRemain, pullAll(persist, "g", "a|c"));
+        Assert.assertEquals(filter(remainList, tagMap, "b", "d", "e"), pullAll(persist, "h", "b|d|e"));
+    }
+
+    private CommitLogMqBrokerPersist newPersist() {
+        return newPersist(64 * 1024);
+    }
+
+    private CommitLogMqBrokerPersist newPersist(final int segmentSize) {
+        return newPersist(segmentSize, null);
+    }
+
+    private CommitLogMqBrokerPersist newPersist(final int segmentSize,
+                                               final MqBrokerRetentionPolicy retentionPolicy) {
+        CommitLogMqBrokerPersist persist = new CommitLogMqBrokerPersist(storeDir.getPath(), segmentSize);
+        persist.init(MqBrokerPersistConfig.newInstance()
+                .flushDiskType(FlushDiskType.SYNC_FLUSH)
+                .flushIntervalMills(10)
+                .syncFlushTimeoutMills(5000)
+                .checkpointIntervalMills(3600 * 1000)
+                .retentionPolicy(retentionPolicy));
+        persistList.add(persist);
+        return persist;
+    }
+
+    private static void put(final CommitLogMqBrokerPersist persist,
+                            final String messageId,
+                            final String tag) {
+        put(persist, messageId, tag, "payload-" + messageId);
+    }
+
+    private static void put(final CommitLogMqBrokerPersist persist,
+                            final String messageId,
+                            final String tag,
+                            final String payload) {
+        MqMessage mqMessage = new MqMessage();
+        mqMessage.setTraceId(messageId);
+        mqMessage.setTopic(TOPIC);
+        mqMessage.setTags(Collections.singletonList(tag));
+        mqMessage.setPayload(payload);
+
+        MqMessagePersistPut put = new MqMessagePersistPut();
+        put.setMqMessage(mqMessage);
+        put.setMessageStatus(MessageStatusConst.WAIT_CONSUMER);
+        persist.put(put);
+    }
+
+    private static List<String> pull(final CommitLogMqBrokerPersist persist,
+                                     final String groupName,
+                                     final String tagRegex) {
+        MqConsumerPullReq pullReq = new MqConsumerPullReq();
+        pullReq.setTopicName(TOPIC);
+        pullReq.setGroupName(groupName);
+        pullReq.setTagRegex(tagRegex);
+        pullReq.setSize(10);
+
+        List<String> messageIds = new ArrayList<>();
+        for(MqMessage mqMessage : persist.pull(pullReq, null).getList()) {
+            messageIds.add(mqMessage.getTraceId());
+        }
+        return messageIds;
+    }
+
+    private static List<String> pullAll(final CommitLogMqBrokerPersist persist,
+                                        final String groupName,
+                                        final String tagRegex) {
+        List<String> messageIds = new ArrayList<>();
+        List<String> pulled;
+        while (!(pulled = pull(persist, groupName, tagRegex)).isEmpty()) {
+            messageIds.addAll(pulled);
+        }
+        return messageIds;
+    }
+
+    private static List<String> filter(final List<String> messageIds,
+                                       final Map<String, String> tagMap,
+                                       final String... tags) {
+        final List<String> tagList = Arrays.asList(tags);
+        List<String> resultList = new ArrayList<>();
+        for(String messageId : messageIds) {
+            if(tagList.contains(tagMap.get(messageId))) {
+                resultList.add(messageId);
+            }
+        }
+        return resultList;
+    }
+
+    private static String repeat(final char c, final int times) {
+        StringBuilder stringBuilder = new StringBuilder(times);
+        for(int i = 0; i < times; i++) {
+            stringBuilder.append(c);
+        }
+        return stringBuilder.toString();
+    }
+
+}
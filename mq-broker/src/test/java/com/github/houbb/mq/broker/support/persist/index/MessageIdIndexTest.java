@@ -0,0 +1,130 @@
+package com.github.houbb.mq.broker.support.persist.index;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * 消息标识索引测试
+ *
+ * @author binbin.hou
+ * @since 0.1.5
+ */
+public class MessageIdIndexTest {
+
+    /**
+     * 单个分段的槽位数量，初始容量 256 平均到 16 个分段
+     */
+    private static final int SEGMENT_CAPACITY = 16;
+
+    /**
+     * 探测链从分段末尾绕回开头，移除中间的元素后，剩余的元素都可以查到
+     */
+    @Test
+    public void removeInWrappedChainTest() {
+        // 同一个分段中，理想位置依次为 14、15、15、14、0，实际位置为 14、15、0、1、2
+        final List<String> ids = new ArrayList<>();
+        ids.add(findId(14, ids));
+        ids.add(findId(15, ids));
+        ids.add(findId(15, ids));
+        ids.add(findId(14, ids));
+        ids.add(findId(0, ids));
+
+        final Map<Long, String> locationMap = new HashMap<>();
+        MessageIdIndex index = new MessageIdIndex(SEGMENT_CAPACITY * 16);
+        for(int i = 0; i < ids.size(); i++) {
+            put(index, locationMap, ids.get(i), i);
+        }
+
+        // 移除位置 15 的元素，之后绕回的元素需要前移
+        Assert.assertTrue(index.remove(ids.get(1), MessageIdIndex.location(0, 1)));
+        Assert.assertEquals(MessageIdIndex.NOT_FOUND, get(index, locationMap, ids.get(1)));
+        for(int i : new int[]{0, 2, 3, 4}) {
+            Assert.assertEquals(MessageIdIndex.location(0, i), get(index, locationMap, ids.get(i)));
+        }
+
+        // 再移除绕回后的第一个元素
+        Assert.assertTrue(index.remove(ids.get(2), MessageIdIndex.location(0, 2)));
+        for(int i : new int[]{0, 3, 4}) {
+            Assert.assertEquals(MessageIdIndex.location(0, i), get(index, locationMap, ids.get(i)));
+        }
+        Assert.assertEquals(3, index.size());
+
+        // 位置不一致时不移除
+        Assert.assertFalse(index.remove(ids.get(0), MessageIdIndex.location(1, 0)));
+        Assert.assertEquals(3, index.size());
+    }
+
+    /**
+     * 随机放入和移除，结果和 HashMap 一致，包含扩容
+     */
+    @Test
+    public void randomPutAndRemoveTest() {
+        final Random random = new Random(42);
+        final Map<Long, String> locationMap = new HashMap<>();
+        final Map<String, Long> expectMap = new HashMap<>();
+        MessageIdIndex index = new MessageIdIndex(SEGMENT_CAPACITY * 16);
+
+        for(int i = 0; i < 20000; i++) {
+            final String messageId = "m" + random.nextInt(2000);
+            final Long location = expectMap.get(messageId);
+            if(location == null) {
+                put(index, locationMap, messageId, i);
+                expectMap.put(messageId, MessageIdIndex.location(0, i));
+            } else {
+                Assert.assertTrue(index.remove(messageId, location));
+                locationMap.remove(location);
+                expectMap.remove(messageId);
+            }
+        }
+
+        Assert.assertEquals(expectMap.size(), index.size());
+        for(int i = 0; i < 2000; i++) {
+            final String messageId = "m" + i;
+            final Long location = expectMap.get(messageId);
+            Assert.assertEquals(location == null ? MessageIdIndex.NOT_FOUND : location,
+                    get(index, locationMap, messageId));
+        }
+    }
+
+    /**
+     * 查找位于分段 0，理想位置为指定槽位的消息标识
+     */
+    private static String findId(final int slot, final List<String> exclude) {
+        for(int i = 0; ; i++) {
+            final String messageId = "id-" + i;
+            final long hash = MessageIdIndex.hash(messageId);
+            if(hash >>> 60 == 0
+                    && ((int) hash & (SEGMENT_CAPACITY - 1)) == slot
+                    && !exclude.contains(messageId)) {
+                return messageId;
+            }
+        }
+    }
+
+    private static void put(final MessageIdIndex index,
+                            final Map<Long, String> locationMap,
+                            final String messageId,
+                            final long offset) {
+        final long location = MessageIdIndex.location(0, offset);
+        index.put(messageId, location);
+        locationMap.put(location, messageId);
+    }
+
+    private static long get(final MessageIdIndex index,
+                            final Map<Long, String> locationMap,
+                            final String messageId) {
+        return index.get(messageId, new MessageIdIndex.Matcher() {
+            @Override
+            public boolean match(long location, String id) {
+                return id.equals(locationMap.get(location));
+            }
+        });
+    }
+
+}
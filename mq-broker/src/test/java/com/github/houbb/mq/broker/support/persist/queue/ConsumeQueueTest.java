@@ -0,0 +1,200 @@
+package com.github.houbb.mq.broker.support.persist.queue;
+
+import com.github.houbb.mq.common.constant.MessageStatusConst;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+/**
+ * 消费队列增量写入和恢复测试
+ *
+ * @author binbin.hou
+ * @since 0.1.5
+ */
+public class ConsumeQueueTest {
+
+    /**
+     * 单页索引项数量，和 ConsumeQueue 保持一致
+     */
+    private static final int PAGE_ENTRY_COUNT = 1 << 14;
+
+    private static final String GROUP = "group";
+
+    private static final byte SUCCESS = GroupStatusTrack.toCode(MessageStatusConst.CONSUMER_SUCCESS);
+
+    private File storeDir;
+
+    @Before
+    public void before() throws IOException {
+        storeDir = Files.createTempDirectory("mq-consumequeue").toFile();
+    }
+
+    @After
+    public void after() {
+        ConsumeQueueStore.deleteDir(storeDir);
+    }
+
+    @Test
+    public void persistAndRestoreAcrossPagesTest() throws IOException {
+        final String longId = repeat('x', 70000);
+        ConsumeQueue consumeQueue = newConsumeQueue();
+        final int count = PAGE_ENTRY_COUNT + 100;
+        for(int i = 0; i < count; i++) {
+            consumeQueue.append(i * 10L, i + 1, i % 3, messageId(i, longId), 1000L + i);
+        }
+        consumeQueue.getGroupStatus(GROUP).set(3, SUCCESS);
+        consumeQueue.getGroupStatus(GROUP).set(count - 1, SUCCESS);
+        ConsumeQueue.Snapshot snapshot = consumeQueue.snapshot();
+        consumeQueue.persist(snapshot);
+
+        ConsumeQueue restored = restore(snapshot);
+        Assert.assertEquals(count, restored.getMaxOffset());
+        Assert.assertEquals(consumeQueue.getTotalSize(), restored.getTotalSize());
+        assertEntries(restored, 0, count, longId);
+        Assert.assertEquals(SUCCESS, restored.getGroupStatus(GROUP).get(3));
+        Assert.assertEquals(SUCCESS, restored.getGroupStatus(GROUP).get(count - 1));
+        Assert.assertEquals(0, restored.getGroupStatus(GROUP).get(4));
+
+        // 恢复后继续追加，再次恢复
+        for(int i = count; i < count + 10; i++) {
+            restored.append(i * 10L, i + 1, i % 3, messageId(i, longId), 1000L + i);
+        }
+        ConsumeQueue.Snapshot nextSnapshot = restored.snapshot();
+        restored.persist(nextSnapshot);
+
+        ConsumeQueue again = restore(nextSnapshot);
+        Assert.assertEquals(count + 10, again.getMaxOffset());
+        assertEntries(again, 0, count + 10, longId);
+    }
+
+    /**
+     * 快照之后设置的状态，对应的消息重启后可能不存在，不能写入
+     */
+    @Test
+    public void statusAfterSnapshotNotPersistedTest() throws IOException {
+        ConsumeQueue consumeQueue = newConsumeQueue();
+        for(int i = 0; i < 10; i++) {
+            consumeQueue.append(i, 1, 0, "id-" + i, i);
+        }
+        GroupStatusTrack statusTrack = consumeQueue.getGroupStatus(GROUP);
+        ConsumeQueue.Snapshot snapshot = consumeQueue.snapshot();
+        consumeQueue.append(10, 1, 0, "id-10", 10);
+        statusTrack.set(2, SUCCESS);
+        statusTrack.set(10, SUCCESS);
+        consumeQueue.persist(snapshot);
+
+        ConsumeQueue restored = restore(snapshot);
+        Assert.assertEquals(10, restored.getMaxOffset());
+        Assert.assertEquals(SUCCESS, restored.getGroupStatus(GROUP).get(2));
+        Assert.assertEquals(0, restored.getGroupStatus(GROUP).get(10));
+    }
+
+    /**
+     * 检查点写入中途宕机，恢复时丢弃检查点之后追加的索引项
+     */
+    @Test
+    public void unfinishedCheckpointDiscardedTest() throws IOException {
+        ConsumeQueue consumeQueue = newConsumeQueue();
+        for(int i = 0; i < 10; i++) {
+            consumeQueue.append(i, 1, 0, "id-" + i, i);
+        }
+        ConsumeQueue.Snapshot snapshot = consumeQueue.snapshot();
+        consumeQueue.persist(snapshot);
+        for(int i = 10; i < 15; i++) {
+            consumeQueue.append(i, 1, 0, "id-" + i, i);
+        }
+        consumeQueue.persist(consumeQueue.snapshot());
+
+        ConsumeQueue restored = restore(snapshot);
+        Assert.assertEquals(10, restored.getMaxOffset());
+        restored.append(100, 1, 0, "new-10", 100);
+        ConsumeQueue.Snapshot nextSnapshot = restored.snapshot();
+        restored.persist(nextSnapshot);
+
+        ConsumeQueue again = restore(nextSnapshot);
+        Assert.assertEquals("id-9", again.getMessageId(9));
+        Assert.assertEquals("new-10", again.getMessageId(10));
+        Assert.assertEquals(100, again.getPosition(10));
+    }
+
+    @Test
+    public void truncatedPagesDeletedTest() throws IOException {
+        ConsumeQueue consumeQueue = newConsumeQueue();
+        final int count = PAGE_ENTRY_COUNT * 2 + 10;
+        for(int i = 0; i < count; i++) {
+            consumeQueue.append(i, 1, 0, "id-" + i, i);
+        }
+        consumeQueue.getGroupStatus(GROUP).set(1, SUCCESS);
+        consumeQueue.persist(consumeQueue.snapshot());
+
+        final long minOffset = PAGE_ENTRY_COUNT + 5;
+        consumeQueue.truncateHead(minOffset);
+        ConsumeQueue.Snapshot snapshot = consumeQueue.snapshot();
+        consumeQueue.persist(snapshot);
+        consumeQueue.deleteStoredPages(snapshot.getMinOffset());
+
+        File queueDir = new File(storeDir, "0");
+        Assert.assertFalse(new File(queueDir, String.format("%010d", 0)).exists());
+        Assert.assertTrue(new File(queueDir, String.format("%010d", 1)).exists());
+
+        ConsumeQueue restored = restore(snapshot);
+        Assert.assertEquals(minOffset, restored.getMinOffset());
+        Assert.assertEquals(count - minOffset, restored.getTotalSize());
+        Assert.assertEquals("id-" + minOffset, restored.getMessageId(minOffset));
+        Assert.assertEquals("id-" + (count - 1), restored.getMessageId(count - 1));
+        Assert.assertNull(restored.getMessageId(0));
+    }
+
+    private ConsumeQueue newConsumeQueue() {
+        return new ConsumeQueue("topic", 0, newStore());
+    }
+
+    private ConsumeQueueStore newStore() {
+        return new ConsumeQueueStore(new File(storeDir, "0"));
+    }
+
+    private ConsumeQueue restore(final ConsumeQueue.Snapshot snapshot) throws IOException {
+        return ConsumeQueue.restore("topic", 0, newStore(), snapshot.getMinOffset(),
+                snapshot.getMaxOffset(), snapshot.getTotalSize(), snapshot.getGroupNames());
+    }
+
+    private static void assertEntries(final ConsumeQueue consumeQueue,
+                                      final int fromOffset,
+                                      final int toOffset,
+                                      final String longId) {
+        for(int i = fromOffset; i < toOffset; i++) {
+            Assert.assertEquals(i * 10L, consumeQueue.getPosition(i));
+            Assert.assertEquals(i + 1, consumeQueue.getSize(i));
+            Assert.assertEquals(i % 3, consumeQueue.getTagsCode(i));
+            Assert.assertEquals(1000L + i, consumeQueue.getStoreTimestamp(i));
+            Assert.assertEquals(messageId(i, longId), consumeQueue.getMessageId(i));
+        }
+    }
+
+    /**
+     * 包含 null 和超过 64KB 的消息标识
+     */
+    private static String messageId(final int i, final String longId) {
+        if(i == 5) {
+            return null;
+        }
+        if(i == 7) {
+            return longId;
+        }
+        return "id-" + i;
+    }
+
+    private static String repeat(final char c, final int times) {
+        StringBuilder stringBuilder = new StringBuilder(times);
+        for(int i = 0; i < times; i++) {
+            stringBuilder.append(c);
+        }
+        return stringBuilder.toString();
+    }
+
+}
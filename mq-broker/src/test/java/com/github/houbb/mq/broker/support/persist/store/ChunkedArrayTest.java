@@ -0,0 +1,130 @@
+package com.github.houbb.mq.broker.support.persist.store;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 分块数组测试
+ *
+ * @author binbin.hou
+ * @since 0.1.5
+ */
+public class ChunkedArrayTest {
+
+    /**
+     * 单块元素数量，和 ChunkedArray 保持一致
+     */
+    private static final int CHUNK_SIZE = 1 << 12;
+
+    /**
+     * 释放位置跨越块边界
+     */
+    @Test
+    public void removeBeforeAcrossChunkTest() {
+        ChunkedArray<Long> array = new ChunkedArray<>();
+        final long count = 3L * CHUNK_SIZE + 10;
+        for(long i = 0; i < count; i++) {
+            Assert.assertEquals(i, array.add(i));
+        }
+
+        array.removeBefore(CHUNK_SIZE - 5);
+        assertRange(array, CHUNK_SIZE - 5, count);
+
+        // 从块的中间释放到下一个块的中间
+        array.removeBefore(CHUNK_SIZE + 7);
+        assertRange(array, CHUNK_SIZE + 7, count);
+
+        // 正好在块边界
+        array.removeBefore(2L * CHUNK_SIZE);
+        assertRange(array, 2L * CHUNK_SIZE, count);
+
+        // 重复或者回退的释放不影响
+        array.removeBefore(CHUNK_SIZE);
+        assertRange(array, 2L * CHUNK_SIZE, count);
+
+        // 超过大小时只释放已有的元素，之后追加的元素可以读取
+        array.removeBefore(count + 100);
+        assertRange(array, count, count);
+        Assert.assertEquals(count, array.add(count));
+        Assert.assertEquals(Long.valueOf(count), array.get(count));
+        Assert.assertEquals(count + 1, array.size());
+    }
+
+    /**
+     * 释放和扩容并发，扩容可能复制已释放的块引用，之后的释放会重新清理，
+     * 释放位置之后的元素始终可以读取
+     */
+    @Test
+    public void removeBeforeConcurrentWithGrowTest() throws InterruptedException {
+        final ChunkedArray<Long> array = new ChunkedArray<>();
+        final long count = 64L * CHUNK_SIZE;
+        final CountDownLatch startLatch = new CountDownLatch(1);
+        final AtomicReference<Throwable> error = new AtomicReference<>();
+
+        Thread writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    startLatch.await();
+                    for(long i = 0; i < count; i++) {
+                        array.add(i);
+                    }
+                } catch (Throwable e) {
+                    error.set(e);
+                }
+            }
+        });
+        Thread remover = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    startLatch.await();
+                    long toIndex = 0;
+                    while (toIndex < count / 2) {
+                        final long size = array.size();
+                        toIndex = Math.max(toIndex, size / 2);
+                        array.removeBefore(toIndex);
+
+                        // 释放位置之后的元素不受影响
+                        final long checkIndex = Math.max(toIndex, size - 1);
+                        if(checkIndex < size && array.get(checkIndex) == null) {
+                            throw new AssertionError("element " + checkIndex + " missing");
+                        }
+                    }
+                } catch (Throwable e) {
+                    error.set(e);
+                }
+            }
+        });
+
+        writer.start();
+        remover.start();
+        startLatch.countDown();
+        writer.join();
+        remover.join();
+        Assert.assertNull(error.get());
+
+        array.removeBefore(count / 2);
+        assertRange(array, count / 2, count);
+    }
+
+    /**
+     * 指定下标之前已经释放，之后的元素都存在
+     */
+    private static void assertRange(final ChunkedArray<Long> array,
+                                    final long removedIndex,
+                                    final long size) {
+        Assert.assertEquals(size, array.size());
+        for(long i = 0; i < size; i++) {
+            if(i < removedIndex) {
+                Assert.assertNull(array.get(i));
+            } else {
+                Assert.assertEquals(Long.valueOf(i), array.get(i));
+            }
+        }
+    }
+
+}
@@ -0,0 +1,273 @@
+package com.github.houbb.mq.broker.support.persist.store;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 提交日志恢复测试
+ *
+ * @author binbin.hou
+ * @since 0.1.5
+ */
+public class CommitLogTest {
+
+    private static final int SEGMENT_SIZE = 4096;
+
+    private File storeDir;
+
+    @Before
+    public void before() throws IOException {
+        storeDir = Files.createTempDirectory("mq-commitlog").toFile();
+    }
+
+    @After
+    public void after() {
+        deleteDir(storeDir);
+    }
+
+    @Test
+    public void appendAndRecoverTest() {
+        CommitLog commitLog = newCommitLog();
+        commitLog.recover(0, null);
+        final long offsetA = commitLog.append(body("a"));
+        final long offsetB = commitLog.append(body("bb"));
+        final long maxOffset = commitLog.getMaxOffset();
+        commitLog.close();
+
+        List<String> records = new ArrayList<>();
+        CommitLog recovered = recover(records);
+        Assert.assertEquals(2, records.size());
+        Assert.assertEquals(offsetA + ":a", records.get(0));
+        Assert.assertEquals(offsetB + ":bb", records.get(1));
+        Assert.assertEquals(maxOffset, recovered.getMaxOffset());
+        Assert.assertEquals("bb", new String(recovered.read(offsetB), StandardCharsets.UTF_8));
+        recovered.close();
+    }
+
+    @Test
+    public void recoverFromCheckpointOffsetTest() {
+        CommitLog commitLog = newCommitLog();
+        commitLog.recover(0, null);
+        commitLog.append(body("a"));
+        final long offsetB = commitLog.append(body("b"));
+        commitLog.close();
+
+        final List<String> records = new ArrayList<>();
+        CommitLog recovered = newCommitLog();
+        recovered.recover(offsetB, handler(records));
+        Assert.assertEquals(1, records.size());
+        Assert.assertEquals(offsetB + ":b", records.get(0));
+        recovered.close();
+    }
+
+    @Test
+    public void recoverAcrossSegmentsTest() {
+        CommitLog commitLog = newCommitLog();
+        commitLog.recover(0, null);
+        final int count = 30;
+        for(int i = 0; i < count; i++) {
+            commitLog.append(body(repeat('x', 300) + i));
+        }
+        final long maxOffset = commitLog.getMaxOffset();
+        commitLog.close();
+        Assert.assertTrue(segmentFiles().length > 1);
+
+        List<String> records = new ArrayList<>();
+        CommitLog recovered = recover(records);
+        Assert.assertEquals(count, records.size());
+        Assert.assertTrue(records.get(count - 1).endsWith(repeat('x', 300) + (count - 1)));
+        Assert.assertEquals(maxOffset, recovered.getMaxOffset());
+        recovered.close();
+    }
+
+    /**
+     * 中间的记录损坏，截断后重新写入，之后的旧记录不能重新出现
+     */
+    @Test
+    public void corruptedRecordTruncatedTest() throws IOException {
+        CommitLog commitLog = newCommitLog();
+        commitLog.recover(0, null);
+        final long offsetA = commitLog.append(body("a"));
+        final long offsetB = commitLog.append(body(repeat('b', 64)));
+        commitLog.append(body("c"));
+        commitLog.close();
+
+        // 修改 b 的消息体，crc 校验失败
+        writeBytes(offsetB + CommitLog.HEADER_SIZE, new byte[]{'z'});
+        assertRecoverThenAppend(offsetA, offsetB);
+    }
+
+    /**
+     * 最后一个文件中长度为 0 的位置即写入位置，之后的旧记录不能重新出现
+     */
+    @Test
+    public void zeroHeaderInLastSegmentTest() throws IOException {
+        CommitLog commitLog = newCommitLog();
+        commitLog.recover(0, null);
+        final long offsetA = commitLog.append(body("a"));
+        final long offsetB = commitLog.append(body(repeat('b', 64)));
+        commitLog.append(body("c"));
+        commitLog.close();
+
+        // 模拟 b 所在的页没有落盘
+        writeBytes(offsetB, new byte[4]);
+        assertRecoverThenAppend(offsetA, offsetB);
+    }
+
+    private void assertRecoverThenAppend(final long offsetA,
+                                         final long offsetB) {
+        List<String> records = new ArrayList<>();
+        CommitLog recovered = recover(records);
+        Assert.assertEquals(1, records.size());
+        Assert.assertEquals(offsetA + ":a", records.get(0));
+        Assert.assertEquals(offsetB, recovered.getMaxOffset());
+
+        // 写入位置从截断处开始，结束位置正好是旧记录 c 的开始
+        final long offsetD = recovered.append(body(repeat('d', 64)));
+        Assert.assertEquals(offsetB, offsetD);
+        recovered.close();
+
+        records.clear();
+        CommitLog again = recover(records);
+        Assert.assertEquals(2, records.size());
+        Assert.assertEquals(offsetD + ":" + repeat('d', 64), records.get(1));
+        Assert.assertEquals(offsetD + CommitLog.HEADER_SIZE + 64, again.getMaxOffset());
+        again.close();
+    }
+
+    @Test
+    public void closeWaitsForHolderTest() {
+        CommitLog commitLog = newCommitLog();
+        commitLog.recover(0, null);
+        final long offset = commitLog.append(body("hold"));
+
+        MappedFile mappedFile = commitLog.holdMappedFile(offset);
+        Assert.assertNotNull(mappedFile);
+        commitLog.close();
+
+        // 关闭后仍然持有引用，映射内存可以继续访问
+        Assert.assertEquals("hold", new String(toBytes(commitLog.sliceBody(mappedFile, offset)), StandardCharsets.UTF_8));
+        mappedFile.release();
+
+        // 最后一个引用释放后不能再持有，文件保留
+        Assert.assertFalse(mappedFile.hold());
+        Assert.assertEquals(1, segmentFiles().length);
+    }
+
+    @Test
+    public void destroyDeletesFileAfterLastReleaseTest() throws IOException {
+        final String fileName = MappedFile.buildFileName(storeDir.getPath(), 0);
+        MappedFile mappedFile = new MappedFile(fileName, SEGMENT_SIZE);
+        Assert.assertTrue(mappedFile.hold());
+
+        mappedFile.destroy();
+        Assert.assertTrue(new File(fileName).exists());
+
+        mappedFile.release();
+        Assert.assertFalse(new File(fileName).exists());
+
+        // 重复关闭不会再次释放
+        mappedFile.close();
+        mappedFile.destroy();
+    }
+
+    /**
+     * 残留内容扫描到足够长的全 0 区域后停止
+     */
+    @Test
+    public void dirtyEndStopsAtZeroRunTest() throws IOException {
+        final String fileName = MappedFile.buildFileName(storeDir.getPath(), 0);
+        final int fileSize = 64 * 1024;
+        try (RandomAccessFile file = new RandomAccessFile(fileName, "rw")) {
+            file.setLength(fileSize);
+            file.seek(100);
+            file.write(1);
+            file.seek(3000);
+            file.write(1);
+            file.seek(20000);
+            file.write(1);
+            file.seek(fileSize - 1);
+            file.write(1);
+        }
+
+        MappedFile mappedFile = new MappedFile(fileName, fileSize);
+        // 间隔小于停止长度时继续扫描，之后的内容不再读取
+        Assert.assertEquals(3008, mappedFile.dirtyEnd(0, 4096));
+        Assert.assertEquals(20008, mappedFile.dirtyEnd(0, 20 * 1024));
+        Assert.assertEquals(fileSize, mappedFile.dirtyEnd(0, fileSize));
+        Assert.assertEquals(4000, mappedFile.dirtyEnd(4000, 4096));
+        mappedFile.close();
+    }
+
+    private CommitLog newCommitLog() {
+        return new CommitLog(storeDir.getPath(), SEGMENT_SIZE);
+    }
+
+    private CommitLog recover(final List<String> records) {
+        CommitLog commitLog = newCommitLog();
+        commitLog.recover(0, handler(records));
+        return commitLog;
+    }
+
+    private CommitLog.RecordHandler handler(final List<String> records) {
+        return new CommitLog.RecordHandler() {
+            @Override
+            public void handle(long offset, byte[] body) {
+                records.add(offset + ":" + new String(body, StandardCharsets.UTF_8));
+            }
+        };
+    }
+
+    private File[] segmentFiles() {
+        return storeDir.listFiles();
+    }
+
+    private void writeBytes(final long offset, final byte[] bytes) throws IOException {
+        final long fileFromOffset = offset / SEGMENT_SIZE * SEGMENT_SIZE;
+        try (RandomAccessFile file = new RandomAccessFile(
+                MappedFile.buildFileName(storeDir.getPath(), fileFromOffset), "rw")) {
+            file.seek(offset - fileFromOffset);
+            file.write(bytes);
+        }
+    }
+
+    private static byte[] body(final String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] toBytes(final ByteBuffer byteBuffer) {
+        byte[] bytes = new byte[byteBuffer.remaining()];
+        byteBuffer.duplicate().get(bytes);
+        return bytes;
+    }
+
+    private static String repeat(final char c, final int times) {
+        StringBuilder stringBuilder = new StringBuilder(times);
+        for(int i = 0; i < times; i++) {
+            stringBuilder.append(c);
+        }
+        return stringBuilder.toString();
+    }
+
+    private static void deleteDir(final File dir) {
+        File[] files = dir.listFiles();
+        if(files != null) {
+            for(File file : files) {
+                deleteDir(file);
+            }
+        }
+        dir.delete();
+    }
+
+}
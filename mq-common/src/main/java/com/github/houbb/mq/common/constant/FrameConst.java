@@ -0,0 +1,73 @@
+package com.github.houbb.mq.common.constant;
+
+/**
+ * 帧协议常量
+ *
+ * 帧格式：魔数(2) + 版本(1) + 标识(1) + 内容长度(4) + 内容
+ *
+ * @author binbin.hou
+ * @since 0.1.5
+ */
+public final class FrameConst {
+
+    private FrameConst(){}
+
+    /**
+     * 魔数
+     *
+     * ps: 旧协议的内容以 json 的 { 开头，不会和魔数冲突
+     * @since 0.1.5
+     */
+    public static final short MAGIC = (short) 0xCAFE;
+
+    /**
+     * 版本
+     * @since 0.1.5
+     */
+    public static final byte VERSION = 1;
+
+    /**
+     * 标识：json 信封
+     * @since 0.1.5
+     */
+    public static final byte FLAG_JSON = 0;
+
+    /**
+     * 标识：二进制信封
+     * @since 0.1.5
+     */
+    public static final byte FLAG_BINARY = 1;
+
+    /**
+     * 标识字段的偏移量
+     * @since 0.1.5
+     */
+    public static final int FLAGS_OFFSET = 3;
+
+    /**
+     * 内容长度字段的偏移量
+     * @since 0.1.5
+     */
+    public static final int LENGTH_FIELD_OFFSET = 4;
+
+    /**
+     * 内容长度字段的长度
+     * @since 0.1.5
+     */
+    public static final int LENGTH_FIELD_LENGTH = 4;
+
+    /**
+     * 帧头长度
+     * @since 0.1.5
+     */
+    public static final int HEADER_LENGTH = LENGTH_FIELD_OFFSET + LENGTH_FIELD_LENGTH;
+
+    /**
+     * 最大帧长度
+     *
+     * ps: 避免把缓冲区打爆
+     * @since 0.1.5
+     */
+    public static final int MAX_FRAME_LENGTH = 16 * 1024 * 1024;
+
+}
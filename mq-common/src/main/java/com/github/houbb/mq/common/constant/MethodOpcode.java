@@ -0,0 +1,97 @@
+package com.github.houbb.mq.common.constant;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 方法类型编码
+ *
+ * （1）二进制信封中使用短整型代替方法类型字符串
+ * （2）编码即数组下标加一，只能在末尾追加，不能调整顺序
+ * （3）0 表示未知的方法类型，信封中会直接携带字符串
+ *
+ * @author binbin.hou
+ * @since 0.1.5
+ */
+public final class MethodOpcode {
+
+    private MethodOpcode(){}
+
+    /**
+     * 未知的方法类型
+     * @since 0.1.5
+     */
+    public static final short UNKNOWN = 0;
+
+    /**
+     * 方法类型，下标加一即编码
+     * @since 0.1.5
+     */
+    private static final String[] METHOD_TYPES = {
+            MethodType.P_SEND_MSG,
+            MethodType.P_SEND_MSG_ONE_WAY,
+            MethodType.P_REGISTER,
+            MethodType.P_UN_REGISTER,
+            MethodType.C_REGISTER,
+            MethodType.C_UN_REGISTER,
+            MethodType.C_SUBSCRIBE,
+            MethodType.C_UN_SUBSCRIBE,
+            MethodType.C_MESSAGE_PULL,
+            MethodType.C_HEARTBEAT,
+            MethodType.C_CONSUMER_STATUS,
+            MethodType.B_MESSAGE_PUSH,
+            MethodType.C_CONSUMER_STATUS_BATCH,
+            MethodType.P_SEND_MSG_BATCH,
+            MethodType.P_SEND_MSG_ONE_WAY_BATCH
+    };
+
+    /**
+     * 方法类型对应的编码
+     * @since 0.1.5
+     */
+    private static final Map<String, Short> OPCODE_MAP = new HashMap<>();
+
+    static {
+        for(int i = 0; i < METHOD_TYPES.length; i++) {
+            OPCODE_MAP.put(METHOD_TYPES[i], (short) (i + 1));
+        }
+    }
+
+    /**
+     * 最大的编码
+     * @return 结果
+     * @since 0.1.5
+     */
+    public static short maxOpcode() {
+        return (short) METHOD_TYPES.length;
+    }
+
+    /**
+     * 获取编码
+     * @param methodType 方法类型
+     * @return 编码，未知时返回 {@link #UNKNOWN}
+     * @since 0.1.5
+     */
+    public static short getOpcode(final String methodType) {
+        if(methodType == null) {
+            return UNKNOWN;
+        }
+
+        Short opcode = OPCODE_MAP.get(methodType);
+        return opcode == null ? UNKNOWN : opcode;
+    }
+
+    /**
+     * 获取方法类型
+     * @param opcode 编码
+     * @return 方法类型，未知时返回 null
+     * @since 0.1.5
+     */
+    public static String getMethodType(final short opcode) {
+        if(opcode <= UNKNOWN || opcode > METHOD_TYPES.length) {
+            return null;
+        }
+        return METHOD_TYPES[opcode - 1];
+    }
+
+}
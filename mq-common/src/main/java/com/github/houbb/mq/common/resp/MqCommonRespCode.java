@@ -14,6 +14,11 @@ public enum MqCommonRespCode implements RespCode {
 
     RPC_GET_RESP_FAILED("10001", "RPC 获取响应失败"),
     REGISTER_TO_BROKER_FAILED("10002", "注册到 Broker 失败"),
+    SERIALIZER_NOT_SUPPORT("10003", "不支持的序列化方式"),
+    SERIALIZE_TYPE_NOT_MATCH("10004", "序列化类型不匹配"),
+    IN_FLIGHT_WINDOW_FULL("10005", "连接上未完成的请求已满"),
+    RPC_WRITE_REQ_FAILED("10006", "RPC 请求写出失败"),
+    FRAME_TOO_LONG("10007", "帧长度超过最大值"),
 
     P_REGISTER_TO_BROKER_FAILED("P00001", "生产者注册到 Broker 失败"),
     P_INIT_FAILED("P00002", "生产者初始化失败"),
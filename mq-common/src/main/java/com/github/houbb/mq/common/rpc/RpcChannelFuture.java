@@ -14,6 +14,12 @@ public class RpcChannelFuture extends RpcAddress {
      */
     private ChannelFuture channelFuture;
 
+    /**
+     * 请求窗口，为空时不限制
+     * @since 0.1.5
+     */
+    private RpcInFlightWindow inFlightWindow;
+
     public ChannelFuture getChannelFuture() {
         return channelFuture;
     }
@@ -22,4 +28,12 @@ public class RpcChannelFuture extends RpcAddress {
         this.channelFuture = channelFuture;
     }
 
+    public RpcInFlightWindow getInFlightWindow() {
+        return inFlightWindow;
+    }
+
+    public void setInFlightWindow(RpcInFlightWindow inFlightWindow) {
+        this.inFlightWindow = inFlightWindow;
+    }
+
 }
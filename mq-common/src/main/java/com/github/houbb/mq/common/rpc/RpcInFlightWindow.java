@@ -0,0 +1,117 @@
+package com.github.houbb.mq.common.rpc;
+
+import com.github.houbb.log.integration.core.Log;
+import com.github.houbb.log.integration.core.LogFactory;
+import com.github.houbb.mq.common.resp.MqCommonRespCode;
+import com.github.houbb.mq.common.resp.MqException;
+import io.netty.channel.Channel;
+import io.netty.util.AttributeKey;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 连接上的请求窗口
+ *
+ * （1）请求写出前占用一个位置，收到响应、超时或者 one-way 写出完成后释放
+ * （2）窗口内的请求直接连续写出，不等待前一个请求的响应
+ * （3）窗口已满时，等待指定的时间，仍然没有位置则拒绝
+ *
+ * ps: 限制单个连接上未完成的请求数量，broker 变慢时客户端内存有上限
+ *
+ * @author binbin.hou
+ * @since 0.1.5
+ */
+public class RpcInFlightWindow {
+
+    private static final Log log = LogFactory.getLog(RpcInFlightWindow.class);
+
+    /**
+     * 连接对应的窗口
+     * @since 0.1.5
+     */
+    private static final AttributeKey<RpcInFlightWindow> CHANNEL_WINDOW = AttributeKey.valueOf("mq.inFlightWindow");
+
+    /**
+     * 最多未完成的请求数量
+     * @since 0.1.5
+     */
+    private final int maxInFlight;
+
+    /**
+     * 剩余位置
+     * @since 0.1.5
+     */
+    private final Semaphore semaphore;
+
+    public RpcInFlightWindow(int maxInFlight) {
+        this.maxInFlight = maxInFlight;
+        this.semaphore = new Semaphore(maxInFlight);
+    }
+
+    /**
+     * 占用一个位置
+     * @param waitMills 窗口已满时的等待时间，小于等于 0 时不等待
+     * @throws MqException 窗口已满
+     * @since 0.1.5
+     */
+    public void acquire(final long waitMills) {
+        boolean acquired;
+        try {
+            acquired = waitMills <= 0
+                    ? semaphore.tryAcquire()
+                    : semaphore.tryAcquire(waitMills, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+
+        if(!acquired) {
+            log.warn("请求窗口已满，最多未完成的请求数量 {}", maxInFlight);
+            throw new MqException(MqCommonRespCode.IN_FLIGHT_WINDOW_FULL);
+        }
+    }
+
+    /**
+     * 释放一个位置
+     * @since 0.1.5
+     */
+    public void release() {
+        semaphore.release();
+    }
+
+    /**
+     * 未完成的请求数量
+     * @return 结果
+     * @since 0.1.5
+     */
+    public int inFlight() {
+        return maxInFlight - semaphore.availablePermits();
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    /**
+     * 记录连接对应的窗口
+     * @param channel 连接
+     * @param window 窗口
+     * @since 0.1.5
+     */
+    public static void bindChannel(final Channel channel,
+                                   final RpcInFlightWindow window) {
+        channel.attr(CHANNEL_WINDOW).set(window);
+    }
+
+    /**
+     * 获取连接对应的窗口
+     * @param channel 连接
+     * @return 结果，不限制时返回 null
+     * @since 0.1.5
+     */
+    public static RpcInFlightWindow getByChannel(final Channel channel) {
+        return channel.attr(CHANNEL_WINDOW).get();
+    }
+
+}
@@ -1,14 +1,26 @@
 package com.github.houbb.mq.common.rpc;
 
+import com.alibaba.fastjson.annotation.JSONField;
+import com.github.houbb.mq.common.constant.MethodOpcode;
 import com.github.houbb.mq.common.resp.MqCommonRespCode;
+import com.github.houbb.mq.common.support.serializer.ISerializer;
+import com.github.houbb.mq.common.support.serializer.Serializers;
+import com.github.houbb.mq.common.support.serializer.impl.JsonSerializer;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.util.ReferenceCounted;
 
 import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
 
 /**
+ * 引用计数只作用于接收时的消息体缓冲区 {@link #getBodyBuf()}，没有缓冲区时释放无效。
+ *
  * @author binbin.hou
  * @since 1.0.0
  */
-public class RpcMessageDto implements Serializable {
+public class RpcMessageDto implements Serializable, ReferenceCounted {
 
     /**
      * 请求时间
@@ -25,6 +37,14 @@ public class RpcMessageDto implements Serializable {
      */
     private String methodType;
 
+    /**
+     * 方法类型编码
+     *
+     * ps: 二进制信封直接携带，json 信封按照方法类型计算一次
+     * @since 0.1.5
+     */
+    private short opcode;
+
     /**
      * 是否为请求消息
      */
@@ -36,6 +56,39 @@ public class RpcMessageDto implements Serializable {
 
     private String json;
 
+    /**
+     * 消息体原始内容
+     *
+     * ps: 二进制信封直接携带，和 json 互相按需转换，只有用到的处理器才会解析
+     * @since 0.1.5
+     */
+    private byte[] body;
+
+    /**
+     * 消息体的序列化编码
+     *
+     * ps: 只有二进制信封携带，json 信封固定为 json 序列化
+     * @since 0.1.5
+     */
+    private byte serializerCode;
+
+    /**
+     * 消息体对象
+     *
+     * ps: 发送时由帧编码直接序列化到缓冲区，不生成中间的字节数组。写出完成前不能修改。
+     * @since 0.1.5
+     */
+    private transient Object bodyObject;
+
+    /**
+     * 消息体缓冲区
+     *
+     * ps: 接收时为帧的切片，不复制。处理器处理完成后随消息释放，交给其他线程前需要 {@link #detachBody()}
+     * 发送时为已经编码好的消息体，二进制信封直接跟在信封后面写出，写出完成后随消息释放
+     * @since 0.1.5
+     */
+    private transient ByteBuf bodyBuf;
+
     public long getRequestTime() {
         return requestTime;
     }
@@ -58,6 +111,26 @@ public class RpcMessageDto implements Serializable {
 
     public void setMethodType(String methodType) {
         this.methodType = methodType;
+        this.opcode = MethodOpcode.UNKNOWN;
+    }
+
+    @JSONField(serialize = false, deserialize = false)
+    public short getOpcode() {
+        if(opcode == MethodOpcode.UNKNOWN && methodType != null) {
+            opcode = MethodOpcode.getOpcode(methodType);
+        }
+        return opcode;
+    }
+
+    /**
+     * 设置方法类型编码，同时设置方法类型
+     * @param opcode 编码
+     * @since 0.1.5
+     */
+    @JSONField(serialize = false, deserialize = false)
+    public void setOpcode(short opcode) {
+        this.methodType = MethodOpcode.getMethodType(opcode);
+        this.opcode = opcode;
     }
 
     public boolean isRequest() {
@@ -85,11 +158,173 @@ public class RpcMessageDto implements Serializable {
     }
 
     public String getJson() {
+        if(json == null) {
+            final byte[] bytes = getBody();
+            if(bytes != null) {
+                json = new String(bytes, StandardCharsets.UTF_8);
+            }
+        }
         return json;
     }
 
     public void setJson(String json) {
         this.json = json;
+        this.body = null;
+        this.bodyObject = null;
+    }
+
+    @JSONField(serialize = false, deserialize = false)
+    public byte[] getBody() {
+        if(body == null) {
+            if(bodyObject != null) {
+                body = Serializers.getByCode(serializerCode).serialize(bodyObject);
+            } else if(bodyBuf != null) {
+                body = ByteBufUtil.getBytes(bodyBuf);
+            } else if(json != null) {
+                body = json.getBytes(StandardCharsets.UTF_8);
+            }
+        }
+        return body;
+    }
+
+    @JSONField(serialize = false, deserialize = false)
+    public void setBody(byte[] body) {
+        this.body = body;
+        this.json = null;
+        this.bodyObject = null;
+    }
+
+    /**
+     * 设置消息体对象，写出时再序列化
+     * @param serializer 序列化
+     * @param bodyObject 消息体对象
+     * @since 0.1.5
+     */
+    public void setBody(ISerializer serializer, Object bodyObject) {
+        this.bodyObject = bodyObject;
+        this.serializerCode = serializer.code();
+        this.body = null;
+        this.json = null;
+    }
+
+    @JSONField(serialize = false, deserialize = false)
+    public Object getBodyObject() {
+        return bodyObject;
+    }
+
+    /**
+     * 消息体的只读视图，用于直接反序列化
+     *
+     * ps: 读取不影响消息本身，不需要释放
+     * @return 结果，没有消息体时返回 null
+     * @since 0.1.5
+     */
+    @JSONField(serialize = false, deserialize = false)
+    public ByteBuf getBodyBuf() {
+        if(bodyBuf != null) {
+            return bodyBuf.duplicate();
+        }
+
+        final byte[] bytes = getBody();
+        if(bytes == null) {
+            return null;
+        }
+        return Unpooled.wrappedBuffer(bytes);
+    }
+
+    /**
+     * 设置消息体缓冲区，接管引用
+     * @param bodyBuf 缓冲区
+     * @since 0.1.5
+     */
+    @JSONField(serialize = false, deserialize = false)
+    public void setBodyBuf(ByteBuf bodyBuf) {
+        this.bodyBuf = bodyBuf;
+        this.body = null;
+        this.json = null;
+        this.bodyObject = null;
+    }
+
+    /**
+     * 是否持有消息体缓冲区
+     * @return 结果
+     * @since 0.1.5
+     */
+    public boolean hasBodyBuf() {
+        return bodyBuf != null;
+    }
+
+    /**
+     * 把消息体复制到堆内存，释放缓冲区
+     *
+     * ps: 消息交给其他线程，处理器返回后仍然需要读取时使用
+     * @since 0.1.5
+     */
+    public void detachBody() {
+        if(bodyBuf == null) {
+            return;
+        }
+
+        getBody();
+        bodyBuf.release();
+        bodyBuf = null;
+    }
+
+    @Override
+    public int refCnt() {
+        return bodyBuf == null ? 1 : bodyBuf.refCnt();
+    }
+
+    @Override
+    public RpcMessageDto retain() {
+        if(bodyBuf != null) {
+            bodyBuf.retain();
+        }
+        return this;
+    }
+
+    @Override
+    public RpcMessageDto retain(int increment) {
+        if(bodyBuf != null) {
+            bodyBuf.retain(increment);
+        }
+        return this;
+    }
+
+    @Override
+    public RpcMessageDto touch() {
+        if(bodyBuf != null) {
+            bodyBuf.touch();
+        }
+        return this;
+    }
+
+    @Override
+    public RpcMessageDto touch(Object hint) {
+        if(bodyBuf != null) {
+            bodyBuf.touch(hint);
+        }
+        return this;
+    }
+
+    @Override
+    public boolean release() {
+        return bodyBuf != null && bodyBuf.release();
+    }
+
+    @Override
+    public boolean release(int decrement) {
+        return bodyBuf != null && bodyBuf.release(decrement);
+    }
+
+    @JSONField(serialize = false, deserialize = false)
+    public byte getSerializerCode() {
+        return serializerCode;
+    }
+
+    @JSONField(serialize = false, deserialize = false)
+    public void setSerializerCode(byte serializerCode) {
+        this.serializerCode = serializerCode;
     }
 
     public static RpcMessageDto timeout() {
@@ -100,6 +335,16 @@ public class RpcMessageDto implements Serializable {
         return dto;
     }
 
+    private int getBodyLength() {
+        if(body != null) {
+            return body.length;
+        }
+        if(bodyBuf != null) {
+            return bodyBuf.readableBytes();
+        }
+        return -1;
+    }
+
     @Override
     public String toString() {
         return "RpcMessageDto{" +
@@ -109,7 +354,10 @@ public class RpcMessageDto implements Serializable {
                 ", isRequest=" + isRequest +
                 ", respCode='" + respCode + '\'' +
                 ", respMsg='" + respMsg + '\'' +
-                ", json='" + json + '\'' +
+                ", serializerCode=" + serializerCode +
+                (serializerCode == JsonSerializer.CODE
+                        ? ", json='" + getJson() + '\''
+                        : ", bodyLength=" + getBodyLength()) +
                 '}';
     }
 
@@ -0,0 +1,44 @@
+package com.github.houbb.mq.common.support.frame;
+
+import com.github.houbb.mq.common.rpc.RpcMessageDto;
+import com.github.houbb.mq.common.util.DelimiterUtil;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.MessageToMessageEncoder;
+
+import java.util.List;
+
+/**
+ * 分隔符帧编码
+ *
+ * ps: 兼容旧的客户端，{@link RpcMessageDto} 编码为 json 信封，在内容后面追加分隔符
+ *
+ * @author binbin.hou
+ * @since 0.1.5
+ */
+@ChannelHandler.Sharable
+public class DelimiterFrameEncoder extends MessageToMessageEncoder<RpcMessageDto> {
+
+    /**
+     * 单例
+     * @since 0.1.5
+     */
+    public static final DelimiterFrameEncoder INSTANCE = new DelimiterFrameEncoder();
+
+    @Override
+    protected void encode(ChannelHandlerContext ctx, RpcMessageDto msg, List<Object> out) throws Exception {
+        // 信封和分隔符写入同一个池化缓冲区
+        ByteBuf byteBuf = ctx.alloc().ioBuffer();
+        try {
+            RpcMessageCodec.encodeJson(msg, byteBuf);
+            byteBuf.writeBytes(DelimiterUtil.DELIMITER_BUF, DelimiterUtil.DELIMITER_BUF.readerIndex(),
+                    DelimiterUtil.DELIMITER_BUF.readableBytes());
+        } catch (Exception e) {
+            byteBuf.release();
+            throw e;
+        }
+        out.add(byteBuf);
+    }
+
+}
@@ -0,0 +1,43 @@
+package com.github.houbb.mq.common.support.frame;
+
+import com.github.houbb.log.integration.core.Log;
+import com.github.houbb.log.integration.core.LogFactory;
+import com.github.houbb.mq.common.rpc.RpcMessageDto;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.MessageToMessageDecoder;
+import io.netty.util.CharsetUtil;
+
+import java.util.List;
+
+/**
+ * json 信封解码
+ *
+ * ps: 用于旧的分隔符帧，解析失败时丢弃当前帧
+ *
+ * @author binbin.hou
+ * @since 0.1.5
+ */
+@ChannelHandler.Sharable
+public class JsonRpcMessageDecoder extends MessageToMessageDecoder<ByteBuf> {
+
+    private static final Log log = LogFactory.getLog(JsonRpcMessageDecoder.class);
+
+    /**
+     * 单例
+     * @since 0.1.5
+     */
+    public static final JsonRpcMessageDecoder INSTANCE = new JsonRpcMessageDecoder();
+
+    @Override
+    protected void decode(ChannelHandlerContext ctx, ByteBuf msg, List<Object> out) throws Exception {
+        try {
+            RpcMessageDto rpcMessageDto = RpcMessageCodec.decodeJson(msg);
+            out.add(rpcMessageDto);
+        } catch (Exception exception) {
+            log.error("RpcMessageDto json 格式转换异常 {}", msg.toString(CharsetUtil.UTF_8));
+        }
+    }
+
+}
@@ -0,0 +1,68 @@
+package com.github.houbb.mq.common.support.frame;
+
+import com.github.houbb.log.integration.core.Log;
+import com.github.houbb.log.integration.core.LogFactory;
+import com.github.houbb.mq.common.constant.FrameConst;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
+
+/**
+ * 长度前缀帧解码
+ *
+ * （1）校验魔数和版本，不合法直接抛出异常
+ * （2）根据标识解析二进制或者 json 信封，输出 {@link com.github.houbb.mq.common.rpc.RpcMessageDto}
+ * （3）消息体为帧的切片，不复制，由处理器处理完成后释放
+ * （4）信封解析失败时丢弃当前帧
+ *
+ * @author binbin.hou
+ * @since 0.1.5
+ */
+public class MqFrameDecoder extends LengthFieldBasedFrameDecoder {
+
+    private static final Log log = LogFactory.getLog(MqFrameDecoder.class);
+
+    public MqFrameDecoder() {
+        super(FrameConst.MAX_FRAME_LENGTH,
+                FrameConst.LENGTH_FIELD_OFFSET,
+                FrameConst.LENGTH_FIELD_LENGTH,
+                0,
+                0);
+    }
+
+    @Override
+    protected Object decode(ChannelHandlerContext ctx, ByteBuf in) throws Exception {
+        if(in.readableBytes() >= FrameConst.LENGTH_FIELD_OFFSET) {
+            final int readerIndex = in.readerIndex();
+            short magic = in.getShort(readerIndex);
+            if(magic != FrameConst.MAGIC) {
+                throw new CorruptedFrameException("帧魔数不合法: " + magic);
+            }
+            byte version = in.getByte(readerIndex + 2);
+            if(version != FrameConst.VERSION) {
+                throw new CorruptedFrameException("帧版本不支持: " + version);
+            }
+        }
+
+        ByteBuf frame = (ByteBuf) super.decode(ctx, in);
+        if(frame == null) {
+            return null;
+        }
+
+        try {
+            final byte flags = frame.getByte(frame.readerIndex() + FrameConst.FLAGS_OFFSET);
+            frame.skipBytes(FrameConst.HEADER_LENGTH);
+            if(flags == FrameConst.FLAG_BINARY) {
+                return RpcMessageCodec.decodeBinary(frame);
+            }
+            return RpcMessageCodec.decodeJson(frame);
+        } catch (Exception exception) {
+            log.error("RpcMessageDto 信封解析异常，丢弃当前帧", exception);
+            return null;
+        } finally {
+            frame.release();
+        }
+    }
+
+}
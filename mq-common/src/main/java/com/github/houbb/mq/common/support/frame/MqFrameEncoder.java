@@ -0,0 +1,62 @@
+package com.github.houbb.mq.common.support.frame;
+
+import com.github.houbb.mq.common.constant.FrameConst;
+import com.github.houbb.mq.common.resp.MqCommonRespCode;
+import com.github.houbb.mq.common.resp.MqException;
+import com.github.houbb.mq.common.util.FrameUtil;
+import com.github.houbb.mq.common.rpc.RpcMessageDto;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.MessageToMessageEncoder;
+
+import java.util.List;
+
+/**
+ * 长度前缀帧编码
+ *
+ * （1）{@link RpcMessageDto} 编码为二进制信封
+ * （2）帧头、信封，以及消息体对象或字节数组写入连接分配的池化缓冲区，帧长度在编码完成后回填
+ * （3）消息持有消息体缓冲区时，作为第二个缓冲区跟在信封后面写出，不复制到信封缓冲区
+ * （4）帧长度超过 {@link FrameConst#MAX_FRAME_LENGTH} 时当前写出失败，不写出任何内容
+ *
+ * @author binbin.hou
+ * @since 0.1.5
+ */
+@ChannelHandler.Sharable
+public class MqFrameEncoder extends MessageToMessageEncoder<RpcMessageDto> {
+
+    /**
+     * 单例
+     * @since 0.1.5
+     */
+    public static final MqFrameEncoder INSTANCE = new MqFrameEncoder();
+
+    @Override
+    protected void encode(ChannelHandlerContext ctx, RpcMessageDto msg, List<Object> out) throws Exception {
+        final ByteBuf byteBuf = ctx.alloc().ioBuffer();
+        final ByteBuf bodyBuf;
+        try {
+            FrameUtil.writeHeader(byteBuf, FrameConst.FLAG_BINARY, 0);
+            bodyBuf = RpcMessageCodec.encodeBinaryHead(msg, byteBuf);
+            final long frameLength = (long) byteBuf.writerIndex() + (bodyBuf == null ? 0 : bodyBuf.readableBytes());
+            // 对端按照最大帧长度解码，超过时会断开连接，影响连接上所有的请求，这里只让当前写出失败
+            if(frameLength > FrameConst.MAX_FRAME_LENGTH) {
+                throw new MqException("帧长度 " + frameLength + " 超过最大值 " + FrameConst.MAX_FRAME_LENGTH
+                        + "，方法类型 " + msg.getMethodType() + "，traceId " + msg.getTraceId(),
+                        MqCommonRespCode.FRAME_TOO_LONG);
+            }
+            byteBuf.setInt(FrameConst.LENGTH_FIELD_OFFSET, (int) frameLength - FrameConst.HEADER_LENGTH);
+        } catch (Exception e) {
+            byteBuf.release();
+            throw e;
+        }
+
+        out.add(byteBuf);
+        if(bodyBuf != null) {
+            // 消息编码完成后释放，这里单独持有一次
+            out.add(bodyBuf.retain());
+        }
+    }
+
+}
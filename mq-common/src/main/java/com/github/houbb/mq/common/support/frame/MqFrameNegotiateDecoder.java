@@ -0,0 +1,51 @@
+package com.github.houbb.mq.common.support.frame;
+
+import com.github.houbb.log.integration.core.Log;
+import com.github.houbb.log.integration.core.LogFactory;
+import com.github.houbb.mq.common.constant.FrameConst;
+import com.github.houbb.mq.common.util.ChannelUtil;
+import com.github.houbb.mq.common.util.DelimiterUtil;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPipeline;
+import io.netty.handler.codec.ByteToMessageDecoder;
+import io.netty.handler.codec.DelimiterBasedFrameDecoder;
+
+import java.util.List;
+
+/**
+ * 服务端帧协议协商
+ *
+ * （1）客户端的第一帧（注册请求）以魔数开头时，使用长度前缀帧
+ * （2）否则使用旧的分隔符帧，旧的客户端继续可用
+ * （3）协商完成后替换为对应的编解码，已经读取的内容交给新的解码继续处理
+ *
+ * @author binbin.hou
+ * @since 0.1.5
+ */
+public class MqFrameNegotiateDecoder extends ByteToMessageDecoder {
+
+    private static final Log log = LogFactory.getLog(MqFrameNegotiateDecoder.class);
+
+    @Override
+    protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) throws Exception {
+        if(in.readableBytes() < 2) {
+            return;
+        }
+
+        final ChannelPipeline pipeline = ctx.pipeline();
+        final String channelId = ChannelUtil.getChannelId(ctx);
+        if(in.getShort(in.readerIndex()) == FrameConst.MAGIC) {
+            log.debug("channelId: {} 使用长度前缀帧协议", channelId);
+            pipeline.addAfter(ctx.name(), null, MqFrameEncoder.INSTANCE);
+            pipeline.replace(this, null, new MqFrameDecoder());
+        } else {
+            log.info("channelId: {} 使用旧的分隔符帧协议", channelId);
+            pipeline.addAfter(ctx.name(), null, DelimiterFrameEncoder.INSTANCE);
+            pipeline.addAfter(ctx.name(), null, JsonRpcMessageDecoder.INSTANCE);
+            pipeline.replace(this, null, new DelimiterBasedFrameDecoder(DelimiterUtil.LENGTH,
+                    DelimiterUtil.getByteBuf(DelimiterUtil.DELIMITER)));
+        }
+    }
+
+}
@@ -0,0 +1,259 @@
+package com.github.houbb.mq.common.support.frame;
+
+import com.alibaba.fastjson.JSON;
+import com.github.houbb.mq.common.constant.MethodOpcode;
+import com.github.houbb.mq.common.resp.MqCommonRespCode;
+import com.github.houbb.mq.common.resp.MqException;
+import com.github.houbb.mq.common.rpc.RpcMessageDto;
+import com.github.houbb.mq.common.support.id.MqIds;
+import com.github.houbb.mq.common.support.serializer.Serializers;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufOutputStream;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.util.CharsetUtil;
+
+import java.io.IOException;
+
+/**
+ * 消息信封编解码
+ *
+ * 二进制信封：请求时间(8) + 是否请求(1) + 序列化编码(1) + 方法编码(2) [+ 方法类型] + traceId + 响应码 + 响应信息 + 消息体
+ *
+ * （1）字符串为 长度(2) + utf-8 内容，消息体为 长度(4) + 原始内容，长度 -1 表示 null
+ * 字符串超过 {@link Short#MAX_VALUE} 字节时写为 长度标记(2) -3 + 长度(4) + utf-8 内容
+ * （2）消息体原样携带，不再把 json 字符串嵌套进 json 信封
+ * （3）消息体对象直接序列化到输出中，不生成中间的字节数组
+ * （4）消息体的序列化方式由序列化编码指定，json 信封固定为 json
+ * （5）json 信封兼容旧的客户端
+ * （6）traceId 为消息标识格式时写为 长度标记(2) -2 + long(8)，否则同字符串
+ * （7）消息体为缓冲区时可以只写出信封，缓冲区由调用方跟在后面写出，见 {@link #encodeBinaryHead(RpcMessageDto, ByteBuf)}
+ *
+ * @author binbin.hou
+ * @since 0.1.5
+ */
+public final class RpcMessageCodec {
+
+    private RpcMessageCodec(){}
+
+    /**
+     * traceId 按照 long 携带的标记，占用字符串长度的位置
+     * @since 0.1.5
+     */
+    private static final short TRACE_ID_LONG = -2;
+
+    /**
+     * 字符串长度按照 int 携带的标记，占用字符串长度的位置
+     * @since 0.1.5
+     */
+    private static final short STRING_INT_LENGTH = -3;
+
+    /**
+     * 写入二进制信封
+     * @param rpcMessageDto 消息
+     * @param out 输出
+     * @since 0.1.5
+     */
+    public static void encodeBinary(final RpcMessageDto rpcMessageDto,
+                                    final ByteBuf out) {
+        final ByteBuf bodyBuf = encodeBinaryHead(rpcMessageDto, out);
+        if(bodyBuf != null) {
+            out.writeBytes(bodyBuf);
+        }
+    }
+
+    /**
+     * 写入二进制信封，消息体缓冲区不复制
+     *
+     * ps: 消息持有消息体缓冲区时，只写入消息体长度，返回的缓冲区由调用方紧跟在信封后面写出
+     * @param rpcMessageDto 消息
+     * @param out 输出
+     * @return 需要写出的消息体缓冲区，不持有时返回 null
+     * @since 0.1.5
+     */
+    public static ByteBuf encodeBinaryHead(final RpcMessageDto rpcMessageDto,
+                                           final ByteBuf out) {
+        out.writeLong(rpcMessageDto.getRequestTime());
+        out.writeBoolean(rpcMessageDto.isRequest());
+        out.writeByte(rpcMessageDto.getSerializerCode());
+
+        final short opcode = rpcMessageDto.getOpcode();
+        out.writeShort(opcode);
+        if(opcode == MethodOpcode.UNKNOWN) {
+            writeString(out, rpcMessageDto.getMethodType());
+        }
+
+        writeTraceId(out, rpcMessageDto.getTraceId());
+        writeString(out, rpcMessageDto.getRespCode());
+        writeString(out, rpcMessageDto.getRespMsg());
+
+        final Object bodyObject = rpcMessageDto.getBodyObject();
+        if(bodyObject != null) {
+            final int lengthIndex = out.writerIndex();
+            out.writeInt(0);
+            Serializers.getByCode(rpcMessageDto.getSerializerCode()).serialize(bodyObject, out);
+            out.setInt(lengthIndex, out.writerIndex() - lengthIndex - 4);
+            return null;
+        }
+
+        if(rpcMessageDto.hasBodyBuf()) {
+            final ByteBuf bodyBuf = rpcMessageDto.getBodyBuf();
+            out.writeInt(bodyBuf.readableBytes());
+            return bodyBuf;
+        }
+
+        final byte[] body = rpcMessageDto.getBody();
+        if(body == null) {
+            out.writeInt(-1);
+        } else {
+            out.writeInt(body.length);
+            out.writeBytes(body);
+        }
+        return null;
+    }
+
+    /**
+     * 读取二进制信封
+     *
+     * ps: 消息体为输入的切片，增加引用不复制，也不做解析。随消息释放。
+     * @param in 输入
+     * @return 结果
+     * @since 0.1.5
+     */
+    public static RpcMessageDto decodeBinary(final ByteBuf in) {
+        RpcMessageDto rpcMessageDto = new RpcMessageDto();
+        rpcMessageDto.setRequestTime(in.readLong());
+        rpcMessageDto.setRequest(in.readBoolean());
+        rpcMessageDto.setSerializerCode(in.readByte());
+
+        final short opcode = in.readShort();
+        if(opcode == MethodOpcode.UNKNOWN) {
+            rpcMessageDto.setMethodType(readString(in));
+        } else {
+            rpcMessageDto.setOpcode(opcode);
+        }
+
+        rpcMessageDto.setTraceId(readTraceId(in));
+        rpcMessageDto.setRespCode(readString(in));
+        rpcMessageDto.setRespMsg(readString(in));
+
+        final int bodyLength = in.readInt();
+        if(bodyLength >= 0) {
+            rpcMessageDto.setBodyBuf(in.readRetainedSlice(bodyLength));
+        }
+        return rpcMessageDto;
+    }
+
+    /**
+     * 写入 json 信封
+     * @param rpcMessageDto 消息
+     * @param out 输出
+     * @since 0.1.5
+     */
+    public static void encodeJson(final RpcMessageDto rpcMessageDto,
+                                  final ByteBuf out) {
+        try {
+            JSON.writeJSONString(new ByteBufOutputStream(out), rpcMessageDto);
+        } catch (IOException e) {
+            throw new MqException(e, MqCommonRespCode.FAIL);
+        }
+    }
+
+    /**
+     * 读取 json 信封
+     * @param in 输入
+     * @return 结果
+     * @since 0.1.5
+     */
+    public static RpcMessageDto decodeJson(final ByteBuf in) {
+        final int length = in.readableBytes();
+        byte[] bytes;
+        int offset;
+        if(in.hasArray()) {
+            bytes = in.array();
+            offset = in.arrayOffset() + in.readerIndex();
+        } else {
+            bytes = new byte[length];
+            in.getBytes(in.readerIndex(), bytes);
+            offset = 0;
+        }
+
+        RpcMessageDto rpcMessageDto = JSON.parseObject(bytes, offset, length,
+                CharsetUtil.UTF_8, RpcMessageDto.class);
+        in.skipBytes(length);
+        return rpcMessageDto;
+    }
+
+    /**
+     * 写入 traceId
+     *
+     * ps: 雪花算法生成的标识按照 long 写入，19 位字符串只占用 8 个字节
+     * @param out 输出
+     * @param traceId 标识
+     */
+    private static void writeTraceId(final ByteBuf out, final String traceId) {
+        final long id = MqIds.parse(traceId);
+        if(id == MqIds.NOT_ID) {
+            writeString(out, traceId);
+            return;
+        }
+
+        out.writeShort(TRACE_ID_LONG);
+        out.writeLong(id);
+    }
+
+    private static String readTraceId(final ByteBuf in) {
+        final short length = in.getShort(in.readerIndex());
+        if(length != TRACE_ID_LONG) {
+            return readString(in);
+        }
+
+        in.skipBytes(2);
+        return Long.toString(in.readLong());
+    }
+
+    /**
+     * 写入字符串
+     *
+     * ps: 短字符串先占位再回填长度，只遍历一次；可能超过 short 时先计算长度
+     * @param out 输出
+     * @param text 字符串
+     */
+    private static void writeString(final ByteBuf out, final String text) {
+        if(text == null) {
+            out.writeShort(-1);
+            return;
+        }
+
+        if(ByteBufUtil.utf8MaxBytes(text) <= Short.MAX_VALUE) {
+            final int lengthIndex = out.writerIndex();
+            out.writeShort(0);
+            final int length = ByteBufUtil.writeUtf8(out, text);
+            out.setShort(lengthIndex, length);
+            return;
+        }
+
+        final int length = ByteBufUtil.utf8Bytes(text);
+        if(length <= Short.MAX_VALUE) {
+            out.writeShort(length);
+        } else {
+            out.writeShort(STRING_INT_LENGTH);
+            out.writeInt(length);
+        }
+        ByteBufUtil.writeUtf8(out, text);
+    }
+
+    private static String readString(final ByteBuf in) {
+        int length = in.readShort();
+        if(length == STRING_INT_LENGTH) {
+            length = in.readInt();
+        }
+        if(length < 0) {
+            return null;
+        }
+
+        String text = in.toString(in.readerIndex(), length, CharsetUtil.UTF_8);
+        in.skipBytes(length);
+        return text;
+    }
+
+}
@@ -0,0 +1,11 @@
+/**
+ * 帧协议
+ *
+ * （1）长度前缀帧：魔数 + 版本 + 标识 + 长度，不需要逐字节扫描分隔符，内容没有大小和字符限制
+ * （2）服务端在注册时根据客户端第一帧协商，旧的分隔符协议继续可用
+ * （3）长度前缀帧使用二进制信封，消息体原样携带；分隔符帧使用 json 信封
+ *
+ * @author binbin.hou
+ * @since 0.1.5
+ */
+package com.github.houbb.mq.common.support.frame;
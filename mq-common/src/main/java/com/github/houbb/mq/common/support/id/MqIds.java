@@ -0,0 +1,191 @@
+package com.github.houbb.mq.common.support.id;
+
+import com.github.houbb.log.integration.core.Log;
+import com.github.houbb.log.integration.core.LogFactory;
+
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+
+/**
+ * 消息标识
+ *
+ * （1）进程内共用一个雪花算法生成器，标识按照时间有序
+ * （2）对外仍然使用十进制字符串，兼容 json 信封和已经持久化的消息
+ * （3）二进制信封中按照 long 携带，见 {@link #parse(String)}
+ *
+ * ps: 节点编号按照以下顺序确定，在第一次生成标识时固定：
+ * （1）生成标识之前调用 {@link #initNodeId(int)} 显式指定，比如由部署系统分配
+ * （2）系统属性 {@link #NODE_ID_PROPERTY}，取值不合法时生成标识直接报错，不会静默使用其他编号
+ * （3）都没有指定时由 ip + 进程号散列得到，不同进程可能冲突，会输出警告
+ *
+ * @author binbin.hou
+ * @since 0.1.5
+ */
+public final class MqIds {
+
+    private static final Log log = LogFactory.getLog(MqIds.class);
+
+    private MqIds(){}
+
+    /**
+     * 节点编号的系统属性
+     * @since 0.1.5
+     */
+    public static final String NODE_ID_PROPERTY = "mq.id.node";
+
+    /**
+     * 非标识
+     * @since 0.1.5
+     */
+    public static final long NOT_ID = -1;
+
+    /**
+     * long 的十进制最大长度
+     * @since 0.1.5
+     */
+    private static final int MAX_ID_LENGTH = 19;
+
+    /**
+     * 共用的生成器
+     *
+     * ps: 第一次使用时创建，节点编号配置错误时每次调用都抛出异常，不会导致类初始化失败
+     * @since 0.1.5
+     */
+    private static volatile SnowflakeIdGenerator shared;
+
+    /**
+     * 指定节点编号
+     *
+     * ps: 需要在生成标识之前调用，之后不能修改为其他编号
+     * @param nodeId 节点编号，范围 [0, {@link SnowflakeIdGenerator#MAX_NODE_ID}]
+     * @since 0.1.5
+     */
+    public static void initNodeId(final int nodeId) {
+        if(nodeId < 0 || nodeId > SnowflakeIdGenerator.MAX_NODE_ID) {
+            throw new IllegalArgumentException("消息标识节点编号 " + nodeId
+                    + " 不在 [0, " + SnowflakeIdGenerator.MAX_NODE_ID + "] 范围内");
+        }
+
+        synchronized (MqIds.class) {
+            if(shared != null) {
+                if(shared.getNodeId() == nodeId) {
+                    return;
+                }
+                throw new IllegalStateException("消息标识已经使用节点编号 " + shared.getNodeId()
+                        + " 生成，不能修改为 " + nodeId);
+            }
+            shared = new SnowflakeIdGenerator(nodeId);
+        }
+        log.info("消息标识节点编号 {}，显式指定", nodeId);
+    }
+
+    /**
+     * 下一个标识
+     * @return 结果
+     * @since 0.1.5
+     */
+    public static long nextId() {
+        return generator().nextId();
+    }
+
+    /**
+     * 下一个标识，十进制字符串
+     * @return 结果
+     * @since 0.1.5
+     */
+    public static String nextIdString() {
+        return Long.toString(generator().nextId());
+    }
+
+    /**
+     * 解析标识
+     *
+     * ps: 只接受 {@link Long#toString(long)} 生成的非负数格式，保证解析后可以原样还原
+     * @param text 文本
+     * @return 结果，不是标识格式时返回 {@link #NOT_ID}
+     * @since 0.1.5
+     */
+    public static long parse(final String text) {
+        if(text == null) {
+            return NOT_ID;
+        }
+        final int length = text.length();
+        if(length == 0 || length > MAX_ID_LENGTH) {
+            return NOT_ID;
+        }
+        if(length > 1 && text.charAt(0) == '0') {
+            return NOT_ID;
+        }
+
+        long result = 0;
+        for(int i = 0; i < length; i++) {
+            final char c = text.charAt(i);
+            if(c < '0' || c > '9') {
+                return NOT_ID;
+            }
+            result = result * 10 + (c - '0');
+            // 19 位时可能溢出
+            if(result < 0) {
+                return NOT_ID;
+            }
+        }
+        return result;
+    }
+
+    private static SnowflakeIdGenerator generator() {
+        SnowflakeIdGenerator generator = shared;
+        if(generator != null) {
+            return generator;
+        }
+
+        synchronized (MqIds.class) {
+            if(shared == null) {
+                shared = new SnowflakeIdGenerator(resolveNodeId());
+            }
+            return shared;
+        }
+    }
+
+    private static int resolveNodeId() {
+        final String property = System.getProperty(NODE_ID_PROPERTY);
+        if(property != null) {
+            final int nodeId = parseNodeId(property);
+            log.info("消息标识节点编号 {}，来自系统属性 {}", nodeId, NODE_ID_PROPERTY);
+            return nodeId;
+        }
+
+        String seed = ManagementFactory.getRuntimeMXBean().getName();
+        try {
+            seed = InetAddress.getLocalHost().getHostAddress() + "/" + seed;
+        } catch (Exception e) {
+            log.warn("获取本机地址失败，只使用进程信息计算节点编号", e);
+        }
+        int hash = seed.hashCode();
+        hash ^= (hash >>> 16);
+        final int nodeId = hash & SnowflakeIdGenerator.MAX_NODE_ID;
+        log.warn("消息标识节点编号 {} 由 {} 散列得到，多个进程之间可能冲突，建议通过系统属性 {} 指定",
+                nodeId, seed, NODE_ID_PROPERTY);
+        return nodeId;
+    }
+
+    /**
+     * 解析系统属性中的节点编号
+     * @param text 属性值
+     * @return 结果
+     * @since 0.1.5
+     */
+    static int parseNodeId(final String text) {
+        final int nodeId;
+        try {
+            nodeId = Integer.parseInt(text.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("系统属性 " + NODE_ID_PROPERTY + " 的值 " + text + " 不是整数", e);
+        }
+        if(nodeId < 0 || nodeId > SnowflakeIdGenerator.MAX_NODE_ID) {
+            throw new IllegalArgumentException("系统属性 " + NODE_ID_PROPERTY + " 的值 " + text
+                    + " 不在 [0, " + SnowflakeIdGenerator.MAX_NODE_ID + "] 范围内");
+        }
+        return nodeId;
+    }
+
+}
@@ -0,0 +1,102 @@
+package com.github.houbb.mq.common.support.id;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 雪花算法标识生成器
+ *
+ * 64 位：符号位(1) + 时间戳(41) + 节点(10) + 序列号(12)
+ *
+ * （1）时间戳为距离 {@link #EPOCH} 的毫秒数，可以使用约 69 年
+ * （2）同一个节点内严格递增，不同节点依赖节点编号区分
+ * （3）同一毫秒内序列号用完时，直接借用下一毫秒，不等待
+ * （4）时钟回拨时沿用上一次的时间戳继续递增，不会重复
+ *
+ * ps: 时间戳和序列号放在同一个 long 中 CAS 更新，不加锁
+ *
+ * @author binbin.hou
+ * @since 0.1.5
+ */
+public class SnowflakeIdGenerator {
+
+    /**
+     * 起始时间 2022-01-01 00:00:00 UTC
+     * @since 0.1.5
+     */
+    public static final long EPOCH = 1640995200000L;
+
+    /**
+     * 节点占用的位数
+     * @since 0.1.5
+     */
+    public static final int NODE_BITS = 10;
+
+    /**
+     * 序列号占用的位数
+     * @since 0.1.5
+     */
+    public static final int SEQUENCE_BITS = 12;
+
+    /**
+     * 最大节点编号
+     * @since 0.1.5
+     */
+    public static final int MAX_NODE_ID = (1 << NODE_BITS) - 1;
+
+    /**
+     * 节点编号
+     * @since 0.1.5
+     */
+    private final long nodeId;
+
+    /**
+     * 上一次的 时间戳(高位) + 序列号(低 {@link #SEQUENCE_BITS} 位)
+     *
+     * ps: 序列号溢出时自然进位到时间戳
+     * @since 0.1.5
+     */
+    private final AtomicLong lastState = new AtomicLong();
+
+    public SnowflakeIdGenerator(int nodeId) {
+        if(nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("nodeId must be in [0, " + MAX_NODE_ID + "]");
+        }
+        this.nodeId = nodeId;
+    }
+
+    /**
+     * 下一个标识
+     * @return 结果，非负数
+     * @since 0.1.5
+     */
+    public long nextId() {
+        final long now = (System.currentTimeMillis() - EPOCH) << SEQUENCE_BITS;
+        long prev;
+        long next;
+        do {
+            prev = lastState.get();
+            next = now > prev ? now : prev + 1;
+        } while (!lastState.compareAndSet(prev, next));
+
+        final long timestamp = next >>> SEQUENCE_BITS;
+        final long sequence = next & ((1L << SEQUENCE_BITS) - 1);
+        return (timestamp << (NODE_BITS + SEQUENCE_BITS))
+                | (nodeId << SEQUENCE_BITS)
+                | sequence;
+    }
+
+    public int getNodeId() {
+        return (int) nodeId;
+    }
+
+    /**
+     * 标识中的生成时间
+     * @param id 标识
+     * @return 毫秒时间戳
+     * @since 0.1.5
+     */
+    public static long timeMills(final long id) {
+        return (id >>> (NODE_BITS + SEQUENCE_BITS)) + EPOCH;
+    }
+
+}
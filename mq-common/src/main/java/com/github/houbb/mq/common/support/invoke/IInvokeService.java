@@ -3,6 +3,8 @@ package com.github.houbb.mq.common.support.invoke;
 
 import com.github.houbb.mq.common.rpc.RpcMessageDto;
 
+import java.util.concurrent.CompletableFuture;
+
 /**
  * 调用服务接口
  * @author binbin.hou
@@ -29,6 +31,17 @@ public interface IInvokeService {
      */
     IInvokeService addResponse(final String seqId, final RpcMessageDto rpcResponse);
 
+    /**
+     * 请求失败，比如请求没有写出
+     *
+     * ps: 等待的线程抛出异常，不再等待到超时
+     * @param seqId 唯一标识
+     * @param cause 原因
+     * @return this
+     * @since 0.1.5
+     */
+    IInvokeService addFailure(final String seqId, final Throwable cause);
+
     /**
      * 获取标志信息对应的结果
      * @param seqId 序列号
@@ -37,6 +50,16 @@ public interface IInvokeService {
      */
     RpcMessageDto getResponse(final String seqId);
 
+    /**
+     * 获取标志信息对应的结果，不等待
+     *
+     * ps: 结果完成后移除请求。回调在 IO 线程或者定时器线程执行，不能阻塞。
+     * @param seqId 序列号
+     * @return 结果
+     * @since 0.1.5
+     */
+    CompletableFuture<RpcMessageDto> getResponseFuture(final String seqId);
+
     /**
      * 是否依然包含请求待处理
      * @return 是否
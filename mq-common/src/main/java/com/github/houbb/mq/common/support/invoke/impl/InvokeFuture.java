@@ -0,0 +1,53 @@
+package com.github.houbb.mq.common.support.invoke.impl;
+
+import com.github.houbb.mq.common.rpc.RpcMessageDto;
+import io.netty.util.Timeout;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 单个请求的响应结果
+ *
+ * ps: 由收到响应的线程直接完成，只唤醒等待这一个请求的线程
+ *
+ * @author binbin.hou
+ * @since 0.1.5
+ */
+public class InvokeFuture extends CompletableFuture<RpcMessageDto> {
+
+    /**
+     * 过期时间
+     * @since 0.1.5
+     */
+    private final long expireTime;
+
+    /**
+     * 超时任务
+     * @since 0.1.5
+     */
+    private volatile Timeout timeout;
+
+    public InvokeFuture(long expireTime) {
+        this.expireTime = expireTime;
+    }
+
+    public long getExpireTime() {
+        return expireTime;
+    }
+
+    public void setTimeout(Timeout timeout) {
+        this.timeout = timeout;
+    }
+
+    /**
+     * 取消超时任务
+     * @since 0.1.5
+     */
+    public void cancelTimeout() {
+        final Timeout current = this.timeout;
+        if(current != null) {
+            current.cancel();
+        }
+    }
+
+}
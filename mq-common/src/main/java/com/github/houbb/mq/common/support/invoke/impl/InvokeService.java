@@ -8,10 +8,16 @@ import com.github.houbb.mq.common.resp.MqCommonRespCode;
 import com.github.houbb.mq.common.resp.MqException;
 import com.github.houbb.mq.common.rpc.RpcMessageDto;
 import com.github.houbb.mq.common.support.invoke.IInvokeService;
+import com.github.houbb.mq.common.support.timer.MqTimers;
+import io.netty.util.Timeout;
+import io.netty.util.TimerTask;
 
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.Executors;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiConsumer;
 
 /**
  * 调用服务接口
@@ -24,28 +30,17 @@ public class InvokeService implements IInvokeService {
 
     /**
      * 请求序列号 map
-     * （1）这里后期如果要添加超时检测，可以添加对应的超时时间。
-     * 可以把这里调整为 map
      *
      * key: seqId 唯一标识一个请求
-     * value: 存入该请求最长的有效时间。用于定时删除和超时判断。
+     * value: 请求对应的响应结果，包含最长的有效时间。用于超时判断。
+     *
+     * ps: 结果被获取之后移除，超时由共用的时间轮触发
      * @since 0.0.2
      */
-    private final ConcurrentHashMap<String, Long> requestMap;
-
-    /**
-     * 响应结果
-     * @since 1.0.0
-     */
-    private final ConcurrentHashMap<String, RpcMessageDto> responseMap;
+    private final ConcurrentHashMap<String, InvokeFuture> requestMap;
 
     public InvokeService() {
         requestMap = new ConcurrentHashMap<>();
-        responseMap = new ConcurrentHashMap<>();
-
-        final Runnable timeoutThread = new TimeoutCheckThread(requestMap, responseMap);
-        Executors.newScheduledThreadPool(1)
-                .scheduleAtFixedRate(timeoutThread,60, 60, TimeUnit.SECONDS);
     }
 
     @Override
@@ -54,137 +49,119 @@ public class InvokeService implements IInvokeService {
                 timeoutMills);
 
         final long expireTime = System.currentTimeMillis()+timeoutMills;
-        requestMap.putIfAbsent(seqId, expireTime);
+        final InvokeFuture future = new InvokeFuture(expireTime);
+        if(requestMap.putIfAbsent(seqId, future) != null) {
+            return this;
+        }
 
+        // 到期后设置为超时结果，没有人获取时直接移除
+        future.setTimeout(MqTimers.shared().newTimeout(new TimerTask() {
+            @Override
+            public void run(Timeout timeout) throws Exception {
+                if(future.complete(RpcMessageDto.timeout())) {
+                    logger.debug("[Invoke] seqId:{} 信息已超时", seqId);
+                }
+                requestMap.remove(seqId, future);
+            }
+        }, timeoutMills, TimeUnit.MILLISECONDS));
         return this;
     }
 
     @Override
     public IInvokeService addResponse(String seqId, RpcMessageDto rpcResponse) {
         // 1. 判断是否有效
-        Long expireTime = this.requestMap.get(seqId);
+        InvokeFuture future = this.requestMap.get(seqId);
         // 如果为空，可能是这个结果已经超时了，被定时 job 移除之后，响应结果才过来。直接忽略
-        if(ObjectUtil.isNull(expireTime)) {
+        if(ObjectUtil.isNull(future)) {
+            logger.debug("[Invoke] seqId:{} 对应的请求不存在，直接忽略", seqId);
             return this;
         }
 
         //2. 判断是否超时
-        if(System.currentTimeMillis() > expireTime) {
+        if(System.currentTimeMillis() > future.getExpireTime()) {
             logger.debug("[Invoke] seqId:{} 信息已超时，直接返回超时结果。", seqId);
             rpcResponse = RpcMessageDto.timeout();
         }
 
-        // 这里放入之前，可以添加判断。
-        // 如果 seqId 必须处理请求集合中，才允许放入。或者直接忽略丢弃。
-        // 通知所有等待方
-        responseMap.putIfAbsent(seqId, rpcResponse);
-        logger.debug("[Invoke] 获取结果信息，seqId: {}, rpcResponse: {}", seqId, JSON.toJSON(rpcResponse));
-        logger.debug("[Invoke] seqId:{} 信息已经放入，通知所有等待方", seqId);
-
-        // 移除对应的 requestMap
-        requestMap.remove(seqId);
-        logger.debug("[Invoke] seqId:{} remove from request map", seqId);
-
-        // 同步锁
-        synchronized (this) {
-            this.notifyAll();
-            logger.debug("[Invoke] {} notifyAll()", seqId);
+        // 只通知等待当前请求的线程
+        future.complete(rpcResponse);
+        future.cancelTimeout();
+        if(logger.isDebugEnabled()) {
+            logger.debug("[Invoke] 获取结果信息，seqId: {}, rpcResponse: {}", seqId, JSON.toJSON(rpcResponse));
         }
+        return this;
+    }
 
+    @Override
+    public IInvokeService addFailure(String seqId, Throwable cause) {
+        InvokeFuture future = this.requestMap.get(seqId);
+        if(ObjectUtil.isNull(future)) {
+            logger.debug("[Invoke] seqId:{} 对应的请求不存在，直接忽略", seqId);
+            return this;
+        }
 
+        // 保留超时任务，没有人获取结果时由超时任务移除
+        future.completeExceptionally(cause);
+        logger.debug("[Invoke] seqId:{} 请求失败", seqId);
         return this;
     }
 
-//    @Override
-//    public RpcMessageDto getResponse(String seqId) {
-//        try {
-//            RpcMessageDto rpcResponse = this.responseMap.get(seqId);
-//            if(ObjectUtil.isNotNull(rpcResponse)) {
-//                logger.debug("[Invoke] seq {} 对应结果已经获取: {}", seqId, rpcResponse);
-//                return rpcResponse;
-//            }
-//
-//            // 进入等待
-//            while (rpcResponse == null) {
-//                logger.debug("[Invoke] seq {} 对应结果为空，进入等待", seqId);
-//
-//                // 同步等待锁
-//                synchronized (this) {
-//                    this.wait();
-//                }
-//
-//                logger.debug("[Invoke] {} wait has notified!", seqId);
-//
-//                rpcResponse = this.responseMap.get(seqId);
-//                logger.debug("[Invoke] seq {} 对应结果已经获取: {}", seqId, rpcResponse);
-//            }
-//
-//            return rpcResponse;
-//        } catch (InterruptedException e) {
-//            logger.error("获取响应异常", e);
-//            throw new MqException(MqCommonRespCode.RPC_GET_RESP_FAILED);
-//        }
-//    }
-
     /**
-     * 增加超时检测
-     * @author wbd
+     * 获取结果
+     *
+     * （1）等待到请求的过期时间为止，超时返回超时结果
+     * （2）获取之后从请求 map 中移除
+     *
      * @param seqId 序列号
-     * @return
+     * @return 结果
      */
     @Override
     public RpcMessageDto getResponse(String seqId) {
-        // 第一次检查：立即返回已存在的响应
-        RpcMessageDto rpcResponse = this.responseMap.get(seqId);
-        if (ObjectUtil.isNotNull(rpcResponse))  {
-            logger.debug("[Invoke]  seq {} 对应结果已经获取: {}", seqId, rpcResponse);
-            return rpcResponse;
-        }
-        Long expireTime = this.requestMap.get(seqId);
-        final long startTime = System.currentTimeMillis();  // 记录开始时间
-        if (expireTime == null) {
-            expireTime = startTime + 5000l; // 5秒超时
+        final InvokeFuture future = this.requestMap.get(seqId);
+        if(future == null) {
+            logger.warn("[Invoke] seq {} 对应的请求不存在或者已经超时", seqId);
+            return RpcMessageDto.timeout();
         }
-        try {
-            // 双重检查锁定确保线程安全
-            synchronized (this) {
-                // 第二次检查：防止在获取锁期间响应到达
-                rpcResponse = this.responseMap.get(seqId);
-                if (rpcResponse != null) {
-                    return rpcResponse;
-                }
-
-                // 进入超时等待循环
-                while (rpcResponse == null) {
-//                    long elapsed = System.currentTimeMillis()  - startTime;
-                    long remaining = expireTime - System.currentTimeMillis();
-
-                    // 剩余时间≤0表示超时
-                    if (remaining <= 0) {
-                        logger.warn("[Timeout]  seq {} 等待响应超时({}ms)", seqId);
-                        return RpcMessageDto.timeout();
-                    }
-
-                    logger.debug("[Wait]  seq {} 等待剩余时间: {}ms", seqId, remaining);
 
-                    // 带超时的等待（精确控制剩余时间）
-                    this.wait(remaining);
-
-                    // 唤醒后再次检查响应
-                    rpcResponse = this.responseMap.get(seqId);
-                    if (rpcResponse != null) {
-                        logger.debug("[Wake]  seq {} 成功获取响应: {}", seqId, rpcResponse);
-                        return rpcResponse;
-                    }
-                }
-            }
-        } catch (Exception e) {
+        try {
+            final long remaining = future.getExpireTime() - System.currentTimeMillis();
+            RpcMessageDto rpcResponse = future.get(Math.max(remaining, 0), TimeUnit.MILLISECONDS);
+            logger.debug("[Invoke] seq {} 对应结果已经获取", seqId);
+            return rpcResponse;
+        } catch (TimeoutException e) {
+            logger.warn("[Timeout] seq {} 等待响应超时", seqId);
+            return RpcMessageDto.timeout();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
             logger.error("获取响应异常", e);
             throw new MqException(MqCommonRespCode.RPC_GET_RESP_FAILED);
+        } catch (ExecutionException e) {
+            logger.error("获取响应异常", e);
+            if(e.getCause() instanceof MqException) {
+                throw (MqException) e.getCause();
+            }
+            throw new MqException(MqCommonRespCode.RPC_GET_RESP_FAILED);
+        } finally {
+            requestMap.remove(seqId, future);
         }
+    }
 
-        // 理论上不会执行到此
-        return rpcResponse;
+    @Override
+    public CompletableFuture<RpcMessageDto> getResponseFuture(final String seqId) {
+        final InvokeFuture future = this.requestMap.get(seqId);
+        if(future == null) {
+            logger.warn("[Invoke] seq {} 对应的请求不存在或者已经超时", seqId);
+            return CompletableFuture.completedFuture(RpcMessageDto.timeout());
+        }
+
+        // 完成后移除
+        future.whenComplete(new BiConsumer<RpcMessageDto, Throwable>() {
+            @Override
+            public void accept(RpcMessageDto rpcMessageDto, Throwable throwable) {
+                requestMap.remove(seqId, future);
+            }
+        });
+        return future;
     }
 
     @Override
@@ -1,56 +0,0 @@
-package com.github.houbb.mq.common.support.invoke.impl;
-
-import com.github.houbb.heaven.util.common.ArgUtil;
-import com.github.houbb.mq.common.rpc.RpcMessageDto;
-
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-
-/**
- * 超时检测线程
- * @author binbin.hou
- * @since 0.0.2
- */
-public class TimeoutCheckThread implements Runnable {
-
-    /**
-     * 请求信息
-     * @since 0.0.2
-     */
-    private final ConcurrentHashMap<String, Long> requestMap;
-
-    /**
-     * 请求信息
-     * @since 0.0.2
-     */
-    private final ConcurrentHashMap<String, RpcMessageDto> responseMap;
-
-    /**
-     * 新建
-     * @param requestMap  请求 Map
-     * @param responseMap 结果 map
-     * @since 0.0.2
-     */
-    public TimeoutCheckThread(ConcurrentHashMap<String, Long> requestMap,
-                              ConcurrentHashMap<String, RpcMessageDto> responseMap) {
-        ArgUtil.notNull(requestMap, "requestMap");
-        this.requestMap = requestMap;
-        this.responseMap = responseMap;
-    }
-
-    @Override
-    public void run() {
-        for(Map.Entry<String, Long> entry : requestMap.entrySet()) {
-            long expireTime = entry.getValue();
-            long currentTime = System.currentTimeMillis();
-
-            if(currentTime > expireTime) {
-                final String key = entry.getKey();
-                // 结果设置为超时，从请求 map 中移除
-                responseMap.putIfAbsent(key, RpcMessageDto.timeout());
-                requestMap.remove(key);
-            }
-        }
-    }
-
-}
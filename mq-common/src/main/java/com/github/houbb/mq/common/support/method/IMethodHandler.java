@@ -0,0 +1,26 @@
+package com.github.houbb.mq.common.support.method;
+
+import com.github.houbb.mq.common.dto.resp.MqCommonResp;
+import com.github.houbb.mq.common.rpc.RpcMessageDto;
+import io.netty.channel.ChannelHandlerContext;
+
+/**
+ * 方法处理
+ *
+ * ps: 通过 {@link MethodHandlerRegistry} 按照方法类型注册，可以注册自定义的方法类型
+ *
+ * @author binbin.hou
+ * @since 0.1.5
+ */
+public interface IMethodHandler {
+
+    /**
+     * 处理请求
+     * @param rpcMessageDto 请求
+     * @param ctx 上下文
+     * @return 响应，null 表示不需要响应
+     * @since 0.1.5
+     */
+    MqCommonResp handle(RpcMessageDto rpcMessageDto, ChannelHandlerContext ctx);
+
+}
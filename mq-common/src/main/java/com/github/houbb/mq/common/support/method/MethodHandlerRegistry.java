@@ -0,0 +1,88 @@
+package com.github.houbb.mq.common.support.method;
+
+import com.github.houbb.mq.common.constant.MethodOpcode;
+import com.github.houbb.mq.common.rpc.RpcMessageDto;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 方法处理注册表
+ *
+ * （1）内置的方法类型按照编码放入数组，分发时直接下标获取，方法类型增加不影响分发耗时
+ * （2）没有编码的自定义方法类型按照字符串查找
+ * （3）相同的方法类型后注册的覆盖先注册的
+ *
+ * ps: 只在初始化时注册，之后只读
+ *
+ * @author binbin.hou
+ * @since 0.1.5
+ */
+public class MethodHandlerRegistry {
+
+    /**
+     * 内置方法类型的处理
+     * 下标：方法类型编码
+     * @since 0.1.5
+     */
+    private final IMethodHandler[] handlers = new IMethodHandler[MethodOpcode.maxOpcode() + 1];
+
+    /**
+     * 自定义方法类型的处理
+     * key: 方法类型
+     * @since 0.1.5
+     */
+    private final Map<String, IMethodHandler> customHandlerMap = new HashMap<>();
+
+    public static MethodHandlerRegistry newInstance() {
+        return new MethodHandlerRegistry();
+    }
+
+    /**
+     * 注册
+     * @param methodType 方法类型
+     * @param handler 处理
+     * @return this
+     * @since 0.1.5
+     */
+    public MethodHandlerRegistry register(final String methodType,
+                                          final IMethodHandler handler) {
+        final short opcode = MethodOpcode.getOpcode(methodType);
+        if(opcode == MethodOpcode.UNKNOWN) {
+            customHandlerMap.put(methodType, handler);
+        } else {
+            handlers[opcode] = handler;
+        }
+        return this;
+    }
+
+    /**
+     * 批量注册
+     * @param handlerMap 方法类型 -> 处理
+     * @return this
+     * @since 0.1.5
+     */
+    public MethodHandlerRegistry register(final Map<String, IMethodHandler> handlerMap) {
+        for(Map.Entry<String, IMethodHandler> entry : handlerMap.entrySet()) {
+            register(entry.getKey(), entry.getValue());
+        }
+        return this;
+    }
+
+    /**
+     * 获取处理
+     *
+     * ps: 编码来自对端，超出内置范围时（比如更新版本的对端）按照方法类型查找
+     * @param rpcMessageDto 请求
+     * @return 结果，没有注册时返回 null
+     * @since 0.1.5
+     */
+    public IMethodHandler get(final RpcMessageDto rpcMessageDto) {
+        final short opcode = rpcMessageDto.getOpcode();
+        if(opcode > MethodOpcode.UNKNOWN && opcode < handlers.length) {
+            return handlers[opcode];
+        }
+        return customHandlerMap.get(rpcMessageDto.getMethodType());
+    }
+
+}
@@ -0,0 +1,60 @@
+package com.github.houbb.mq.common.support.serializer;
+
+import io.netty.buffer.ByteBuf;
+
+/**
+ * 序列化接口
+ *
+ * （1）消息体的序列化方式，每个连接可以不同
+ * （2）编码随信封传输，接收方根据编码选择对应的实现
+ * （3）发送时直接写入帧的缓冲区，接收时直接从帧的缓冲区读取，不生成中间的字节数组
+ *
+ * @author binbin.hou
+ * @since 0.1.5
+ */
+public interface ISerializer {
+
+    /**
+     * 序列化编码
+     * @return 编码
+     * @since 0.1.5
+     */
+    byte code();
+
+    /**
+     * 序列化
+     * @param object 对象
+     * @return 结果
+     * @since 0.1.5
+     */
+    byte[] serialize(Object object);
+
+    /**
+     * 序列化，直接写入缓冲区
+     * @param object 对象，不为 null
+     * @param out 输出
+     * @since 0.1.5
+     */
+    void serialize(Object object, ByteBuf out);
+
+    /**
+     * 反序列化
+     * @param bytes 内容
+     * @param clazz 类型
+     * @param <T> 泛型
+     * @return 结果
+     * @since 0.1.5
+     */
+    <T> T deserialize(byte[] bytes, Class<T> clazz);
+
+    /**
+     * 反序列化，直接从缓冲区读取
+     * @param in 输入，读取全部可读内容
+     * @param clazz 类型
+     * @param <T> 泛型
+     * @return 结果
+     * @since 0.1.5
+     */
+    <T> T deserialize(ByteBuf in, Class<T> clazz);
+
+}
@@ -0,0 +1,112 @@
+package com.github.houbb.mq.common.support.serializer;
+
+import com.github.houbb.mq.common.resp.MqCommonRespCode;
+import com.github.houbb.mq.common.resp.MqException;
+import com.github.houbb.mq.common.support.serializer.impl.BinarySerializer;
+import com.github.houbb.mq.common.support.serializer.impl.JsonSerializer;
+import io.netty.channel.Channel;
+import io.netty.util.AttributeKey;
+
+/**
+ * 序列化工具类
+ *
+ * （1）根据编码获取对应的实现
+ * （2）服务端在注册时记录每个连接使用的序列化方式，主动推送时使用
+ *
+ * @author binbin.hou
+ * @since 0.1.5
+ */
+public final class Serializers {
+
+    private Serializers(){}
+
+    /**
+     * json 序列化
+     * @since 0.1.5
+     */
+    private static final ISerializer JSON = new JsonSerializer();
+
+    /**
+     * 二进制序列化
+     * @since 0.1.5
+     */
+    private static final ISerializer BINARY = new BinarySerializer();
+
+    /**
+     * 连接对应的序列化方式
+     * @since 0.1.5
+     */
+    private static final AttributeKey<ISerializer> CHANNEL_SERIALIZER = AttributeKey.valueOf("mq.serializer");
+
+    /**
+     * json 序列化
+     * @return 实现
+     * @since 0.1.5
+     */
+    public static ISerializer json() {
+        return JSON;
+    }
+
+    /**
+     * 二进制序列化
+     * @return 实现
+     * @since 0.1.5
+     */
+    public static ISerializer binary() {
+        return BINARY;
+    }
+
+    /**
+     * 是否支持编码
+     * @param code 编码
+     * @return 结果
+     * @since 0.1.5
+     */
+    public static boolean isSupport(final byte code) {
+        return code == JsonSerializer.CODE
+                || code == BinarySerializer.CODE;
+    }
+
+    /**
+     * 根据编码获取
+     * @param code 编码
+     * @return 实现
+     * @since 0.1.5
+     */
+    public static ISerializer getByCode(final byte code) {
+        switch (code) {
+            case JsonSerializer.CODE:
+                return JSON;
+            case BinarySerializer.CODE:
+                return BINARY;
+            default:
+                throw new MqException(MqCommonRespCode.SERIALIZER_NOT_SUPPORT);
+        }
+    }
+
+    /**
+     * 记录连接对应的序列化方式
+     * @param channel 连接
+     * @param serializer 序列化
+     * @since 0.1.5
+     */
+    public static void bindChannel(final Channel channel,
+                                   final ISerializer serializer) {
+        channel.attr(CHANNEL_SERIALIZER).set(serializer);
+    }
+
+    /**
+     * 获取连接对应的序列化方式
+     * @param channel 连接
+     * @return 实现，没有记录时默认为 json
+     * @since 0.1.5
+     */
+    public static ISerializer getByChannel(final Channel channel) {
+        ISerializer serializer = channel.attr(CHANNEL_SERIALIZER).get();
+        if(serializer == null) {
+            return JSON;
+        }
+        return serializer;
+    }
+
+}
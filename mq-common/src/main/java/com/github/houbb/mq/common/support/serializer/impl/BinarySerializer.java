@@ -0,0 +1,459 @@
+package com.github.houbb.mq.common.support.serializer.impl;
+
+import com.github.houbb.mq.common.dto.req.MqCommonReq;
+import com.github.houbb.mq.common.dto.req.MqConsumerPullReq;
+import com.github.houbb.mq.common.dto.req.MqConsumerUpdateStatusBatchReq;
+import com.github.houbb.mq.common.dto.req.MqConsumerUpdateStatusReq;
+import com.github.houbb.mq.common.dto.req.MqMessage;
+import com.github.houbb.mq.common.dto.req.MqMessageBatchReq;
+import com.github.houbb.mq.common.dto.req.component.MqConsumerUpdateStatusDto;
+import com.github.houbb.mq.common.dto.resp.MqCommonResp;
+import com.github.houbb.mq.common.dto.resp.MqConsumerPullResp;
+import com.github.houbb.mq.common.dto.resp.MqConsumerResultResp;
+import com.github.houbb.mq.common.resp.MqCommonRespCode;
+import com.github.houbb.mq.common.resp.MqException;
+import com.github.houbb.mq.common.support.serializer.ISerializer;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.util.CharsetUtil;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 二进制序列化
+ *
+ * （1）消息、批量消息、拉取、消费结果、消费状态等高频类型手写编解码，字段按固定顺序写入，不写字段名
+ * （2）字符串为 长度(4) + utf-8 内容，列表为 长度(4) + 元素，长度 -1 表示 null
+ * （3）第一个字节为类型，其他类型退化为 json，保证任何对象都可以传输
+ *
+ * ps: 只按照精确的类型匹配，子类同样退化为 json，避免丢失子类的字段
+ *
+ * @author binbin.hou
+ * @since 0.1.5
+ */
+public class BinarySerializer implements ISerializer {
+
+    /**
+     * 编码
+     * @since 0.1.5
+     */
+    public static final byte CODE = 1;
+
+    /**
+     * 类型：json
+     * @since 0.1.5
+     */
+    private static final byte TYPE_JSON = 0;
+
+    /**
+     * 类型：消息
+     * @since 0.1.5
+     */
+    private static final byte TYPE_MQ_MESSAGE = 1;
+
+    /**
+     * 类型：批量消息
+     * @since 0.1.5
+     */
+    private static final byte TYPE_MQ_MESSAGE_BATCH = 2;
+
+    /**
+     * 类型：拉取结果
+     * @since 0.1.5
+     */
+    private static final byte TYPE_PULL_RESP = 3;
+
+    /**
+     * 类型：消费状态
+     * @since 0.1.5
+     */
+    private static final byte TYPE_UPDATE_STATUS = 4;
+
+    /**
+     * 类型：消费状态-批量
+     * @since 0.1.5
+     */
+    private static final byte TYPE_UPDATE_STATUS_BATCH = 5;
+
+    /**
+     * 类型：通用响应
+     * @since 0.1.5
+     */
+    private static final byte TYPE_COMMON_RESP = 6;
+
+    /**
+     * 类型：消费结果
+     * @since 0.1.5
+     */
+    private static final byte TYPE_CONSUMER_RESULT_RESP = 7;
+
+    /**
+     * 类型：拉取请求
+     * @since 0.1.5
+     */
+    private static final byte TYPE_PULL_REQ = 8;
+
+    /**
+     * 其他类型使用的 json 序列化
+     * @since 0.1.5
+     */
+    private static final ISerializer JSON_SERIALIZER = new JsonSerializer();
+
+    @Override
+    public byte code() {
+        return CODE;
+    }
+
+    @Override
+    public byte[] serialize(Object object) {
+        if(object == null) {
+            return null;
+        }
+
+        ByteBuf out = Unpooled.buffer(256);
+        serialize(object, out);
+        return ByteBufUtil.getBytes(out);
+    }
+
+    @Override
+    public void serialize(Object object, ByteBuf out) {
+        final byte type = getType(object.getClass());
+        out.writeByte(type);
+        switch (type) {
+            case TYPE_MQ_MESSAGE:
+                writeMqMessage(out, (MqMessage) object);
+                break;
+            case TYPE_MQ_MESSAGE_BATCH:
+                writeMqMessageBatch(out, (MqMessageBatchReq) object);
+                break;
+            case TYPE_PULL_RESP:
+                writePullResp(out, (MqConsumerPullResp) object);
+                break;
+            case TYPE_UPDATE_STATUS:
+                writeUpdateStatus(out, (MqConsumerUpdateStatusReq) object);
+                break;
+            case TYPE_UPDATE_STATUS_BATCH:
+                writeUpdateStatusBatch(out, (MqConsumerUpdateStatusBatchReq) object);
+                break;
+            case TYPE_COMMON_RESP:
+                writeCommonResp(out, (MqCommonResp) object);
+                break;
+            case TYPE_CONSUMER_RESULT_RESP:
+                writeConsumerResultResp(out, (MqConsumerResultResp) object);
+                break;
+            case TYPE_PULL_REQ:
+                writePullReq(out, (MqConsumerPullReq) object);
+                break;
+            default:
+                JSON_SERIALIZER.serialize(object, out);
+                break;
+        }
+    }
+
+    @Override
+    public <T> T deserialize(byte[] bytes, Class<T> clazz) {
+        if(bytes == null) {
+            return null;
+        }
+
+        return deserialize(Unpooled.wrappedBuffer(bytes), clazz);
+    }
+
+    @Override
+    public <T> T deserialize(ByteBuf in, Class<T> clazz) {
+        if(in == null) {
+            return null;
+        }
+
+        final byte type = in.readByte();
+        if(type == TYPE_JSON) {
+            return JSON_SERIALIZER.deserialize(in, clazz);
+        }
+
+        Object result;
+        switch (type) {
+            case TYPE_MQ_MESSAGE:
+                result = readMqMessage(in);
+                break;
+            case TYPE_MQ_MESSAGE_BATCH:
+                result = readMqMessageBatch(in);
+                break;
+            case TYPE_PULL_RESP:
+                result = readPullResp(in);
+                break;
+            case TYPE_UPDATE_STATUS:
+                result = readUpdateStatus(in);
+                break;
+            case TYPE_UPDATE_STATUS_BATCH:
+                result = readUpdateStatusBatch(in);
+                break;
+            case TYPE_COMMON_RESP:
+                result = readCommonResp(in, new MqCommonResp());
+                break;
+            case TYPE_CONSUMER_RESULT_RESP:
+                result = readConsumerResultResp(in);
+                break;
+            case TYPE_PULL_REQ:
+                result = readPullReq(in);
+                break;
+            default:
+                throw new MqException(MqCommonRespCode.SERIALIZER_NOT_SUPPORT);
+        }
+
+        if(!clazz.isInstance(result)) {
+            throw new MqException(MqCommonRespCode.SERIALIZE_TYPE_NOT_MATCH);
+        }
+        return clazz.cast(result);
+    }
+
+    private byte getType(final Class<?> clazz) {
+        if(clazz == MqMessage.class) {
+            return TYPE_MQ_MESSAGE;
+        }
+        if(clazz == MqMessageBatchReq.class) {
+            return TYPE_MQ_MESSAGE_BATCH;
+        }
+        if(clazz == MqConsumerPullResp.class) {
+            return TYPE_PULL_RESP;
+        }
+        if(clazz == MqConsumerUpdateStatusReq.class) {
+            return TYPE_UPDATE_STATUS;
+        }
+        if(clazz == MqConsumerUpdateStatusBatchReq.class) {
+            return TYPE_UPDATE_STATUS_BATCH;
+        }
+        if(clazz == MqCommonResp.class) {
+            return TYPE_COMMON_RESP;
+        }
+        if(clazz == MqConsumerResultResp.class) {
+            return TYPE_CONSUMER_RESULT_RESP;
+        }
+        if(clazz == MqConsumerPullReq.class) {
+            return TYPE_PULL_REQ;
+        }
+        return TYPE_JSON;
+    }
+
+    private void writeCommonReq(final ByteBuf out, final MqCommonReq req) {
+        writeString(out, req.getTraceId());
+        writeString(out, req.getMethodType());
+    }
+
+    private void readCommonReq(final ByteBuf in, final MqCommonReq req) {
+        req.setTraceId(readString(in));
+        req.setMethodType(readString(in));
+    }
+
+    private void writeCommonResp(final ByteBuf out, final MqCommonResp resp) {
+        writeString(out, resp.getRespCode());
+        writeString(out, resp.getRespMessage());
+    }
+
+    private <R extends MqCommonResp> R readCommonResp(final ByteBuf in, final R resp) {
+        resp.setRespCode(readString(in));
+        resp.setRespMessage(readString(in));
+        return resp;
+    }
+
+    private void writeConsumerResultResp(final ByteBuf out, final MqConsumerResultResp resp) {
+        writeCommonResp(out, resp);
+        writeString(out, resp.getConsumerStatus());
+    }
+
+    private MqConsumerResultResp readConsumerResultResp(final ByteBuf in) {
+        MqConsumerResultResp resp = readCommonResp(in, new MqConsumerResultResp());
+        resp.setConsumerStatus(readString(in));
+        return resp;
+    }
+
+    private void writePullReq(final ByteBuf out, final MqConsumerPullReq req) {
+        writeCommonReq(out, req);
+        writeString(out, req.getGroupName());
+        out.writeInt(req.getSize());
+        writeString(out, req.getTopicName());
+        writeString(out, req.getTagRegex());
+    }
+
+    private MqConsumerPullReq readPullReq(final ByteBuf in) {
+        MqConsumerPullReq req = new MqConsumerPullReq();
+        readCommonReq(in, req);
+        req.setGroupName(readString(in));
+        req.setSize(in.readInt());
+        req.setTopicName(readString(in));
+        req.setTagRegex(readString(in));
+        return req;
+    }
+
+    private void writeMqMessage(final ByteBuf out, final MqMessage mqMessage) {
+        writeCommonReq(out, mqMessage);
+        writeString(out, mqMessage.getGroupName());
+        writeString(out, mqMessage.getTopic());
+        writeStringList(out, mqMessage.getTags());
+        writeString(out, mqMessage.getPayload());
+        writeString(out, mqMessage.getBizKey());
+        writeString(out, mqMessage.getShardingKey());
+    }
+
+    private MqMessage readMqMessage(final ByteBuf in) {
+        MqMessage mqMessage = new MqMessage();
+        readCommonReq(in, mqMessage);
+        mqMessage.setGroupName(readString(in));
+        mqMessage.setTopic(readString(in));
+        mqMessage.setTags(readStringList(in));
+        mqMessage.setPayload(readString(in));
+        mqMessage.setBizKey(readString(in));
+        mqMessage.setShardingKey(readString(in));
+        return mqMessage;
+    }
+
+    private void writeMqMessageList(final ByteBuf out, final List<MqMessage> list) {
+        if(list == null) {
+            out.writeInt(-1);
+            return;
+        }
+
+        out.writeInt(list.size());
+        for(MqMessage mqMessage : list) {
+            writeMqMessage(out, mqMessage);
+        }
+    }
+
+    private List<MqMessage> readMqMessageList(final ByteBuf in) {
+        final int size = in.readInt();
+        if(size < 0) {
+            return null;
+        }
+
+        List<MqMessage> list = new ArrayList<>(size);
+        for(int i = 0; i < size; i++) {
+            list.add(readMqMessage(in));
+        }
+        return list;
+    }
+
+    private void writeMqMessageBatch(final ByteBuf out, final MqMessageBatchReq batchReq) {
+        writeCommonReq(out, batchReq);
+        writeMqMessageList(out, batchReq.getMqMessageList());
+    }
+
+    private MqMessageBatchReq readMqMessageBatch(final ByteBuf in) {
+        MqMessageBatchReq batchReq = new MqMessageBatchReq();
+        readCommonReq(in, batchReq);
+        batchReq.setMqMessageList(readMqMessageList(in));
+        return batchReq;
+    }
+
+    private void writePullResp(final ByteBuf out, final MqConsumerPullResp pullResp) {
+        writeCommonResp(out, pullResp);
+        writeMqMessageList(out, pullResp.getList());
+    }
+
+    private MqConsumerPullResp readPullResp(final ByteBuf in) {
+        MqConsumerPullResp pullResp = readCommonResp(in, new MqConsumerPullResp());
+        pullResp.setList(readMqMessageList(in));
+        return pullResp;
+    }
+
+    private void writeUpdateStatus(final ByteBuf out, final MqConsumerUpdateStatusReq req) {
+        writeCommonReq(out, req);
+        writeString(out, req.getMessageId());
+        writeString(out, req.getMessageStatus());
+        writeString(out, req.getConsumerGroupName());
+    }
+
+    private MqConsumerUpdateStatusReq readUpdateStatus(final ByteBuf in) {
+        MqConsumerUpdateStatusReq req = new MqConsumerUpdateStatusReq();
+        readCommonReq(in, req);
+        req.setMessageId(readString(in));
+        req.setMessageStatus(readString(in));
+        req.setConsumerGroupName(readString(in));
+        return req;
+    }
+
+    private void writeUpdateStatusBatch(final ByteBuf out, final MqConsumerUpdateStatusBatchReq req) {
+        writeCommonReq(out, req);
+
+        final List<MqConsumerUpdateStatusDto> statusList = req.getStatusList();
+        if(statusList == null) {
+            out.writeInt(-1);
+            return;
+        }
+
+        out.writeInt(statusList.size());
+        for(MqConsumerUpdateStatusDto statusDto : statusList) {
+            writeString(out, statusDto.getMessageId());
+            writeString(out, statusDto.getMessageStatus());
+            writeString(out, statusDto.getConsumerGroupName());
+        }
+    }
+
+    private MqConsumerUpdateStatusBatchReq readUpdateStatusBatch(final ByteBuf in) {
+        MqConsumerUpdateStatusBatchReq req = new MqConsumerUpdateStatusBatchReq();
+        readCommonReq(in, req);
+
+        final int size = in.readInt();
+        if(size >= 0) {
+            List<MqConsumerUpdateStatusDto> statusList = new ArrayList<>(size);
+            for(int i = 0; i < size; i++) {
+                MqConsumerUpdateStatusDto statusDto = new MqConsumerUpdateStatusDto();
+                statusDto.setMessageId(readString(in));
+                statusDto.setMessageStatus(readString(in));
+                statusDto.setConsumerGroupName(readString(in));
+                statusList.add(statusDto);
+            }
+            req.setStatusList(statusList);
+        }
+        return req;
+    }
+
+    private void writeStringList(final ByteBuf out, final List<String> list) {
+        if(list == null) {
+            out.writeInt(-1);
+            return;
+        }
+
+        out.writeInt(list.size());
+        for(String text : list) {
+            writeString(out, text);
+        }
+    }
+
+    private List<String> readStringList(final ByteBuf in) {
+        final int size = in.readInt();
+        if(size < 0) {
+            return null;
+        }
+
+        List<String> list = new ArrayList<>(size);
+        for(int i = 0; i < size; i++) {
+            list.add(readString(in));
+        }
+        return list;
+    }
+
+    private void writeString(final ByteBuf out, final String text) {
+        if(text == null) {
+            out.writeInt(-1);
+            return;
+        }
+
+        final int lengthIndex = out.writerIndex();
+        out.writeInt(0);
+        final int length = ByteBufUtil.writeUtf8(out, text);
+        out.setInt(lengthIndex, length);
+    }
+
+    private String readString(final ByteBuf in) {
+        final int length = in.readInt();
+        if(length < 0) {
+            return null;
+        }
+
+        String text = in.toString(in.readerIndex(), length, CharsetUtil.UTF_8);
+        in.skipBytes(length);
+        return text;
+    }
+
+}
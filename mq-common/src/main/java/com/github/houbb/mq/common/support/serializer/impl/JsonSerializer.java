@@ -0,0 +1,79 @@
+package com.github.houbb.mq.common.support.serializer.impl;
+
+import com.alibaba.fastjson.JSON;
+import com.github.houbb.mq.common.resp.MqCommonRespCode;
+import com.github.houbb.mq.common.resp.MqException;
+import com.github.houbb.mq.common.support.serializer.ISerializer;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.ByteBufOutputStream;
+import io.netty.util.CharsetUtil;
+
+import java.io.IOException;
+
+/**
+ * json 序列化
+ *
+ * ps: 兼容旧的客户端，json 信封中的消息体只能使用这个实现
+ *
+ * @author binbin.hou
+ * @since 0.1.5
+ */
+public class JsonSerializer implements ISerializer {
+
+    /**
+     * 编码
+     * @since 0.1.5
+     */
+    public static final byte CODE = 0;
+
+    @Override
+    public byte code() {
+        return CODE;
+    }
+
+    @Override
+    public byte[] serialize(Object object) {
+        return JSON.toJSONBytes(object);
+    }
+
+    @Override
+    public void serialize(Object object, ByteBuf out) {
+        try {
+            JSON.writeJSONString(new ByteBufOutputStream(out), object);
+        } catch (IOException e) {
+            throw new MqException(e, MqCommonRespCode.FAIL);
+        }
+    }
+
+    @Override
+    public <T> T deserialize(byte[] bytes, Class<T> clazz) {
+        if(bytes == null) {
+            return null;
+        }
+        return JSON.parseObject(bytes, clazz);
+    }
+
+    @Override
+    public <T> T deserialize(ByteBuf in, Class<T> clazz) {
+        if(in == null) {
+            return null;
+        }
+
+        // 堆内存直接解析底层数组，直接内存由 fastjson 读入线程复用的缓冲区
+        final int length = in.readableBytes();
+        if(in.hasArray()) {
+            T result = JSON.parseObject(in.array(), in.arrayOffset() + in.readerIndex(), length,
+                    CharsetUtil.UTF_8, clazz);
+            in.skipBytes(length);
+            return result;
+        }
+
+        try {
+            return JSON.parseObject(new ByteBufInputStream(in), CharsetUtil.UTF_8, clazz);
+        } catch (IOException e) {
+            throw new MqException(e, MqCommonRespCode.FAIL);
+        }
+    }
+
+}
@@ -0,0 +1,51 @@
+package com.github.houbb.mq.common.support.timer;
+
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timer;
+import io.netty.util.concurrent.DefaultThreadFactory;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 定时器
+ *
+ * （1）进程内共用一个时间轮，只有一个线程
+ * （2）精度为一个刻度，适合请求超时、重试等大量的短时任务
+ * （3）任务在定时器线程执行，不能阻塞
+ *
+ * @author binbin.hou
+ * @since 0.1.5
+ */
+public final class MqTimers {
+
+    private MqTimers(){}
+
+    /**
+     * 刻度时长，单位毫秒
+     * @since 0.1.5
+     */
+    private static final long TICK_DURATION_MILLS = 10;
+
+    /**
+     * 每一轮的刻度数
+     * @since 0.1.5
+     */
+    private static final int TICKS_PER_WHEEL = 512;
+
+    /**
+     * 共用的时间轮
+     * @since 0.1.5
+     */
+    private static final Timer SHARED = new HashedWheelTimer(new DefaultThreadFactory("mq-timer", true),
+            TICK_DURATION_MILLS, TimeUnit.MILLISECONDS, TICKS_PER_WHEEL);
+
+    /**
+     * 共用的定时器
+     * @return 结果
+     * @since 0.1.5
+     */
+    public static Timer shared() {
+        return SHARED;
+    }
+
+}
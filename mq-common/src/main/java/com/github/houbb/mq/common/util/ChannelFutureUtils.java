@@ -7,7 +7,9 @@ import com.github.houbb.mq.common.resp.MqCommonRespCode;
 import com.github.houbb.mq.common.resp.MqException;
 import com.github.houbb.mq.common.rpc.RpcAddress;
 import com.github.houbb.mq.common.rpc.RpcChannelFuture;
+import com.github.houbb.mq.common.rpc.RpcInFlightWindow;
 import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.PooledByteBufAllocator;
 import io.netty.channel.*;
 import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.nio.NioSocketChannel;
@@ -36,6 +38,22 @@ public class ChannelFutureUtils {
     public static List<RpcChannelFuture> initChannelFutureList(final String brokerAddress,
                                                                final ChannelHandler channelHandler,
                                                                final boolean check) {
+        return initChannelFutureList(brokerAddress, channelHandler, check, 0);
+    }
+
+    /**
+     * 初始化列表
+     * @param brokerAddress 地址
+     * @param channelHandler 处理类
+     * @param check 是否检测可用性
+     * @param maxInFlight 单个连接最多未完成的请求数量，小于等于 0 时不限制
+     * @return 结果
+     * @since 0.1.5
+     */
+    public static List<RpcChannelFuture> initChannelFutureList(final String brokerAddress,
+                                                               final ChannelHandler channelHandler,
+                                                               final boolean check,
+                                                               final int maxInFlight) {
         List<RpcAddress> addressList = InnerAddressUtils.initAddressList(brokerAddress);
 
         List<RpcChannelFuture> list = new ArrayList<>();
@@ -49,6 +67,8 @@ public class ChannelFutureUtils {
                 ChannelFuture channelFuture = bootstrap.group(workerGroup)
                         .channel(NioSocketChannel.class)
                         .option(ChannelOption.SO_KEEPALIVE, true)
+                        // 编码直接写入池化缓冲区
+                        .option(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT)
                         .handler(new ChannelInitializer<Channel>(){
                             @Override
                             protected void initChannel(Channel ch) throws Exception {
@@ -67,6 +87,11 @@ public class ChannelFutureUtils {
                 rpcChannelFuture.setAddress(address);
                 rpcChannelFuture.setPort(port);
                 rpcChannelFuture.setWeight(rpcAddress.getWeight());
+                if(maxInFlight > 0) {
+                    RpcInFlightWindow inFlightWindow = new RpcInFlightWindow(maxInFlight);
+                    rpcChannelFuture.setInFlightWindow(inFlightWindow);
+                    RpcInFlightWindow.bindChannel(channelFuture.channel(), inFlightWindow);
+                }
                 list.add(rpcChannelFuture);
             } catch (Exception exception) {
                 log.error("注册到 broker 服务端异常", exception);
@@ -1,7 +1,5 @@
 package com.github.houbb.mq.common.util;
 
-import com.alibaba.fastjson.JSON;
-import com.github.houbb.mq.common.rpc.RpcMessageDto;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
 
@@ -41,17 +39,4 @@ public class DelimiterUtil {
         return Unpooled.copiedBuffer(text.getBytes());
     }
 
-    /**
-     * 获取消息
-     * @param rpcMessageDto 消息体
-     * @return 结果
-     * @since 1.0.0
-     */
-    public static ByteBuf getMessageDelimiterBuffer(RpcMessageDto rpcMessageDto) {
-        String json = JSON.toJSONString(rpcMessageDto);
-        String jsonDelimiter = json + DELIMITER;
-
-        return Unpooled.copiedBuffer(jsonDelimiter.getBytes());
-    }
-
 }
@@ -0,0 +1,57 @@
+package com.github.houbb.mq.common.util;
+
+import com.github.houbb.mq.common.constant.FrameConst;
+import com.github.houbb.mq.common.support.frame.MqFrameDecoder;
+import com.github.houbb.mq.common.support.frame.MqFrameEncoder;
+import com.github.houbb.mq.common.support.frame.MqFrameNegotiateDecoder;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelPipeline;
+
+/**
+ * 帧工具类
+ *
+ * @author binbin.hou
+ * @since 0.1.5
+ */
+public final class FrameUtil {
+
+    private FrameUtil(){}
+
+    /**
+     * 添加客户端的帧编解码
+     * @param pipeline 管道
+     * @since 0.1.5
+     */
+    public static void addClientCodec(ChannelPipeline pipeline) {
+        pipeline.addLast(new MqFrameDecoder())
+                .addLast(MqFrameEncoder.INSTANCE);
+    }
+
+    /**
+     * 添加服务端的帧编解码
+     *
+     * ps: 根据客户端第一帧协商
+     * @param pipeline 管道
+     * @since 0.1.5
+     */
+    public static void addServerCodec(ChannelPipeline pipeline) {
+        pipeline.addLast(new MqFrameNegotiateDecoder());
+    }
+
+    /**
+     * 写入帧头
+     * @param byteBuf 输出
+     * @param flags 标识
+     * @param length 内容长度
+     * @since 0.1.5
+     */
+    public static void writeHeader(final ByteBuf byteBuf,
+                                   final byte flags,
+                                   final int length) {
+        byteBuf.writeShort(FrameConst.MAGIC);
+        byteBuf.writeByte(FrameConst.VERSION);
+        byteBuf.writeByte(flags);
+        byteBuf.writeInt(length);
+    }
+
+}
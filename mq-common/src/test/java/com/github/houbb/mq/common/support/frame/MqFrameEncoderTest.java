@@ -0,0 +1,70 @@
+package com.github.houbb.mq.common.support.frame;
+
+import com.github.houbb.mq.common.constant.FrameConst;
+import com.github.houbb.mq.common.constant.MethodType;
+import com.github.houbb.mq.common.resp.MqException;
+import com.github.houbb.mq.common.rpc.RpcMessageDto;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * 长度前缀帧编码测试
+ *
+ * @author binbin.hou
+ * @since 0.1.5
+ */
+public class MqFrameEncoderTest {
+
+    /**
+     * 编码后可以由帧解码还原，消息体缓冲区不复制
+     */
+    @Test
+    public void encodeThenDecodeTest() {
+        EmbeddedChannel channel = new EmbeddedChannel(MqFrameEncoder.INSTANCE);
+        final ByteBuf bodyBuf = Unpooled.directBuffer().writeBytes(new byte[]{1, 2, 3});
+        channel.writeOutbound(newMessage(bodyBuf));
+
+        ByteBuf head = channel.readOutbound();
+        ByteBuf body = channel.readOutbound();
+        Assert.assertSame(bodyBuf.unwrap() == null ? bodyBuf : bodyBuf.unwrap(),
+                body.unwrap() == null ? body : body.unwrap());
+
+        EmbeddedChannel decodeChannel = new EmbeddedChannel(new MqFrameDecoder());
+        decodeChannel.writeInbound(Unpooled.wrappedBuffer(head, body));
+        RpcMessageDto result = decodeChannel.readInbound();
+        Assert.assertEquals("1", result.getTraceId());
+        Assert.assertArrayEquals(new byte[]{1, 2, 3}, result.getBody());
+        result.release();
+        Assert.assertEquals(0, bodyBuf.refCnt());
+    }
+
+    /**
+     * 超过最大帧长度时当前写出失败，连接保持可用
+     */
+    @Test
+    public void frameTooLongTest() {
+        EmbeddedChannel channel = new EmbeddedChannel(MqFrameEncoder.INSTANCE);
+        final ByteBuf bodyBuf = Unpooled.buffer(FrameConst.MAX_FRAME_LENGTH);
+        bodyBuf.writerIndex(FrameConst.MAX_FRAME_LENGTH);
+
+        ChannelFuture future = channel.writeAndFlush(newMessage(bodyBuf));
+        Assert.assertFalse(future.isSuccess());
+        Assert.assertTrue(future.cause().getCause() instanceof MqException);
+        Assert.assertEquals(0, bodyBuf.refCnt());
+        Assert.assertNull(channel.readOutbound());
+        Assert.assertTrue(channel.isActive());
+    }
+
+    private static RpcMessageDto newMessage(final ByteBuf bodyBuf) {
+        RpcMessageDto rpcMessageDto = new RpcMessageDto();
+        rpcMessageDto.setMethodType(MethodType.C_MESSAGE_PULL);
+        rpcMessageDto.setTraceId("1");
+        rpcMessageDto.setBodyBuf(bodyBuf);
+        return rpcMessageDto;
+    }
+
+}
@@ -0,0 +1,193 @@
+package com.github.houbb.mq.common.support.frame;
+
+import com.github.houbb.mq.common.constant.MethodOpcode;
+import com.github.houbb.mq.common.constant.MethodType;
+import com.github.houbb.mq.common.dto.req.MqMessage;
+import com.github.houbb.mq.common.rpc.RpcMessageDto;
+import com.github.houbb.mq.common.support.serializer.Serializers;
+import com.github.houbb.mq.common.support.serializer.impl.BinarySerializer;
+import com.github.houbb.mq.common.support.serializer.impl.JsonSerializer;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.util.CharsetUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collections;
+
+/**
+ * 消息信封编解码测试
+ *
+ * @author binbin.hou
+ * @since 0.1.5
+ */
+public class RpcMessageCodecTest {
+
+    @Test
+    public void binaryRoundTripTest() {
+        RpcMessageDto rpcMessageDto = new RpcMessageDto();
+        rpcMessageDto.setRequestTime(123456789L);
+        rpcMessageDto.setRequest(true);
+        rpcMessageDto.setMethodType(MethodType.P_SEND_MSG);
+        rpcMessageDto.setTraceId("1234567890123456789");
+        rpcMessageDto.setRespCode("0000");
+        rpcMessageDto.setRespMsg("成功");
+        rpcMessageDto.setBody(new byte[]{1, 2, 3});
+        rpcMessageDto.setSerializerCode(JsonSerializer.CODE);
+
+        RpcMessageDto result = roundTrip(rpcMessageDto);
+        try {
+            Assert.assertEquals(123456789L, result.getRequestTime());
+            Assert.assertTrue(result.isRequest());
+            Assert.assertEquals(MethodType.P_SEND_MSG, result.getMethodType());
+            Assert.assertEquals(MethodOpcode.getOpcode(MethodType.P_SEND_MSG), result.getOpcode());
+            Assert.assertEquals("1234567890123456789", result.getTraceId());
+            Assert.assertEquals("0000", result.getRespCode());
+            Assert.assertEquals("成功", result.getRespMsg());
+            Assert.assertEquals(JsonSerializer.CODE, result.getSerializerCode());
+            Assert.assertArrayEquals(new byte[]{1, 2, 3}, result.getBody());
+        } finally {
+            result.release();
+        }
+    }
+
+    /**
+     * 自定义方法类型、非数字的 traceId、null 字段和消息体
+     */
+    @Test
+    public void binaryCustomFieldsTest() {
+        RpcMessageDto rpcMessageDto = new RpcMessageDto();
+        rpcMessageDto.setMethodType("CUSTOM_METHOD");
+        rpcMessageDto.setTraceId("0a1b2c3d4e5f");
+
+        RpcMessageDto result = roundTrip(rpcMessageDto);
+        Assert.assertEquals("CUSTOM_METHOD", result.getMethodType());
+        Assert.assertEquals(MethodOpcode.UNKNOWN, result.getOpcode());
+        Assert.assertEquals("0a1b2c3d4e5f", result.getTraceId());
+        Assert.assertFalse(result.isRequest());
+        Assert.assertNull(result.getRespCode());
+        Assert.assertNull(result.getRespMsg());
+        Assert.assertNull(result.getBody());
+    }
+
+    /**
+     * 超过 short 长度的字符串，长度不能溢出为负数
+     */
+    @Test
+    public void binaryLongStringTest() {
+        final String traceId = repeat("t", 40000);
+        final String methodType = repeat("m", Short.MAX_VALUE);
+        // 字符数不超过 short，utf-8 字节数超过
+        final String respMsg = repeat("中", 12000);
+
+        RpcMessageDto rpcMessageDto = new RpcMessageDto();
+        rpcMessageDto.setMethodType(methodType);
+        rpcMessageDto.setTraceId(traceId);
+        rpcMessageDto.setRespCode("9999");
+        rpcMessageDto.setRespMsg(respMsg);
+        rpcMessageDto.setBody(new byte[]{9});
+
+        RpcMessageDto result = roundTrip(rpcMessageDto);
+        try {
+            Assert.assertEquals(methodType, result.getMethodType());
+            Assert.assertEquals(traceId, result.getTraceId());
+            Assert.assertEquals("9999", result.getRespCode());
+            Assert.assertEquals(respMsg, result.getRespMsg());
+            Assert.assertArrayEquals(new byte[]{9}, result.getBody());
+        } finally {
+            result.release();
+        }
+    }
+
+    @Test
+    public void binaryBodyObjectTest() {
+        MqMessage mqMessage = new MqMessage();
+        mqMessage.setTraceId("1");
+        mqMessage.setTopic("topic");
+        mqMessage.setTags(Collections.singletonList("tag"));
+        mqMessage.setPayload("payload");
+
+        RpcMessageDto rpcMessageDto = new RpcMessageDto();
+        rpcMessageDto.setMethodType(MethodType.P_SEND_MSG);
+        rpcMessageDto.setBody(Serializers.getByCode(BinarySerializer.CODE), mqMessage);
+
+        RpcMessageDto result = roundTrip(rpcMessageDto);
+        try {
+            Assert.assertEquals(BinarySerializer.CODE, result.getSerializerCode());
+            MqMessage resultMessage = Serializers.getByCode(result.getSerializerCode())
+                    .deserialize(result.getBodyBuf(), MqMessage.class);
+            Assert.assertEquals("topic", resultMessage.getTopic());
+            Assert.assertEquals(Collections.singletonList("tag"), resultMessage.getTags());
+            Assert.assertEquals("payload", resultMessage.getPayload());
+        } finally {
+            result.release();
+        }
+    }
+
+    /**
+     * 消息体缓冲区只写入长度，由调用方跟在信封后面写出
+     */
+    @Test
+    public void binaryHeadWithBodyBufTest() {
+        final ByteBuf bodyBuf = Unpooled.copiedBuffer("{\"list\":[]}", CharsetUtil.UTF_8);
+        RpcMessageDto rpcMessageDto = new RpcMessageDto();
+        rpcMessageDto.setMethodType(MethodType.C_MESSAGE_PULL);
+        rpcMessageDto.setTraceId("42");
+        rpcMessageDto.setBodyBuf(bodyBuf);
+
+        ByteBuf out = Unpooled.buffer();
+        ByteBuf returned = RpcMessageCodec.encodeBinaryHead(rpcMessageDto, out);
+        Assert.assertNotNull(returned);
+        Assert.assertEquals(bodyBuf.readableBytes(), returned.readableBytes());
+        // 信封中没有复制消息体
+        Assert.assertEquals(bodyBuf.readableBytes(), out.getInt(out.writerIndex() - 4));
+
+        ByteBuf frame = Unpooled.copiedBuffer(out, returned);
+        RpcMessageDto result = RpcMessageCodec.decodeBinary(frame);
+        try {
+            Assert.assertEquals("42", result.getTraceId());
+            Assert.assertEquals("{\"list\":[]}", new String(result.getBody(), CharsetUtil.UTF_8));
+        } finally {
+            result.release();
+            rpcMessageDto.release();
+        }
+        Assert.assertEquals(0, bodyBuf.refCnt());
+    }
+
+    @Test
+    public void jsonRoundTripTest() {
+        RpcMessageDto rpcMessageDto = new RpcMessageDto();
+        rpcMessageDto.setRequestTime(1L);
+        rpcMessageDto.setRequest(true);
+        rpcMessageDto.setMethodType(MethodType.P_SEND_MSG);
+        rpcMessageDto.setTraceId("trace");
+        rpcMessageDto.setJson("{\"topic\":\"topic\"}");
+
+        ByteBuf out = Unpooled.buffer();
+        RpcMessageCodec.encodeJson(rpcMessageDto, out);
+        RpcMessageDto result = RpcMessageCodec.decodeJson(out);
+        Assert.assertEquals(0, out.readableBytes());
+        Assert.assertEquals(MethodType.P_SEND_MSG, result.getMethodType());
+        Assert.assertEquals("trace", result.getTraceId());
+        Assert.assertTrue(result.isRequest());
+        Assert.assertEquals("{\"topic\":\"topic\"}", result.getJson());
+    }
+
+    private static String repeat(final String text, final int times) {
+        StringBuilder stringBuilder = new StringBuilder(text.length() * times);
+        for(int i = 0; i < times; i++) {
+            stringBuilder.append(text);
+        }
+        return stringBuilder.toString();
+    }
+
+    private static RpcMessageDto roundTrip(final RpcMessageDto rpcMessageDto) {
+        ByteBuf out = Unpooled.buffer();
+        RpcMessageCodec.encodeBinary(rpcMessageDto, out);
+        RpcMessageDto result = RpcMessageCodec.decodeBinary(out);
+        Assert.assertEquals(0, out.readableBytes());
+        out.release();
+        return result;
+    }
+
+}
@@ -0,0 +1,62 @@
+package com.github.houbb.mq.common.support.id;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * 消息标识测试
+ *
+ * @author binbin.hou
+ * @since 0.1.5
+ */
+public class MqIdsTest {
+
+    @Test
+    public void nextIdStringTest() {
+        final String first = MqIds.nextIdString();
+        final String second = MqIds.nextIdString();
+        Assert.assertTrue(MqIds.parse(second) > MqIds.parse(first));
+        Assert.assertEquals(first, Long.toString(MqIds.parse(first)));
+    }
+
+    @Test
+    public void parseTest() {
+        Assert.assertEquals(0, MqIds.parse("0"));
+        Assert.assertEquals(Long.MAX_VALUE, MqIds.parse(Long.toString(Long.MAX_VALUE)));
+
+        // 不能原样还原的格式
+        Assert.assertEquals(MqIds.NOT_ID, MqIds.parse(null));
+        Assert.assertEquals(MqIds.NOT_ID, MqIds.parse(""));
+        Assert.assertEquals(MqIds.NOT_ID, MqIds.parse("012"));
+        Assert.assertEquals(MqIds.NOT_ID, MqIds.parse("-1"));
+        Assert.assertEquals(MqIds.NOT_ID, MqIds.parse("+1"));
+        Assert.assertEquals(MqIds.NOT_ID, MqIds.parse("12a"));
+        Assert.assertEquals(MqIds.NOT_ID, MqIds.parse("9223372036854775808"));
+        Assert.assertEquals(MqIds.NOT_ID, MqIds.parse("10000000000000000000"));
+        Assert.assertEquals(MqIds.NOT_ID, MqIds.parse("0a1b2c3d4e5f60718293a4b5c6d7e8f9"));
+    }
+
+    @Test
+    public void parseNodeIdTest() {
+        Assert.assertEquals(0, MqIds.parseNodeId("0"));
+        Assert.assertEquals(12, MqIds.parseNodeId(" 12 "));
+        Assert.assertEquals(SnowflakeIdGenerator.MAX_NODE_ID,
+                MqIds.parseNodeId(String.valueOf(SnowflakeIdGenerator.MAX_NODE_ID)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void parseNodeIdOutOfRangeTest() {
+        MqIds.parseNodeId(String.valueOf(SnowflakeIdGenerator.MAX_NODE_ID + 1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void parseNodeIdNotNumberTest() {
+        MqIds.parseNodeId("node-1");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void initNodeIdOutOfRangeTest() {
+        MqIds.initNodeId(-1);
+    }
+
+}
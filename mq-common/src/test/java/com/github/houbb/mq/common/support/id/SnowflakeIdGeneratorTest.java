@@ -0,0 +1,62 @@
+package com.github.houbb.mq.common.support.id;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * 雪花算法标识生成器测试
+ *
+ * @author binbin.hou
+ * @since 0.1.5
+ */
+public class SnowflakeIdGeneratorTest {
+
+    @Test
+    public void increasingTest() {
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(5);
+        long prev = -1;
+        // 超过单毫秒的序列号数量，覆盖借用下一毫秒
+        for(int i = 0; i < 100000; i++) {
+            final long id = generator.nextId();
+            Assert.assertTrue(id > prev);
+            prev = id;
+        }
+    }
+
+    @Test
+    public void layoutTest() {
+        final int nodeId = SnowflakeIdGenerator.MAX_NODE_ID;
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(nodeId);
+        final long before = System.currentTimeMillis();
+        final long id = generator.nextId();
+        final long after = System.currentTimeMillis();
+
+        Assert.assertTrue(id > 0);
+        Assert.assertEquals(nodeId, (id >>> SnowflakeIdGenerator.SEQUENCE_BITS) & SnowflakeIdGenerator.MAX_NODE_ID);
+        final long timeMills = SnowflakeIdGenerator.timeMills(id);
+        Assert.assertTrue(timeMills >= before && timeMills <= after);
+    }
+
+    /**
+     * 不同节点同时生成的标识不重复
+     */
+    @Test
+    public void differentNodeTest() {
+        SnowflakeIdGenerator one = new SnowflakeIdGenerator(1);
+        SnowflakeIdGenerator two = new SnowflakeIdGenerator(2);
+        for(int i = 0; i < 1000; i++) {
+            Assert.assertNotEquals(one.nextId(), two.nextId());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void nodeIdTooLargeTest() {
+        new SnowflakeIdGenerator(SnowflakeIdGenerator.MAX_NODE_ID + 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void nodeIdNegativeTest() {
+        new SnowflakeIdGenerator(-1);
+    }
+
+}
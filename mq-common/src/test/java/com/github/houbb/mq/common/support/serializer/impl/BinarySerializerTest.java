@@ -0,0 +1,204 @@
+package com.github.houbb.mq.common.support.serializer.impl;
+
+import com.github.houbb.mq.common.constant.MethodType;
+import com.github.houbb.mq.common.dto.req.MqConsumerPullReq;
+import com.github.houbb.mq.common.dto.req.MqConsumerUpdateStatusBatchReq;
+import com.github.houbb.mq.common.dto.req.MqConsumerUpdateStatusReq;
+import com.github.houbb.mq.common.dto.req.MqHeartBeatReq;
+import com.github.houbb.mq.common.dto.req.MqMessage;
+import com.github.houbb.mq.common.dto.req.MqMessageBatchReq;
+import com.github.houbb.mq.common.dto.req.component.MqConsumerUpdateStatusDto;
+import com.github.houbb.mq.common.dto.resp.MqCommonResp;
+import com.github.houbb.mq.common.dto.resp.MqConsumerPullResp;
+import com.github.houbb.mq.common.dto.resp.MqConsumerResultResp;
+import com.github.houbb.mq.common.resp.MqException;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * 二进制序列化测试
+ *
+ * @author binbin.hou
+ * @since 0.1.5
+ */
+public class BinarySerializerTest {
+
+    private final BinarySerializer serializer = new BinarySerializer();
+
+    @Test
+    public void mqMessageTest() {
+        MqMessage mqMessage = buildMessage("1", "payload-中文");
+        MqMessage result = serializer.deserialize(serializer.serialize(mqMessage), MqMessage.class);
+        assertMessage(mqMessage, result);
+    }
+
+    /**
+     * null 字段和 null 列表原样还原
+     */
+    @Test
+    public void mqMessageNullFieldsTest() {
+        MqMessage mqMessage = new MqMessage();
+        MqMessage result = serializer.deserialize(serializer.serialize(mqMessage), MqMessage.class);
+        Assert.assertNull(result.getTraceId());
+        Assert.assertNull(result.getTopic());
+        Assert.assertNull(result.getTags());
+        Assert.assertNull(result.getPayload());
+    }
+
+    @Test
+    public void mqMessageBatchTest() {
+        MqMessageBatchReq batchReq = new MqMessageBatchReq();
+        batchReq.setTraceId("batch");
+        batchReq.setMethodType(MethodType.P_SEND_MSG_BATCH);
+        batchReq.setMqMessageList(Arrays.asList(buildMessage("1", "a"), buildMessage("2", "")));
+
+        MqMessageBatchReq result = serializer.deserialize(serializer.serialize(batchReq), MqMessageBatchReq.class);
+        Assert.assertEquals("batch", result.getTraceId());
+        Assert.assertEquals(MethodType.P_SEND_MSG_BATCH, result.getMethodType());
+        Assert.assertEquals(2, result.getMqMessageList().size());
+        assertMessage(batchReq.getMqMessageList().get(0), result.getMqMessageList().get(0));
+        assertMessage(batchReq.getMqMessageList().get(1), result.getMqMessageList().get(1));
+    }
+
+    @Test
+    public void pullReqAndRespTest() {
+        MqConsumerPullReq pullReq = new MqConsumerPullReq();
+        pullReq.setTraceId("pull");
+        pullReq.setGroupName("group");
+        pullReq.setSize(20);
+        pullReq.setTopicName("topic");
+        pullReq.setTagRegex(".*");
+        MqConsumerPullReq reqResult = serializer.deserialize(serializer.serialize(pullReq), MqConsumerPullReq.class);
+        Assert.assertEquals("pull", reqResult.getTraceId());
+        Assert.assertEquals("group", reqResult.getGroupName());
+        Assert.assertEquals(20, reqResult.getSize());
+        Assert.assertEquals("topic", reqResult.getTopicName());
+        Assert.assertEquals(".*", reqResult.getTagRegex());
+
+        MqConsumerPullResp pullResp = new MqConsumerPullResp();
+        pullResp.setRespCode("0000");
+        pullResp.setRespMessage("成功");
+        pullResp.setList(Collections.singletonList(buildMessage("3", "p")));
+        MqConsumerPullResp respResult = serializer.deserialize(serializer.serialize(pullResp), MqConsumerPullResp.class);
+        Assert.assertEquals("0000", respResult.getRespCode());
+        Assert.assertEquals("成功", respResult.getRespMessage());
+        assertMessage(pullResp.getList().get(0), respResult.getList().get(0));
+    }
+
+    @Test
+    public void updateStatusTest() {
+        MqConsumerUpdateStatusReq req = new MqConsumerUpdateStatusReq();
+        req.setMessageId("m1");
+        req.setMessageStatus("CONSUMER_SUCCESS");
+        req.setConsumerGroupName("group");
+        MqConsumerUpdateStatusReq result = serializer.deserialize(serializer.serialize(req), MqConsumerUpdateStatusReq.class);
+        Assert.assertEquals("m1", result.getMessageId());
+        Assert.assertEquals("CONSUMER_SUCCESS", result.getMessageStatus());
+        Assert.assertEquals("group", result.getConsumerGroupName());
+
+        MqConsumerUpdateStatusDto statusDto = new MqConsumerUpdateStatusDto();
+        statusDto.setMessageId("m2");
+        statusDto.setMessageStatus("CONSUMER_LATER");
+        statusDto.setConsumerGroupName("group");
+        MqConsumerUpdateStatusBatchReq batchReq = new MqConsumerUpdateStatusBatchReq();
+        batchReq.setStatusList(Collections.singletonList(statusDto));
+        MqConsumerUpdateStatusBatchReq batchResult = serializer.deserialize(serializer.serialize(batchReq),
+                MqConsumerUpdateStatusBatchReq.class);
+        Assert.assertEquals(1, batchResult.getStatusList().size());
+        Assert.assertEquals("m2", batchResult.getStatusList().get(0).getMessageId());
+        Assert.assertEquals("CONSUMER_LATER", batchResult.getStatusList().get(0).getMessageStatus());
+        Assert.assertEquals("group", batchResult.getStatusList().get(0).getConsumerGroupName());
+    }
+
+    @Test
+    public void respTest() {
+        MqCommonResp resp = new MqCommonResp();
+        resp.setRespCode("9999");
+        resp.setRespMessage("失败");
+        MqCommonResp result = serializer.deserialize(serializer.serialize(resp), MqCommonResp.class);
+        Assert.assertEquals("9999", result.getRespCode());
+        Assert.assertEquals("失败", result.getRespMessage());
+
+        MqConsumerResultResp resultResp = new MqConsumerResultResp();
+        resultResp.setRespCode("0000");
+        resultResp.setConsumerStatus("CONSUMER_SUCCESS");
+        MqConsumerResultResp resultRespResult = serializer.deserialize(serializer.serialize(resultResp),
+                MqConsumerResultResp.class);
+        Assert.assertEquals("0000", resultRespResult.getRespCode());
+        Assert.assertNull(resultRespResult.getRespMessage());
+        Assert.assertEquals("CONSUMER_SUCCESS", resultRespResult.getConsumerStatus());
+    }
+
+    /**
+     * 没有手写编解码的类型退化为 json
+     */
+    @Test
+    public void jsonFallbackTest() {
+        MqHeartBeatReq heartBeatReq = new MqHeartBeatReq();
+        heartBeatReq.setTraceId("heartbeat");
+        heartBeatReq.setMethodType(MethodType.C_HEARTBEAT);
+
+        byte[] bytes = serializer.serialize(heartBeatReq);
+        Assert.assertEquals(0, bytes[0]);
+        MqHeartBeatReq result = serializer.deserialize(bytes, MqHeartBeatReq.class);
+        Assert.assertEquals("heartbeat", result.getTraceId());
+        Assert.assertEquals(MethodType.C_HEARTBEAT, result.getMethodType());
+    }
+
+    /**
+     * 直接写入缓冲区，读取后位置在内容末尾
+     */
+    @Test
+    public void byteBufTest() {
+        ByteBuf out = Unpooled.buffer();
+        serializer.serialize(buildMessage("1", "a"), out);
+        out.writeByte(127);
+
+        MqMessage result = serializer.deserialize(out, MqMessage.class);
+        Assert.assertEquals("a", result.getPayload());
+        Assert.assertEquals(1, out.readableBytes());
+        Assert.assertEquals(127, out.readByte());
+    }
+
+    @Test(expected = MqException.class)
+    public void typeNotMatchTest() {
+        serializer.deserialize(serializer.serialize(new MqCommonResp()), MqMessage.class);
+    }
+
+    @Test(expected = MqException.class)
+    public void unknownTypeTest() {
+        serializer.deserialize(new byte[]{100}, MqMessage.class);
+    }
+
+    private static MqMessage buildMessage(final String traceId,
+                                          final String payload) {
+        MqMessage mqMessage = new MqMessage();
+        mqMessage.setTraceId(traceId);
+        mqMessage.setMethodType(MethodType.P_SEND_MSG);
+        mqMessage.setGroupName("group");
+        mqMessage.setTopic("topic");
+        mqMessage.setTags(Arrays.asList("a", "b"));
+        mqMessage.setPayload(payload);
+        mqMessage.setBizKey("biz");
+        mqMessage.setShardingKey(null);
+        return mqMessage;
+    }
+
+    private static void assertMessage(final MqMessage expected,
+                                      final MqMessage actual) {
+        Assert.assertEquals(expected.getTraceId(), actual.getTraceId());
+        Assert.assertEquals(expected.getMethodType(), actual.getMethodType());
+        Assert.assertEquals(expected.getGroupName(), actual.getGroupName());
+        Assert.assertEquals(expected.getTopic(), actual.getTopic());
+        Assert.assertEquals(expected.getTags(), actual.getTags());
+        Assert.assertEquals(expected.getPayload(), actual.getPayload());
+        Assert.assertEquals(expected.getBizKey(), actual.getBizKey());
+        Assert.assertEquals(expected.getShardingKey(), actual.getShardingKey());
+    }
+
+}
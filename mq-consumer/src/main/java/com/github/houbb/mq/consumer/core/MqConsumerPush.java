@@ -23,6 +23,12 @@ import com.github.houbb.mq.consumer.support.broker.ConsumerBrokerService;
 import com.github.houbb.mq.consumer.support.broker.IConsumerBrokerService;
 import com.github.houbb.mq.consumer.support.listener.IMqListenerService;
 import com.github.houbb.mq.consumer.support.listener.MqListenerService;
+import com.github.houbb.mq.common.support.serializer.ISerializer;
+import com.github.houbb.mq.common.support.serializer.Serializers;
+import com.github.houbb.mq.common.support.method.IMethodHandler;
+
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * 推送消费策略
@@ -123,6 +129,55 @@ public class MqConsumerPush extends Thread implements IMqConsumer  {
      */
     protected String appSecret;
 
+    /**
+     * 消息体序列化方式
+     * @since 0.1.5
+     */
+    protected ISerializer serializer = Serializers.binary();
+
+    /**
+     * 单个连接最多未完成的请求数量，小于等于 0 时不限制
+     * @since 0.1.5
+     */
+    protected int maxInFlight = 1024;
+
+    /**
+     * 请求窗口已满时的等待时间
+     * @since 0.1.5
+     */
+    protected long inFlightWaitMills = 5000;
+
+    /**
+     * 自定义的方法处理
+     * key: 方法类型
+     * @since 0.1.5
+     */
+    protected final Map<String, IMethodHandler> methodHandlerMap = new HashMap<>();
+
+    public MqConsumerPush methodHandler(String methodType, IMethodHandler methodHandler) {
+        this.methodHandlerMap.put(methodType, methodHandler);
+        return this;
+    }
+
+    public MqConsumerPush maxInFlight(int maxInFlight) {
+        this.maxInFlight = maxInFlight;
+        return this;
+    }
+
+    public MqConsumerPush inFlightWaitMills(long inFlightWaitMills) {
+        this.inFlightWaitMills = inFlightWaitMills;
+        return this;
+    }
+
+    public ISerializer serializer() {
+        return serializer;
+    }
+
+    public MqConsumerPush serializer(ISerializer serializer) {
+        this.serializer = serializer;
+        return this;
+    }
+
     public String appKey() {
         return appKey;
     }
@@ -218,7 +273,11 @@ public class MqConsumerPush extends Thread implements IMqConsumer  {
                     .unSubscribeMaxAttempt(unSubscribeMaxAttempt)
                     .consumerStatusMaxAttempt(consumerStatusMaxAttempt)
                     .appKey(appKey)
-                    .appSecret(appSecret);
+                    .appSecret(appSecret)
+                    .serializer(serializer)
+                    .maxInFlight(maxInFlight)
+                    .inFlightWaitMills(inFlightWaitMills)
+                    .methodHandlerMap(methodHandlerMap);
 
             //1. 初始化
             this.consumerBrokerService.initChannelFutureList(config);
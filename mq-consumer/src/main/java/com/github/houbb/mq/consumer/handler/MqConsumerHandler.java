@@ -12,9 +12,12 @@ import com.github.houbb.mq.common.resp.ConsumerStatus;
 import com.github.houbb.mq.common.resp.MqCommonRespCode;
 import com.github.houbb.mq.common.resp.MqException;
 import com.github.houbb.mq.common.rpc.RpcMessageDto;
+import com.github.houbb.mq.common.support.method.IMethodHandler;
+import com.github.houbb.mq.common.support.method.MethodHandlerRegistry;
+import com.github.houbb.mq.common.support.serializer.ISerializer;
+import com.github.houbb.mq.common.support.serializer.Serializers;
 import com.github.houbb.mq.common.support.invoke.IInvokeService;
 import com.github.houbb.mq.common.util.ChannelUtil;
-import com.github.houbb.mq.common.util.DelimiterUtil;
 import com.github.houbb.mq.consumer.api.IMqConsumerListenerContext;
 import com.github.houbb.mq.consumer.support.broker.IConsumerBrokerService;
 import com.github.houbb.mq.consumer.support.listener.IMqListenerService;
@@ -23,6 +26,8 @@ import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.SimpleChannelInboundHandler;
 
+import java.util.Map;
+
 /**
  * @author binbin.hou
  * @since 0.0.3
@@ -45,6 +50,31 @@ public class MqConsumerHandler extends SimpleChannelInboundHandler {
 
     private IConsumerBrokerService consumerBrokerService;
 
+    /**
+     * 方法处理注册表
+     * @since 0.1.5
+     */
+    private final MethodHandlerRegistry methodHandlerRegistry = MethodHandlerRegistry.newInstance();
+
+    public MqConsumerHandler() {
+        // 消息推送
+        methodHandlerRegistry.register(MethodType.B_MESSAGE_PUSH, new IMethodHandler() {
+            @Override
+            public MqCommonResp handle(RpcMessageDto rpcMessageDto, ChannelHandlerContext ctx) {
+                return consumer(rpcMessageDto.getSerializerCode(), rpcMessageDto.getBodyBuf());
+            }
+        });
+    }
+
+    /**
+     * 注册自定义的方法处理，相同的方法类型覆盖内置的处理
+     * @param methodHandlerMap 方法类型 -> 处理
+     * @since 0.1.5
+     */
+    public void setMethodHandlers(Map<String, IMethodHandler> methodHandlerMap) {
+        this.methodHandlerRegistry.register(methodHandlerMap);
+    }
+
     public void setConsumerBrokerService(IConsumerBrokerService consumerBrokerService) {
         this.consumerBrokerService = consumerBrokerService;
     }
@@ -59,17 +89,8 @@ public class MqConsumerHandler extends SimpleChannelInboundHandler {
 
     @Override
     protected void channelRead0(ChannelHandlerContext ctx, Object msg) throws Exception {
-        ByteBuf byteBuf = (ByteBuf) msg;
-        byte[] bytes = new byte[byteBuf.readableBytes()];
-        byteBuf.readBytes(bytes);
-
-        RpcMessageDto rpcMessageDto = null;
-        try {
-            rpcMessageDto = JSON.parseObject(bytes, RpcMessageDto.class);
-        } catch (Exception exception) {
-            log.error("RpcMessageDto json 格式转换异常 {}", new String(bytes));
-            return;
-        }
+        // 帧解码时已经解析好信封，消息体由具体的处理按需解析
+        RpcMessageDto rpcMessageDto = (RpcMessageDto) msg;
 
         if (rpcMessageDto.isRequest()) {
             MqCommonResp commonResp = this.dispatch(rpcMessageDto, ctx);
@@ -90,6 +111,8 @@ public class MqConsumerHandler extends SimpleChannelInboundHandler {
             }
 
             // 添加消息
+            // 由等待方的线程读取，处理器返回后消息体缓冲区会被释放
+            rpcMessageDto.detachBody();
             invokeService.addResponse(traceId, rpcMessageDto);
         }
     }
@@ -102,33 +125,34 @@ public class MqConsumerHandler extends SimpleChannelInboundHandler {
      * @return 结果
      */
     private MqCommonResp dispatch(RpcMessageDto rpcMessageDto, ChannelHandlerContext ctx) {
-        final String methodType = rpcMessageDto.getMethodType();
-        final String json = rpcMessageDto.getJson();
-
-        String channelId = ChannelUtil.getChannelId(ctx);
-        log.debug("channelId: {} 接收到 method: {} 内容：{}", channelId,
-                methodType, json);
-
-        // 消息发送
-        if(MethodType.B_MESSAGE_PUSH.equals(methodType)) {
-            // 日志输出
-            log.info("收到服务端消息: {}", json);
-            return this.consumer(json);
+        if(log.isDebugEnabled()) {
+            final ByteBuf body = rpcMessageDto.getBodyBuf();
+            log.debug("channelId: {} 接收到 method: {} 序列化：{} 长度：{}", ChannelUtil.getChannelId(ctx),
+                    rpcMessageDto.getMethodType(), rpcMessageDto.getSerializerCode(),
+                    body == null ? -1 : body.readableBytes());
         }
 
-        throw new UnsupportedOperationException("暂不支持的方法类型");
+        final IMethodHandler methodHandler = methodHandlerRegistry.get(rpcMessageDto);
+        if(methodHandler == null) {
+            throw new UnsupportedOperationException("暂不支持的方法类型");
+        }
+        return methodHandler.handle(rpcMessageDto, ctx);
     }
 
     /**
      * 消息消费
-     * @param json 原始请求
+     * @param serializerCode 序列化编码
+     * @param body 原始请求
      * @return 结果
      * @since 0.0.3
      */
-    private MqCommonResp consumer(final String json) {
+    private MqCommonResp consumer(final byte serializerCode,
+                                  final ByteBuf body) {
         try {
             // 如果是 broker，应该进行处理化等操作。
-            MqMessage mqMessage = JSON.parseObject(json, MqMessage.class);
+            MqMessage mqMessage = Serializers.getByCode(serializerCode).deserialize(body, MqMessage.class);
+            // 日志输出
+            log.info("收到服务端消息: {}", JSON.toJSON(mqMessage));
             IMqConsumerListenerContext context = new MqConsumerListenerContext();
             ConsumerStatus consumerStatus = this.mqListenerService.consumer(mqMessage, context);
 
@@ -170,13 +194,15 @@ public class MqConsumerHandler extends SimpleChannelInboundHandler {
         rpcMessageDto.setTraceId(req.getTraceId());
         rpcMessageDto.setMethodType(req.getMethodType());
         rpcMessageDto.setRequestTime(System.currentTimeMillis());
-        String json = JSON.toJSONString(resp);
-        rpcMessageDto.setJson(json);
+        // 和请求使用相同的序列化方式
+        final ISerializer serializer = Serializers.getByCode(req.getSerializerCode());
+        rpcMessageDto.setBody(serializer, resp);
 
         // 回写到 client 端
-        ByteBuf byteBuf = DelimiterUtil.getMessageDelimiterBuffer(rpcMessageDto);
-        ctx.writeAndFlush(byteBuf);
-        log.debug("[Server] channel {} response {}", id, JSON.toJSON(rpcMessageDto));
+        ctx.writeAndFlush(rpcMessageDto);
+        if(log.isDebugEnabled()) {
+            log.debug("[Server] channel {} response {}", id, rpcMessageDto);
+        }
     }
 
 //    /**
@@ -5,6 +5,10 @@ import com.github.houbb.mq.common.rpc.RpcChannelFuture;
 import com.github.houbb.mq.common.support.invoke.IInvokeService;
 import com.github.houbb.mq.common.support.status.IStatusManager;
 import com.github.houbb.mq.consumer.support.listener.IMqListenerService;
+import com.github.houbb.mq.common.support.serializer.ISerializer;
+import com.github.houbb.mq.common.support.method.IMethodHandler;
+
+import java.util.Map;
 
 /**
  * @author binbin.hou
@@ -88,6 +92,67 @@ public class ConsumerBrokerConfig {
      */
     protected String appSecret;
 
+    /**
+     * 消息体序列化方式
+     * @since 0.1.5
+     */
+    protected ISerializer serializer;
+
+    /**
+     * 单个连接最多未完成的请求数量，小于等于 0 时不限制
+     * @since 0.1.5
+     */
+    protected int maxInFlight;
+
+    /**
+     * 请求窗口已满时的等待时间
+     * @since 0.1.5
+     */
+    protected long inFlightWaitMills;
+
+    /**
+     * 自定义的方法处理
+     * key: 方法类型
+     * @since 0.1.5
+     */
+    protected Map<String, IMethodHandler> methodHandlerMap;
+
+    public Map<String, IMethodHandler> methodHandlerMap() {
+        return methodHandlerMap;
+    }
+
+    public ConsumerBrokerConfig methodHandlerMap(Map<String, IMethodHandler> methodHandlerMap) {
+        this.methodHandlerMap = methodHandlerMap;
+        return this;
+    }
+
+    public int maxInFlight() {
+        return maxInFlight;
+    }
+
+    public ConsumerBrokerConfig maxInFlight(int maxInFlight) {
+        this.maxInFlight = maxInFlight;
+        return this;
+    }
+
+    public long inFlightWaitMills() {
+        return inFlightWaitMills;
+    }
+
+    public ConsumerBrokerConfig inFlightWaitMills(long inFlightWaitMills) {
+        this.inFlightWaitMills = inFlightWaitMills;
+        return this;
+    }
+
+    public ISerializer serializer() {
+        return serializer;
+    }
+
+    public ConsumerBrokerConfig serializer(ISerializer serializer) {
+        this.serializer = serializer;
+        return this;
+    }
+
     public String appKey() {
         return appKey;
     }
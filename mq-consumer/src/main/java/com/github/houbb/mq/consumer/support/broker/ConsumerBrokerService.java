@@ -3,7 +3,6 @@ package com.github.houbb.mq.consumer.support.broker;
 import com.alibaba.fastjson.JSON;
 import com.github.houbb.heaven.util.net.NetUtil;
 import com.github.houbb.heaven.util.util.DateUtil;
-import com.github.houbb.id.core.util.IdHelper;
 import com.github.houbb.load.balance.api.ILoadBalance;
 import com.github.houbb.log.integration.core.Log;
 import com.github.houbb.log.integration.core.LogFactory;
@@ -21,24 +20,30 @@ import com.github.houbb.mq.common.resp.ConsumerStatus;
 import com.github.houbb.mq.common.resp.MqCommonRespCode;
 import com.github.houbb.mq.common.resp.MqException;
 import com.github.houbb.mq.common.rpc.RpcChannelFuture;
+import com.github.houbb.mq.common.rpc.RpcInFlightWindow;
 import com.github.houbb.mq.common.rpc.RpcMessageDto;
+import com.github.houbb.mq.common.support.id.MqIds;
 import com.github.houbb.mq.common.support.invoke.IInvokeService;
 import com.github.houbb.mq.common.support.status.IStatusManager;
 import com.github.houbb.mq.common.util.ChannelFutureUtils;
 import com.github.houbb.mq.common.util.ChannelUtil;
-import com.github.houbb.mq.common.util.DelimiterUtil;
+import com.github.houbb.mq.common.util.FrameUtil;
 import com.github.houbb.mq.common.util.RandomUtils;
 import com.github.houbb.mq.consumer.constant.ConsumerRespCode;
 import com.github.houbb.mq.consumer.handler.MqConsumerHandler;
 import com.github.houbb.mq.consumer.support.listener.IMqListenerService;
 import com.github.houbb.sisyphus.core.core.Retryer;
-import io.netty.buffer.ByteBuf;
+import com.github.houbb.mq.common.support.serializer.ISerializer;
+import com.github.houbb.mq.common.support.serializer.Serializers;
+import com.github.houbb.mq.common.support.method.IMethodHandler;
 import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelInitializer;
-import io.netty.handler.codec.DelimiterBasedFrameDecoder;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicReference;
@@ -142,6 +147,31 @@ public class ConsumerBrokerService implements IConsumerBrokerService {
      */
     protected String appSecret;
 
+    /**
+     * 消息体序列化方式
+     * @since 0.1.5
+     */
+    protected ISerializer serializer;
+
+    /**
+     * 单个连接最多未完成的请求数量，小于等于 0 时不限制
+     * @since 0.1.5
+     */
+    protected int maxInFlight;
+
+    /**
+     * 请求窗口已满时的等待时间
+     * @since 0.1.5
+     */
+    protected long inFlightWaitMills;
+
+    /**
+     * 自定义的方法处理
+     * key: 方法类型
+     * @since 0.1.5
+     */
+    protected Map<String, IMethodHandler> methodHandlerMap;
+
     private boolean isReconnect = false;
 
     private Set<ConsumerSubscribeReq> subscribeReqSet = new CopyOnWriteArraySet<>();
@@ -162,10 +192,14 @@ public class ConsumerBrokerService implements IConsumerBrokerService {
         this.consumerStatusMaxAttempt = config.consumerStatusMaxAttempt();
         this.appKey = config.appKey();
         this.appSecret = config.appSecret();
+        this.serializer = config.serializer();
+        this.maxInFlight = config.maxInFlight();
+        this.inFlightWaitMills = config.inFlightWaitMills();
+        this.methodHandlerMap = config.methodHandlerMap();
 
         //2. 初始化
         this.channelFutureList = ChannelFutureUtils.initChannelFutureList(brokerAddress,
-                initChannelHandler(), check);
+                initChannelHandler(), check, maxInFlight);
 
         if (!this.isReconnect) {
             //3. 初始化心跳
@@ -189,20 +223,20 @@ public class ConsumerBrokerService implements IConsumerBrokerService {
     }
 
     private ChannelHandler initChannelHandler() {
-        final ByteBuf delimiterBuf = DelimiterUtil.getByteBuf(DelimiterUtil.DELIMITER);
-
         final MqConsumerHandler mqProducerHandler = new MqConsumerHandler();
         mqProducerHandler.setInvokeService(invokeService);
         mqProducerHandler.setMqListenerService(mqListenerService);
         mqProducerHandler.setConsumerBrokerService(this);
+        if(methodHandlerMap != null) {
+            mqProducerHandler.setMethodHandlers(methodHandlerMap);
+        }
 
         // handler 实际上会被多次调用，如果不是 @Shareable，应该每次都重新创建。
         ChannelHandler handler = new ChannelInitializer<Channel>() {
             @Override
             protected void initChannel(Channel ch) throws Exception {
-                ch.pipeline()
-                        .addLast(new DelimiterBasedFrameDecoder(DelimiterUtil.LENGTH, delimiterBuf))
-                        .addLast(mqProducerHandler);
+                FrameUtil.addClientCodec(ch.pipeline());
+                ch.pipeline().addLast(mqProducerHandler);
             }
         };
 
@@ -223,7 +257,7 @@ public class ConsumerBrokerService implements IConsumerBrokerService {
             BrokerRegisterReq brokerRegisterReq = new BrokerRegisterReq();
             brokerRegisterReq.setServiceEntry(serviceEntry);
             brokerRegisterReq.setMethodType(MethodType.C_REGISTER);
-            brokerRegisterReq.setTraceId(IdHelper.uuid32());
+            brokerRegisterReq.setTraceId(MqIds.nextIdString());
             brokerRegisterReq.setAppKey(appKey);
             brokerRegisterReq.setAppSecret(appSecret);
 
@@ -251,23 +285,68 @@ public class ConsumerBrokerService implements IConsumerBrokerService {
         RpcMessageDto rpcMessageDto = new RpcMessageDto();
         rpcMessageDto.setTraceId(traceId);
         rpcMessageDto.setRequestTime(requestTime);
-        rpcMessageDto.setJson(JSON.toJSONString(commonReq));
+        if(respClass == null) {
+            // one-way 不等待写出，提前序列化，避免写出前对象被调用方修改
+            rpcMessageDto.setBody(serializer.serialize(commonReq));
+            rpcMessageDto.setSerializerCode(serializer.code());
+        } else {
+            rpcMessageDto.setBody(serializer, commonReq);
+        }
         rpcMessageDto.setMethodType(commonReq.getMethodType());
         rpcMessageDto.setRequest(true);
 
-        // 添加调用服务
-        invokeService.addRequest(traceId, respTimeoutMills);
+        // 占用请求窗口，需要响应的请求在获取到响应后释放
+        // 窗口由当前连接的 IO 线程释放，在 IO 线程中不能等待
+        final RpcInFlightWindow inFlightWindow = RpcInFlightWindow.getByChannel(channel);
+        if(inFlightWindow != null) {
+            inFlightWindow.acquire(channel.eventLoop().inEventLoop() ? 0 : inFlightWaitMills);
+        }
 
+        // 添加调用服务，one-way 不等待响应，不需要添加
         // 遍历 channel
         // 关闭当前线程，以获取对应的信息
-        // 使用序列化的方式
-        ByteBuf byteBuf = DelimiterUtil.getMessageDelimiterBuffer(rpcMessageDto);
-
+        // 使用序列化的方式，由 pipeline 中协商好的编码写出
         //负载均衡获取 channel
-        channel.writeAndFlush(byteBuf);
+        final ChannelFuture writeFuture;
+        try {
+            if(respClass != null) {
+                invokeService.addRequest(traceId, respTimeoutMills);
+            }
+            writeFuture = channel.writeAndFlush(rpcMessageDto);
+        } catch (RuntimeException e) {
+            // 没有写出，调用方不会再等待响应，这里直接释放窗口
+            if(respClass != null) {
+                invokeService.addFailure(traceId, e);
+            }
+            if(inFlightWindow != null) {
+                inFlightWindow.release();
+            }
+            throw e;
+        }
+
+        // one-way 写出完成即释放窗口
+        // 需要响应的请求写出失败时直接结束等待，由获取响应的一方释放窗口
+        writeFuture.addListener(new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture future) throws Exception {
+                if(respClass == null) {
+                    if(inFlightWindow != null) {
+                        inFlightWindow.release();
+                    }
+                    if(!future.isSuccess()) {
+                        log.warn("[Client] one-way 请求 {} 写出失败", traceId, future.cause());
+                    }
+                } else if(!future.isSuccess()) {
+                    invokeService.addFailure(traceId,
+                            new MqException(future.cause(), MqCommonRespCode.RPC_WRITE_REQ_FAILED));
+                }
+            }
+        });
 
         String channelId = ChannelUtil.getChannelId(channel);
-        log.debug("[Client] channelId {} 发送消息 {}", channelId, JSON.toJSON(rpcMessageDto));
+        if(log.isDebugEnabled()) {
+            log.debug("[Client] channelId {} 发送消息 {}", channelId, rpcMessageDto);
+        }
 //        channel.closeFuture().syncUninterruptibly();
 
         if (respClass == null) {
@@ -275,13 +354,24 @@ public class ConsumerBrokerService implements IConsumerBrokerService {
             return null;
         } else {
             //channelHandler 中获取对应的响应
-            RpcMessageDto messageDto = invokeService.getResponse(traceId);
+            RpcMessageDto messageDto;
+            try {
+                messageDto = invokeService.getResponse(traceId);
+            } finally {
+                if(inFlightWindow != null) {
+                    inFlightWindow.release();
+                }
+            }
             if (MqCommonRespCode.TIMEOUT.getCode().equals(messageDto.getRespCode())) {
                 throw new MqException(MqCommonRespCode.TIMEOUT);
             }
 
-            String respJson = messageDto.getJson();
-            return JSON.parseObject(respJson, respClass);
+            byte[] respBody = messageDto.getBody();
+            if(respBody == null) {
+                return null;
+            }
+            return Serializers.getByCode(messageDto.getSerializerCode())
+                    .deserialize(respBody, respClass);
         }
     }
 
@@ -317,7 +407,7 @@ public class ConsumerBrokerService implements IConsumerBrokerService {
     public void subscribe(String topicName, String tagRegex, String consumerType) {
         final ConsumerSubscribeReq req = new ConsumerSubscribeReq();
 
-        String messageId = IdHelper.uuid32();
+        String messageId = MqIds.nextIdString();
         req.setTraceId(messageId);
         req.setMethodType(MethodType.C_SUBSCRIBE);
         req.setTopicName(topicName);
@@ -347,7 +437,7 @@ public class ConsumerBrokerService implements IConsumerBrokerService {
     public void unSubscribe(String topicName, String tagRegex, String consumerType) {
         final ConsumerUnSubscribeReq req = new ConsumerUnSubscribeReq();
 
-        String messageId = IdHelper.uuid32();
+        String messageId = MqIds.nextIdString();
         req.setTraceId(messageId);
         req.setMethodType(MethodType.C_UN_SUBSCRIBE);
         req.setTopicName(topicName);
@@ -383,7 +473,7 @@ public class ConsumerBrokerService implements IConsumerBrokerService {
             return;
         }
         final MqHeartBeatReq req = new MqHeartBeatReq();
-        final String traceId = IdHelper.uuid32();
+        final String traceId = MqIds.nextIdString();
         req.setTraceId(traceId);
         req.setMethodType(MethodType.C_HEARTBEAT);
         req.setAddress(NetUtil.getLocalHost());
@@ -454,7 +544,7 @@ public class ConsumerBrokerService implements IConsumerBrokerService {
         req.setTagRegex(tagRegex);
         req.setTopicName(topicName);
 
-        final String traceId = IdHelper.uuid32();
+        final String traceId = MqIds.nextIdString();
         req.setTraceId(traceId);
         req.setMethodType(MethodType.C_MESSAGE_PULL);
 
@@ -469,7 +559,7 @@ public class ConsumerBrokerService implements IConsumerBrokerService {
         req.setMessageStatus(consumerStatus.getCode());
         req.setConsumerGroupName(groupName);
 
-        final String traceId = IdHelper.uuid32();
+        final String traceId = MqIds.nextIdString();
         req.setTraceId(traceId);
         req.setMethodType(MethodType.C_CONSUMER_STATUS);
 
@@ -494,7 +584,7 @@ public class ConsumerBrokerService implements IConsumerBrokerService {
         final MqConsumerUpdateStatusBatchReq req = new MqConsumerUpdateStatusBatchReq();
         req.setStatusList(statusDtoList);
 
-        final String traceId = IdHelper.uuid32();
+        final String traceId = MqIds.nextIdString();
         req.setTraceId(traceId);
         req.setMethodType(MethodType.C_CONSUMER_STATUS_BATCH);
 
@@ -526,7 +616,7 @@ public class ConsumerBrokerService implements IConsumerBrokerService {
             BrokerRegisterReq brokerRegisterReq = new BrokerRegisterReq();
             brokerRegisterReq.setServiceEntry(serviceEntry);
 
-            String messageId = IdHelper.uuid32();
+            String messageId = MqIds.nextIdString();
             brokerRegisterReq.setTraceId(messageId);
             brokerRegisterReq.setMethodType(MethodType.C_UN_REGISTER);
 
@@ -5,6 +5,7 @@ import com.github.houbb.mq.producer.dto.SendBatchResult;
 import com.github.houbb.mq.producer.dto.SendResult;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * @author binbin.hou
@@ -19,6 +20,19 @@ public interface IMqProducer {
      */
     SendResult send(final MqMessage mqMessage);
 
+    /**
+     * 异步发送消息
+     *
+     * （1）不等待响应，失败后按照间隔定时重试
+     * （2）连接上的请求窗口已满时，调用线程最多等待 inFlightWaitMills，仍然没有位置则以窗口已满失败
+     * （3）回调在 IO 线程或者定时器线程执行，耗时的处理请使用 xxxAsync(..., executor) 的方法
+     *
+     * @param mqMessage 消息类型
+     * @return 结果
+     * @since 0.1.5
+     */
+    CompletableFuture<SendResult> sendAsync(final MqMessage mqMessage);
+
     /**
      * 单向发送消息
      * @param mqMessage 消息类型
@@ -34,6 +48,16 @@ public interface IMqProducer {
      */
     SendBatchResult sendBatch(final List<MqMessage> mqMessageList);
 
+    /**
+     * 异步发送消息-批量
+     *
+     * ps: 回调的执行线程同 {@link #sendAsync(MqMessage)}
+     * @param mqMessageList 消息类型
+     * @return 结果
+     * @since 0.1.5
+     */
+    CompletableFuture<SendBatchResult> sendBatchAsync(final List<MqMessage> mqMessageList);
+
     /**
      * 单向发送消息-批量
      * @param mqMessageList 消息类型
@@ -22,8 +22,11 @@ import com.github.houbb.mq.producer.dto.SendResult;
 import com.github.houbb.mq.producer.support.broker.IProducerBrokerService;
 import com.github.houbb.mq.producer.support.broker.ProducerBrokerConfig;
 import com.github.houbb.mq.producer.support.broker.ProducerBrokerService;
+import com.github.houbb.mq.common.support.serializer.ISerializer;
+import com.github.houbb.mq.common.support.serializer.Serializers;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * 默认 mq 生产者
@@ -92,6 +95,24 @@ public class MqProducer extends Thread implements IMqProducer {
      */
     private int maxAttempt = 3;
 
+    /**
+     * 异步发送失败后重试的间隔
+     * @since 0.1.5
+     */
+    private long retryIntervalMills = 100;
+
+    /**
+     * 单个连接最多未完成的请求数量，小于等于 0 时不限制
+     * @since 0.1.5
+     */
+    private int maxInFlight = 1024;
+
+    /**
+     * 请求窗口已满时同步调用的等待时间，异步调用不等待
+     * @since 0.1.5
+     */
+    private long inFlightWaitMills = 5000;
+
     /**
      * 账户标识
      * @since 0.1.4
@@ -104,6 +125,17 @@ public class MqProducer extends Thread implements IMqProducer {
      */
     private String appSecret;
 
+    /**
+     * 消息体序列化方式
+     * @since 0.1.5
+     */
+    private ISerializer serializer = Serializers.binary();
+
+    public MqProducer serializer(ISerializer serializer) {
+        this.serializer = serializer;
+        return this;
+    }
+
     public MqProducer appKey(String appKey) {
         this.appKey = appKey;
         return this;
@@ -149,6 +181,21 @@ public class MqProducer extends Thread implements IMqProducer {
         return this;
     }
 
+    public MqProducer retryIntervalMills(long retryIntervalMills) {
+        this.retryIntervalMills = retryIntervalMills;
+        return this;
+    }
+
+    public MqProducer maxInFlight(int maxInFlight) {
+        this.maxInFlight = maxInFlight;
+        return this;
+    }
+
+    public MqProducer inFlightWaitMills(long inFlightWaitMills) {
+        this.inFlightWaitMills = inFlightWaitMills;
+        return this;
+    }
+
     /**
      * 参数校验
      */
@@ -176,8 +223,12 @@ public class MqProducer extends Thread implements IMqProducer {
                     .statusManager(statusManager)
                     .loadBalance(loadBalance)
                     .maxAttempt(maxAttempt)
+                    .retryIntervalMills(retryIntervalMills)
+                    .maxInFlight(maxInFlight)
+                    .inFlightWaitMills(inFlightWaitMills)
                     .appKey(appKey)
-                    .appSecret(appSecret);
+                    .appSecret(appSecret)
+                    .serializer(serializer);
 
             //1. 初始化
             this.producerBrokerService.initChannelFutureList(config);
@@ -211,6 +262,11 @@ public class MqProducer extends Thread implements IMqProducer {
         return this.producerBrokerService.send(mqMessage);
     }
 
+    @Override
+    public CompletableFuture<SendResult> sendAsync(MqMessage mqMessage) {
+        return this.producerBrokerService.sendAsync(mqMessage);
+    }
+
     @Override
     public SendResult sendOneWay(MqMessage mqMessage) {
         return this.producerBrokerService.sendOneWay(mqMessage);
@@ -221,6 +277,11 @@ public class MqProducer extends Thread implements IMqProducer {
         return producerBrokerService.sendBatch(mqMessageList);
     }
 
+    @Override
+    public CompletableFuture<SendBatchResult> sendBatchAsync(List<MqMessage> mqMessageList) {
+        return producerBrokerService.sendBatchAsync(mqMessageList);
+    }
+
     @Override
     public SendBatchResult sendOneWayBatch(List<MqMessage> mqMessageList) {
         return producerBrokerService.sendOneWayBatch(mqMessageList);
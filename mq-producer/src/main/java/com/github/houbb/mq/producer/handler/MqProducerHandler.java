@@ -7,7 +7,6 @@ import com.github.houbb.log.integration.core.LogFactory;
 import com.github.houbb.mq.common.rpc.RpcMessageDto;
 import com.github.houbb.mq.common.support.invoke.IInvokeService;
 import com.github.houbb.mq.common.util.ChannelUtil;
-import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.SimpleChannelInboundHandler;
 
@@ -30,25 +29,13 @@ public class MqProducerHandler extends SimpleChannelInboundHandler {
 
     @Override
     protected void channelRead0(ChannelHandlerContext ctx, Object msg) throws Exception {
-        ByteBuf byteBuf = (ByteBuf)msg;
-        byte[] bytes = new byte[byteBuf.readableBytes()];
-        byteBuf.readBytes(bytes);
-
-        String text = new String(bytes);
-        log.debug("[Client] channelId {} 接收到消息 {}", ChannelUtil.getChannelId(ctx), text);
-
-        RpcMessageDto rpcMessageDto = null;
-        try {
-            rpcMessageDto = JSON.parseObject(bytes, RpcMessageDto.class);
-        } catch (Exception exception) {
-            log.error("RpcMessageDto json 格式转换异常 {}", JSON.parse(bytes));
-            return;
-        }
+        // 帧解码时已经解析好信封，消息体由具体的处理按需解析
+        RpcMessageDto rpcMessageDto = (RpcMessageDto) msg;
+        log.debug("[Client] channelId {} 接收到消息 {}", ChannelUtil.getChannelId(ctx), rpcMessageDto);
 
         if(rpcMessageDto.isRequest()) {
             // 请求类
             final String methodType = rpcMessageDto.getMethodType();
-            final String json = rpcMessageDto.getJson();
         } else {
             // 丢弃掉 traceId 为空的信息
             if(StringUtil.isBlank(rpcMessageDto.getTraceId())) {
@@ -56,8 +43,12 @@ public class MqProducerHandler extends SimpleChannelInboundHandler {
                 return;
             }
 
+            // 由等待方的线程读取，处理器返回后消息体缓冲区会被释放
+            rpcMessageDto.detachBody();
             invokeService.addResponse(rpcMessageDto.getTraceId(), rpcMessageDto);
-            log.debug("[Client] response is :{}", JSON.toJSON(rpcMessageDto));
+            if(log.isDebugEnabled()) {
+                log.debug("[Client] response is :{}", JSON.toJSON(rpcMessageDto));
+            }
         }
     }
 
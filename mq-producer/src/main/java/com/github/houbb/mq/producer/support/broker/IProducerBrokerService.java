@@ -9,6 +9,7 @@ import com.github.houbb.mq.producer.dto.SendResult;
 import io.netty.channel.Channel;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * @author binbin.hou
@@ -43,6 +44,22 @@ public interface IProducerBrokerService extends Destroyable {
                                                                  T commonReq,
                                                                  Class<R> respClass);
 
+    /**
+     * 异步调用服务端
+     *
+     * ps: 请求窗口已满时直接以 {@link com.github.houbb.mq.common.resp.MqException} 失败，不等待
+     * @param channel 调用通道
+     * @param commonReq 通用请求
+     * @param respClass 类
+     * @param <T> 泛型
+     * @param <R> 结果
+     * @return 结果，超时时为 {@link com.github.houbb.mq.common.resp.MqException} 异常
+     * @since 0.1.5
+     */
+    <T extends MqCommonReq, R extends MqCommonResp> CompletableFuture<R> callServerAsync(Channel channel,
+                                                                                          T commonReq,
+                                                                                          Class<R> respClass);
+
     /**
      * 获取请求通道
      * @param key 标识
@@ -58,6 +75,18 @@ public interface IProducerBrokerService extends Destroyable {
      */
     SendResult send(final MqMessage mqMessage);
 
+    /**
+     * 异步发送消息
+     *
+     * （1）不阻塞调用线程，失败后按照间隔定时重试
+     * （2）回调在 IO 线程或者定时器线程执行，耗时的处理请使用 xxxAsync(..., executor) 的方法
+     *
+     * @param mqMessage 消息类型
+     * @return 结果
+     * @since 0.1.5
+     */
+    CompletableFuture<SendResult> sendAsync(final MqMessage mqMessage);
+
     /**
      * 单向发送消息
      * @param mqMessage 消息类型
@@ -75,6 +104,16 @@ public interface IProducerBrokerService extends Destroyable {
      */
     SendBatchResult sendBatch(final List<MqMessage> mqMessageList);
 
+    /**
+     * 异步发送消息-批量
+     *
+     * ps: 回调的执行线程同 {@link #sendAsync(MqMessage)}
+     * @param mqMessageList 消息类型
+     * @return 结果
+     * @since 0.1.5
+     */
+    CompletableFuture<SendBatchResult> sendBatchAsync(final List<MqMessage> mqMessageList);
+
     /**
      * 单向发送消息-批量
      * @param mqMessageList 消息类型
@@ -4,6 +4,7 @@ import com.github.houbb.load.balance.api.ILoadBalance;
 import com.github.houbb.mq.common.rpc.RpcChannelFuture;
 import com.github.houbb.mq.common.support.invoke.IInvokeService;
 import com.github.houbb.mq.common.support.status.IStatusManager;
+import com.github.houbb.mq.common.support.serializer.ISerializer;
 
 /**
  * @author binbin.hou
@@ -57,6 +58,24 @@ public class ProducerBrokerConfig {
      */
     private int maxAttempt;
 
+    /**
+     * 异步发送失败后重试的间隔
+     * @since 0.1.5
+     */
+    private long retryIntervalMills;
+
+    /**
+     * 单个连接最多未完成的请求数量，小于等于 0 时不限制
+     * @since 0.1.5
+     */
+    private int maxInFlight;
+
+    /**
+     * 请求窗口已满时同步调用的等待时间，异步调用不等待
+     * @since 0.1.5
+     */
+    private long inFlightWaitMills;
+
     /**
      * 账户标识
      * @since 0.1.4
@@ -69,10 +88,25 @@ public class ProducerBrokerConfig {
      */
     private String appSecret;
 
+    /**
+     * 消息体序列化方式
+     * @since 0.1.5
+     */
+    private ISerializer serializer;
+
     public static ProducerBrokerConfig newInstance() {
         return new ProducerBrokerConfig();
     }
 
+    public ISerializer serializer() {
+        return serializer;
+    }
+
+    public ProducerBrokerConfig serializer(ISerializer serializer) {
+        this.serializer = serializer;
+        return this;
+    }
+
     public String appKey() {
         return appKey;
     }
@@ -100,6 +134,33 @@ public class ProducerBrokerConfig {
         return this;
     }
 
+    public long retryIntervalMills() {
+        return retryIntervalMills;
+    }
+
+    public ProducerBrokerConfig retryIntervalMills(long retryIntervalMills) {
+        this.retryIntervalMills = retryIntervalMills;
+        return this;
+    }
+
+    public int maxInFlight() {
+        return maxInFlight;
+    }
+
+    public ProducerBrokerConfig maxInFlight(int maxInFlight) {
+        this.maxInFlight = maxInFlight;
+        return this;
+    }
+
+    public long inFlightWaitMills() {
+        return inFlightWaitMills;
+    }
+
+    public ProducerBrokerConfig inFlightWaitMills(long inFlightWaitMills) {
+        this.inFlightWaitMills = inFlightWaitMills;
+        return this;
+    }
+
     public String groupName() {
         return groupName;
     }
@@ -1,8 +1,8 @@
 package com.github.houbb.mq.producer.support.broker;
 
 import com.alibaba.fastjson.JSON;
+import com.github.houbb.heaven.util.util.CollectionUtil;
 import com.github.houbb.heaven.util.util.DateUtil;
-import com.github.houbb.id.core.util.IdHelper;
 import com.github.houbb.load.balance.api.ILoadBalance;
 import com.github.houbb.log.integration.core.Log;
 import com.github.houbb.log.integration.core.LogFactory;
@@ -17,12 +17,14 @@ import com.github.houbb.mq.common.dto.resp.MqCommonResp;
 import com.github.houbb.mq.common.resp.MqCommonRespCode;
 import com.github.houbb.mq.common.resp.MqException;
 import com.github.houbb.mq.common.rpc.RpcChannelFuture;
+import com.github.houbb.mq.common.rpc.RpcInFlightWindow;
 import com.github.houbb.mq.common.rpc.RpcMessageDto;
+import com.github.houbb.mq.common.support.id.MqIds;
 import com.github.houbb.mq.common.support.invoke.IInvokeService;
 import com.github.houbb.mq.common.support.status.IStatusManager;
 import com.github.houbb.mq.common.util.ChannelFutureUtils;
 import com.github.houbb.mq.common.util.ChannelUtil;
-import com.github.houbb.mq.common.util.DelimiterUtil;
+import com.github.houbb.mq.common.util.FrameUtil;
 import com.github.houbb.mq.common.util.RandomUtils;
 import com.github.houbb.mq.producer.constant.ProducerRespCode;
 import com.github.houbb.mq.producer.constant.SendStatus;
@@ -31,15 +33,26 @@ import com.github.houbb.mq.producer.dto.SendBatchResult;
 import com.github.houbb.mq.producer.dto.SendResult;
 import com.github.houbb.mq.producer.handler.MqProducerHandler;
 import com.github.houbb.sisyphus.core.core.Retryer;
-import io.netty.buffer.ByteBuf;
+import com.github.houbb.mq.common.support.serializer.ISerializer;
+import com.github.houbb.mq.common.support.serializer.Serializers;
 import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelInitializer;
-import io.netty.handler.codec.DelimiterBasedFrameDecoder;
+import io.netty.util.concurrent.DefaultThreadFactory;
 
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
 
 /**
  * @author binbin.hou
@@ -101,6 +114,33 @@ public class ProducerBrokerService implements IProducerBrokerService{
      */
     private int maxAttempt = 3;
 
+    /**
+     * 异步发送失败后重试的间隔
+     * @since 0.1.5
+     */
+    private long retryIntervalMills;
+
+    /**
+     * 异步发送的重试线程
+     *
+     * ps: 重试会序列化并写出消息，不能在共用的定时器线程执行
+     * @since 0.1.5
+     */
+    private final ScheduledExecutorService retryExecutorService = Executors.newSingleThreadScheduledExecutor(
+            new DefaultThreadFactory("mq-producer-retry", true));
+
+    /**
+     * 单个连接最多未完成的请求数量，小于等于 0 时不限制
+     * @since 0.1.5
+     */
+    private int maxInFlight;
+
+    /**
+     * 请求窗口已满时同步调用的等待时间，异步调用不等待
+     * @since 0.1.5
+     */
+    private long inFlightWaitMills;
+
     /**
      * 账户标识
      * @since 0.1.4
@@ -113,9 +153,28 @@ public class ProducerBrokerService implements IProducerBrokerService{
      */
     private String appSecret;
 
+    /**
+     * 消息体序列化方式
+     * @since 0.1.5
+     */
+    private ISerializer serializer;
+
     @Override
     public void initChannelFutureList(ProducerBrokerConfig config) {
         //1. 配置初始化
+        this.initConfig(config);
+
+        //2. 初始化
+        this.channelFutureList = ChannelFutureUtils.initChannelFutureList(brokerAddress,
+                initChannelHandler(), check, maxInFlight);
+    }
+
+    /**
+     * 配置初始化，不建立连接
+     * @param config 配置
+     * @since 0.1.5
+     */
+    void initConfig(ProducerBrokerConfig config) {
         this.invokeService = config.invokeService();
         this.check = config.check();
         this.respTimeoutMills = config.respTimeoutMills();
@@ -124,17 +183,15 @@ public class ProducerBrokerService implements IProducerBrokerService{
         this.statusManager = config.statusManager();
         this.loadBalance = config.loadBalance();
         this.maxAttempt = config.maxAttempt();
+        this.retryIntervalMills = config.retryIntervalMills();
+        this.maxInFlight = config.maxInFlight();
+        this.inFlightWaitMills = config.inFlightWaitMills();
         this.appKey = config.appKey();
         this.appSecret = config.appSecret();
-
-        //2. 初始化
-        this.channelFutureList = ChannelFutureUtils.initChannelFutureList(brokerAddress,
-                initChannelHandler(), check);
+        this.serializer = config.serializer();
     }
 
     private ChannelHandler initChannelHandler() {
-        final ByteBuf delimiterBuf = DelimiterUtil.getByteBuf(DelimiterUtil.DELIMITER);
-
         final MqProducerHandler mqProducerHandler = new MqProducerHandler();
         mqProducerHandler.setInvokeService(invokeService);
 
@@ -142,9 +199,8 @@ public class ProducerBrokerService implements IProducerBrokerService{
         ChannelHandler handler = new ChannelInitializer<Channel>() {
             @Override
             protected void initChannel(Channel ch) throws Exception {
-                ch.pipeline()
-                        .addLast(new DelimiterBasedFrameDecoder(DelimiterUtil.LENGTH, delimiterBuf))
-                        .addLast(mqProducerHandler);
+                FrameUtil.addClientCodec(ch.pipeline());
+                ch.pipeline().addLast(mqProducerHandler);
             }
         };
 
@@ -164,7 +220,7 @@ public class ProducerBrokerService implements IProducerBrokerService{
             BrokerRegisterReq brokerRegisterReq = new BrokerRegisterReq();
             brokerRegisterReq.setServiceEntry(serviceEntry);
             brokerRegisterReq.setMethodType(MethodType.P_REGISTER);
-            brokerRegisterReq.setTraceId(IdHelper.uuid32());
+            brokerRegisterReq.setTraceId(MqIds.nextIdString());
             brokerRegisterReq.setAppKey(appKey);
             brokerRegisterReq.setAppSecret(appSecret);
 
@@ -186,44 +242,184 @@ public class ProducerBrokerService implements IProducerBrokerService{
 
     @Override
     public <T extends MqCommonReq, R extends MqCommonResp> R callServer(Channel channel, T commonReq, Class<R> respClass) {
+        final String traceId = this.writeRequest(channel, commonReq, null, respClass, inFlightWaitMills);
+
+        if (respClass == null) {
+            log.debug("[Client] 当前消息为 one-way 消息，忽略响应");
+            return null;
+        } else {
+            //channelHandler 中获取对应的响应
+            RpcMessageDto messageDto;
+            try {
+                messageDto = invokeService.getResponse(traceId);
+            } finally {
+                releaseInFlight(channel);
+            }
+            return parseResponse(messageDto, respClass);
+        }
+    }
+
+    @Override
+    public <T extends MqCommonReq, R extends MqCommonResp> CompletableFuture<R> callServerAsync(Channel channel,
+                                                                                                 T commonReq,
+                                                                                                 Class<R> respClass) {
+        // 窗口已满时直接拒绝，不阻塞调用线程
+        return this.callServerAsync(channel, commonReq, serializer.serialize(commonReq), respClass, 0);
+    }
+
+    /**
+     * 异步调用服务端
+     *
+     * ps: 返回时请求可能还没有写出，消息体需要提前序列化，避免调用方之后修改请求
+     * @param channel 调用通道
+     * @param commonReq 通用请求
+     * @param body 已经序列化的消息体
+     * @param respClass 类
+     * @param inFlightWaitMills 请求窗口已满时的等待时间
+     * @param <R> 结果
+     * @return 结果
+     * @since 0.1.5
+     */
+    private <R extends MqCommonResp> CompletableFuture<R> callServerAsync(final Channel channel,
+                                                                          MqCommonReq commonReq,
+                                                                          byte[] body,
+                                                                          final Class<R> respClass,
+                                                                          long inFlightWaitMills) {
+        final String traceId = this.writeRequest(channel, commonReq, body, respClass, inFlightWaitMills);
+
+        // 不等待，响应到达或者超时后转换
+        final CompletableFuture<RpcMessageDto> responseFuture = invokeService.getResponseFuture(traceId);
+        responseFuture.whenComplete(new BiConsumer<RpcMessageDto, Throwable>() {
+            @Override
+            public void accept(RpcMessageDto rpcMessageDto, Throwable throwable) {
+                releaseInFlight(channel);
+            }
+        });
+        return responseFuture.thenApply(new Function<RpcMessageDto, R>() {
+            @Override
+            public R apply(RpcMessageDto messageDto) {
+                return parseResponse(messageDto, respClass);
+            }
+        });
+    }
+
+    /**
+     * 写出请求
+     * @param channel 调用通道
+     * @param commonReq 通用请求
+     * @param body 已经序列化的消息体，为空时按照请求序列化
+     * @param respClass 类，为空时为 one-way
+     * @param inFlightWaitMills 请求窗口已满时的等待时间
+     * @return 请求标识
+     * @since 0.1.5
+     */
+    private String writeRequest(Channel channel, MqCommonReq commonReq, byte[] body, Class<?> respClass,
+                                long inFlightWaitMills) {
         final String traceId = commonReq.getTraceId();
         final long requestTime = System.currentTimeMillis();
 
         RpcMessageDto rpcMessageDto = new RpcMessageDto();
         rpcMessageDto.setTraceId(traceId);
         rpcMessageDto.setRequestTime(requestTime);
-        rpcMessageDto.setJson(JSON.toJSONString(commonReq));
+        if(body != null) {
+            rpcMessageDto.setBody(body);
+            rpcMessageDto.setSerializerCode(serializer.code());
+        } else if(respClass == null) {
+            // one-way 不等待写出，提前序列化，避免写出前对象被调用方修改
+            rpcMessageDto.setBody(serializer.serialize(commonReq));
+            rpcMessageDto.setSerializerCode(serializer.code());
+        } else {
+            rpcMessageDto.setBody(serializer, commonReq);
+        }
         rpcMessageDto.setMethodType(commonReq.getMethodType());
         rpcMessageDto.setRequest(true);
 
-        // 添加调用服务
-        invokeService.addRequest(traceId, respTimeoutMills);
+        // 占用请求窗口，需要响应的请求在响应完成后释放
+        // 窗口由当前连接的 IO 线程释放，在 IO 线程中不能等待
+        final RpcInFlightWindow inFlightWindow = RpcInFlightWindow.getByChannel(channel);
+        if(inFlightWindow != null) {
+            inFlightWindow.acquire(channel.eventLoop().inEventLoop() ? 0 : inFlightWaitMills);
+        }
 
+        // 添加调用服务，one-way 不等待响应，不需要添加
         // 遍历 channel
         // 关闭当前线程，以获取对应的信息
-        // 使用序列化的方式
-        ByteBuf byteBuf = DelimiterUtil.getMessageDelimiterBuffer(rpcMessageDto);
-
+        // 使用序列化的方式，由 pipeline 中协商好的编码写出
         //负载均衡获取 channel
-        channel.writeAndFlush(byteBuf);
+        final ChannelFuture writeFuture;
+        try {
+            if(respClass != null) {
+                invokeService.addRequest(traceId, respTimeoutMills);
+            }
+            writeFuture = channel.writeAndFlush(rpcMessageDto);
+        } catch (RuntimeException e) {
+            // 没有写出，调用方不会再等待响应，这里直接释放窗口
+            if(respClass != null) {
+                invokeService.addFailure(traceId, e);
+            }
+            if(inFlightWindow != null) {
+                inFlightWindow.release();
+            }
+            throw e;
+        }
+
+        // one-way 写出完成即释放窗口
+        // 需要响应的请求写出失败时直接结束等待，由获取响应的一方释放窗口
+        writeFuture.addListener(new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture future) throws Exception {
+                if(respClass == null) {
+                    if(inFlightWindow != null) {
+                        inFlightWindow.release();
+                    }
+                    if(!future.isSuccess()) {
+                        log.warn("[Client] one-way 请求 {} 写出失败", traceId, future.cause());
+                    }
+                } else if(!future.isSuccess()) {
+                    invokeService.addFailure(traceId,
+                            new MqException(future.cause(), MqCommonRespCode.RPC_WRITE_REQ_FAILED));
+                }
+            }
+        });
 
         String channelId = ChannelUtil.getChannelId(channel);
-        log.debug("[Client] channelId {} 发送消息 {}", channelId, JSON.toJSON(rpcMessageDto));
-//        channel.closeFuture().syncUninterruptibly();
+        if(log.isDebugEnabled()) {
+            log.debug("[Client] channelId {} 发送消息 {}", channelId, rpcMessageDto);
+        }
+        return traceId;
+    }
 
-        if (respClass == null) {
-            log.debug("[Client] 当前消息为 one-way 消息，忽略响应");
-            return null;
-        } else {
-            //channelHandler 中获取对应的响应
-            RpcMessageDto messageDto = invokeService.getResponse(traceId);
-            if (MqCommonRespCode.TIMEOUT.getCode().equals(messageDto.getRespCode())) {
-                throw new MqException(MqCommonRespCode.TIMEOUT);
-            }
+    /**
+     * 释放请求窗口
+     * @param channel 调用通道
+     * @since 0.1.5
+     */
+    private void releaseInFlight(Channel channel) {
+        final RpcInFlightWindow inFlightWindow = RpcInFlightWindow.getByChannel(channel);
+        if(inFlightWindow != null) {
+            inFlightWindow.release();
+        }
+    }
 
-            String respJson = messageDto.getJson();
-            return JSON.parseObject(respJson, respClass);
+    /**
+     * 解析响应
+     * @param messageDto 响应
+     * @param respClass 类
+     * @param <R> 结果
+     * @return 结果
+     * @since 0.1.5
+     */
+    private <R extends MqCommonResp> R parseResponse(RpcMessageDto messageDto, Class<R> respClass) {
+        if (MqCommonRespCode.TIMEOUT.getCode().equals(messageDto.getRespCode())) {
+            throw new MqException(MqCommonRespCode.TIMEOUT);
         }
+
+        byte[] respBody = messageDto.getBody();
+        if(respBody == null) {
+            return null;
+        }
+        return Serializers.getByCode(messageDto.getSerializerCode())
+                .deserialize(respBody, respClass);
     }
 
     @Override
@@ -246,7 +442,7 @@ public class ProducerBrokerService implements IProducerBrokerService{
 
     @Override
     public SendResult send(final MqMessage mqMessage) {
-        final String messageId = IdHelper.uuid32();
+        final String messageId = MqIds.nextIdString();
         mqMessage.setTraceId(messageId);
         mqMessage.setMethodType(MethodType.P_SEND_MSG);
         mqMessage.setGroupName(groupName);
@@ -267,6 +463,10 @@ public class ProducerBrokerService implements IProducerBrokerService{
 
         Channel channel = getChannel(mqMessage.getShardingKey());
         MqCommonResp resp = callServer(channel, mqMessage, MqCommonResp.class);
+        return buildSendResult(messageId, mqMessage, resp);
+    }
+
+    private SendResult buildSendResult(String messageId, MqMessage mqMessage, MqCommonResp resp) {
         if(MqCommonRespCode.SUCCESS.getCode().equals(resp.getRespCode())) {
             return SendResult.of(messageId, SendStatus.SUCCESS);
         }
@@ -275,9 +475,104 @@ public class ProducerBrokerService implements IProducerBrokerService{
         throw new MqException(ProducerRespCode.MSG_SEND_FAILED);
     }
 
+    @Override
+    public CompletableFuture<SendResult> sendAsync(final MqMessage mqMessage) {
+        final String messageId = MqIds.nextIdString();
+        mqMessage.setTraceId(messageId);
+        mqMessage.setMethodType(MethodType.P_SEND_MSG);
+        mqMessage.setGroupName(groupName);
+
+        // 返回后调用方可能修改或者复用消息，这里序列化一次，重试时复用
+        final byte[] body = serializer.serialize(mqMessage);
+        final String shardingKey = mqMessage.getShardingKey();
+
+        final CompletableFuture<SendResult> result = new CompletableFuture<>();
+        this.retryAsync(new Function<Long, CompletableFuture<SendResult>>() {
+            @Override
+            public CompletableFuture<SendResult> apply(Long waitMills) {
+                return doSendAsync(messageId, mqMessage, body, shardingKey, waitMills);
+            }
+        }, result, 1);
+        return result;
+    }
+
+    private CompletableFuture<SendResult> doSendAsync(final String messageId, final MqMessage mqMessage,
+                                                      byte[] body, String shardingKey,
+                                                      long inFlightWaitMills) {
+        if(log.isDebugEnabled()) {
+            log.debug("[Producer] 异步发送消息 messageId: {}, mqMessage: {}",
+                    messageId, JSON.toJSON(mqMessage));
+        }
+
+        Channel channel = getChannel(shardingKey);
+        return callServerAsync(channel, mqMessage, body, MqCommonResp.class, inFlightWaitMills).thenApply(new Function<MqCommonResp, SendResult>() {
+            @Override
+            public SendResult apply(MqCommonResp resp) {
+                return buildSendResult(messageId, mqMessage, resp);
+            }
+        });
+    }
+
+    /**
+     * 异步重试
+     *
+     * （1）失败后由定时器按照间隔再次执行，不占用线程等待
+     * （2）达到最大尝试次数后，以最后一次的异常结束
+     * （3）第一次在调用线程执行，请求窗口已满时等待，形成背压；重试在重试线程执行，不等待
+     * （4）定时器线程只负责计时，不执行发送
+     *
+     * @param callable 单次执行，入参为请求窗口已满时的等待时间
+     * @param result 最终结果
+     * @param attempt 当前尝试次数，从 1 开始
+     * @param <R> 结果
+     * @since 0.1.5
+     */
+    private <R> void retryAsync(final Function<Long, CompletableFuture<R>> callable,
+                                final CompletableFuture<R> result,
+                                final int attempt) {
+        CompletableFuture<R> future;
+        try {
+            final long waitMills = attempt == 1 ? inFlightWaitMills : 0;
+            future = callable.apply(waitMills);
+        } catch (Exception e) {
+            future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+        }
+
+        future.whenComplete(new BiConsumer<R, Throwable>() {
+            @Override
+            public void accept(R r, Throwable throwable) {
+                if(throwable == null) {
+                    result.complete(r);
+                    return;
+                }
+
+                final Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null
+                        ? throwable.getCause() : throwable;
+                if(attempt >= maxAttempt) {
+                    result.completeExceptionally(cause);
+                    return;
+                }
+
+                log.warn("[Producer] 异步发送第 {} 次失败，{}ms 后重试", attempt, retryIntervalMills, cause);
+                try {
+                    retryExecutorService.schedule(new Runnable() {
+                        @Override
+                        public void run() {
+                            retryAsync(callable, result, attempt + 1);
+                        }
+                    }, retryIntervalMills, TimeUnit.MILLISECONDS);
+                } catch (RejectedExecutionException e) {
+                    // 已经关闭
+                    result.completeExceptionally(cause);
+                }
+            }
+        });
+    }
+
     @Override
     public SendResult sendOneWay(MqMessage mqMessage) {
-        String messageId = IdHelper.uuid32();
+        String messageId = MqIds.nextIdString();
         mqMessage.setTraceId(messageId);
         mqMessage.setMethodType(MethodType.P_SEND_MSG_ONE_WAY);
         mqMessage.setGroupName(groupName);
@@ -291,11 +586,12 @@ public class ProducerBrokerService implements IProducerBrokerService{
 
     @Override
     public SendBatchResult sendBatch(List<MqMessage> mqMessageList) {
+        checkBatch(mqMessageList);
         final List<String> messageIdList = this.fillMessageList(mqMessageList);
 
         final MqMessageBatchReq batchReq = new MqMessageBatchReq();
         batchReq.setMqMessageList(mqMessageList);
-        String traceId = IdHelper.uuid32();
+        String traceId = MqIds.nextIdString();
         batchReq.setTraceId(traceId);
         batchReq.setMethodType(MethodType.P_SEND_MSG_BATCH);
 
@@ -327,6 +623,10 @@ public class ProducerBrokerService implements IProducerBrokerService{
         }
 
         MqCommonResp resp = callServer(channel, batchReq, MqCommonResp.class);
+        return buildSendBatchResult(messageIdList, resp);
+    }
+
+    private SendBatchResult buildSendBatchResult(List<String> messageIdList, MqCommonResp resp) {
         if(MqCommonRespCode.SUCCESS.getCode().equals(resp.getRespCode())) {
             return SendBatchResult.of(messageIdList, SendStatus.SUCCESS);
         }
@@ -334,11 +634,68 @@ public class ProducerBrokerService implements IProducerBrokerService{
         throw new MqException(ProducerRespCode.MSG_SEND_FAILED);
     }
 
+    @Override
+    public CompletableFuture<SendBatchResult> sendBatchAsync(List<MqMessage> mqMessageList) {
+        checkBatch(mqMessageList);
+        final List<String> messageIdList = this.fillMessageList(mqMessageList);
+
+        final MqMessageBatchReq batchReq = new MqMessageBatchReq();
+        batchReq.setMqMessageList(mqMessageList);
+        String traceId = MqIds.nextIdString();
+        batchReq.setTraceId(traceId);
+        batchReq.setMethodType(MethodType.P_SEND_MSG_BATCH);
+
+        // 返回后调用方可能修改或者复用消息，这里序列化一次，重试时复用
+        // 以第一个 sharding-key 为准。
+        final byte[] body = serializer.serialize(batchReq);
+        final String shardingKey = mqMessageList.get(0).getShardingKey();
+
+        final CompletableFuture<SendBatchResult> result = new CompletableFuture<>();
+        this.retryAsync(new Function<Long, CompletableFuture<SendBatchResult>>() {
+            @Override
+            public CompletableFuture<SendBatchResult> apply(Long waitMills) {
+                return doSendBatchAsync(messageIdList, batchReq, body, shardingKey, waitMills);
+            }
+        }, result, 1);
+        return result;
+    }
+
+    private CompletableFuture<SendBatchResult> doSendBatchAsync(final List<String> messageIdList,
+                                                                MqMessageBatchReq batchReq,
+                                                                byte[] body, String shardingKey,
+                                                                long inFlightWaitMills) {
+        if(log.isDebugEnabled()) {
+            log.debug("[Producer] 异步批量发送消息 messageIdList: {}, batchReq: {}",
+                    messageIdList, JSON.toJSON(batchReq));
+        }
+
+        Channel channel = getChannel(shardingKey);
+        return callServerAsync(channel, batchReq, body, MqCommonResp.class, inFlightWaitMills).thenApply(new Function<MqCommonResp, SendBatchResult>() {
+            @Override
+            public SendBatchResult apply(MqCommonResp resp) {
+                return buildSendBatchResult(messageIdList, resp);
+            }
+        });
+    }
+
+    /**
+     * 校验批量消息
+     *
+     * ps: 以第一个消息的 sharding-key 选择连接，列表不能为空
+     * @param mqMessageList 消息列表
+     * @since 0.1.5
+     */
+    private void checkBatch(final List<MqMessage> mqMessageList) {
+        if(CollectionUtil.isEmpty(mqMessageList)) {
+            throw new MqException(ProducerRespCode.MSG_BATCH_EMPTY);
+        }
+    }
+
     private List<String> fillMessageList(final List<MqMessage> mqMessageList) {
         List<String> idList = new ArrayList<>(mqMessageList.size());
 
         for(MqMessage mqMessage : mqMessageList) {
-            String messageId = IdHelper.uuid32();
+            String messageId = MqIds.nextIdString();
             mqMessage.setTraceId(messageId);
             mqMessage.setGroupName(groupName);
 
@@ -350,11 +707,12 @@ public class ProducerBrokerService implements IProducerBrokerService{
 
     @Override
     public SendBatchResult sendOneWayBatch(List<MqMessage> mqMessageList) {
+        checkBatch(mqMessageList);
         List<String> messageIdList = this.fillMessageList(mqMessageList);
 
         MqMessageBatchReq batchReq = new MqMessageBatchReq();
         batchReq.setMqMessageList(mqMessageList);
-        String traceId = IdHelper.uuid32();
+        String traceId = MqIds.nextIdString();
         batchReq.setTraceId(traceId);
         batchReq.setMethodType(MethodType.P_SEND_MSG_ONE_WAY_BATCH);
 
@@ -363,6 +721,9 @@ public class ProducerBrokerService implements IProducerBrokerService{
 
     @Override
     public void destroyAll() {
+        // 不再接受新的重试，已经计划的重试继续执行，结束对应的结果
+        retryExecutorService.shutdown();
+
         for(RpcChannelFuture channelFuture : channelFutureList) {
             Channel channel = channelFuture.getChannelFuture().channel();
             final String channelId = ChannelUtil.getChannelId(channel);
@@ -373,7 +734,7 @@ public class ProducerBrokerService implements IProducerBrokerService{
             BrokerRegisterReq brokerRegisterReq = new BrokerRegisterReq();
             brokerRegisterReq.setServiceEntry(serviceEntry);
 
-            String messageId = IdHelper.uuid32();
+            String messageId = MqIds.nextIdString();
             brokerRegisterReq.setTraceId(messageId);
             brokerRegisterReq.setMethodType(MethodType.P_UN_REGISTER);
 
@@ -0,0 +1,192 @@
+package com.github.houbb.mq.producer.support.broker;
+
+import com.github.houbb.mq.common.constant.MethodType;
+import com.github.houbb.mq.common.dto.req.MqCommonReq;
+import com.github.houbb.mq.common.dto.resp.MqCommonResp;
+import com.github.houbb.mq.common.resp.MqCommonRespCode;
+import com.github.houbb.mq.common.resp.MqException;
+import com.github.houbb.mq.common.rpc.RpcInFlightWindow;
+import com.github.houbb.mq.common.rpc.RpcMessageDto;
+import com.github.houbb.mq.common.support.frame.MqFrameEncoder;
+import com.github.houbb.mq.common.support.invoke.IInvokeService;
+import com.github.houbb.mq.common.support.invoke.impl.InvokeService;
+import com.github.houbb.mq.common.support.serializer.ISerializer;
+import com.github.houbb.mq.common.support.serializer.Serializers;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.ReferenceCountUtil;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * 生产者请求窗口释放测试
+ *
+ * @author binbin.hou
+ * @since 0.1.5
+ */
+public class ProducerBrokerServiceInFlightTest {
+
+    private static final long RESP_TIMEOUT_MILLS = 100;
+
+    private final ISerializer serializer = Serializers.binary();
+
+    private IInvokeService invokeService;
+
+    private ProducerBrokerService brokerService;
+
+    private RpcInFlightWindow window;
+
+    private EmbeddedChannel channel;
+
+    @Before
+    public void before() {
+        invokeService = new InvokeService();
+        brokerService = new ProducerBrokerService();
+        brokerService.initConfig(ProducerBrokerConfig.newInstance()
+                .invokeService(invokeService)
+                .respTimeoutMills(RESP_TIMEOUT_MILLS)
+                .maxInFlight(4)
+                .serializer(serializer));
+        window = new RpcInFlightWindow(4);
+    }
+
+    @After
+    public void after() {
+        if(channel != null) {
+            releaseOutbound();
+            channel.finishAndReleaseAll();
+        }
+    }
+
+    @Test
+    public void releaseAfterResponseTest() throws Exception {
+        channel = newChannel(false);
+        CompletableFuture<MqCommonResp> future = brokerService.callServerAsync(channel, newReq("resp"), MqCommonResp.class);
+        Assert.assertEquals(1, window.inFlight());
+
+        MqCommonResp resp = new MqCommonResp();
+        resp.setRespCode(MqCommonRespCode.SUCCESS.getCode());
+        RpcMessageDto response = new RpcMessageDto();
+        response.setTraceId("resp");
+        response.setSerializerCode(serializer.code());
+        response.setBody(serializer.serialize(resp));
+        invokeService.addResponse("resp", response);
+
+        Assert.assertEquals(MqCommonRespCode.SUCCESS.getCode(), future.get().getRespCode());
+        assertInFlight(0);
+    }
+
+    @Test
+    public void releaseAfterTimeoutTest() throws Exception {
+        channel = newChannel(false);
+        CompletableFuture<MqCommonResp> future = brokerService.callServerAsync(channel, newReq("timeout"), MqCommonResp.class);
+        Assert.assertEquals(1, window.inFlight());
+
+        assertFailed(future, MqCommonRespCode.TIMEOUT);
+        assertInFlight(0);
+
+        // 同步调用
+        try {
+            brokerService.callServer(channel, newReq("timeout-sync"), MqCommonResp.class);
+            Assert.fail();
+        } catch (MqException e) {
+            Assert.assertEquals(MqCommonRespCode.TIMEOUT.getCode(), e.getCode());
+        }
+        assertInFlight(0);
+    }
+
+    @Test
+    public void releaseAfterWriteFailureTest() throws Exception {
+        channel = newChannel(true);
+        CompletableFuture<MqCommonResp> future = brokerService.callServerAsync(channel, newReq("fail"), MqCommonResp.class);
+        assertFailed(future, MqCommonRespCode.RPC_WRITE_REQ_FAILED);
+        assertInFlight(0);
+
+        // 同步调用
+        try {
+            brokerService.callServer(channel, newReq("fail-sync"), MqCommonResp.class);
+            Assert.fail();
+        } catch (MqException e) {
+            Assert.assertEquals(MqCommonRespCode.RPC_WRITE_REQ_FAILED.getCode(), e.getCode());
+        }
+        assertInFlight(0);
+
+        // one-way
+        Assert.assertNull(brokerService.callServer(channel, newReq("fail-oneway"), null));
+        assertInFlight(0);
+    }
+
+    @Test
+    public void releaseAfterOneWayTest() throws Exception {
+        channel = newChannel(false);
+        for(int i = 0; i < 10; i++) {
+            Assert.assertNull(brokerService.callServer(channel, newReq("oneway-" + i), null));
+            assertInFlight(0);
+        }
+    }
+
+    /**
+     * 创建连接
+     * @param writeFail 是否写出失败
+     * @return 结果
+     */
+    private EmbeddedChannel newChannel(final boolean writeFail) {
+        EmbeddedChannel embeddedChannel = writeFail
+                ? new EmbeddedChannel(new ChannelOutboundHandlerAdapter() {
+                    @Override
+                    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
+                        ReferenceCountUtil.release(msg);
+                        promise.setFailure(new IOException("write failed"));
+                    }
+                })
+                : new EmbeddedChannel(MqFrameEncoder.INSTANCE);
+        RpcInFlightWindow.bindChannel(embeddedChannel, window);
+        return embeddedChannel;
+    }
+
+    private static MqCommonReq newReq(final String traceId) {
+        MqCommonReq req = new MqCommonReq();
+        req.setTraceId(traceId);
+        req.setMethodType(MethodType.P_SEND_MSG);
+        return req;
+    }
+
+    private static void assertFailed(final CompletableFuture<?> future,
+                                     final MqCommonRespCode respCode) throws InterruptedException {
+        try {
+            future.get();
+            Assert.fail();
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof MqException);
+            Assert.assertEquals(respCode.getCode(), ((MqException) e.getCause()).getCode());
+        }
+    }
+
+    /**
+     * 窗口由完成回调释放，可能在获取结果之后才执行，这里等待一段时间
+     */
+    private void assertInFlight(final int expect) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + 1000;
+        while (window.inFlight() != expect
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        Assert.assertEquals(expect, window.inFlight());
+    }
+
+    private void releaseOutbound() {
+        Object msg;
+        while ((msg = channel.readOutbound()) != null) {
+            ReferenceCountUtil.release(msg);
+        }
+    }
+
+}